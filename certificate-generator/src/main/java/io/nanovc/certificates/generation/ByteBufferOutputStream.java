@@ -0,0 +1,40 @@
+package io.nanovc.certificates.generation;
+
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * An output stream that writes into a {@link ByteBuffer}, starting at the current position of the buffer.
+ * The buffer can be on the heap or direct, so that it can come from a pool of buffers that are reused.
+ * The buffer does not grow, so writing more than the remaining space throws a {@link BufferOverflowException}.
+ */
+public class ByteBufferOutputStream extends OutputStream
+{
+    /**
+     * The buffer that we write into.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates an output stream that writes into the given buffer.
+     *
+     * @param buffer The buffer to write into, starting at its current position.
+     */
+    public ByteBufferOutputStream(ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b)
+    {
+        this.buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length)
+    {
+        this.buffer.put(bytes, offset, length);
+    }
+}
@@ -0,0 +1,198 @@
+package io.nanovc.certificates.generation;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This formats the typed values of a column as text, the way that they must appear in the certificates.
+ * The same pattern is used for every type of value in the column:
+ * <ul>
+ *     <li>Dates use a {@link DateTimeFormatter} pattern. eg: "d MMMM yyyy" for "1 October 2024"</li>
+ *     <li>Numbers use a {@link DecimalFormat} pattern. eg: "#,##0.00" for "1,234.50"</li>
+ *     <li>Booleans use the text for true and false separated with '|'. eg: "Yes|No"</li>
+ *     <li>Text is always used as it is.</li>
+ * </ul>
+ * The formatters are compiled once when the format is created.
+ * Columns like completion dates only have a handful of distinct values across all the rows,
+ * so the formatted text for each value is cached and formatting a repeated value is just a lookup.
+ * A format is thread safe, so it can be shared by everything that produces files for the same data.
+ */
+public class CellFormat
+{
+    /**
+     * The format to use when a column doesn't have its own format.
+     * Numbers are written out in full, dates in ISO format (without the time if it's midnight) and booleans as TRUE or FALSE.
+     */
+    public static final CellFormat DEFAULT = new CellFormat(null, Locale.ROOT);
+
+    /**
+     * The number of distinct values that we cache the formatted text for.
+     * Columns with more distinct values than this (like ID numbers) are formatted each time, so that the cache doesn't grow without bound.
+     */
+    private static final int CACHE_LIMIT = 4096;
+
+    /**
+     * The pattern that this format was compiled from. Null for the default format.
+     */
+    private final String pattern;
+
+    /**
+     * The locale to format values for.
+     */
+    private final Locale locale;
+
+    /**
+     * The formatter for dates. Null if the pattern isn't a valid date pattern.
+     */
+    private final DateTimeFormatter dateFormatter;
+
+    /**
+     * The formatter for numbers. Null if the pattern isn't a valid number pattern.
+     * This isn't thread safe, so it is only used while synchronized on it.
+     */
+    private final DecimalFormat numberFormatter;
+
+    /**
+     * The text for true and false. Null if the pattern isn't a boolean pattern.
+     */
+    private final String[] booleanTexts;
+
+    /**
+     * The formatted text of the values that have been formatted already.
+     */
+    private final ConcurrentHashMap<Object, String> formattedValues = new ConcurrentHashMap<>();
+
+    /**
+     * Compiles a format.
+     *
+     * @param pattern The pattern to format values with. Null to use the default formatting.
+     * @param locale  The locale to format values for. eg: The names of the months and the decimal separator.
+     */
+    public CellFormat(String pattern, Locale locale)
+    {
+        this.pattern = pattern;
+        this.locale = locale;
+        this.dateFormatter = pattern == null ? null : compileDateFormatter(pattern, locale);
+        this.numberFormatter = pattern == null ? null : compileNumberFormatter(pattern, locale);
+        this.booleanTexts = pattern == null || pattern.indexOf('|') < 0 ? null : pattern.split("\\|", 2);
+    }
+
+    /**
+     * Gets the pattern that this format was compiled from.
+     *
+     * @return The pattern that this format was compiled from. Null for the default format.
+     */
+    public String getPattern()
+    {
+        return this.pattern;
+    }
+
+    /**
+     * Gets the locale that values are formatted for.
+     *
+     * @return The locale that values are formatted for.
+     */
+    public Locale getLocale()
+    {
+        return this.locale;
+    }
+
+    /**
+     * Formats the value as text.
+     *
+     * @param value The value to format. This can be text, a number ({@link BigDecimal}), a date ({@link LocalDateTime}) or a {@link Boolean}.
+     * @return The formatted text. "null" if the value is null.
+     */
+    public String format(Object value)
+    {
+        // Text is always used as it is:
+        if (value instanceof String) return (String) value;
+        if (value == null) return "null";
+
+        // Check whether we have formatted this value before:
+        String formattedValue = this.formattedValues.get(value);
+        if (formattedValue != null) return formattedValue;
+
+        // Format the value and remember it, unless we are already remembering too many:
+        formattedValue = this.formatUncached(value);
+        if (this.formattedValues.size() < CACHE_LIMIT) this.formattedValues.putIfAbsent(value, formattedValue);
+        return formattedValue;
+    }
+
+    /**
+     * Formats the value as text without looking in the cache.
+     *
+     * @param value The value to format. This is never null or text.
+     * @return The formatted text.
+     */
+    private String formatUncached(Object value)
+    {
+        if (value instanceof LocalDateTime)
+        {
+            LocalDateTime dateTime = (LocalDateTime) value;
+            if (this.dateFormatter != null) return this.dateFormatter.format(dateTime);
+            return dateTime.toLocalTime().equals(LocalTime.MIDNIGHT) ? dateTime.toLocalDate().toString() : dateTime.toString();
+        }
+        if (value instanceof BigDecimal)
+        {
+            BigDecimal number = (BigDecimal) value;
+            if (this.numberFormatter != null)
+            {
+                synchronized (this.numberFormatter)
+                {
+                    return this.numberFormatter.format(number);
+                }
+            }
+            return number.toPlainString();
+        }
+        if (value instanceof Boolean)
+        {
+            boolean flag = (Boolean) value;
+            if (this.booleanTexts != null) return flag ? this.booleanTexts[0] : this.booleanTexts[1];
+            return flag ? "TRUE" : "FALSE";
+        }
+        return value.toString();
+    }
+
+    /**
+     * Compiles the pattern for dates.
+     *
+     * @return The formatter for dates. Null if the pattern isn't a valid date pattern.
+     */
+    private static DateTimeFormatter compileDateFormatter(String pattern, Locale locale)
+    {
+        try
+        {
+            return DateTimeFormatter.ofPattern(pattern, locale);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Compiles the pattern for numbers.
+     *
+     * @return The formatter for numbers. Null if the pattern isn't a valid number pattern.
+     */
+    private static DecimalFormat compileNumberFormatter(String pattern, Locale locale)
+    {
+        try
+        {
+            DecimalFormat numberFormatter = new DecimalFormat(pattern, DecimalFormatSymbols.getInstance(locale));
+            numberFormatter.setParseBigDecimal(true);
+            return numberFormatter;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package io.nanovc.certificates.generation;
 
+import io.nanovc.certificates.rendering.RendererType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The configuration for certificate generation.
@@ -10,9 +15,19 @@ public class CertificateGenerationConfig
 
     /**
      * The path to the Excel spreadsheet that contains data for certificate generation.
+     * This can also be a CSV file (with a .csv extension).
+     * This can also be a folder, or a glob pattern for the file names in a folder (eg: "1. Course Data/*.csv"),
+     * in which case each file is read on its own worker and the rows are merged into one table.
      */
     public String pathToExcelData;
 
+    /**
+     * The names of the sheets to read the data from in each spreadsheet.
+     * Leave this empty to read the first sheet.
+     * Each sheet is read on its own worker and the rows are merged into one table, so the sheets must have the same columns.
+     */
+    public List<String> dataSheetNames = new ArrayList<>();
+
     /**
      * The path to the certificate template PowerPoint document.
      */
@@ -33,6 +48,13 @@ public class CertificateGenerationConfig
      */
     public String pathInTemplateToReplacementFile = "ppt/slides/slide1.xml";
 
+    /**
+     * These are more paths within the template where replacements are performed, in addition to {@link #pathInTemplateToReplacementFile}.
+     * Each path can be a glob pattern.
+     * eg: ["ppt/slides/*.xml", "docProps/core.xml"] to replace values on every slide and in the document title.
+     */
+    public List<String> pathsInTemplateToReplacementFiles = new ArrayList<>();
+
     /**
      * This is the name of the field in the data that tells us the file name to produce.
      * eg: "Certificate File Name"
@@ -56,4 +78,161 @@ public class CertificateGenerationConfig
      */
     public boolean deletePopulatedFile = true;
 
+    /**
+     * How the replaced files in the populated file are compressed.
+     * Null to decide automatically, which stores them without compression if the populated file is deleted
+     * (so that it is as cheap as possible to write) and compresses them otherwise (so that the populated file is compact).
+     */
+    public ZipEntryCompression populatedFileCompression;
+
+    /**
+     * The kind of renderer that turns each populated file into a PDF.
+     * The stub renderer works without Office, so it can be used to run and measure generation on any machine.
+     */
+    public RendererType rendererType = RendererType.POWERPOINT;
+
+    /**
+     * How long the stub renderer waits before writing each PDF, in milliseconds, to simulate the latency of a real renderer.
+     */
+    public long stubRenderLatencyMillis = 0;
+
+    /**
+     * The number of renderers that turn populated files into PDFs at the same time, each on its own worker thread.
+     * This must be 1 for the {@link RendererType#POWERPOINT} and {@link RendererType#POWERPOINT_MACRO} renderers,
+     * because PowerPoint is a single instance application that all the workers would share.
+     * Each {@link RendererType#LIBREOFFICE} renderer starts its own listener, so several of them do render at the same time.
+     * 1 to render each certificate on the generating thread, one after the other.
+     */
+    public int rendererCount = 1;
+
+    /**
+     * The number of populated files that can be waiting for a free renderer before generation waits for one.
+     * Zero or less to allow two for each renderer. This is only used when there is more than one renderer.
+     */
+    public int renderQueueCapacity = 0;
+
+    /**
+     * The number of certificates to render together in a batch.
+     * Each batch is a single presentation with a slide for each certificate, which is exported to a single PDF
+     * and then split up into the PDF for each certificate, with the same names and folders as when they are rendered one at a time.
+     * This saves opening, exporting and closing a presentation for every certificate.
+     * The template must have a single slide with all the template values on it.
+     * 1 to render each certificate on its own.
+     */
+    public int batchSize = 1;
+
+    /**
+     * The path to the folder where the presentation and PDF of each batch are written while they are rendered.
+     * The presentation of each batch is left here if {@link #deletePopulatedFile} is false.
+     * Null to use a ".batches" folder in the {@link #pathToOutputFolder}.
+     */
+    public String pathToBatchFolder;
+
+    /**
+     * The path to the macro enabled presentation (.pptm) with the BatchExport macro module in it.
+     * This is only used by the {@link RendererType#POWERPOINT_MACRO} renderer.
+     */
+    public String pathToBatchExportMacroPresentation;
+
+    /**
+     * The name of the macro in the macro enabled presentation that exports a manifest of files to PDF.
+     */
+    public String batchExportMacroName = "BatchExport.ExportManifest";
+
+    /**
+     * The number of populated files that are collected into each manifest before the macro exports them all in one call.
+     */
+    public int batchExportManifestSize = 100;
+
+    /**
+     * The path to the soffice executable for the {@link RendererType#LIBREOFFICE} renderer.
+     * The default finds it on the path.
+     */
+    public String pathToLibreOffice = "soffice";
+
+    /**
+     * The path to the folder where the user profile of each LibreOffice listener is created.
+     * Each listener gets its own profile, which is deleted when the listener stops.
+     * Null to create them in the temporary folder.
+     */
+    public String pathToLibreOfficeProfilesFolder;
+
+    /**
+     * How long to wait for each LibreOffice listener to start accepting connections, in seconds.
+     * The first start with a new profile is slow because LibreOffice fills in the profile.
+     */
+    public long libreOfficeStartTimeoutSeconds = 60;
+
+    /**
+     * True to stream the rows of data one at a time while certificates are generated, without ever loading all the data.
+     * Certificates start being generated as soon as the header row is found, and memory stays flat no matter how many rows there are.
+     * False to load all the data before generating any certificates.
+     */
+    public boolean streamData = false;
+
+    /**
+     * The index of the header row in the data, counting from zero.
+     * Negative to detect the header row as the first of the widest rows.
+     * When streaming, the header row is detected from the first {@link #headerLookAheadRowCount} rows.
+     */
+    public int headerRowIndex = -1;
+
+    /**
+     * The number of rows to look at when detecting the header row while streaming the data.
+     * The header row must be within these rows.
+     */
+    public int headerLookAheadRowCount = 100;
+
+    /**
+     * Filters for the rows of certificate data. A row is only used if it matches all of the filters.
+     * The filters on columns of the certificate data are applied as the rows are read out of the data, before the other data sources are joined,
+     * so the rows that are rejected are never loaded. eg: Only the learners whose "Result" EQUALS "Pass".
+     * The filters on columns that only the {@link #joinedDataSources} supply are applied to the joined rows. eg: Only the learners whose "Training Centre" EQUALS "Durban".
+     * Filtered data is always read from the source, without using the snapshots of parsed spreadsheets.
+     */
+    public List<RowFilterConfig> rowFilters = new ArrayList<>();
+
+    /**
+     * True to only read the columns of data that are actually used.
+     * These are the columns that the template mapping populates, the file name and folder grouping columns,
+     * the key columns of the joins and the columns of the row filters.
+     * The cells in every other column are skipped without being decoded, so wide exports cost as much as the columns that the template uses.
+     * The header row is then detected from the first {@link #headerLookAheadRowCount} rows, the same as when streaming,
+     * instead of from the whole sheet, and the rows are copied out of the stream instead of being viewed in place.
+     * False to read every column and detect the header row from the whole sheet.
+     */
+    public boolean projectColumns = false;
+
+    /**
+     * Other data sources that are joined with the certificate data, in order, before certificates are generated.
+     * The columns of each data source are added to the columns of the certificate data so that the template can use them.
+     */
+    public List<DataSourceConfig> joinedDataSources = new ArrayList<>();
+
+    /**
+     * True to keep binary snapshots of the parsed spreadsheets, so that later runs don't need to parse the spreadsheets again if they haven't changed.
+     * A snapshot is only used if the size, the last modified time and the hash of the content of the spreadsheet still match.
+     */
+    public boolean cacheParsedSpreadsheets = true;
+
+    /**
+     * The path to the folder where the snapshots of parsed spreadsheets are kept.
+     * Null to keep them in a ".snapshots" folder in the {@link #pathToOutputFolder}.
+     */
+    public String pathToSnapshotCacheFolder;
+
+    /**
+     * The format pattern for each column of data that has dates, numbers or booleans in it, by column name.
+     * Dates use {@link java.time.format.DateTimeFormatter} patterns, numbers use {@link java.text.DecimalFormat} patterns and booleans use the text for true and false separated with '|'.
+     * eg: {"Completion Date": "d MMMM yyyy", "Mark": "0.0", "Passed": "Yes|No"}
+     * Columns without a format show dates in ISO format, numbers in full and booleans as TRUE or FALSE.
+     */
+    public Map<String, String> columnFormats = new LinkedHashMap<>();
+
+    /**
+     * The locale to format dates and numbers for, as a language tag. eg: "en-ZA"
+     * Null to use the default locale of the machine.
+     */
+    public String formatLocale;
+
 }
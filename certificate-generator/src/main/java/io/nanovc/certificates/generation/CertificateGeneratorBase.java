@@ -1,20 +1,43 @@
 package io.nanovc.certificates.generation;
 
-import io.nanovc.certificates.office.powerpoint.PowerPoint;
-import io.nanovc.certificates.office.powerpoint.Presentation;
-import io.nanovc.certificates.office.powerpoint.SaveAsFileType;
+import io.nanovc.certificates.rendering.BatchExportRenderer;
+import io.nanovc.certificates.rendering.CertificateRenderer;
+import io.nanovc.certificates.rendering.LibreOfficeRenderer;
+import io.nanovc.certificates.rendering.PdfSplitter;
+import io.nanovc.certificates.rendering.PowerPointBatchExportApplication;
+import io.nanovc.certificates.rendering.PowerPointRenderer;
+import io.nanovc.certificates.rendering.RendererPool;
+import io.nanovc.certificates.rendering.RendererType;
+import io.nanovc.certificates.rendering.StubRenderer;
 import org.dhatim.fastexcel.reader.Cell;
 import org.dhatim.fastexcel.reader.ReadableWorkbook;
+import org.dhatim.fastexcel.reader.ReadingOptions;
 import org.dhatim.fastexcel.reader.Sheet;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
@@ -55,99 +78,1222 @@ public class CertificateGeneratorBase<TConfig extends CertificateGenerationConfi
      */
     public void generateCertificates(TConfig config)
     {
-        // Load the raw data:
-        var rawData = loadRawData(config);
-
-        // Extract the rectangular data from the raw data:
-        var actualData = detectActualData(config, rawData);
-
-        // Load the raw template mapping:
-        var rawTemplateMapping = loadRawTemplateMapping(config);
+        // Load the raw template mapping and extract the rectangular template mapping from it, unless we have a snapshot of it from a previous run:
+        var actualTemplateMapping = loadThroughSnapshotCache(
+            config,
+            Paths.get(config.pathToTemplateMappingSpreadsheet),
+            "Template Mapping",
+            () ->
+            {
+                // Load the raw template mapping:
+                var rawTemplateMapping = loadRawTemplateMapping(config);
 
-        // Extract the rectangular template mapping from the raw template mapping:
-        var actualTemplateMapping = detectActualTemplateMapping(config, rawTemplateMapping);
+                // Extract the rectangular template mapping from the raw template mapping:
+                return detectActualTemplateMapping(config, rawTemplateMapping);
+            }
+        );
 
         // Process the mapping so that it can be used for template generation:
         var templateValueToFieldMapping = extractTemplateValueToFieldMapping(actualTemplateMapping);
 
+        // Work out which columns of data we actually use, so that the others are skipped while the data is read:
+        ColumnProjection projection = createColumnProjection(config, actualTemplateMapping);
+
         // Create the config for the exploded template:
         ExplodedTemplateConfig explodedTemplateConfig = new ExplodedTemplateConfig();
-        explodedTemplateConfig.unzipFolderPath = config.pathToOutputFolder;
         explodedTemplateConfig.templatePath = config.pathToTemplatePresentation;
         explodedTemplateConfig.pathInTemplateToReplacementFile = config.pathInTemplateToReplacementFile;
+        explodedTemplateConfig.pathsInTemplateToReplacementFiles = config.pathsInTemplateToReplacementFiles;
+
+        // Decide how to compress the populated file, making it cheap to write if we are going to throw it away:
+        if (config.populatedFileCompression != null) explodedTemplateConfig.replacementFileCompression = config.populatedFileCompression;
+        else explodedTemplateConfig.replacementFileCompression = config.deletePopulatedFile ? ZipEntryCompression.STORED : ZipEntryCompression.DEFAULT;
 
-        // Explode the template to a temporary folder so that we can generate from it:
+        // Open the template so that we can generate from it:
         try (var explodedTemplate = new ExplodedTemplate(explodedTemplateConfig))
         {
             // Initialize the exploded template:
             explodedTemplate.initialize(actualTemplateMapping);
 
-            // Open the PowerPoint application:
-            try (var powerPoint = new PowerPoint())
+            // Create the schema for the columns that decide where each certificate goes, so that they are only looked up by name once:
+            RowSchema outputSchema = createOutputSchema(config);
+
+            // Prepare to put several certificates on the slides of each package if we are rendering in batches:
+            SlideBatchTemplate batchTemplate = createSlideBatchTemplate(config, explodedTemplate);
+
+            // Check whether we must stream the data:
+            if (config.streamData)
+            {
+                // We are streaming the data.
+                // We can't look at all the data before we start, so every value is escaped when it is written into the template.
+
+                // Create the renderer and the context for producing files from the template:
+                try
+                    (
+                        var renderer = createRenderer(config);
+                        var templateContext = explodedTemplate.createContext();
+                        var slideBatch = batchTemplate == null ? null : batchTemplate.createBatch(templateContext)
+                    )
+                {
+                    // Start the renderer:
+                    renderer.start();
+
+                    // Stream each row of actual data straight into generation, keeping track of the certificates that are still being rendered:
+                    List<CompletableFuture<Void>> pendingRenders = new ArrayList<>();
+                    streamActualData(config, projection, row -> trackPendingRender(pendingRenders, generateCertificate(config, explodedTemplate, templateContext, slideBatch, outputSchema, renderer, row)));
+
+                    // Render the last batch, which might not be full:
+                    if (slideBatch != null && slideBatch.isStarted()) trackPendingRender(pendingRenders, renderBatch(config, slideBatch, renderer));
+
+                    // Render the certificates that the renderer is still holding on to, then wait for the last of them:
+                    renderer.flush();
+                    awaitPendingRenders(pendingRenders);
+
+                    // Renderer, template context and slide batch are auto-closed.
+                }
+            }
+            else
+            {
+                // We are loading all the data first.
+
+                // Load the actual data from each file and sheet:
+                var actualData = loadActualData(config, projection);
+
+                // Join the other data sources with the actual data:
+                actualData = joinData(config, actualData, projection);
+
+                // Find out which columns of data need to be escaped when they are written into the template:
+                boolean[] replacementValuesAreSafe = explodedTemplate.classifyData(actualData);
+
+                // Create the renderer and the context for producing files from the template:
+                try
+                    (
+                        var renderer = createRenderer(config);
+                        var templateContext = explodedTemplate.createContext(replacementValuesAreSafe);
+                        var slideBatch = batchTemplate == null ? null : batchTemplate.createBatch(templateContext)
+                    )
+                {
+                    // Start the renderer:
+                    renderer.start();
+
+                    // Loop through each row of actual data, keeping track of the certificates that are still being rendered:
+                    List<CompletableFuture<Void>> pendingRenders = new ArrayList<>();
+                    for (Row row : actualData.rows)
+                    {
+                        // Generate the certificate for this row:
+                        trackPendingRender(pendingRenders, generateCertificate(config, explodedTemplate, templateContext, slideBatch, outputSchema, renderer, row));
+                    }
+
+                    // Render the last batch, which might not be full:
+                    if (slideBatch != null && slideBatch.isStarted()) trackPendingRender(pendingRenders, renderBatch(config, slideBatch, renderer));
+
+                    // Render the certificates that the renderer is still holding on to, then wait for the last of them:
+                    renderer.flush();
+                    awaitPendingRenders(pendingRenders);
+
+                    // Renderer, template context and slide batch are auto-closed.
+                }
+            }
+
+            // Exploded Template is auto-closed.
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates the renderer that turns each populated file into a PDF.
+     * If more than one renderer is configured then a pool of them is created, each on its own worker thread.
+     *
+     * @param config The configuration with the type and number of renderers to use.
+     * @return A new renderer that hasn't been started yet.
+     * @throws IllegalArgumentException If more than one renderer is configured for a type of renderer that can't render in parallel, such as PowerPoint.
+     */
+    protected CertificateRenderer createRenderer(TConfig config)
+    {
+        // Check whether we render one certificate at a time:
+        if (config.rendererCount <= 1) return createSingleRenderer(config);
+
+        // Make sure that each renderer in the pool would own its own process:
+        if (!config.rendererType.canRenderInParallel())
+        {
+            throw new IllegalArgumentException(
+                "The " + config.rendererType + " renderer can't render in parallel, but a rendererCount of " + config.rendererCount + " was configured." +
+                " PowerPoint is a single instance application, so every renderer would share it and the first one to stop would quit it for the others." +
+                " Set the rendererCount to 1, or use the " + RendererType.LIBREOFFICE + " renderer to render in parallel."
+            );
+        }
+
+        // Create a pool of renderers that share the work:
+        int queueCapacity = config.renderQueueCapacity > 0 ? config.renderQueueCapacity : config.rendererCount * 2;
+        return new RendererPool(config.rendererCount, queueCapacity, () -> createSingleRenderer(config));
+    }
+
+    /**
+     * Creates a single renderer that turns populated files into PDFs.
+     * When there is a pool of renderers, this is called on the worker thread that uses the renderer.
+     * Override this to plug in a different renderer.
+     *
+     * @param config The configuration with the type of renderer to use.
+     * @return A new renderer that hasn't been started yet.
+     */
+    protected CertificateRenderer createSingleRenderer(TConfig config)
+    {
+        switch (config.rendererType)
+        {
+            case STUB:
+                return new StubRenderer(Duration.ofMillis(config.stubRenderLatencyMillis));
+
+            case LIBREOFFICE:
+                return new LibreOfficeRenderer(
+                    config.pathToLibreOffice,
+                    config.pathToLibreOfficeProfilesFolder == null ? null : Paths.get(config.pathToLibreOfficeProfilesFolder),
+                    Duration.ofSeconds(config.libreOfficeStartTimeoutSeconds)
+                );
+
+            case POWERPOINT_MACRO:
+                return new BatchExportRenderer(
+                    new PowerPointBatchExportApplication(Paths.get(config.pathToBatchExportMacroPresentation), config.batchExportMacroName),
+                    config.batchExportManifestSize
+                );
+
+            case POWERPOINT:
+            default:
+                return new PowerPointRenderer();
+        }
+    }
+
+    /**
+     * Works out which columns of data are actually used, so that the other columns can be skipped while the data is read.
+     * These are the columns that the template mapping populates, the file name and folder grouping columns,
+     * the key columns of the joins and the columns of the row filters.
+     *
+     * @param config                The configuration for certificate generation.
+     * @param actualTemplateMapping The rectangular template mapping, with a column for each field of data.
+     * @return The columns to read from the data. Null to read all the columns.
+     */
+    protected ColumnProjection createColumnProjection(TConfig config, Table actualTemplateMapping)
+    {
+        // Check whether we must read all the columns:
+        if (!config.projectColumns) return null;
+
+        // Add the columns that the template mapping populates:
+        List<String> columnNames = new ArrayList<>();
+        for (Column column : actualTemplateMapping.columns)
+        {
+            for (Row row : actualTemplateMapping.rows)
+            {
+                if (!row.getCellByColumnIndexAsString(column.index).isEmpty())
+                {
+                    columnNames.add(column.name);
+                    break;
+                }
+            }
+        }
+
+        // Add the columns that decide where each certificate goes:
+        columnNames.add(config.fileNameFieldNameInData);
+        for (FolderGroupingConfig folderGrouping : config.folderGroupings)
+        {
+            columnNames.add(folderGrouping.columnName);
+        }
+
+        // Add the columns that the joins and row filters need:
+        for (DataSourceConfig dataSource : config.joinedDataSources)
+        {
+            columnNames.addAll(dataSource.keyColumnNames);
+        }
+        for (RowFilterConfig rowFilter : config.rowFilters)
+        {
+            columnNames.add(rowFilter.columnName);
+        }
+        return new ColumnProjection(columnNames);
+    }
+
+    /**
+     * Creates the schema for the columns that decide where each certificate goes.
+     * The first column is the file name and then there is a column for each folder grouping, in order.
+     *
+     * @param config The configuration to use to generate the certificates.
+     * @return The schema for the columns that decide where each certificate goes.
+     */
+    protected RowSchema createOutputSchema(TConfig config)
+    {
+        List<String> columnNames = new ArrayList<>();
+        columnNames.add(config.fileNameFieldNameInData);
+        for (FolderGroupingConfig folderGrouping : config.folderGroupings)
+        {
+            columnNames.add(folderGrouping.columnName);
+        }
+        return new RowSchema(columnNames);
+    }
+
+    /**
+     * Creates the batch template that puts several certificates on the slides of each package, so that they can be rendered together.
+     *
+     * @param config           The configuration with the size of the batches.
+     * @param explodedTemplate The template to make the batches from. It must already be initialized.
+     * @return The initialized batch template. Null if certificates are rendered one at a time.
+     */
+    protected SlideBatchTemplate createSlideBatchTemplate(TConfig config, ExplodedTemplate explodedTemplate) throws IOException
+    {
+        // Check whether we render certificates one at a time:
+        if (config.batchSize <= 1) return null;
+
+        // Make sure that the folder for the packages of each batch exists:
+        Files.createDirectories(getBatchFolder(config));
+
+        // Create the batch template:
+        SlideBatchTemplate batchTemplate = new SlideBatchTemplate(explodedTemplate);
+        batchTemplate.initialize();
+        return batchTemplate;
+    }
+
+    /**
+     * Gets the folder where the package and PDF of each batch are written while they are rendered.
+     *
+     * @param config The configuration with the folder for the batches.
+     * @return The folder for the batches.
+     */
+    protected Path getBatchFolder(TConfig config)
+    {
+        if (config.pathToBatchFolder != null) return Paths.get(config.pathToBatchFolder);
+        return Paths.get(config.pathToOutputFolder).resolve(".batches");
+    }
+
+    /**
+     * Generates the certificate for a single row of actual data.
+     * If we are rendering in batches then the certificate is added to the current batch, which is rendered once it is full.
+     *
+     * @param config           The configuration to use to generate the certificate.
+     * @param explodedTemplate The template to produce the populated file from.
+     * @param templateContext  The context to produce the populated file with.
+     * @param slideBatch       The batch to add the certificate to. Null to render the certificate on its own.
+     * @param outputSchema     The schema from {@link #createOutputSchema} for the columns that decide where the certificate goes.
+     * @param renderer         The renderer to convert the populated file to a PDF with.
+     * @param row              The row of actual data to generate the certificate for.
+     * @return A future that completes once the PDF for the certificate has been written, or once the certificate has been added to a batch that isn't full yet.
+     */
+    protected CompletableFuture<Void> generateCertificate(TConfig config, ExplodedTemplate explodedTemplate, ExplodedTemplateContext templateContext, SlideBatch slideBatch, RowSchema outputSchema, CertificateRenderer renderer, Row row) throws Exception
+    {
+        if (slideBatch == null) return generateCertificate(config, explodedTemplate, templateContext, outputSchema, renderer, row);
+        else return addCertificateToBatch(config, slideBatch, outputSchema, renderer, row);
+    }
+
+    /**
+     * Generates the certificate for a single row of actual data.
+     * If the populated file isn't kept then it is produced in memory and handed to the renderer without being written by the generator.
+     *
+     * @param config           The configuration to use to generate the certificate.
+     * @param explodedTemplate The template to produce the populated file from.
+     * @param templateContext  The context to produce the populated file with.
+     * @param outputSchema     The schema from {@link #createOutputSchema} for the columns that decide where the certificate goes.
+     * @param renderer         The renderer to convert the populated file to a PDF with.
+     * @param row              The row of actual data to generate the certificate for.
+     * @return A future that completes once the PDF has been rendered.
+     */
+    protected CompletableFuture<Void> generateCertificate(TConfig config, ExplodedTemplate explodedTemplate, ExplodedTemplateContext templateContext, RowSchema outputSchema, CertificateRenderer renderer, Row row) throws Exception
+    {
+        // Get the file name that we must produce:
+        String fileNameWithoutExtension = outputSchema.getCellAsString(row, 0);
+
+        // Add the file extension to the file name:
+        String fileNameWithExtension = fileNameWithoutExtension + config.populatedFileExtension;
+        String fileNameWithPDFExtension = fileNameWithoutExtension + ".pdf";
+
+        // Create the folder where we must save the output:
+        Path producedFileFolder = createCertificateFolder(config, outputSchema, row);
+
+        // Add the file name and extension:
+        Path producedFilePath = producedFileFolder.resolve(fileNameWithExtension);
+        Path producedPDFPath =  producedFileFolder.resolve(fileNameWithPDFExtension);
+
+        // Display progress:
+        System.out.println(producedPDFPath.toString());
+
+        // Check whether we keep the populated file:
+        if (config.deletePopulatedFile)
+        {
+            // Produce the file in memory and hand it straight to the renderer, so it never has to be written and deleted again.
+            // The package is only valid until the next one is produced with the context, but renderers are done with it once they return:
+            ByteBuffer populatedPackage = explodedTemplate.produce(templateContext, row);
+            return renderer.renderToPDFAsync(populatedPackage, config.populatedFileExtension, producedPDFPath).thenAccept(pdfPath -> {});
+        }
+
+        // Produce the file:
+        explodedTemplate.produceFile(templateContext, row, producedFilePath);
+
+        // Render the file as a PDF, which might carry on in the background:
+        return renderer.renderToPDFAsync(producedFilePath, producedPDFPath).thenAccept(pdfPath -> {});
+    }
+
+    /**
+     * Adds the certificate for a single row of actual data to the current batch, starting a new batch if necessary.
+     * The batch is rendered once it is full.
+     * The PDF for the certificate has the same name and folder as when certificates are rendered one at a time.
+     *
+     * @param config       The configuration to use to generate the certificate.
+     * @param slideBatch   The batch to add the certificate to.
+     * @param outputSchema The schema from {@link #createOutputSchema} for the columns that decide where the certificate goes.
+     * @param renderer     The renderer to convert the batch to a PDF with.
+     * @param row          The row of actual data to generate the certificate for.
+     * @return A future that completes once the batch has been rendered and split up, if it is full. Otherwise a future that is already complete.
+     */
+    protected CompletableFuture<Void> addCertificateToBatch(TConfig config, SlideBatch slideBatch, RowSchema outputSchema, CertificateRenderer renderer, Row row) throws Exception
+    {
+        // Work out where the PDF for the certificate must go:
+        String fileNameWithPDFExtension = outputSchema.getCellAsString(row, 0) + ".pdf";
+        Path producedPDFPath = createCertificateFolder(config, outputSchema, row).resolve(fileNameWithPDFExtension);
+
+        // Display progress:
+        System.out.println(producedPDFPath.toString());
+
+        // Start a new batch if necessary:
+        if (!slideBatch.isStarted()) slideBatch.start(getBatchFolder(config).resolve("Batch " + (slideBatch.getBatchCount() + 1) + config.populatedFileExtension));
+
+        // Add the slide for the certificate:
+        slideBatch.addSlide(row, producedPDFPath);
+
+        // Check whether the batch is full:
+        if (slideBatch.getSlideCount() < config.batchSize) return CompletableFuture.completedFuture(null);
+
+        // Render the full batch:
+        return renderBatch(config, slideBatch, renderer);
+    }
+
+    /**
+     * Finishes the current batch and renders it to a single PDF, which is then split up into the PDF for each certificate.
+     *
+     * @param config     The configuration to use to generate the certificates.
+     * @param slideBatch The batch to render. It must have been started.
+     * @param renderer   The renderer to convert the batch to a PDF with.
+     * @return A future that completes once the PDF for each certificate in the batch has been written and the batch has been cleaned up.
+     */
+    protected CompletableFuture<Void> renderBatch(TConfig config, SlideBatch slideBatch, CertificateRenderer renderer) throws IOException
+    {
+        // Finish the package for the batch:
+        Path batchPackagePath = slideBatch.getPackagePath();
+        List<Path> certificatePDFPaths = slideBatch.finish();
+
+        // Get the path for the PDF of the whole batch:
+        String batchPackageName = batchPackagePath.getFileName().toString();
+        Path batchPDFPath = batchPackagePath.resolveSibling(batchPackageName.substring(0, batchPackageName.length() - config.populatedFileExtension.length()) + ".pdf");
+
+        // Render the batch, which might carry on in the background:
+        return renderer.renderToPDFAsync(batchPackagePath, batchPDFPath).thenAccept(pdfPath ->
+        {
+            try
+            {
+                // Split the PDF of the batch into the PDF for each certificate:
+                PdfSplitter.splitPages(pdfPath, certificatePDFPaths);
+
+                // Delete the PDF of the batch and the package too if necessary:
+                Files.delete(pdfPath);
+                if (config.deletePopulatedFile) Files.delete(batchPackagePath);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Creates the folder where the certificate for the given row of data must go.
+     * This is the output folder with a sub folder for each folder grouping that has a value.
+     *
+     * @param config       The configuration with the output folder.
+     * @param outputSchema The schema from {@link #createOutputSchema} for the columns that decide where the certificate goes.
+     * @param row          The row of actual data for the certificate.
+     * @return The folder for the certificate, which exists.
+     */
+    protected Path createCertificateFolder(TConfig config, RowSchema outputSchema, Row row) throws IOException
+    {
+        // Create the folder where we must save the output:
+        Path producedFileFolder = Paths.get(config.pathToOutputFolder);
+
+        // Go through each folder grouping, which follow the file name in the schema:
+        for (int schemaIndex = 1; schemaIndex < outputSchema.getColumnCount(); schemaIndex++)
+        {
+            // Get the value of this folder grouping:
+            String folderGroupingCellValue = outputSchema.getCellAsString(row, schemaIndex);
+
+            // Skip this grouping if we don't have a value:
+            if (folderGroupingCellValue.isEmpty()) continue;
+
+            // Add this to our path:
+            producedFileFolder = producedFileFolder.resolve(folderGroupingCellValue);
+        }
+        // Now we have all the folders for the produced file.
+
+        // Make sure the directories exist:
+        Files.createDirectories(producedFileFolder);
+        return producedFileFolder;
+    }
+
+    /**
+     * Keeps track of a certificate that is still being rendered.
+     * The certificates that have finished are forgotten so that the list stays small,
+     * and the first one that failed is thrown straight away so that generation stops.
+     *
+     * @param pendingRenders The certificates that are still being rendered.
+     * @param pendingRender  The certificate that was just handed to the renderer.
+     */
+    protected void trackPendingRender(List<CompletableFuture<Void>> pendingRenders, CompletableFuture<Void> pendingRender)
+    {
+        // Forget the certificates that have finished, checking whether any of them failed:
+        Iterator<CompletableFuture<Void>> iterator = pendingRenders.iterator();
+        while (iterator.hasNext())
+        {
+            CompletableFuture<Void> render = iterator.next();
+            if (render.isDone())
+            {
+                render.join();
+                iterator.remove();
+            }
+        }
+
+        // Remember the new certificate unless it has finished already:
+        if (pendingRender.isDone()) pendingRender.join();
+        else pendingRenders.add(pendingRender);
+    }
+
+    /**
+     * Waits for the certificates that are still being rendered, throwing the first one that failed.
+     *
+     * @param pendingRenders The certificates that are still being rendered.
+     */
+    protected void awaitPendingRenders(List<CompletableFuture<Void>> pendingRenders)
+    {
+        for (CompletableFuture<Void> render : pendingRenders)
+        {
+            render.join();
+        }
+        pendingRenders.clear();
+    }
+
+    /**
+     * @param actualTemplateMapping The rectangular template mapping data.
+     * @return A map of field names to template values to use,.
+     */
+    protected Map<String, String> extractTemplateValueToFieldMapping(Table actualTemplateMapping)
+    {
+        return null;
+    }
+
+    //#region Certificate Data
+
+    /**
+     * Loads the actual data to process from all the files and sheets that it is in.
+     * If the data is in a single file and sheet then it is loaded with {@link #loadRawData} and {@link #detectActualData}.
+     * Otherwise each file and sheet is loaded on its own worker and the rows are merged into one table.
+     * We expect to have rectangular data after this.
+     *
+     * @param config The configuration to use to load the data.
+     * @return The rectangular data to use for certificate generation.
+     */
+    protected Table loadActualData(TConfig config)
+    {
+        return loadActualData(config, null);
+    }
+
+    /**
+     * This loads the actual data to process, only keeping the columns in the given projection.
+     * The row filters on its columns are applied while it is loaded.
+     * The row filters on columns that it doesn't have are left for {@link #joinData(CertificateGenerationConfig, Table, ColumnProjection)},
+     * because those columns can come from the joined data sources.
+     * We expect to have rectangular data after this.
+     *
+     * @param config     The configuration to use to load the data.
+     * @param projection The columns to keep. Null to keep all the columns.
+     * @return The rectangular data to use for certificate generation.
+     */
+    protected Table loadActualData(TConfig config, ColumnProjection projection)
+    {
+        // Find the files and sheets that the data is in:
+        List<DataSourceConfig> dataSources = resolveDataSources(config);
+
+        // Check whether the rows must be filtered as they are read:
+        if (createRowFilter(config) != null)
+        {
+            // Load the filtered data:
+            Table actualData = loadFilteredData(config, dataSources, projection);
+
+            // Format the typed values of each column:
+            applyColumnFormats(config, actualData);
+            return actualData;
+        }
+
+        // Check whether we only keep some of the columns:
+        if (projection != null)
+        {
+            // Load each file and sheet on its own worker, only keeping the columns in the projection:
+            List<CompletableFuture<Table>> loadingTables = new ArrayList<>(dataSources.size());
+            for (DataSourceConfig dataSource : dataSources)
+            {
+                loadingTables.add(CompletableFuture.supplyAsync(() -> loadDataSource(config, dataSource, projection), ForkJoinPool.commonPool()));
+            }
+
+            // Wait for all the tables to be loaded:
+            List<Table> tables = new ArrayList<>(dataSources.size());
+            for (CompletableFuture<Table> loadingTable : loadingTables)
+            {
+                tables.add(loadingTable.join());
+            }
+
+            // Merge the tables into one if there are several:
+            if (tables.size() == 1) return tables.get(0);
+            Table actualData = mergeData(dataSources, tables);
+
+            // Format the typed values of each column, because merging creates new columns:
+            applyColumnFormats(config, actualData);
+            return actualData;
+        }
+
+        // Check whether the data is in a single file and sheet:
+        if (isSingleDataSource(config, dataSources))
+        {
+            // Load the raw data and extract the rectangular data from it, unless we have a snapshot of it from a previous run:
+            Table actualData = loadThroughSnapshotCache(
+                config,
+                Paths.get(config.pathToExcelData),
+                "Sheet 0|Header " + config.headerRowIndex,
+                () ->
+                {
+                    var rawData = loadRawData(config);
+                    return detectActualData(config, rawData);
+                }
+            );
+
+            // Format the typed values of each column:
+            applyColumnFormats(config, actualData);
+            return actualData;
+        }
+
+        // Load each file and sheet on its own worker:
+        List<CompletableFuture<Table>> loadingTables = new ArrayList<>(dataSources.size());
+        for (DataSourceConfig dataSource : dataSources)
+        {
+            loadingTables.add(CompletableFuture.supplyAsync(() -> loadDataSource(config, dataSource), ForkJoinPool.commonPool()));
+        }
+
+        // Wait for all the tables to be loaded:
+        List<Table> tables = new ArrayList<>(dataSources.size());
+        for (CompletableFuture<Table> loadingTable : loadingTables)
+        {
+            tables.add(loadingTable.join());
+        }
+
+        // Merge the tables into one:
+        Table actualData = mergeData(dataSources, tables);
+
+        // Format the typed values of each column:
+        applyColumnFormats(config, actualData);
+        return actualData;
+    }
+
+    /**
+     * Loads the rectangular data of each data source, keeping only the rows that match the row filters on its columns.
+     * The rows are filtered as they are streamed out of each file and sheet, so the rows that are rejected are never copied into a table.
+     * Each file and sheet is streamed on its own worker with its own filter, and the number of rows that were kept and rejected is reported at the end.
+     * The row filters on columns that the data sources don't have are left for the joined rows.
+     *
+     * @param config      The configuration with the row filters.
+     * @param dataSources The data sources to load.
+     * @param projection  The columns to keep. Null to keep all the columns.
+     * @return A new table with the rows of all the data sources that match the filters, in order.
+     */
+    protected Table loadFilteredData(TConfig config, List<DataSourceConfig> dataSources, ColumnProjection projection)
+    {
+        // Stream each file and sheet through its own filter on its own worker:
+        List<SplitRowFilter> rowFilters = new ArrayList<>(dataSources.size());
+        List<CompletableFuture<Table>> loadingTables = new ArrayList<>(dataSources.size());
+        for (DataSourceConfig dataSource : dataSources)
+        {
+            SplitRowFilter rowFilter = createRowFilter(config);
+            rowFilters.add(rowFilter);
+            loadingTables.add(CompletableFuture.supplyAsync(() -> loadStreamedDataSource(config, dataSource, projection, rowFilter), ForkJoinPool.commonPool()));
+        }
+
+        // Wait for all the tables to be loaded:
+        List<Table> tables = new ArrayList<>(dataSources.size());
+        for (CompletableFuture<Table> loadingTable : loadingTables)
+        {
+            tables.add(loadingTable.join());
+        }
+
+        // Report how many rows were filtered out, if any of the filters are on the columns of the data sources:
+        long keptRowCount = 0;
+        long rejectedRowCount = 0;
+        boolean isFiltered = false;
+        for (SplitRowFilter rowFilter : rowFilters)
+        {
+            if (rowFilter.getPushedDownFilter() == null) continue;
+            keptRowCount += rowFilter.getPushedDownFilter().getKeptRowCount();
+            rejectedRowCount += rowFilter.getPushedDownFilter().getRejectedRowCount();
+            isFiltered = true;
+        }
+        if (isFiltered) reportFilteredRows(keptRowCount, rejectedRowCount);
+
+        // Merge the tables into one if there are several:
+        return tables.size() == 1 ? tables.get(0) : mergeData(dataSources, tables);
+    }
+
+    /**
+     * Loads the rectangular data of a data source by streaming it, keeping only the columns in the projection and the rows that match the filter.
+     * The columns and rows are picked out as they are streamed out of the file, so the cells and rows that we don't keep are never copied into the table.
+     * The header row is detected from the first {@link CertificateGenerationConfig#headerLookAheadRowCount} rows, the same as when the data is streamed.
+     *
+     * @param config     The configuration to use to load the data.
+     * @param dataSource The data source to load.
+     * @param projection The columns to keep. Null to keep all the columns.
+     * @param rowFilter  The filter for the rows. Only the filters on the columns of the data source are applied, and they count the rows that were kept and rejected. Null to keep all the rows.
+     * @return The rectangular data of the data source with only the columns and rows that we keep.
+     */
+    protected Table loadStreamedDataSource(TConfig config, DataSourceConfig dataSource, ColumnProjection projection, SplitRowFilter rowFilter)
+    {
+        try
+        {
+            // Copy each row that is kept into the table, creating the columns from the header when the first row comes through:
+            Table filteredData = new Table();
+            RowHandler collectingRowHandler = row ->
+            {
+                if (!filteredData.columns.hasColumns())
+                {
+                    for (Column column : row.getTable().columns) filteredData.columns.addColumn(column.name);
+                }
+                filteredData.rows.addRow().copyValuesFromAnotherRow(row);
+            };
+
+            // Extract the rectangular rows from the raw rows as they are streamed, and filter them:
+            RowHandler filteredRowHandler = rowFilter == null ? collectingRowHandler : rowFilter.createPushedDownRowHandler(collectingRowHandler);
+            RectangularRowStreamer streamer = new RectangularRowStreamer(dataSource.headerRowIndex, config.headerLookAheadRowCount, projection, filteredRowHandler);
+            streamRawDataSource(dataSource, streamer::isRawColumnNeeded, streamer::acceptRawRow);
+            streamer.finish();
+
+            // Make sure we still have the columns if every row was rejected:
+            if (!filteredData.columns.hasColumns())
+            {
+                for (Column column : streamer.getTable().columns) filteredData.columns.addColumn(column.name);
+            }
+            return filteredData;
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates the filter for the rows of certificate data.
+     * The filters on the columns of the certificate data are applied before the other data sources are joined with it,
+     * and the filters on columns that only the joined data sources supply are applied to the joined rows.
+     * A filter counts the rows that it keeps and rejects, so each stream of rows needs its own filter.
+     *
+     * @param config The configuration with the row filters.
+     * @return A new filter for the rows. Null if there are no row filters.
+     */
+    protected SplitRowFilter createRowFilter(TConfig config)
+    {
+        if (config.rowFilters == null || config.rowFilters.isEmpty()) return null;
+        return new SplitRowFilter(config.rowFilters);
+    }
+
+    /**
+     * Reports how many rows of data were kept and rejected by the row filters.
+     *
+     * @param keptRowCount     The number of rows that matched all the filters.
+     * @param rejectedRowCount The number of rows that didn't match all the filters.
+     */
+    protected void reportFilteredRows(long keptRowCount, long rejectedRowCount)
+    {
+        System.out.println("Kept " + keptRowCount + " rows and rejected " + rejectedRowCount + " rows with the row filters.");
+    }
+
+    /**
+     * Reports how many joined rows were kept and rejected by the row filters on columns that only the joined data sources supply.
+     *
+     * @param keptRowCount     The number of joined rows that matched all the filters on the joined columns.
+     * @param rejectedRowCount The number of joined rows that didn't match all the filters on the joined columns.
+     */
+    protected void reportFilteredJoinedRows(long keptRowCount, long rejectedRowCount)
+    {
+        System.out.println("Kept " + keptRowCount + " joined rows and rejected " + rejectedRowCount + " joined rows with the row filters on joined columns.");
+    }
+
+    /**
+     * Finds the files and sheets that the data is in.
+     * The path to the data can be a single file, a folder (in which case all the spreadsheets and CSV files in it are used)
+     * or a glob pattern for the file names in a folder. eg: "1. Course Data/*.csv"
+     * Each spreadsheet has a data source for each of the {@link CertificateGenerationConfig#dataSheetNames}.
+     *
+     * @param config The configuration with the path to the data.
+     * @return The data sources for each file and sheet, in the order of the file names and then the sheet names.
+     */
+    protected List<DataSourceConfig> resolveDataSources(TConfig config)
+    {
+        try
+        {
+            // Split the file name from the folder, without parsing it as a path because glob characters aren't valid in paths on all platforms:
+            String pathText = config.pathToExcelData;
+            int lastSeparatorIndex = Math.max(pathText.lastIndexOf('/'), pathText.lastIndexOf('\\'));
+            String fileNameText = pathText.substring(lastSeparatorIndex + 1);
+
+            // Find the files:
+            List<Path> paths = new ArrayList<>();
+            if (fileNameText.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{'))
+            {
+                // The file name is a glob pattern.
+                Path folder = lastSeparatorIndex < 0 ? Paths.get(".") : Paths.get(pathText.substring(0, lastSeparatorIndex));
+                PathMatcher fileNameMatcher = FileSystems.getDefault().getPathMatcher("glob:" + fileNameText);
+                try (Stream<Path> files = Files.list(folder))
+                {
+                    files.filter(path -> Files.isRegularFile(path) && fileNameMatcher.matches(path.getFileName())).sorted().forEach(paths::add);
+                }
+                if (paths.isEmpty()) throw new IllegalStateException("There are no files that match the data path: " + pathText);
+            }
+            else if (Files.isDirectory(Paths.get(pathText)))
+            {
+                // The path is a folder, so use all the data files in it.
+                try (Stream<Path> files = Files.list(Paths.get(pathText)))
+                {
+                    files.filter(path -> Files.isRegularFile(path) && isDataFile(path)).sorted().forEach(paths::add);
+                }
+                if (paths.isEmpty()) throw new IllegalStateException("There are no spreadsheets or CSV files in the data folder: " + pathText);
+            }
+            else
+            {
+                // The path is a single file.
+                paths.add(Paths.get(pathText));
+            }
+
+            // Create a data source for each file and sheet:
+            List<DataSourceConfig> dataSources = new ArrayList<>();
+            for (Path path : paths)
+            {
+                // CSV files don't have sheets:
+                boolean hasSheets = !isCsvFile(path) && config.dataSheetNames != null && !config.dataSheetNames.isEmpty();
+                for (String sheetName : hasSheets ? config.dataSheetNames : Collections.<String>singletonList(null))
+                {
+                    DataSourceConfig dataSource = new DataSourceConfig();
+                    dataSource.path = path.toString();
+                    dataSource.sheetName = sheetName;
+                    dataSource.headerRowIndex = config.headerRowIndex;
+                    dataSources.add(dataSource);
+                }
+            }
+            return dataSources;
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Checks whether the data is only in the single file and sheet that the config points to directly.
+     *
+     * @param config      The configuration with the path to the data.
+     * @param dataSources The data sources that were resolved for the config.
+     * @return True if the data is in a single file and sheet. False if it must be merged from several.
+     */
+    protected boolean isSingleDataSource(TConfig config, List<DataSourceConfig> dataSources)
+    {
+        return dataSources.size() == 1 && dataSources.get(0).sheetName == null && dataSources.get(0).path.equals(Paths.get(config.pathToExcelData).toString());
+    }
+
+    /**
+     * Checks whether the given file has data that we can read, based on its extension.
+     * Lock files that Excel leaves next to open spreadsheets are ignored.
+     *
+     * @param path The path to the file to check.
+     * @return True if the file is a spreadsheet or a CSV file. False if it isn't.
+     */
+    protected boolean isDataFile(Path path)
+    {
+        String fileName = path.getFileName().toString().toLowerCase();
+        if (fileName.startsWith("~$")) return false;
+        return isCsvFile(path) || fileName.endsWith(".xlsx") || fileName.endsWith(".xlsm");
+    }
+
+    /**
+     * Merges the rectangular data of several data sources into one table.
+     * The columns of the first data source are the common schema and every other data source must have the same columns, in any order.
+     *
+     * @param dataSources The data sources that the tables were loaded from.
+     * @param tables      The rectangular data of each data source, in the same order.
+     * @return A new table with the rows of all the data sources, in order.
+     */
+    protected Table mergeData(List<DataSourceConfig> dataSources, List<Table> tables)
+    {
+        // Use the columns of the first data source as the common schema:
+        Table mergedData = new Table();
+        List<String> columnNames = new ArrayList<>();
+        for (Column column : tables.get(0).columns)
+        {
+            mergedData.columns.addColumn(column.name);
+            columnNames.add(column.name);
+        }
+        RowSchema schema = new RowSchema(columnNames);
+
+        // Copy the typed values of each data source across, by column name:
+        Object[] values = new Object[columnNames.size()];
+        for (int i = 0; i < tables.size(); i++)
+        {
+            // Make sure that the data source has the same columns:
+            Table table = tables.get(i);
+            checkHeaderCompatibility(columnNames, table, dataSources.get(i), dataSources.get(0));
+            schema.bind(table);
+
+            // Copy the rows:
+            for (Row row : table.rows)
+            {
+                for (int j = 0; j < values.length; j++)
+                {
+                    values[j] = row.getCellByColumnIndex(schema.getColumnIndex(j));
+                }
+                Row mergedRow = mergedData.rows.addRow();
+                mergedData.rows.setCells(mergedRow.getRowIndex(), values);
+            }
+        }
+        return mergedData;
+    }
+
+    /**
+     * Checks that the rectangular data of a data source has the expected columns, in any order.
+     *
+     * @param expectedColumnNames The names of the columns that we expect.
+     * @param table               The rectangular data of the data source.
+     * @param dataSource          The data source that the table came from.
+     * @param firstDataSource     The data source that the expected columns came from.
+     * @throws IllegalStateException If the data source is missing some of the columns or has extra columns.
+     */
+    protected void checkHeaderCompatibility(List<String> expectedColumnNames, Table table, DataSourceConfig dataSource, DataSourceConfig firstDataSource)
+    {
+        // Find the columns that are missing and the columns that are extra:
+        Set<String> missingColumnNames = new LinkedHashSet<>(expectedColumnNames);
+        Set<String> extraColumnNames = new LinkedHashSet<>();
+        for (Column column : table.columns)
+        {
+            if (!missingColumnNames.remove(column.name) && !expectedColumnNames.contains(column.name)) extraColumnNames.add(column.name);
+        }
+
+        // Make sure that the columns match:
+        if (!missingColumnNames.isEmpty() || !extraColumnNames.isEmpty())
+        {
+            throw new IllegalStateException(
+                "The columns in " + describeDataSource(dataSource) + " don't match the columns in " + describeDataSource(firstDataSource) + "." +
+                " Missing: " + missingColumnNames + ". Extra: " + extraColumnNames + "."
+            );
+        }
+    }
+
+    /**
+     * Describes a data source for messages.
+     *
+     * @param dataSource The data source to describe.
+     * @return The path of the data source, with the sheet name if there is one.
+     */
+    protected String describeDataSource(DataSourceConfig dataSource)
+    {
+        return dataSource.sheetName == null ? dataSource.path : dataSource.path + " [" + dataSource.sheetName + "]";
+    }
+
+    /**
+     * Loads the raw data.
+     * We don't expect to have rectangular data yet.
+     *
+     * @param config The configuration to use to load the data.
+     * @return The raw data to use for certificate generation.
+     */
+    protected Table loadRawData(TConfig config)
+    {
+        // Get the path to the data:
+        Path pathToData = Paths.get(config.pathToExcelData);
+
+        // Check whether the data is in a CSV file:
+        if (isCsvFile(pathToData))
+        {
+            // Read the raw data from the CSV file:
+            return readRawDataFromCsvFile(pathToData);
+        }
+
+        // Read the raw data from Excel:
+        Table rawData = readRawDataFromExcelSpreadsheet(pathToData, 0, null);
+        return rawData;
+    }
+
+    /**
+     * This detects the actual data to process.
+     * We expect to have rectangular data after this.
+     *
+     * @param config The configuration to use to load the data.
+     * @return The raw data to use for certificate generation.
+     */
+    protected Table detectActualData(TConfig config, Table rawData)
+    {
+        Table rectangularData = extractRectangularData(rawData, config.headerRowIndex);
+        return rectangularData;
+    }
+
+    /**
+     * Streams the raw data one row at a time.
+     * We don't expect to have rectangular data yet.
+     *
+     * @param config        The configuration to use to stream the data.
+     * @param rawRowHandler The handler for each raw row of data.
+     */
+    protected void streamRawData(TConfig config, RowHandler rawRowHandler) throws Exception
+    {
+        streamRawData(config, null, rawRowHandler);
+    }
+
+    /**
+     * Streams the raw data one row at a time, only decoding the cells in the columns that are needed.
+     * We don't expect to have rectangular data yet.
+     *
+     * @param config         The configuration to use to stream the data.
+     * @param isColumnNeeded Decides whether the cells in a column are needed, given the index of the column in the raw rows. Null to decode every cell.
+     * @param rawRowHandler  The handler for each raw row of data.
+     */
+    protected void streamRawData(TConfig config, IntPredicate isColumnNeeded, RowHandler rawRowHandler) throws Exception
+    {
+        // Get the path to the data:
+        Path pathToData = Paths.get(config.pathToExcelData);
+
+        // Check whether the data is in a CSV file:
+        if (isCsvFile(pathToData))
+        {
+            // Stream the raw data from the CSV file:
+            new CsvReader().stream(pathToData, isColumnNeeded, rawRowHandler);
+            return;
+        }
+
+        // Stream the raw data from Excel:
+        streamRawDataFromExcelSpreadsheet(pathToData, 0, null, isColumnNeeded, rawRowHandler);
+    }
+
+    /**
+     * Streams the actual data to process one row at a time, without ever loading all the data.
+     * The header row is detected from the first rows that are streamed, unless it is given explicitly.
+     *
+     * @param config     The configuration to use to stream the data.
+     * @param rowHandler The handler for each rectangular row of actual data.
+     */
+    protected void streamActualData(TConfig config, RowHandler rowHandler) throws Exception
+    {
+        streamActualData(config, null, rowHandler);
+    }
+
+    /**
+     * Streams the actual data to process one row at a time, only keeping the columns in the given projection.
+     * The cells in the other columns aren't decoded once the header row is found.
+     *
+     * @param config     The configuration to use to stream the data.
+     * @param projection The columns to keep. Null to keep all the columns.
+     * @param rowHandler The handler for each rectangular row of actual data.
+     */
+    protected void streamActualData(TConfig config, ColumnProjection projection, RowHandler rowHandler) throws Exception
+    {
+        // Filter the joined rows on the columns that only the joined data sources supply:
+        SplitRowFilter rowFilter = createRowFilter(config);
+        RowHandler joinedRowHandler = rowFilter == null ? rowHandler : rowFilter.createJoinedRowHandler(rowHandler);
+
+        // Join the other data sources with each row as it is streamed.
+        // Each data source is indexed in memory and the certificate data is streamed through the indexes, so the joins are chained from the last data source back to the first:
+        for (int i = config.joinedDataSources.size() - 1; i >= 0; i--)
+        {
+            DataSourceConfig dataSource = config.joinedDataSources.get(i);
+            joinedRowHandler = new HashJoin(loadDataSource(config, dataSource, projection), dataSource.resolveJoinedKeyColumnNames(), dataSource.keyColumnNames, dataSource.joinType, false, joinedRowHandler);
+        }
+
+        // Format the typed values of each column, as soon as the columns of the streamed rows are known:
+        RowHandler formattedRowHandler = formatRows(config, joinedRowHandler);
+
+        // Filter the rows on the columns of the certificate data before anything else is done with them, so that the rows that are rejected are never joined:
+        RowHandler filteredRowHandler = rowFilter == null ? formattedRowHandler : rowFilter.createPushedDownRowHandler(formattedRowHandler);
+
+        // Find the files and sheets that the data is in:
+        List<DataSourceConfig> dataSources = resolveDataSources(config);
+
+        // Check whether the data is in a single file and sheet:
+        if (isSingleDataSource(config, dataSources))
+        {
+            // Extract the rectangular rows from the raw rows as they are streamed:
+            RectangularRowStreamer streamer = new RectangularRowStreamer(config.headerRowIndex, config.headerLookAheadRowCount, projection, filteredRowHandler);
+            streamRawData(config, streamer::isRawColumnNeeded, streamer::acceptRawRow);
+            streamer.finish();
+
+            // Report how many rows were filtered out:
+            reportStreamedRowFilter(rowFilter);
+            return;
+        }
+
+        // Stream each file and sheet in turn, so that memory stays flat.
+        // The columns of the first data source are the common schema and every other data source must have the same columns, in any order:
+        List<String> columnNames = new ArrayList<>();
+        for (DataSourceConfig dataSource : dataSources)
+        {
+            // Check the header of this data source when its first row comes through:
+            final RowHandler downstream = filteredRowHandler;
+            Table[] checkedTable = new Table[1];
+            RowHandler checkedRowHandler = row ->
             {
-                // Start the PowerPoint application:
-                powerPoint.start();
-
-                // Loop through each row of actual data:
-                for (Row row : actualData.rows)
+                if (row.getTable() != checkedTable[0])
                 {
-                    // Get the file name that we must produce:
-                    String fileNameWithoutExtension = row.getCellByColumnNameAsString(config.fileNameFieldNameInData);
-
-                    // Add the file extension to the file name:
-                    String fileNameWithExtension = fileNameWithoutExtension + config.populatedFileExtension;
-                    String fileNameWithPDFExtension = fileNameWithoutExtension + ".pdf";
+                    if (columnNames.isEmpty())
+                    {
+                        // This is the first data source, so its columns are the common schema:
+                        for (Column column : row.getTable().columns) columnNames.add(column.name);
+                    }
+                    else
+                    {
+                        // Make sure that this data source has the same columns:
+                        checkHeaderCompatibility(columnNames, row.getTable(), dataSource, dataSources.get(0));
+                    }
+                    checkedTable[0] = row.getTable();
+                }
+                downstream.handleRow(row);
+            };
 
-                    // Create the folder where we must save the output:
-                    Path producedFileFolder = Paths.get(config.pathToOutputFolder);
+            // Extract the rectangular rows from the raw rows as they are streamed:
+            RectangularRowStreamer streamer = new RectangularRowStreamer(dataSource.headerRowIndex, config.headerLookAheadRowCount, projection, checkedRowHandler);
+            streamRawDataSource(dataSource, streamer::isRawColumnNeeded, streamer::acceptRawRow);
+            streamer.finish();
+        }
 
-                    // Go through each folder grouping:
-                    for (FolderGroupingConfig folderGrouping : config.folderGroupings)
-                    {
-                        // Get the value of this folder grouping:
-                        String folderGroupingCellValue = row.getCellByColumnNameAsString(folderGrouping.columnName);
+        // Report how many rows were filtered out:
+        reportStreamedRowFilter(rowFilter);
+    }
 
-                        // Skip this grouping if we don't have a value:
-                        if (folderGroupingCellValue.isEmpty()) continue;
+    /**
+     * Reports how many rows were kept and rejected by the row filters, before and after the rows were joined with the other data sources.
+     *
+     * @param rowFilter The filter that the rows were streamed through. Null if there are no row filters.
+     */
+    protected void reportStreamedRowFilter(SplitRowFilter rowFilter)
+    {
+        if (rowFilter == null) return;
+        if (rowFilter.getPushedDownFilter() != null) reportFilteredRows(rowFilter.getPushedDownFilter().getKeptRowCount(), rowFilter.getPushedDownFilter().getRejectedRowCount());
+        if (rowFilter.getJoinedFilter() != null) reportFilteredJoinedRows(rowFilter.getJoinedFilter().getKeptRowCount(), rowFilter.getJoinedFilter().getRejectedRowCount());
+    }
 
-                        // Add this to our path:
-                        producedFileFolder = producedFileFolder.resolve(folderGroupingCellValue);
-                    }
-                    // Now we have all the folders for the produced file.
+    /**
+     * Wraps a row handler so that the column formats from the config are applied to the table of the rows that are streamed through it.
+     * The formats are applied once for each table, when its first row comes through.
+     *
+     * @param config     The configuration with the column formats.
+     * @param rowHandler The handler for each formatted row.
+     * @return The handler that applies the formats.
+     */
+    protected RowHandler formatRows(TConfig config, RowHandler rowHandler)
+    {
+        // Check whether there are any formats:
+        if (config.columnFormats == null || config.columnFormats.isEmpty()) return rowHandler;
 
-                    // Make sure the directories exist:
-                    Files.createDirectories(producedFileFolder);
+        Table[] formattedTable = new Table[1];
+        return row ->
+        {
+            if (row.getTable() != formattedTable[0])
+            {
+                applyColumnFormats(config, row.getTable());
+                formattedTable[0] = row.getTable();
+            }
+            rowHandler.handleRow(row);
+        };
+    }
 
-                    // Add the file name and extension:
-                    Path producedFilePath = producedFileFolder.resolve(fileNameWithExtension);
-                    Path producedPDFPath =  producedFileFolder.resolve(fileNameWithPDFExtension);
+    /**
+     * Streams the raw data of a data source one row at a time.
+     * We don't expect to have rectangular data yet.
+     *
+     * @param dataSource    The data source to stream.
+     * @param rawRowHandler The handler for each raw row of data.
+     */
+    protected void streamRawDataSource(DataSourceConfig dataSource, RowHandler rawRowHandler) throws Exception
+    {
+        streamRawDataSource(dataSource, null, rawRowHandler);
+    }
 
-                    // Display progress:
-                    System.out.println(producedPDFPath.toString());
+    /**
+     * Streams the raw data of a data source one row at a time, only decoding the cells in the columns that are needed.
+     * We don't expect to have rectangular data yet.
+     *
+     * @param dataSource     The data source to stream.
+     * @param isColumnNeeded Decides whether the cells in a column are needed, given the index of the column in the raw rows. Null to decode every cell.
+     * @param rawRowHandler  The handler for each raw row of data.
+     */
+    protected void streamRawDataSource(DataSourceConfig dataSource, IntPredicate isColumnNeeded, RowHandler rawRowHandler) throws Exception
+    {
+        // Get the path to the data:
+        Path pathToData = Paths.get(dataSource.path);
 
-                    // Produce the file:
-                    explodedTemplate.produceFile(row, producedFilePath);
+        // Check whether the data is in a CSV file:
+        if (isCsvFile(pathToData))
+        {
+            // Stream the raw data from the CSV file:
+            new CsvReader().stream(pathToData, isColumnNeeded, rawRowHandler);
+            return;
+        }
 
-                    // Open the presentation:
-                    Presentation presentation = powerPoint.openPresentation(producedFilePath);
+        // Stream the raw data from Excel:
+        boolean hasSheetName = dataSource.sheetName != null && !dataSource.sheetName.isEmpty();
+        streamRawDataFromExcelSpreadsheet(pathToData, hasSheetName ? null : 0, hasSheetName ? dataSource.sheetName : null, isColumnNeeded, rawRowHandler);
+    }
 
-                    // Save the presentation as a PDF:
-                    presentation.saveAs(producedPDFPath, SaveAsFileType.ppSaveAsPDF, true);
+    /**
+     * Joins the other data sources with the actual data, in order.
+     * For an inner join the smaller side is indexed in memory and the larger side is streamed through the index.
+     *
+     * @param config     The configuration with the data sources to join.
+     * @param actualData The rectangular data to join the data sources with.
+     * @return The joined data. This is the actual data if there are no data sources to join.
+     */
+    protected Table joinData(TConfig config, Table actualData)
+    {
+        return joinData(config, actualData, null);
+    }
 
-                    // Close the presentation:
-                    presentation.close();
+    /**
+     * Joins the other data sources with the actual data, in order, only reading the columns in the given projection from the other data sources.
+     * The joined rows are then filtered with the row filters on columns that the actual data doesn't have, because they couldn't be filtered while the actual data was loaded.
+     *
+     * @param config     The configuration with the data sources to join and the row filters.
+     * @param actualData The rectangular data to join the data sources with.
+     * @param projection The columns to read from the other data sources, as well as their key columns. Null to read all the columns.
+     * @return The joined data. This is the actual data if there are no data sources to join.
+     */
+    protected Table joinData(TConfig config, Table actualData, ColumnProjection projection)
+    {
+        try
+        {
+            // Join each data source in turn:
+            Table joinedData = actualData;
+            for (DataSourceConfig dataSource : config.joinedDataSources)
+            {
+                joinedData = HashJoin.joinTables(joinedData, dataSource.keyColumnNames, loadDataSource(config, dataSource, projection), dataSource.resolveJoinedKeyColumnNames(), dataSource.joinType);
+            }
 
-                    // Delete the temporary file if necessary:
-                    if (config.deletePopulatedFile)
-                    {
-                        Files.delete(producedFilePath);
-                    }
-                }
+            // Find the row filters on columns that the actual data doesn't have:
+            SplitRowFilter rowFilter = createRowFilter(config);
+            if (rowFilter == null) return joinedData;
+            rowFilter.split(actualData);
+            RowFilter joinedRowFilter = rowFilter.getJoinedFilter();
+            if (joinedRowFilter == null) return joinedData;
 
-                // PowerPoint application is auto-closed.
+            // Copy the joined rows that match those filters into a new table:
+            Table filteredData = new Table();
+            for (Column column : joinedData.columns) filteredData.columns.addColumn(column.name);
+            for (Row row : joinedData.rows)
+            {
+                if (joinedRowFilter.accepts(row)) filteredData.rows.addRow().copyValuesFromAnotherRow(row);
             }
 
-            // Exploded Template is auto-closed.
+            // Report how many joined rows were filtered out:
+            reportFilteredJoinedRows(joinedRowFilter.getKeptRowCount(), joinedRowFilter.getRejectedRowCount());
+            return filteredData;
         }
         catch (Exception e)
         {
@@ -156,44 +1302,113 @@ public class CertificateGeneratorBase<TConfig extends CertificateGenerationConfi
     }
 
     /**
-     * @param actualTemplateMapping The rectangular template mapping data.
-     * @return A map of field names to template values to use,.
+     * Loads the rectangular data of a data source, such as one that is joined with the certificate data.
+     *
+     * @param config     The configuration to use to load the data.
+     * @param dataSource The configuration of the data source to load.
+     * @return The rectangular data of the data source.
      */
-    protected Map<String, String> extractTemplateValueToFieldMapping(Table actualTemplateMapping)
+    protected Table loadDataSource(TConfig config, DataSourceConfig dataSource)
     {
-        return null;
+        // Get the path to the data:
+        Path pathToData = Paths.get(dataSource.path);
+        boolean hasSheetName = dataSource.sheetName != null && !dataSource.sheetName.isEmpty();
+
+        // Load the data, unless we have a snapshot of it from a previous run:
+        Table table = loadThroughSnapshotCache(
+            config,
+            pathToData,
+            "Sheet " + (hasSheetName ? dataSource.sheetName : "0") + "|Header " + dataSource.headerRowIndex,
+            () ->
+            {
+                // Read the raw data from the CSV file or the Excel spreadsheet:
+                Table rawData = isCsvFile(pathToData) ? readRawDataFromCsvFile(pathToData) : readRawDataFromExcelSpreadsheet(pathToData, hasSheetName ? null : 0, hasSheetName ? dataSource.sheetName : null);
+
+                // Extract the rectangular data from the raw data:
+                return extractRectangularData(rawData, dataSource.headerRowIndex);
+            }
+        );
+
+        // Format the typed values of each column:
+        applyColumnFormats(config, table);
+        return table;
     }
 
-    //#region Certificate Data
+    /**
+     * Loads the rectangular data of a data source, only keeping the columns in the given projection as well as the key columns that it is joined on.
+     * The data is streamed so that the cells in the other columns are never decoded.
+     *
+     * @param config     The configuration to use to load the data.
+     * @param dataSource The configuration of the data source to load.
+     * @param projection The columns to keep. Null to keep all the columns.
+     * @return The rectangular data of the data source.
+     */
+    protected Table loadDataSource(TConfig config, DataSourceConfig dataSource, ColumnProjection projection)
+    {
+        // Check whether we keep all the columns:
+        if (projection == null) return loadDataSource(config, dataSource);
+
+        // Make sure that we keep the columns that the data source is joined on:
+        List<String> joinedKeyColumnNames = dataSource.resolveJoinedKeyColumnNames();
+        ColumnProjection dataSourceProjection = joinedKeyColumnNames == null ? projection : projection.withColumns(joinedKeyColumnNames);
+
+        // Load the columns that we keep, unless we have a snapshot of them from a previous run:
+        boolean hasSheetName = dataSource.sheetName != null && !dataSource.sheetName.isEmpty();
+        Table table = loadThroughSnapshotCache(
+            config,
+            Paths.get(dataSource.path),
+            "Sheet " + (hasSheetName ? dataSource.sheetName : "0") + "|Header " + dataSource.headerRowIndex + "|Look ahead " + config.headerLookAheadRowCount + "|Columns " + dataSourceProjection,
+            () -> loadStreamedDataSource(config, dataSource, dataSourceProjection, null)
+        );
+
+        // Format the typed values of each column:
+        applyColumnFormats(config, table);
+        return table;
+    }
+
+    //#endregion Certificate Data
+
+    //#region Snapshot Cache
 
     /**
-     * Loads the raw data.
-     * We don't expect to have rectangular data yet.
+     * Creates the cache of snapshots of parsed spreadsheets.
      *
-     * @param config The configuration to use to load the data.
-     * @return The raw data to use for certificate generation.
+     * @param config The configuration with the snapshot cache settings.
+     * @return The cache of snapshots. Null if snapshots aren't kept.
      */
-    protected Table loadRawData(TConfig config)
+    protected TableSnapshotCache createSnapshotCache(TConfig config)
     {
-        // Read the raw data from Excel:
-        Table rawData = readRawDataFromExcelSpreadsheet(Paths.get(config.pathToExcelData), 0, null);
-        return rawData;
+        // Check whether we keep snapshots:
+        if (!config.cacheParsedSpreadsheets) return null;
+
+        // Work out where the snapshots are kept:
+        if (config.pathToSnapshotCacheFolder != null) return new TableSnapshotCache(Paths.get(config.pathToSnapshotCacheFolder));
+        if (config.pathToOutputFolder != null) return new TableSnapshotCache(Paths.get(config.pathToOutputFolder, ".snapshots"));
+        return null;
     }
 
     /**
-     * This detects the actual data to process.
-     * We expect to have rectangular data after this.
+     * Loads a table from its snapshot if the source spreadsheet hasn't changed since the snapshot was saved.
+     * Otherwise the spreadsheet is parsed and a snapshot is saved for next time.
+     * CSV files are always parsed because they are already quick to read.
      *
-     * @param config The configuration to use to load the data.
-     * @return The raw data to use for certificate generation.
+     * @param config     The configuration with the snapshot cache settings.
+     * @param sourcePath The path to the source spreadsheet.
+     * @param variant    What is read from the source spreadsheet. eg: "Sheet 0|Header -1"
+     * @param parser     Parses the table from the source spreadsheet.
+     * @return The table for the source spreadsheet.
      */
-    protected Table detectActualData(TConfig config, Table rawData)
+    protected Table loadThroughSnapshotCache(TConfig config, Path sourcePath, String variant, Supplier<Table> parser)
     {
-        Table rectangularData = extractRectangularData(rawData);
-        return rectangularData;
+        // Check whether this is worth caching:
+        TableSnapshotCache snapshotCache = createSnapshotCache(config);
+        if (snapshotCache == null || isCsvFile(sourcePath)) return parser.get();
+
+        // Load the table through the cache:
+        return snapshotCache.getOrParse(sourcePath, variant, parser);
     }
 
-    //#endregion Certificate Data
+    //#endregion Snapshot Cache
 
     //#region Template Mapping Data
 
@@ -238,37 +1453,16 @@ public class CertificateGeneratorBase<TConfig extends CertificateGenerationConfi
     {
         try
             (
-                // Open the workbook:
+                // Open the workbook, reading the cell formats so that we can tell which numbers are dates:
                 InputStream inputStream = Files.newInputStream(pathToExcelSpreadsheet);
-                ReadableWorkbook workbook = new ReadableWorkbook(inputStream)
+                ReadableWorkbook workbook = new ReadableWorkbook(inputStream, new ReadingOptions(true, false))
             )
         {
             // Create the table that we are going to read the raw data into:
             Table rawData = new Table();
 
             // Get the sheet that we are interested in:
-            Sheet sheet;
-            if (sheetName == null || sheetName.isEmpty())
-            {
-                // No sheet name was provided.
-                if (sheetIndex == null)
-                {
-                    // No sheet index was provided and neither was the name.
-                    // Use the first sheet:
-                    sheet = workbook.getFirstSheet();
-                }
-                else
-                {
-                    // A sheet index was provided.
-                    sheet = workbook.getSheet(sheetIndex).orElseGet(workbook::getFirstSheet);
-                }
-            }
-            else
-            {
-                // A sheet name was provided.
-                sheet = workbook.findSheet(sheetName).orElseGet(workbook::getFirstSheet);
-            }
-            // Now we have the sheet that we want.
+            Sheet sheet = findSheet(workbook, sheetIndex, sheetName);
 
             // Get the rows of the sheet:
             try (Stream<org.dhatim.fastexcel.reader.Row> sheetRows = sheet.openStream())
@@ -281,23 +1475,8 @@ public class CertificateGeneratorBase<TConfig extends CertificateGenerationConfi
                         // Create a new row for our table:
                         var tableRow = rawData.rows.addRow();
 
-                        // Go through each cell of the row:
-                        for (Cell cell : sheetRow)
-                        {
-                            // Check if we have a cell:
-                            String cellText = null;
-                            if (cell != null)
-                            {
-                                // Get the value of the cell:
-                                cellText = cell.getText();
-                            }
-
-                            // Replace nulls with empty strings:
-                            if (cellText == null) cellText = "";
-
-                            // Add the value to the table row:
-                            tableRow.appendCell(cellText);
-                        }
+                        // Add the cells of the sheet row to the table row:
+                        appendCells(sheetRow, tableRow);
                     });
             }
 
@@ -310,66 +1489,328 @@ public class CertificateGeneratorBase<TConfig extends CertificateGenerationConfi
     }
 
     /**
-     * Extracts the rectangular data from the given table.
-     * It's expected that the table has a mixture of non-rectangular and rectangular data in it.
+     * Checks whether the given file is a CSV file, based on its extension.
      *
-     * @param table The table to interrogate for rectangular data.
-     * @return A new table that has only the rectangular data.
+     * @param path The path to the file to check.
+     * @return True if the file is a CSV file. False if it isn't.
      */
-    protected Table extractRectangularData(Table table)
+    protected boolean isCsvFile(Path path)
+    {
+        return path.getFileName().toString().toLowerCase().endsWith(".csv");
+    }
+
+    /**
+     * Reads the raw data of a CSV file.
+     *
+     * @param pathToCsvFile The path to the CSV file that we want to read.
+     * @return The table of raw data from the CSV file.
+     */
+    protected Table readRawDataFromCsvFile(Path pathToCsvFile)
+    {
+        try
+        {
+            return new CsvReader().readTable(pathToCsvFile);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Streams the raw data of a spreadsheet one row at a time, without loading the whole sheet.
+     * The same row is reused for each row of the sheet, so the handler must not hold on to it.
+     *
+     * @param pathToExcelSpreadsheet The path to the spreadsheet that we want to read.
+     * @param sheetIndex             The index of the sheet that we want to load. This can be null if we want to load the sheet by name. If both are null then we get the first sheet. If both are provided then the sheet name is used.
+     * @param sheetName              The name of the sheet that we want to load. This can be null if we want to load the sheet by index. If both are null then we get the first sheet. If both are provided then the sheet name is used.
+     * @param rawRowHandler          The handler for each raw row of the spreadsheet.
+     */
+    protected void streamRawDataFromExcelSpreadsheet(Path pathToExcelSpreadsheet, Integer sheetIndex, String sheetName, RowHandler rawRowHandler) throws Exception
+    {
+        streamRawDataFromExcelSpreadsheet(pathToExcelSpreadsheet, sheetIndex, sheetName, null, rawRowHandler);
+    }
+
+    /**
+     * Streams the raw data of a spreadsheet one row at a time, only decoding the cells in the columns that are needed.
+     * The cells in the other columns are left empty.
+     * The same row is reused for each row of the sheet, so the handler must not hold on to it.
+     *
+     * @param pathToExcelSpreadsheet The path to the spreadsheet that we want to read.
+     * @param sheetIndex             The index of the sheet that we want to load. This can be null if we want to load the sheet by name. If both are null then we get the first sheet. If both are provided then the sheet name is used.
+     * @param sheetName              The name of the sheet that we want to load. This can be null if we want to load the sheet by index. If both are null then we get the first sheet. If both are provided then the sheet name is used.
+     * @param isColumnNeeded         Decides whether the cells in a column are needed, given the index of the column. Null to decode every cell.
+     * @param rawRowHandler          The handler for each raw row of the spreadsheet.
+     */
+    protected void streamRawDataFromExcelSpreadsheet(Path pathToExcelSpreadsheet, Integer sheetIndex, String sheetName, IntPredicate isColumnNeeded, RowHandler rawRowHandler) throws Exception
     {
-        // Go through each row and find the widest row:
-        int widestRow = 0;
-        for (Row row : table.rows)
+        try
+            (
+                // Open the workbook, reading the cell formats so that we can tell which numbers are dates:
+                InputStream inputStream = Files.newInputStream(pathToExcelSpreadsheet);
+                ReadableWorkbook workbook = new ReadableWorkbook(inputStream, new ReadingOptions(true, false))
+            )
         {
-            // Get the width of the row:
-            int rowWidth = row.getWidth();
+            // Create the table that we reuse for each raw row:
+            Table rawRowTable = new Table();
+
+            // Get the sheet that we are interested in:
+            Sheet sheet = findSheet(workbook, sheetIndex, sheetName);
 
-            // Check if this is the largest:
-            if (rowWidth > widestRow)
+            // Get the rows of the sheet:
+            try (Stream<org.dhatim.fastexcel.reader.Row> sheetRows = sheet.openStream())
             {
-                // This is the new widest row.
-                widestRow = rowWidth;
+                // Go through all the rows of the sheet as they are read:
+                Iterator<org.dhatim.fastexcel.reader.Row> sheetRowIterator = sheetRows.iterator();
+                while (sheetRowIterator.hasNext())
+                {
+                    // Reuse the table for this row:
+                    rawRowTable.rows.clear();
+                    var tableRow = rawRowTable.rows.addRow();
+
+                    // Add the cells of the sheet row to the table row:
+                    appendCells(sheetRowIterator.next(), tableRow, isColumnNeeded);
+
+                    // Handle the row:
+                    rawRowHandler.handleRow(tableRow);
+                }
             }
         }
-        // Now we have the width of the widest row.
+    }
 
-        // Find the first row that matches the widest row so that we can find the header row, and populate the data for the data after the header:
-        Table rectangularData = new Table();
-        Row headerRow = null;
-        for (Row row : table.rows)
+    /**
+     * Finds the sheet that we are interested in.
+     *
+     * @param workbook   The workbook to find the sheet in.
+     * @param sheetIndex The index of the sheet that we want to load. This can be null if we want to load the sheet by name. If both are null then we get the first sheet. If both are provided then the sheet name is used.
+     * @param sheetName  The name of the sheet that we want to load. This can be null if we want to load the sheet by index. If both are null then we get the first sheet. If both are provided then the sheet name is used.
+     * @return The sheet that we are interested in.
+     */
+    protected Sheet findSheet(ReadableWorkbook workbook, Integer sheetIndex, String sheetName)
+    {
+        Sheet sheet;
+        if (sheetName == null || sheetName.isEmpty())
+        {
+            // No sheet name was provided.
+            if (sheetIndex == null)
+            {
+                // No sheet index was provided and neither was the name.
+                // Use the first sheet:
+                sheet = workbook.getFirstSheet();
+            }
+            else
+            {
+                // A sheet index was provided.
+                sheet = workbook.getSheet(sheetIndex).orElseGet(workbook::getFirstSheet);
+            }
+        }
+        else
+        {
+            // A sheet name was provided.
+            sheet = workbook.findSheet(sheetName).orElseGet(workbook::getFirstSheet);
+        }
+        return sheet;
+    }
+
+    /**
+     * Appends the cells of a row of a sheet to a row of a table.
+     *
+     * @param sheetRow The row of the sheet to get the cells from.
+     * @param tableRow The row of the table to append the cells to.
+     */
+    protected void appendCells(org.dhatim.fastexcel.reader.Row sheetRow, Row tableRow)
+    {
+        appendCells(sheetRow, tableRow, null);
+    }
+
+    /**
+     * Appends the cells of a row of a sheet to a row of a table, only decoding the cells in the columns that are needed.
+     * The cells in the other columns are appended as empty strings so that the columns stay in their places.
+     *
+     * @param sheetRow       The row of the sheet to get the cells from.
+     * @param tableRow       The row of the table to append the cells to.
+     * @param isColumnNeeded Decides whether the cells in a column are needed, given the index of the column. Null to decode every cell.
+     */
+    protected void appendCells(org.dhatim.fastexcel.reader.Row sheetRow, Row tableRow, IntPredicate isColumnNeeded)
+    {
+        // Go through each cell of the row:
+        int columnIndex = 0;
+        for (Cell cell : sheetRow)
+        {
+            // Check if we have a cell that we need:
+            Object cellValue = null;
+            if (cell != null && (isColumnNeeded == null || isColumnNeeded.test(columnIndex)))
+            {
+                // Get the typed value of the cell:
+                cellValue = getCellValue(cell);
+            }
+
+            // Replace nulls with empty strings:
+            if (cellValue == null) cellValue = "";
+
+            // Add the value to the table row:
+            tableRow.appendCell(cellValue);
+            columnIndex++;
+        }
+    }
+
+    /**
+     * Gets the typed value of a cell in a spreadsheet.
+     * Numbers that are formatted as dates in the spreadsheet become dates, so that they can be formatted properly for the certificates.
+     *
+     * @param cell The cell to get the value of.
+     * @return The value of the cell. This is a {@link java.math.BigDecimal} for numbers, a {@link java.time.LocalDateTime} for dates, a {@link Boolean} for booleans and text for everything else.
+     */
+    protected Object getCellValue(Cell cell)
+    {
+        switch (cell.getType())
+        {
+            case NUMBER:
+                // Check whether the number is formatted as a date:
+                if (isDateFormat(cell.getDataFormatId(), cell.getDataFormatString())) return cell.asDate();
+                return cell.asNumber();
+
+            case BOOLEAN:
+                return cell.asBoolean();
+
+            default:
+                // Keep the text of everything else, including the results of formulas:
+                return cell.getText();
+        }
+    }
+
+    /**
+     * Checks whether a number format in a spreadsheet is for dates or times.
+     * The built-in date formats are recognised by their ID and custom formats are recognised by their date and time letters,
+     * ignoring literal text in quotes, escaped characters and sections in square brackets (like colours and currencies).
+     *
+     * @param formatId     The ID of the number format. Null if there isn't one.
+     * @param formatString The number format. eg: "d mmmm yyyy". Null if there isn't one.
+     * @return True if the format is for dates or times.
+     */
+    protected boolean isDateFormat(Integer formatId, String formatString)
+    {
+        // Check the built-in date formats:
+        if (formatId != null && ((formatId >= 14 && formatId <= 22) || (formatId >= 45 && formatId <= 47))) return true;
+        if (formatString == null) return false;
+
+        // Look for date and time letters outside of literal text:
+        boolean inQuotes = false;
+        boolean inBrackets = false;
+        for (int i = 0; i < formatString.length(); i++)
+        {
+            char c = formatString.charAt(i);
+            if (inQuotes)
+            {
+                if (c == '"') inQuotes = false;
+            }
+            else if (inBrackets)
+            {
+                if (c == ']') inBrackets = false;
+            }
+            else if (c == '"') inQuotes = true;
+            else if (c == '[') inBrackets = true;
+            else if (c == '\\' || c == '_' || c == '*') i++;
+            else if ("yYmMdDhH".indexOf(c) >= 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Applies the column formats from the config to the columns of the table.
+     * The formats are compiled once for the table and cache the formatted text of repeated values.
+     *
+     * @param config The configuration with the column formats.
+     * @param table  The rectangular table to apply the formats to.
+     */
+    protected void applyColumnFormats(TConfig config, Table table)
+    {
+        // Check whether there are any formats:
+        if (config.columnFormats == null || config.columnFormats.isEmpty()) return;
+
+        // Work out the locale to format for:
+        Locale locale = config.formatLocale == null || config.formatLocale.isEmpty() ? Locale.getDefault(Locale.Category.FORMAT) : Locale.forLanguageTag(config.formatLocale);
+
+        // Compile the format for each column that has one:
+        for (Map.Entry<String, String> columnFormat : config.columnFormats.entrySet())
+        {
+            Column column = table.columns.getColumn(columnFormat.getKey());
+            if (column != null) column.format = new CellFormat(columnFormat.getValue(), locale);
+        }
+    }
+
+    /**
+     * Extracts the rectangular data from the given table.
+     * It's expected that the table has a mixture of non-rectangular and rectangular data in it.
+     *
+     * @param table The table to interrogate for rectangular data.
+     * @return A new table that has only the rectangular data.
+     */
+    protected Table extractRectangularData(Table table)
+    {
+        return extractRectangularData(table, -1);
+    }
+
+    /**
+     * Extracts the rectangular data from the given table.
+     * It's expected that the table has a mixture of non-rectangular and rectangular data in it.
+     * The rows of the rectangular data are a view over the rows after the header row, so no values are copied.
+     *
+     * @param table          The table to interrogate for rectangular data.
+     * @param headerRowIndex The index of the header row in the table. Negative to detect the header row as the first of the widest rows.
+     * @return A new table that has only the rectangular data.
+     */
+    protected Table extractRectangularData(Table table, int headerRowIndex)
+    {
+        // Check whether we need to detect the header row:
+        if (headerRowIndex < 0)
         {
-            // Check whether we are still looking for the header row to determine how to behave:
-            if (headerRow == null)
+            // Go through each row and find the first of the widest rows, which is the header row:
+            int widestRow = 0;
+            for (int rowIndex = 0; rowIndex < table.rows.getRowCount(); rowIndex++)
             {
-                // We are stills searching for the header row.
                 // Get the width of the row:
-                int rowWidth = row.getWidth();
+                int rowWidth = table.rows.getWidth(rowIndex);
 
                 // Check if this is the largest:
-                if (rowWidth == widestRow)
+                if (rowWidth > widestRow || headerRowIndex < 0)
                 {
-                    // This is the header row.
-                    // Save it as the header:
-                    headerRow = row;
-
-                    // Create the columns for the output rectangular table:
-                    for (Object cellValue : row)
-                    {
-                        // Create a column:
-                        var column = rectangularData.columns.addColumn(Objects.toString(cellValue));
-                    }
+                    // This is the new widest row.
+                    widestRow = rowWidth;
+                    headerRowIndex = rowIndex;
                 }
             }
-            else
-            {
-                // We are no longer searching for the header row.
+        }
+        // Now we have the index of the header row.
+
+        // Check whether we found the header row:
+        Table rectangularData = new Table();
+        if (headerRowIndex < 0 || headerRowIndex >= table.rows.getRowCount())
+        {
+            // There is no header row, so there is no rectangular data.
+            return rectangularData;
+        }
 
-                // Add a row to the rectangular output:
-                Row rectangularRow = rectangularData.rows.addRow();
+        // Create the columns for the output rectangular table from the header row:
+        Row headerRow = table.rows.getRow(headerRowIndex);
+        for (Object cellValue : headerRow)
+        {
+            // Create a column:
+            var column = rectangularData.columns.addColumn(Objects.toString(cellValue));
+        }
 
-                // Add this row to the rectangular data:
-                rectangularRow.copyValuesFromAnotherRow(row);
+        // Check whether we are rectangular:
+        if (rectangularData.columns.hasColumns())
+        {
+            // View the rows after the header row as the rows of the rectangular data, without copying them:
+            rectangularData.rows.viewRows(table.rows, headerRowIndex + 1);
+        }
+        else
+        {
+            // The header row is empty, so the rows after it don't have any values that we can use.
+            for (int rowIndex = headerRowIndex + 1; rowIndex < table.rows.getRowCount(); rowIndex++)
+            {
+                rectangularData.rows.addRow();
             }
         }
 
@@ -17,4 +17,10 @@ public class Column
      * This doesn't guarantee the type, only gives an indication.
      */
     public Class<?> type;
+
+    /**
+     * The format for the values in this column that aren't text, such as dates and numbers.
+     * Null to use the {@link CellFormat#DEFAULT default} format.
+     */
+    public CellFormat format;
 }
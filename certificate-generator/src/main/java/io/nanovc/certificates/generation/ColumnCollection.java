@@ -77,4 +77,15 @@ public class ColumnCollection implements Iterable<Column>
     {
         return this.columnsByName.get(columnName);
     }
+
+    /**
+     * Gets the column at the given index.
+     * @param columnIndex The index of the column to get.
+     * @return The column at the given index. Null if there is no column at that index.
+     */
+    public Column getColumn(int columnIndex)
+    {
+        if (columnIndex < 0 || columnIndex >= this.columnsByIndex.size()) return null;
+        return this.columnsByIndex.get(columnIndex);
+    }
 }
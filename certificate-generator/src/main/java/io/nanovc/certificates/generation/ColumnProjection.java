@@ -0,0 +1,86 @@
+package io.nanovc.certificates.generation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This is the set of columns that are actually used from the data, so that the other columns can be skipped while the data is read.
+ * Exports often have many more columns than a template references, so only reading the columns in the projection means that
+ * memory and parse time scale with what the template uses and not with the width of the export.
+ * <p>
+ * A projection is only a set of column names, so it can be shared by everything that reads the data.
+ * Column names in the projection that the data doesn't have are ignored.
+ */
+public class ColumnProjection
+{
+    /**
+     * The names of the columns to keep, in the order that they were added.
+     */
+    private final Set<String> columnNames;
+
+    /**
+     * Creates a projection that keeps the given columns.
+     *
+     * @param columnNames The names of the columns to keep. Nulls and empty names are ignored.
+     */
+    public ColumnProjection(Collection<String> columnNames)
+    {
+        Set<String> names = new LinkedHashSet<>();
+        for (String columnName : columnNames)
+        {
+            if (columnName != null && !columnName.isEmpty()) names.add(columnName);
+        }
+        this.columnNames = Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Gets the names of the columns to keep.
+     *
+     * @return The names of the columns to keep, in the order that they were added.
+     */
+    public Set<String> getColumnNames()
+    {
+        return this.columnNames;
+    }
+
+    /**
+     * Checks whether the given column is kept.
+     *
+     * @param columnName The name of the column to check.
+     * @return True if the column is kept. False if it can be skipped.
+     */
+    public boolean includes(String columnName)
+    {
+        return this.columnNames.contains(columnName);
+    }
+
+    /**
+     * Creates a projection that keeps the columns of this projection as well as the given columns.
+     *
+     * @param otherColumnNames The names of the other columns to keep.
+     * @return A new projection with the columns of both.
+     */
+    public ColumnProjection withColumns(Collection<String> otherColumnNames)
+    {
+        List<String> names = new ArrayList<>(this.columnNames);
+        names.addAll(otherColumnNames);
+        return new ColumnProjection(names);
+    }
+
+    /**
+     * Describes the projection, so that it can tell apart snapshots of the same data with different columns.
+     *
+     * @return The sorted names of the columns, separated with commas.
+     */
+    @Override
+    public String toString()
+    {
+        List<String> names = new ArrayList<>(this.columnNames);
+        Collections.sort(names);
+        return String.join(",", names);
+    }
+}
@@ -0,0 +1,193 @@
+package io.nanovc.certificates.generation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * This stores the values of a single column of a table, for every row, in one place.
+ * Columns like "Course Name" or "Training Centre" only have a handful of distinct values across all the rows,
+ * so the values are dictionary encoded: each distinct value is kept once and each row only keeps an int code for its value.
+ * <p>
+ * Columns where almost every value is distinct (like "ID Number") don't benefit from a dictionary,
+ * so once a column has too many distinct values it switches to keeping the values for each row directly.
+ * <p>
+ * Values keep the type that they were read as (text, numbers, dates or booleans) so that they can be formatted for each column with a {@link CellFormat}.
+ */
+public class ColumnStorage
+{
+    /**
+     * The number of distinct values that a column can always have while still being dictionary encoded.
+     */
+    private static final int MINIMUM_DICTIONARY_LIMIT = 1024;
+
+    /**
+     * The initial number of rows that we have space for.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The code for each row, indexing into the {@link #dictionaryValues}.
+     * This is null once the column stops being dictionary encoded.
+     */
+    private int[] codes = new int[INITIAL_CAPACITY];
+
+    /**
+     * The distinct values of the column, indexed by their code.
+     * This is null once the column stops being dictionary encoded.
+     */
+    private ArrayList<Object> dictionaryValues = new ArrayList<>();
+
+    /**
+     * The code for each distinct value of the column.
+     * This is null once the column stops being dictionary encoded.
+     */
+    private HashMap<Object, Integer> dictionaryCodes = new HashMap<>();
+
+    /**
+     * The value for each row, once the column has stopped being dictionary encoded.
+     * This is null while the column is dictionary encoded.
+     */
+    private Object[] values;
+
+    /**
+     * The number of rows that have been set in this column.
+     * This is one more than the highest row index that was set.
+     */
+    private int rowCount;
+
+    /**
+     * Sets the value for the given row.
+     *
+     * @param rowIndex The index of the row to set the value for.
+     * @param value    The value to set.
+     */
+    public void set(int rowIndex, Object value)
+    {
+        // Make sure that we have space for the row:
+        this.ensureCapacity(rowIndex + 1);
+        if (rowIndex >= this.rowCount) this.rowCount = rowIndex + 1;
+
+        // Check whether we are dictionary encoded:
+        if (this.values != null)
+        {
+            // We keep the values directly.
+            this.values[rowIndex] = value;
+            return;
+        }
+
+        // Get the code for the value, adding it to the dictionary if it's new:
+        Integer code = this.dictionaryCodes.get(value);
+        if (code == null)
+        {
+            // Check whether the dictionary has become too big to be worth it:
+            if (this.dictionaryValues.size() >= Math.max(MINIMUM_DICTIONARY_LIMIT, this.rowCount / 2))
+            {
+                // Stop dictionary encoding this column and keep the values directly:
+                this.decodeAllValues();
+                this.values[rowIndex] = value;
+                return;
+            }
+
+            // Add the value to the dictionary:
+            code = this.dictionaryValues.size();
+            this.dictionaryValues.add(value);
+            this.dictionaryCodes.put(value, code);
+        }
+        this.codes[rowIndex] = code;
+    }
+
+    /**
+     * Gets the value for the given row.
+     *
+     * @param rowIndex The index of the row to get the value for.
+     * @return The value for the row. Null if the row was never set.
+     */
+    public Object get(int rowIndex)
+    {
+        if (rowIndex < 0 || rowIndex >= this.rowCount) return null;
+        if (this.values != null) return this.values[rowIndex];
+        return this.dictionaryValues.get(this.codes[rowIndex]);
+    }
+
+    /**
+     * Removes the values for all the rows, so that the storage can be reused.
+     * The column starts being dictionary encoded again.
+     */
+    public void clear()
+    {
+        this.rowCount = 0;
+        if (this.values != null)
+        {
+            // Start dictionary encoding again:
+            this.values = null;
+            this.codes = new int[INITIAL_CAPACITY];
+            this.dictionaryValues = new ArrayList<>();
+            this.dictionaryCodes = new HashMap<>();
+        }
+        else
+        {
+            // Keep the space that we already have:
+            this.dictionaryValues.clear();
+            this.dictionaryCodes.clear();
+        }
+    }
+
+    /**
+     * Checks whether the column is dictionary encoded.
+     *
+     * @return True if each row keeps a code for its value. False if each row keeps its value directly.
+     */
+    public boolean isDictionaryEncoded()
+    {
+        return this.values == null;
+    }
+
+    /**
+     * Gets the distinct values of the column.
+     * This is cheap for dictionary encoded columns because the values are already distinct.
+     * Every value in the column is included, but values that were overwritten may also be included.
+     *
+     * @return The distinct values of the column.
+     */
+    public List<Object> getDistinctValues()
+    {
+        if (this.values == null) return Collections.unmodifiableList(this.dictionaryValues);
+        return new ArrayList<>(new LinkedHashSet<>(Arrays.asList(this.values).subList(0, this.rowCount)));
+    }
+
+    /**
+     * Makes sure that there is space for the given number of rows.
+     *
+     * @param capacity The number of rows that we need space for.
+     */
+    private void ensureCapacity(int capacity)
+    {
+        int currentCapacity = this.values != null ? this.values.length : this.codes.length;
+        if (capacity <= currentCapacity) return;
+
+        // Grow by half again so that adding rows one at a time is cheap:
+        int newCapacity = Math.max(capacity, currentCapacity + (currentCapacity >> 1));
+        if (this.values != null) this.values = Arrays.copyOf(this.values, newCapacity);
+        else this.codes = Arrays.copyOf(this.codes, newCapacity);
+    }
+
+    /**
+     * Switches the column from being dictionary encoded to keeping the value for each row directly.
+     */
+    private void decodeAllValues()
+    {
+        Object[] decodedValues = new Object[this.codes.length];
+        for (int i = 0; i < this.rowCount; i++)
+        {
+            decodedValues[i] = this.dictionaryValues.get(this.codes[i]);
+        }
+        this.values = decodedValues;
+        this.codes = null;
+        this.dictionaryValues = null;
+        this.dictionaryCodes = null;
+    }
+}
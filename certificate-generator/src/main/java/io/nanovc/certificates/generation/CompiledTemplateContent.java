@@ -0,0 +1,115 @@
+package io.nanovc.certificates.generation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is template content that has been split up, once, into the literal parts and the slots where template values were found.
+ * The literal parts are already encoded as UTF-8 so that producing a file only needs to write bytes.
+ * <p>
+ * The content is laid out as: literal[0], slot[0], literal[1], slot[1], ..., literal[n].
+ */
+public class CompiledTemplateContent
+{
+    /**
+     * The literal parts of the content, encoded as UTF-8.
+     * There is always one more literal than there are slots.
+     */
+    private final byte[][] literals;
+
+    /**
+     * The index of the template value that was found at each slot.
+     */
+    private final int[] slotValueIndices;
+
+    /**
+     * Creates new compiled template content.
+     * Use {@link #compile(String, TemplateValueMatcher)} to compile the content.
+     *
+     * @param literals         The literal parts of the content, encoded as UTF-8.
+     * @param slotValueIndices The index of the template value that was found at each slot.
+     */
+    private CompiledTemplateContent(byte[][] literals, int[] slotValueIndices)
+    {
+        this.literals = literals;
+        this.slotValueIndices = slotValueIndices;
+    }
+
+    /**
+     * Compiles the template content by finding all the template values in it.
+     *
+     * @param content The template content to compile.
+     * @param matcher The matcher for the template values.
+     * @return The compiled template content.
+     */
+    public static CompiledTemplateContent compile(String content, TemplateValueMatcher matcher)
+    {
+        List<byte[]> literals = new ArrayList<>();
+        List<Integer> slotValueIndices = new ArrayList<>();
+
+        // Keep track of where the last match ended:
+        int[] literalStart = {0};
+
+        // Split the content at every template value:
+        matcher.findMatches(
+            content,
+            (start, end, valueIndex) ->
+            {
+                // Save the literal before the match:
+                literals.add(content.substring(literalStart[0], start).getBytes(StandardCharsets.UTF_8));
+
+                // Save the slot for the match:
+                slotValueIndices.add(valueIndex);
+
+                literalStart[0] = end;
+            }
+        );
+
+        // Save the literal after the last match:
+        literals.add(content.substring(literalStart[0]).getBytes(StandardCharsets.UTF_8));
+
+        return new CompiledTemplateContent(
+            literals.toArray(new byte[0][]),
+            slotValueIndices.stream().mapToInt(Integer::intValue).toArray()
+        );
+    }
+
+    /**
+     * Gets the number of slots in the content where values are written.
+     *
+     * @return The number of slots in the content where values are written.
+     */
+    public int getSlotCount()
+    {
+        return this.slotValueIndices.length;
+    }
+
+    /**
+     * Writes the content with the given values in the slots.
+     * The values are escaped for XML unless they are flagged as safe.
+     *
+     * @param values        The values to write in the slots, indexed by the template value that they replace.
+     * @param valuesAreSafe Flags for each value that are true when the value is known not to need escaping for XML, indexed by the template value. Null to escape all values.
+     * @param output        The output stream to write the content to.
+     * @param encoder       The encoder to use for the values.
+     */
+    public void writeTo(String[] values, boolean[] valuesAreSafe, OutputStream output, Utf8Encoder encoder) throws IOException
+    {
+        for (int slot = 0; slot < this.slotValueIndices.length; slot++)
+        {
+            // Write the literal before the slot:
+            output.write(this.literals[slot]);
+
+            // Write the value for the slot, escaping it unless we know that it is safe:
+            int valueIndex = this.slotValueIndices[slot];
+            if (valuesAreSafe != null && valuesAreSafe[valueIndex]) encoder.write(values[valueIndex], output);
+            else encoder.writeXmlEscaped(values[valueIndex], output);
+        }
+
+        // Write the literal after the last slot:
+        output.write(this.literals[this.slotValueIndices.length]);
+    }
+}
@@ -0,0 +1,43 @@
+package io.nanovc.certificates.generation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A growable buffer of bytes that is reused for each file that we produce.
+ * Unlike {@link ByteArrayOutputStream#toByteArray()}, the content can be read back without copying it.
+ */
+public class ContentBuffer extends ByteArrayOutputStream
+{
+    /**
+     * Creates a new content buffer.
+     *
+     * @param initialCapacity The initial capacity of the buffer in bytes.
+     */
+    public ContentBuffer(int initialCapacity)
+    {
+        super(initialCapacity);
+    }
+
+    /**
+     * Gets the internal array of the buffer.
+     * Only the first {@link #size()} bytes are valid.
+     *
+     * @return The internal array of the buffer.
+     */
+    public byte[] getArray()
+    {
+        return this.buf;
+    }
+
+    /**
+     * Creates an input stream that reads the current content of the buffer without copying it.
+     * The input stream is only valid until the buffer is written to again.
+     *
+     * @return An input stream that reads the current content of the buffer.
+     */
+    public ByteArrayInputStream toInputStream()
+    {
+        return new ByteArrayInputStream(this.buf, 0, this.count);
+    }
+}
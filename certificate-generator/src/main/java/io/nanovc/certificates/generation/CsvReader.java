@@ -0,0 +1,367 @@
+package io.nanovc.certificates.generation;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * This reads raw data from a CSV file (RFC 4180) by memory mapping the file and parsing the bytes directly.
+ * Fields can be quoted, in which case they can have separators, line breaks and doubled quotes in them.
+ * The file is expected to be UTF-8 (with or without a byte order mark) and lines can end with either "\n" or "\r\n".
+ * Lines that are completely empty are skipped, the same as empty rows in a spreadsheet.
+ * <p>
+ * Large files are mapped a window at a time, so files of any size can be read without loading them into memory.
+ * To keep allocation down, a field that has the same bytes as the previous value in the same column reuses the same string.
+ * A reader is not thread safe, so each thread should have its own.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc4180">RFC 4180</a>
+ */
+public class CsvReader
+{
+    /**
+     * The size of the window of the file that is mapped at a time.
+     */
+    private static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The quote character.
+     */
+    private static final byte QUOTE = '"';
+
+    /**
+     * The UTF-8 byte order mark that some tools put at the start of the file.
+     */
+    private static final byte[] BYTE_ORDER_MARK = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    /**
+     * The character that separates the fields of a record.
+     */
+    private final byte separator;
+
+    /**
+     * The size of the window of the file that is mapped at a time.
+     */
+    private long windowSize;
+
+    /**
+     * The buffer that the bytes of each field are copied into before they are decoded.
+     */
+    private byte[] fieldBytes = new byte[256];
+
+    /**
+     * The bytes of the previous value in each column, so that repeated values can reuse the same string.
+     */
+    private byte[][] previousFieldBytes = new byte[16][];
+
+    /**
+     * The previous value in each column.
+     */
+    private String[] previousFieldValues = new String[16];
+
+    /**
+     * Creates a reader for comma separated values.
+     */
+    public CsvReader()
+    {
+        this(',', DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a reader with the given separator.
+     *
+     * @param separator  The character that separates the fields of a record. This must be an ASCII character.
+     * @param windowSize The size of the window of the file that is mapped at a time.
+     */
+    public CsvReader(char separator, long windowSize)
+    {
+        if (separator >= 0x80 || separator == QUOTE || separator == '\r' || separator == '\n') throw new IllegalArgumentException("The separator must be an ASCII character that isn't a quote or a line break: " + separator);
+        this.separator = (byte) separator;
+        this.windowSize = Math.max(1, windowSize);
+    }
+
+    /**
+     * Reads all the records of the CSV file into a table.
+     * We don't expect to have rectangular data yet.
+     *
+     * @param path The path to the CSV file.
+     * @return The table of raw data from the CSV file.
+     */
+    public Table readTable(Path path) throws IOException
+    {
+        Table table = new Table();
+        try
+        {
+            this.read(path, table, null, null);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            // We don't have a handler, so this can't happen.
+            throw new IOException(e);
+        }
+        return table;
+    }
+
+    /**
+     * Streams the records of the CSV file one at a time.
+     * The same row is reused for each record, so the handler must not hold on to it.
+     *
+     * @param path          The path to the CSV file.
+     * @param rawRowHandler The handler for each record of the CSV file.
+     */
+    public void stream(Path path, RowHandler rawRowHandler) throws Exception
+    {
+        this.read(path, new Table(), null, rawRowHandler);
+    }
+
+    /**
+     * Streams the records of the CSV file one at a time, only decoding the fields in the columns that are needed.
+     * The fields in the other columns are scanned past and left empty.
+     * The same row is reused for each record, so the handler must not hold on to it.
+     *
+     * @param path           The path to the CSV file.
+     * @param isColumnNeeded Decides whether the fields in a column are needed, given the index of the field in the record. Null to decode every field.
+     * @param rawRowHandler  The handler for each record of the CSV file.
+     */
+    public void stream(Path path, IntPredicate isColumnNeeded, RowHandler rawRowHandler) throws Exception
+    {
+        this.read(path, new Table(), isColumnNeeded, rawRowHandler);
+    }
+
+    /**
+     * Reads the records of the CSV file into the table.
+     *
+     * @param path           The path to the CSV file.
+     * @param table          The table to read the records into.
+     * @param isColumnNeeded Decides whether the fields in a column are needed. Null to decode every field.
+     * @param rawRowHandler  The handler for each record. Null to keep all the records in the table, otherwise the table is reused for each record.
+     */
+    private void read(Path path, Table table, IntPredicate isColumnNeeded, RowHandler rawRowHandler) throws Exception
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long fileSize = channel.size();
+            long windowStart = 0;
+            boolean firstWindow = true;
+            while (windowStart < fileSize)
+            {
+                // Map the next window of the file:
+                long windowLength = Math.min(this.windowSize, fileSize - windowStart);
+                boolean lastWindow = windowStart + windowLength == fileSize;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+
+                // Skip the byte order mark:
+                int start = 0;
+                if (firstWindow && startsWithByteOrderMark(window)) start = BYTE_ORDER_MARK.length;
+                firstWindow = false;
+
+                // Parse all the complete records in the window:
+                int consumed = this.parseRecords(window, start, lastWindow, table, isColumnNeeded, rawRowHandler);
+                if (consumed == 0 && !lastWindow)
+                {
+                    // A single record doesn't fit in the window, so make the window bigger:
+                    this.windowSize = Math.min(this.windowSize * 2, Integer.MAX_VALUE);
+                    if (windowLength == Integer.MAX_VALUE) throw new IOException("A record in " + path + " is too long to read.");
+                    continue;
+                }
+                windowStart += consumed;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the window starts with the UTF-8 byte order mark.
+     */
+    private static boolean startsWithByteOrderMark(MappedByteBuffer window)
+    {
+        if (window.limit() < BYTE_ORDER_MARK.length) return false;
+        for (int i = 0; i < BYTE_ORDER_MARK.length; i++)
+        {
+            if (window.get(i) != BYTE_ORDER_MARK[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parses all the complete records in the window.
+     *
+     * @param window         The window of the file to parse.
+     * @param start          The position in the window to start parsing from.
+     * @param lastWindow     True if this window goes to the end of the file, in which case the last record doesn't need a line break.
+     * @param table          The table to read the records into.
+     * @param isColumnNeeded Decides whether the fields in a column are needed. Null to decode every field.
+     * @param rawRowHandler  The handler for each record. Null to keep all the records in the table.
+     * @return The number of bytes of the window that were consumed. Zero if there wasn't a single complete record in the window.
+     */
+    private int parseRecords(MappedByteBuffer window, int start, boolean lastWindow, Table table, IntPredicate isColumnNeeded, RowHandler rawRowHandler) throws Exception
+    {
+        int limit = window.limit();
+        int recordStart = start;
+        while (recordStart < limit)
+        {
+            // Skip empty lines:
+            byte first = window.get(recordStart);
+            if (first == '\n' || first == '\r')
+            {
+                recordStart++;
+                continue;
+            }
+
+            // Find the end of the record, making sure that it's complete in this window:
+            int recordEnd = findRecordEnd(window, recordStart, limit);
+            if (recordEnd < 0)
+            {
+                // The record isn't complete in this window.
+                if (!lastWindow) return recordStart;
+                recordEnd = limit;
+            }
+
+            // Create the row for this record:
+            if (rawRowHandler != null) table.rows.clear();
+            Row row = table.rows.addRow();
+
+            // Parse the fields of the record:
+            this.parseFields(window, recordStart, recordEnd, isColumnNeeded, row);
+
+            // Handle the row if we are streaming:
+            if (rawRowHandler != null) rawRowHandler.handleRow(row);
+
+            // Move past the line break:
+            recordStart = recordEnd;
+            if (recordStart < limit && window.get(recordStart) == '\r') recordStart++;
+            if (recordStart < limit && window.get(recordStart) == '\n') recordStart++;
+        }
+        return limit;
+    }
+
+    /**
+     * Finds the end of the record that starts at the given position, which is the line break that isn't inside quotes.
+     *
+     * @return The position of the line break at the end of the record. Negative if the record doesn't end before the limit.
+     */
+    private static int findRecordEnd(MappedByteBuffer window, int recordStart, int limit)
+    {
+        boolean inQuotes = false;
+        for (int i = recordStart; i < limit; i++)
+        {
+            byte b = window.get(i);
+            if (b == QUOTE) inQuotes = !inQuotes;
+            else if (!inQuotes && (b == '\n' || b == '\r')) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the fields of a record and appends them to the row.
+     *
+     * @param window         The window of the file that the record is in.
+     * @param recordStart    The position where the record starts.
+     * @param recordEnd      The position where the record ends (the line break or the end of the file).
+     * @param isColumnNeeded Decides whether the fields in a column are needed. Null to decode every field.
+     * @param row            The row to append the fields to.
+     */
+    private void parseFields(MappedByteBuffer window, int recordStart, int recordEnd, IntPredicate isColumnNeeded, Row row)
+    {
+        int position = recordStart;
+        int columnIndex = 0;
+        while (true)
+        {
+            // Check whether we need the value of this field, or whether we just need to get past it:
+            boolean isNeeded = isColumnNeeded == null || isColumnNeeded.test(columnIndex);
+            int fieldLength = 0;
+            if (position < recordEnd && window.get(position) == QUOTE)
+            {
+                // This is a quoted field, so separators, line breaks and doubled quotes are part of the value.
+                position++;
+                while (position < recordEnd)
+                {
+                    byte b = window.get(position++);
+                    if (b == QUOTE)
+                    {
+                        // Check whether the quote is doubled:
+                        if (position < recordEnd && window.get(position) == QUOTE) position++;
+                        else break;
+                    }
+                    if (isNeeded) fieldLength = this.appendFieldByte(fieldLength, b);
+                }
+
+                // Keep anything between the closing quote and the separator, to be lenient with badly formed files:
+                while (position < recordEnd && window.get(position) != this.separator)
+                {
+                    byte b = window.get(position++);
+                    if (isNeeded) fieldLength = this.appendFieldByte(fieldLength, b);
+                }
+            }
+            else
+            {
+                // This is a plain field, so copy it across in one go:
+                int fieldStart = position;
+                while (position < recordEnd && window.get(position) != this.separator) position++;
+                if (isNeeded)
+                {
+                    fieldLength = position - fieldStart;
+                    if (fieldLength > this.fieldBytes.length) this.fieldBytes = new byte[Math.max(fieldLength, this.fieldBytes.length * 2)];
+                    window.get(fieldStart, this.fieldBytes, 0, fieldLength);
+                }
+            }
+
+            // Add the field to the row, leaving it empty if it isn't needed:
+            row.appendCell(isNeeded ? this.decodeField(columnIndex, fieldLength) : "");
+            columnIndex++;
+
+            // Move past the separator, or stop at the end of the record:
+            if (position >= recordEnd) break;
+            position++;
+        }
+    }
+
+    /**
+     * Appends a byte to the current field, growing the buffer if necessary.
+     *
+     * @return The new length of the field.
+     */
+    private int appendFieldByte(int fieldLength, byte b)
+    {
+        if (fieldLength == this.fieldBytes.length) this.fieldBytes = Arrays.copyOf(this.fieldBytes, fieldLength * 2);
+        this.fieldBytes[fieldLength] = b;
+        return fieldLength + 1;
+    }
+
+    /**
+     * Decodes the current field as a string, reusing the previous value in the column if the bytes are the same.
+     *
+     * @param columnIndex The index of the field in the record.
+     * @param fieldLength The length of the field in the buffer.
+     * @return The value of the field.
+     */
+    private String decodeField(int columnIndex, int fieldLength)
+    {
+        // Make sure that we have space to remember this column:
+        if (columnIndex >= this.previousFieldValues.length)
+        {
+            this.previousFieldBytes = Arrays.copyOf(this.previousFieldBytes, columnIndex * 2);
+            this.previousFieldValues = Arrays.copyOf(this.previousFieldValues, columnIndex * 2);
+        }
+
+        // Reuse the previous value in this column if it's the same:
+        byte[] previousBytes = this.previousFieldBytes[columnIndex];
+        if (previousBytes != null && Arrays.equals(previousBytes, 0, previousBytes.length, this.fieldBytes, 0, fieldLength))
+        {
+            return this.previousFieldValues[columnIndex];
+        }
+
+        // Decode the new value and remember it:
+        String value = fieldLength == 0 ? "" : new String(this.fieldBytes, 0, fieldLength, StandardCharsets.UTF_8);
+        this.previousFieldBytes[columnIndex] = Arrays.copyOf(this.fieldBytes, fieldLength);
+        this.previousFieldValues[columnIndex] = value;
+        return value;
+    }
+}
@@ -0,0 +1,54 @@
+package io.nanovc.certificates.generation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The configuration for a data source that is joined with the certificate data when it is loaded.
+ * eg: A learner master file that is joined with the course results by the learner's name.
+ */
+public class DataSourceConfig
+{
+    /**
+     * The path to the data. This can be an Excel spreadsheet or a CSV file (with a .csv extension).
+     */
+    public String path;
+
+    /**
+     * The name of the sheet to read if the data is in an Excel spreadsheet. Null or empty for the first sheet.
+     */
+    public String sheetName;
+
+    /**
+     * The index of the header row in the data, counting from zero.
+     * Negative to detect the header row as the first of the widest rows.
+     */
+    public int headerRowIndex = -1;
+
+    /**
+     * The names of the columns in the certificate data that must match the key columns of this data source.
+     * eg: ["First Name", "Last Name"]
+     */
+    public List<String> keyColumnNames = new ArrayList<>();
+
+    /**
+     * The names of the key columns in this data source, in the same order as the {@link #keyColumnNames}.
+     * Leave this empty if the key columns have the same names in both.
+     */
+    public List<String> joinedKeyColumnNames = new ArrayList<>();
+
+    /**
+     * How the rows of the certificate data are joined with the rows of this data source.
+     */
+    public JoinType joinType = JoinType.INNER;
+
+    /**
+     * Resolves the names of the key columns in this data source, falling back to the {@link #keyColumnNames}.
+     *
+     * @return The names of the key columns in this data source.
+     */
+    public List<String> resolveJoinedKeyColumnNames()
+    {
+        return this.joinedKeyColumnNames == null || this.joinedKeyColumnNames.isEmpty() ? this.keyColumnNames : this.joinedKeyColumnNames;
+    }
+}
@@ -0,0 +1,102 @@
+package io.nanovc.certificates.generation;
+
+import java.util.regex.Pattern;
+
+/**
+ * A glob pattern for the names of entries in a zip file.
+ * eg: "ppt/slides/*.xml" or "ppt/notesSlides/**"
+ * <p>
+ * A '*' matches any characters within a folder, '**' matches any characters across folders and '?' matches a single character within a folder.
+ * Everything else is matched literally.
+ * Entry names always use '/' as the separator, no matter which platform we are running on.
+ */
+public class EntryNamePattern
+{
+    /**
+     * The glob that this pattern was compiled from.
+     */
+    private final String glob;
+
+    /**
+     * The regular expression that the glob was compiled into.
+     */
+    private final Pattern pattern;
+
+    /**
+     * Creates a new pattern.
+     * Use {@link #compile(String)} to create a pattern.
+     */
+    private EntryNamePattern(String glob, Pattern pattern)
+    {
+        this.glob = glob;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Compiles the glob into a pattern.
+     *
+     * @param glob The glob to compile. eg: "ppt/slides/*.xml"
+     * @return The compiled pattern.
+     */
+    public static EntryNamePattern compile(String glob)
+    {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < glob.length(); i++)
+        {
+            char c = glob.charAt(i);
+            if (c != '*' && c != '?') continue;
+
+            // Quote the literal part before the wildcard:
+            if (i > literalStart) regex.append(Pattern.quote(glob.substring(literalStart, i)));
+
+            // Translate the wildcard:
+            if (c == '?')
+            {
+                regex.append("[^/]");
+            }
+            else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*')
+            {
+                regex.append(".*");
+                i++;
+            }
+            else
+            {
+                regex.append("[^/]*");
+            }
+            literalStart = i + 1;
+        }
+
+        // Quote the literal part after the last wildcard:
+        if (literalStart < glob.length()) regex.append(Pattern.quote(glob.substring(literalStart)));
+
+        return new EntryNamePattern(glob, Pattern.compile(regex.toString()));
+    }
+
+    /**
+     * Checks whether the given glob has any wildcards in it.
+     *
+     * @param glob The glob to check.
+     * @return True if the glob has wildcards. False if it is just a literal entry name.
+     */
+    public static boolean hasWildcards(String glob)
+    {
+        return glob.indexOf('*') >= 0 || glob.indexOf('?') >= 0;
+    }
+
+    /**
+     * Checks whether the entry name matches this pattern.
+     *
+     * @param entryName The name of the entry to check.
+     * @return True if the entry name matches. False if it doesn't.
+     */
+    public boolean matches(String entryName)
+    {
+        return this.pattern.matcher(entryName).matches();
+    }
+
+    @Override public String toString()
+    {
+        return this.glob;
+    }
+}
@@ -1,26 +1,39 @@
 package io.nanovc.certificates.generation;
 
-import net.lingala.zip4j.ZipFile;
-import net.lingala.zip4j.model.ZipParameters;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This holds information about the exploded template that we use for certificate generation.
  * We don't actually care whether it is a Word, Excel or PowerPoint file because they are all Zip files at the end of the day.
- * The configuration points at the specific path where we do content replacement when generating certificates.
+ * The configuration points at the specific paths where we do content replacement when generating certificates.
+ * <p>
+ * The exploded template doesn't change once it is initialized.
+ * All the state for producing a file is held in an {@link ExplodedTemplateContext},
+ * so any number of threads can produce files at the same time as long as each thread has its own context.
  */
 public class ExplodedTemplate implements AutoCloseable
 {
+    /**
+     * The size of the buffer for writing produced files.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
     /**
      * The configuration for the exploded template.
      */
@@ -30,39 +43,50 @@ public class ExplodedTemplate implements AutoCloseable
      * This is the set of actual template mappings to process. Only populated values are used.
      * The key is the column name.
      * The value is the template value to find and replace with the actual data from the row.
+     * This can't be modified once the template is initialized.
      */
-    public LinkedHashMap<String, String> fieldToTemplateValueMap;
+    public Map<String, String> fieldToTemplateValueMap;
 
     /**
-     * The path where the original template is located.
+     * The column names for each template value that the {@link #templateValueMatcher} finds.
+     * The index of the column name is the index of the template value in the matcher.
      */
-    protected Path templatePath;
+    protected String[] mappedColumnNames;
+
+    /**
+     * The compiled matcher that finds all the template values in a single pass.
+     * This is compiled once when we initialize.
+     */
+    protected TemplateValueMatcher templateValueMatcher;
 
     /**
-     * The path where the template is copied temporarily while generating.
+     * The path where the original template is located.
      */
-    protected Path templateTemporaryPath;
+    protected Path templatePath;
 
     /**
-     * The path where the template is unzipped.
+     * All the entries of the template that don't change, already serialized as the start of every produced file.
+     * Each produced file is this prefix, then the replaced entry, then the central directory.
      */
-    protected Path unzipFolderPath;
+    protected ZipPackagePrefix templatePrefix;
 
     /**
-     * The zip file for the template in the temporary location.
+     * The entries in the template that we perform the replacements in.
+     * Only entries where template values were found are included, all the others are in the {@link #templatePrefix}.
      */
-    protected ZipFile zipFile;
+    protected ZipPackageEntry[] replacementEntries;
 
     /**
-     * The original template content from the zip file.
+     * The template content for each of the {@link #replacementEntries}, split up into literal UTF-8 bytes and the slots for the template values.
      * We use this for replacement with each processed file.
      */
-    protected String originalTemplateContent;
+    protected CompiledTemplateContent[] replacementContents;
 
     /**
-     * The zip parameters for writing the content back to the template.
+     * The initial size of the buffer that each context writes the replaced content to.
+     * This is big enough for the largest template content and some values.
      */
-    private ZipParameters zipParameters;
+    protected int contentBufferSize;
 
     /**
      * Creates a new exploded template with the given configuration.
@@ -90,7 +114,7 @@ public class ExplodedTemplate implements AutoCloseable
     protected void initialize(ExplodedTemplateConfig config, Table templateMappings) throws IOException
     {
         // Go through all the template mappings and save the populated ones:
-        this.fieldToTemplateValueMap = new LinkedHashMap<>();
+        LinkedHashMap<String, String> fieldToTemplateValueMap = new LinkedHashMap<>();
         for (Row row : templateMappings.rows)
         {
             for (Column column : templateMappings.columns)
@@ -102,95 +126,306 @@ public class ExplodedTemplate implements AutoCloseable
                 if (!cellValue.isEmpty())
                 {
                     // Add this to our mapping:
-                    this.fieldToTemplateValueMap.put(column.name, cellValue);
+                    fieldToTemplateValueMap.put(column.name, cellValue);
                 }
             }
         }
         // Now we have all the mappings.
+        this.fieldToTemplateValueMap = Collections.unmodifiableMap(fieldToTemplateValueMap);
+
+        // Compile the matcher for all the template values so that we can replace them in a single pass:
+        this.mappedColumnNames = this.fieldToTemplateValueMap.keySet().toArray(new String[0]);
+        this.templateValueMatcher = TemplateValueMatcher.compile(new ArrayList<>(this.fieldToTemplateValueMap.values()));
 
         // Get the path to the template:
         this.templatePath = Paths.get(config.templatePath);
 
-        // Get the path where we can unzip the template:
-        this.unzipFolderPath = Paths.get(config.unzipFolderPath);
+        // Compile the patterns for the entries that we do replacements in:
+        List<String> replacementPaths = new ArrayList<>();
+        if (config.pathInTemplateToReplacementFile != null && !config.pathInTemplateToReplacementFile.isEmpty()) replacementPaths.add(config.pathInTemplateToReplacementFile);
+        if (config.pathsInTemplateToReplacementFiles != null) replacementPaths.addAll(config.pathsInTemplateToReplacementFiles);
+        List<EntryNamePattern> replacementPatterns = new ArrayList<>();
+        for (String replacementPath : replacementPaths)
+        {
+            replacementPatterns.add(EntryNamePattern.compile(replacementPath));
+        }
 
-        // Copy the template to the temporary location:
-        this.templateTemporaryPath = unzipFolderPath.resolve(templatePath.getFileName());
-        FileUtils.copyFile(templatePath.toFile(), templateTemporaryPath.toFile());
+        // Open the template so that we can read the entries out of it:
+        try (ZipPackage templatePackage = new ZipPackage(this.templatePath))
+        {
+            // Make sure that the replacement files that aren't patterns exist in the template:
+            for (String replacementPath : replacementPaths)
+            {
+                if (!EntryNamePattern.hasWildcards(replacementPath) && templatePackage.getEntry(replacementPath) == null)
+                {
+                    throw new IOException("The template " + this.templatePath + " doesn't have the replacement file: " + replacementPath);
+                }
+            }
 
-        // Open the zip file:
-        this.zipFile = new ZipFile(templateTemporaryPath.toFile());
+            // Go through all the entries in the template and compile the ones that we do replacements in:
+            List<ZipPackageEntry> replacementEntries = new ArrayList<>();
+            List<CompiledTemplateContent> replacementContents = new ArrayList<>();
+            List<ZipPackageEntry> unchangedEntries = new ArrayList<>();
+            long largestReplacementEntrySize = 0;
+            for (ZipPackageEntry entry : templatePackage.getEntries())
+            {
+                // Check whether we do replacements in this entry:
+                if (replacementPatterns.stream().noneMatch(pattern -> pattern.matches(entry.name)))
+                {
+                    // This entry doesn't change.
+                    unchangedEntries.add(entry);
+                    continue;
+                }
+
+                // Open the stream to read the content:
+                try (var inputStream = templatePackage.getInputStream(entry))
+                {
+                    // Read out the template content:
+                    String originalTemplateContent = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+
+                    // Split the template content up at the template values once so that each file only needs to write bytes:
+                    CompiledTemplateContent compiledContent = CompiledTemplateContent.compile(originalTemplateContent, this.templateValueMatcher);
+
+                    // Check whether there is anything to replace in this entry:
+                    if (compiledContent.getSlotCount() == 0)
+                    {
+                        // There are no template values in this entry, so it doesn't change.
+                        unchangedEntries.add(entry);
+                        continue;
+                    }
+
+                    // Save the compiled content for this entry:
+                    replacementEntries.add(entry);
+                    replacementContents.add(compiledContent);
+                    largestReplacementEntrySize = Math.max(largestReplacementEntrySize, entry.uncompressedSize);
+                }
+            }
+            this.replacementEntries = replacementEntries.toArray(new ZipPackageEntry[0]);
+            this.replacementContents = replacementContents.toArray(new CompiledTemplateContent[0]);
 
-        // Get the file header for the content that we are going to do the replacements in.
-        var templateContentFileHeader = zipFile.getFileHeader(config.pathInTemplateToReplacementFile);
+            // Work out the size of the buffer for the replaced content, big enough for the largest template content and some values:
+            this.contentBufferSize = (int) (largestReplacementEntrySize + 1024);
 
-        // Open the stream to read the content:
-        try (var inputStream = zipFile.getInputStream(templateContentFileHeader))
-        {
-            // Read out the template content:
-            this.originalTemplateContent = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+            // Serialize all the entries that don't change into the prefix for every produced file:
+            ContentBuffer prefixBuffer = new ContentBuffer((int) Files.size(this.templatePath));
+            ZipPackageWriter prefixWriter = new ZipPackageWriter(prefixBuffer);
+            byte[] copyBuffer = new byte[OUTPUT_BUFFER_SIZE];
+            for (ZipPackageEntry entry : unchangedEntries)
+            {
+                // Copy the entry without decompressing it:
+                prefixWriter.copyRawEntry(templatePackage, entry, copyBuffer);
+            }
+            this.templatePrefix = prefixWriter.toPrefix(prefixBuffer);
         }
+        // Now we have everything we need from the template.
+    }
 
-        // Define zip parameters for when we replace the content in the zip file:
-        this.zipParameters = new ZipParameters();
-        this.zipParameters.setFileNameInZip(config.pathInTemplateToReplacementFile);
-        this.zipParameters.setOverrideExistingFilesInZip(true);
+    /**
+     * Creates a new context for producing files from this template.
+     * Every value is escaped for XML as it is written.
+     * Each thread that produces files needs its own context.
+     *
+     * @return A new context for producing files. Close it when you are done producing files with it.
+     */
+    public ExplodedTemplateContext createContext()
+    {
+        return this.createContext(null);
+    }
 
+    /**
+     * Creates a new context for producing files from this template.
+     * Each thread that produces files needs its own context.
+     *
+     * @param replacementValuesAreSafe The flags from {@link #classifyData(Table)} for the data that we are going to produce files for. Null to escape every value.
+     * @return A new context for producing files. Close it when you are done producing files with it.
+     */
+    public ExplodedTemplateContext createContext(boolean[] replacementValuesAreSafe)
+    {
+        // Create the compressor for the replaced entries, deflating large entries in parallel if necessary:
+        ZipEntryCompressor compressor = new ZipEntryCompressor(this.config.replacementFileCompression, this.config.parallelCompressionThreshold, ForkJoinPool.commonPool());
+
+        return new ExplodedTemplateContext(new RowSchema(this.mappedColumnNames), this.contentBufferSize, replacementValuesAreSafe, compressor);
+    }
+
+    /**
+     * Classifies the columns of the data that we are going to produce files for.
+     * Columns where no value needs escaping for XML are written straight through,
+     * while the other columns are escaped as they are written.
+     * This is optional, without it every value is escaped as it is written.
+     * The flags don't change once they are classified, so they can be shared by all the contexts that produce files for the same data.
+     *
+     * @param data The data that we are going to produce files for.
+     * @return Flags for each template value that are true when every value of its column in the data doesn't need escaping for XML. Pass these to {@link #createContext(boolean[])}.
+     */
+    public boolean[] classifyData(Table data)
+    {
+        boolean[] valuesAreSafe = new boolean[this.mappedColumnNames.length];
+        for (int i = 0; i < this.mappedColumnNames.length; i++)
+        {
+            // Get the column for this template value:
+            Column column = data.columns.getColumn(this.mappedColumnNames[i]);
+
+            // Columns that are missing from the data are always empty, which is safe:
+            if (column == null)
+            {
+                valuesAreSafe[i] = true;
+                continue;
+            }
+
+            // Check each distinct value in the column once, as it will be formatted:
+            boolean safe = true;
+            CellFormat format = column.format == null ? CellFormat.DEFAULT : column.format;
+            for (Object value : data.rows.getDistinctValues(column.index))
+            {
+                if (value != null && Utf8Encoder.needsXmlEscaping(format.format(value)))
+                {
+                    safe = false;
+                    break;
+                }
+            }
+            valuesAreSafe[i] = safe;
+        }
+        return valuesAreSafe;
     }
 
     /**
      * Produces an output file for the given data.
+     * This creates a new context just for this file,
+     * so use {@link #produceFile(ExplodedTemplateContext, Row, Path)} with a context that is reused when producing many files.
      *
      * @param data The data to produce a file with from this exploded template.
      * @param filePath The path where to produce the file.
      */
     public void produceFile(Row data, Path filePath) throws IOException
     {
-        this.produceFile(this.config, data, filePath);
+        try (ExplodedTemplateContext context = this.createContext())
+        {
+            this.produceFile(this.config, context, data, filePath);
+        }
     }
 
     /**
      * Produces an output file for the given data.
+     * This can be called by many threads at the same time as long as each thread uses its own context.
      *
-     * @param config The configuration to initialize with.
-     * @param data   The data to produce a file with from this exploded template.
+     * @param context  The context to produce the file with. This must not be used by another thread at the same time.
+     * @param data     The data to produce a file with from this exploded template.
      * @param filePath The path where to produce the file.
      */
-    protected void produceFile(ExplodedTemplateConfig config, Row data, Path filePath) throws IOException
+    public void produceFile(ExplodedTemplateContext context, Row data, Path filePath) throws IOException
     {
-        // Perform replacement in the template content for the row:
-        String currentContent = this.originalTemplateContent;
-        for (Map.Entry<String, String> entry : this.fieldToTemplateValueMap.entrySet())
+        this.produceFile(this.config, context, data, filePath);
+    }
+
+    /**
+     * Produces an output file for the given data.
+     *
+     * @param config   The configuration to produce the file with.
+     * @param context  The context to produce the file with. This must not be used by another thread at the same time.
+     * @param data     The data to produce a file with from this exploded template.
+     * @param filePath The path where to produce the file.
+     */
+    protected void produceFile(ExplodedTemplateConfig config, ExplodedTemplateContext context, Row data, Path filePath) throws IOException
+    {
+        // Stream the output package straight to the output path:
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(filePath), OUTPUT_BUFFER_SIZE))
         {
-            // Get the details from the entry:
-            String columnName = entry.getKey();
-            String templateValue = entry.getValue();
+            this.produceTo(config, context, data, outputStream);
+        }
+    }
 
-            // Get the details from the row of data:
-            String replacementValue = data.getCellByColumnNameAsString(columnName);
+    /**
+     * Produces the package for the given data into the output stream, without it ever touching the file system.
+     * The output stream is flushed but not closed.
+     * The package is written in many small pieces, so the output stream should be buffered if writes to it are expensive.
+     * This can be called by many threads at the same time as long as each thread uses its own context.
+     *
+     * @param context      The context to produce the package with. This must not be used by another thread at the same time.
+     * @param data         The data to produce a package with from this exploded template.
+     * @param outputStream The output stream to write the package to.
+     */
+    public void produceTo(ExplodedTemplateContext context, Row data, OutputStream outputStream) throws IOException
+    {
+        this.produceTo(this.config, context, data, outputStream);
+    }
 
-            // Perform the replacement:
-            currentContent = currentContent.replace(templateValue, replacementValue);
-        }
-        // Now we have the replaced content.
+    /**
+     * Produces the package for the given data into the buffer, starting at the current position of the buffer.
+     * The position of the buffer is moved to the end of the package.
+     * This lets the package be produced into a buffer that is reused from a pool, without it ever touching the file system.
+     * This can be called by many threads at the same time as long as each thread uses its own context.
+     *
+     * @param context The context to produce the package with. This must not be used by another thread at the same time.
+     * @param data    The data to produce a package with from this exploded template.
+     * @param buffer  The buffer to write the package to. This can be on the heap or direct.
+     * @return The number of bytes in the package.
+     * @throws java.nio.BufferOverflowException If the package doesn't fit in the remaining space of the buffer.
+     */
+    public int produceTo(ExplodedTemplateContext context, Row data, ByteBuffer buffer) throws IOException
+    {
+        int start = buffer.position();
+        this.produceTo(this.config, context, data, new ByteBufferOutputStream(buffer));
+        return buffer.position() - start;
+    }
+
+    /**
+     * Produces the package for the given data into the package buffer of the context, without it ever touching the file system.
+     * The package buffer grows as necessary and is reused for every package that is produced with the context,
+     * so the package is only valid until the next package is produced with the same context.
+     * This can be called by many threads at the same time as long as each thread uses its own context.
+     *
+     * @param context The context to produce the package with. This must not be used by another thread at the same time.
+     * @param data    The data to produce a package with from this exploded template.
+     * @return A read only view of the package in the package buffer of the context.
+     */
+    public ByteBuffer produce(ExplodedTemplateContext context, Row data) throws IOException
+    {
+        // Get the package buffer for the context, making it big enough for the template to start with:
+        if (context.packageBuffer == null) context.packageBuffer = new ContentBuffer(this.templatePrefix.getData().length + this.contentBufferSize);
+        ContentBuffer packageBuffer = context.packageBuffer;
+
+        // Produce the package into the buffer:
+        packageBuffer.reset();
+        this.produceTo(this.config, context, data, packageBuffer);
+        return ByteBuffer.wrap(packageBuffer.getArray(), 0, packageBuffer.size()).asReadOnlyBuffer();
+    }
 
-        // Write the replaced content back into the zip file:
-        try (ByteArrayInputStream contentStream = new ByteArrayInputStream(currentContent.getBytes(StandardCharsets.UTF_8)))
+    /**
+     * Produces the package for the given data into the output stream.
+     *
+     * @param config       The configuration to produce the package with.
+     * @param context      The context to produce the package with. This must not be used by another thread at the same time.
+     * @param data         The data to produce a package with from this exploded template.
+     * @param outputStream The output stream to write the package to. It is flushed but not closed.
+     */
+    protected void produceTo(ExplodedTemplateConfig config, ExplodedTemplateContext context, Row data, OutputStream outputStream) throws IOException
+    {
+        // Get the replacement values from the row of data, in the same order as the template values in the matcher:
+        String[] replacementValues = context.replacementValues;
+        context.replacementSchema.getCellsAsStrings(data, replacementValues);
+
+        // Write all the entries that don't change as a single block:
+        ZipPackageWriter writer = new ZipPackageWriter(outputStream, this.templatePrefix);
+
+        // Write each entry with the replaced content:
+        for (int i = 0; i < this.replacementEntries.length; i++)
         {
-            // Write the content back to the template:
-            this.zipFile.addStream(contentStream, zipParameters);
+            // Write the template content with the replacement values in the slots:
+            ContentBuffer contentBuffer = context.contentBuffer;
+            contentBuffer.reset();
+            this.replacementContents[i].writeTo(replacementValues, context.replacementValuesAreSafe, contentBuffer, context.encoder);
 
-            // Flush the content to file:
-            this.zipFile.close();
+            // Write the replaced content to the package:
+            writer.writeEntry(this.replacementEntries[i], contentBuffer.getArray(), contentBuffer.size(), context.compressor);
         }
 
-        // Copy the template file to the output path:
-        FileUtils.copyFile(this.templateTemporaryPath.toFile(), filePath.toFile());
+        // Write the central directory:
+        writer.finish();
     }
 
     /**
      * Cleans up the exploded template.
-     * It deletes the temporary files.
+     * The contexts that were created for producing files are closed separately.
      */
     public void cleanUp() throws IOException
     {
@@ -199,17 +434,13 @@ public class ExplodedTemplate implements AutoCloseable
 
     /**
      * Cleans up the exploded template.
-     * It deletes the temporary files.
+     * The contexts that were created for producing files are closed separately.
      *
      * @param config The config to clean up with.
      */
     protected void cleanUp(ExplodedTemplateConfig config) throws IOException
     {
-        // Close the zip file:
-        this.zipFile.close();
-
-        // Delete the exploded file:
-        FileUtils.delete(this.templateTemporaryPath.toFile());
+        // The template holds no open resources once it is initialized, so there is nothing to release.
     }
 
 
@@ -1,15 +1,13 @@
 package io.nanovc.certificates.generation;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The configuration for an exploded template.
  */
 public class ExplodedTemplateConfig
 {
-    /**
-     * The path to unzip the template to.
-     */
-    public String unzipFolderPath;
-
     /**
      * The path to the template file.
      */
@@ -19,4 +17,24 @@ public class ExplodedTemplateConfig
      * This is the path within the template where replacements are performed.
      */
     public String pathInTemplateToReplacementFile = "ppt/slides/slide1.xml";
+
+    /**
+     * These are more paths within the template where replacements are performed, in addition to {@link #pathInTemplateToReplacementFile}.
+     * Each path can be a glob pattern. eg: "ppt/slides/*.xml" or "docProps/core.xml"
+     */
+    public List<String> pathsInTemplateToReplacementFiles = new ArrayList<>();
+
+    /**
+     * How the replaced entries of the produced files are compressed.
+     * Use {@link ZipEntryCompression#STORED} when the produced files are thrown away after they are converted.
+     * The entries that don't change are always copied as they are compressed in the template.
+     */
+    public ZipEntryCompression replacementFileCompression = ZipEntryCompression.DEFAULT;
+
+    /**
+     * The smallest replaced entry (in bytes) that is deflated in parallel blocks on the common fork join pool.
+     * Entries smaller than this are deflated on the thread that produces the file.
+     * Zero or less to never deflate in parallel.
+     */
+    public int parallelCompressionThreshold = 1024 * 1024;
 }
@@ -0,0 +1,85 @@
+package io.nanovc.certificates.generation;
+
+/**
+ * This holds all the state that is needed to produce files from an {@link ExplodedTemplate}.
+ * The exploded template doesn't change once it is initialized, so any number of threads can produce files from it at the same time,
+ * as long as each thread has its own context.
+ * A context is reused for every file that a thread produces so that producing a file doesn't need to allocate much memory.
+ * A context is not thread safe.
+ * <p>
+ * Create a context with {@link ExplodedTemplate#createContext()} and close it when you are done producing files with it.
+ */
+public class ExplodedTemplateContext implements AutoCloseable
+{
+    /**
+     * The replacement values for the current row, indexed by the template value that they replace.
+     * This is reused for each processed file.
+     */
+    final String[] replacementValues;
+
+    /**
+     * The schema that reads the replacement values out of each row by column index, without looking the columns up by name.
+     * The columns are in the same order as the template values in the matcher.
+     */
+    final RowSchema replacementSchema;
+
+    /**
+     * Flags for each template value that are true when every value of its column in the data is known not to need escaping for XML.
+     * This is null if the data wasn't classified, in which case every value is escaped.
+     * These flags are shared between contexts and are never changed.
+     */
+    final boolean[] replacementValuesAreSafe;
+
+    /**
+     * The encoder for the replacement values.
+     * This is reused for each processed file.
+     */
+    final Utf8Encoder encoder;
+
+    /**
+     * The buffer that the replaced content is written to.
+     * This is reused for each processed file.
+     */
+    final ContentBuffer contentBuffer;
+
+    /**
+     * The compressor for the replaced content.
+     * This is reused for each processed file.
+     */
+    final ZipEntryCompressor compressor;
+
+    /**
+     * The buffer that whole packages are produced into when they are produced in memory.
+     * This is only created the first time that a package is produced in memory, and then it is reused.
+     */
+    ContentBuffer packageBuffer;
+
+    /**
+     * Creates a new context for producing files from an exploded template.
+     * Use {@link ExplodedTemplate#createContext()} to create a context.
+     *
+     * @param replacementSchema        The schema for the columns of the template values, in the same order as the template values in the matcher.
+     * @param contentBufferSize        The initial size of the buffer for the replaced content.
+     * @param replacementValuesAreSafe Flags for each template value that are true when the values don't need escaping for XML. Null to escape all values.
+     * @param compressor               The compressor for the replaced content.
+     */
+    ExplodedTemplateContext(RowSchema replacementSchema, int contentBufferSize, boolean[] replacementValuesAreSafe, ZipEntryCompressor compressor)
+    {
+        this.replacementSchema = replacementSchema;
+        this.replacementValues = new String[replacementSchema.getColumnCount()];
+        this.replacementValuesAreSafe = replacementValuesAreSafe;
+        this.encoder = new Utf8Encoder();
+        this.contentBuffer = new ContentBuffer(contentBufferSize);
+        this.compressor = compressor;
+    }
+
+    /**
+     * Releases the resources used for producing files.
+     */
+    @Override
+    public void close()
+    {
+        // Release the compressor:
+        this.compressor.end();
+    }
+}
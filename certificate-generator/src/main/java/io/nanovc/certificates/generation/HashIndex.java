@@ -0,0 +1,127 @@
+package io.nanovc.certificates.generation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A hash index of the rows of a table by the values of some key columns.
+ * The index is built once in a single pass, and then each lookup only hashes the key.
+ * Rows with the same key are chained together in the order that they are in the table,
+ * so the index only needs one map entry per distinct key and one int per row.
+ */
+public class HashIndex
+{
+    /**
+     * The character that separates the values of a composite key.
+     * This is a control character so that it doesn't clash with real values.
+     */
+    private static final char KEY_SEPARATOR = '\u001F';
+
+    /**
+     * The schema for the key columns of the indexed table.
+     */
+    private final RowSchema keySchema;
+
+    /**
+     * The index of the first row for each distinct key.
+     */
+    private final HashMap<String, Integer> firstRowByKey;
+
+    /**
+     * The index of the next row with the same key as each row. Negative if there are no more rows with the same key.
+     */
+    private final int[] nextRowWithSameKey;
+
+    /**
+     * The buffer that composite keys are built in.
+     */
+    private final StringBuilder keyBuilder = new StringBuilder();
+
+    /**
+     * The values of the key columns of the row that a key is being built for.
+     */
+    private final String[] keyValues;
+
+    /**
+     * Builds an index of the rows of the table by the values of the key columns.
+     *
+     * @param table          The table to index.
+     * @param keyColumnNames The names of the key columns in the table.
+     */
+    public HashIndex(Table table, List<String> keyColumnNames)
+    {
+        this.keySchema = new RowSchema(keyColumnNames);
+        this.keyValues = new String[keyColumnNames.size()];
+
+        int rowCount = table.rows.getRowCount();
+        this.firstRowByKey = new HashMap<>(Math.max(16, rowCount * 4 / 3));
+        this.nextRowWithSameKey = new int[rowCount];
+        Arrays.fill(this.nextRowWithSameKey, -1);
+
+        // Go through the rows backwards so that each chain ends up in the order of the table:
+        for (int rowIndex = rowCount - 1; rowIndex >= 0; rowIndex--)
+        {
+            String key = this.createKey(table.rows.getRow(rowIndex), this.keySchema);
+            Integer nextRowIndex = this.firstRowByKey.put(key, rowIndex);
+            if (nextRowIndex != null) this.nextRowWithSameKey[rowIndex] = nextRowIndex;
+        }
+    }
+
+    /**
+     * Creates the key for a row.
+     * A single key column uses the value itself, so that no new string is needed.
+     * This is final because the constructor uses it to build the index.
+     *
+     * @param row       The row to create the key for.
+     * @param keySchema The schema for the key columns of the row.
+     * @return The key for the row.
+     */
+    public final String createKey(Row row, RowSchema keySchema)
+    {
+        if (keySchema.getColumnCount() == 1) return keySchema.getCellAsString(row, 0);
+
+        // Join the values of the key columns:
+        keySchema.getCellsAsStrings(row, this.keyValues);
+        this.keyBuilder.setLength(0);
+        for (int i = 0; i < this.keyValues.length; i++)
+        {
+            if (i > 0) this.keyBuilder.append(KEY_SEPARATOR);
+            this.keyBuilder.append(this.keyValues[i]);
+        }
+        return this.keyBuilder.toString();
+    }
+
+    /**
+     * Gets the first row with the given key.
+     *
+     * @param key The key to look up.
+     * @return The index of the first row with the key. Negative if there are no rows with the key.
+     */
+    public int getFirstRow(String key)
+    {
+        Integer rowIndex = this.firstRowByKey.get(key);
+        return rowIndex == null ? -1 : rowIndex;
+    }
+
+    /**
+     * Gets the next row with the same key as the given row.
+     *
+     * @param rowIndex The index of a row in the index.
+     * @return The index of the next row with the same key. Negative if there are no more rows with the key.
+     */
+    public int getNextRow(int rowIndex)
+    {
+        return this.nextRowWithSameKey[rowIndex];
+    }
+
+    /**
+     * Gets the number of distinct keys in the index.
+     *
+     * @return The number of distinct keys in the index.
+     */
+    public int getKeyCount()
+    {
+        return this.firstRowByKey.size();
+    }
+}
@@ -0,0 +1,309 @@
+package io.nanovc.certificates.generation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This joins rows of data with the rows of another table as the rows are streamed through it.
+ * The other table is indexed by its key columns once, in a {@link HashIndex},
+ * and then each row that is streamed through only needs a single lookup, so the join is linear in the number of rows.
+ * <p>
+ * The joined rows have all the columns of the left side, followed by the columns of the right side that aren't already there
+ * (the key columns of the right side are left out because they are the same as the key columns of the left side).
+ * Each joined row is pushed to the downstream {@link RowHandler} through a single row table that is reused for every row.
+ */
+public class HashJoin implements RowHandler
+{
+    /**
+     * The table that is indexed.
+     */
+    private final Table indexedTable;
+
+    /**
+     * The index of the indexed table by its key columns.
+     */
+    private final HashIndex index;
+
+    /**
+     * The names of the key columns of the indexed table.
+     */
+    private final List<String> indexedKeyColumnNames;
+
+    /**
+     * The schema for the key columns of the rows that are streamed through.
+     */
+    private final RowSchema probeKeySchema;
+
+    /**
+     * The names of the key columns of the rows that are streamed through.
+     */
+    private final List<String> probeKeyColumnNames;
+
+    /**
+     * How the rows are joined.
+     */
+    private final JoinType joinType;
+
+    /**
+     * True if the indexed table is the left side of the join. False if the rows that are streamed through are the left side.
+     */
+    private final boolean indexedTableIsLeft;
+
+    /**
+     * The handler for each joined row.
+     */
+    private final RowHandler downstream;
+
+    /**
+     * The table with the joined columns, which is reused for each joined row.
+     */
+    private final Table joinedTable = new Table();
+
+    /**
+     * The table of the rows that are streamed through, that the joined columns were worked out for. Null until the first row.
+     */
+    private Table boundProbeTable;
+
+    /**
+     * For each joined column, true if the value comes from the indexed table and false if it comes from the row that is streamed through.
+     */
+    private boolean[] joinedColumnIsIndexed;
+
+    /**
+     * For each joined column, the index of the column in the table that the value comes from.
+     */
+    private int[] joinedColumnSourceIndices;
+
+    /**
+     * The values of the joined row, which are reused for each joined row.
+     */
+    private Object[] joinedValues;
+
+    /**
+     * The number of rows that were streamed through.
+     */
+    private long probedRowCount;
+
+    /**
+     * The number of joined rows that were pushed downstream.
+     */
+    private long joinedRowCount;
+
+    /**
+     * Creates a new hash join.
+     *
+     * @param indexedTable          The table to index.
+     * @param indexedKeyColumnNames The names of the key columns of the indexed table.
+     * @param probeKeyColumnNames   The names of the key columns of the rows that are streamed through, in the same order.
+     * @param joinType              How the rows are joined.
+     * @param indexedTableIsLeft    True if the indexed table is the left side of the join. This can only be true for an {@link JoinType#INNER inner} join.
+     * @param downstream            The handler for each joined row.
+     */
+    public HashJoin(Table indexedTable, List<String> indexedKeyColumnNames, List<String> probeKeyColumnNames, JoinType joinType, boolean indexedTableIsLeft, RowHandler downstream)
+    {
+        if (indexedKeyColumnNames.size() != probeKeyColumnNames.size() || indexedKeyColumnNames.isEmpty()) throw new IllegalArgumentException("A join needs the same number of key columns on both sides: " + probeKeyColumnNames + " and " + indexedKeyColumnNames);
+        if (indexedTableIsLeft && joinType != JoinType.INNER) throw new IllegalArgumentException("Only an inner join can index the left side.");
+
+        this.indexedTable = indexedTable;
+        this.indexedKeyColumnNames = indexedKeyColumnNames;
+        this.index = new HashIndex(indexedTable, indexedKeyColumnNames);
+        this.probeKeyColumnNames = probeKeyColumnNames;
+        this.probeKeySchema = new RowSchema(probeKeyColumnNames);
+        this.joinType = joinType;
+        this.indexedTableIsLeft = indexedTableIsLeft;
+        this.downstream = downstream;
+    }
+
+    /**
+     * Joins two whole tables.
+     * For an inner join the smaller table is indexed and the larger table is streamed through it,
+     * so the rows come out in the order of the larger table.
+     * For a left join the right table is indexed so that every row of the left table is kept, in order.
+     *
+     * @param left                The left table.
+     * @param leftKeyColumnNames  The names of the key columns of the left table.
+     * @param right               The right table.
+     * @param rightKeyColumnNames The names of the key columns of the right table, in the same order.
+     * @param joinType            How the rows are joined.
+     * @return A new table with the joined rows.
+     */
+    public static Table joinTables(Table left, List<String> leftKeyColumnNames, Table right, List<String> rightKeyColumnNames, JoinType joinType) throws Exception
+    {
+        // Decide which side to index:
+        boolean indexLeft = joinType == JoinType.INNER && left.rows.getRowCount() < right.rows.getRowCount();
+        Table indexedTable = indexLeft ? left : right;
+        Table probeTable = indexLeft ? right : left;
+
+        // Collect the joined rows into a table:
+        Table result = new Table();
+        HashJoin join = new HashJoin(
+            indexedTable,
+            indexLeft ? leftKeyColumnNames : rightKeyColumnNames,
+            indexLeft ? rightKeyColumnNames : leftKeyColumnNames,
+            joinType,
+            indexLeft,
+            joinedRow -> result.rows.addRow().copyValuesFromAnotherRow(joinedRow)
+        );
+
+        // Work out the joined columns up front so that the result has them even if no rows match:
+        join.bind(probeTable);
+        for (Column column : join.getJoinedTable().columns)
+        {
+            result.columns.addColumn(column.name);
+        }
+
+        // Stream the rows through the join:
+        for (Row row : probeTable.rows)
+        {
+            join.handleRow(row);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the table with the joined columns.
+     * The table only has the joined row that is currently being handled.
+     *
+     * @return The table with the joined columns.
+     */
+    public Table getJoinedTable()
+    {
+        return this.joinedTable;
+    }
+
+    /**
+     * Gets the number of rows that were streamed through the join.
+     *
+     * @return The number of rows that were streamed through the join.
+     */
+    public long getProbedRowCount()
+    {
+        return this.probedRowCount;
+    }
+
+    /**
+     * Gets the number of joined rows that were pushed downstream.
+     *
+     * @return The number of joined rows that were pushed downstream.
+     */
+    public long getJoinedRowCount()
+    {
+        return this.joinedRowCount;
+    }
+
+    /**
+     * Works out the joined columns for the table of the rows that are streamed through.
+     * This is done automatically for the first row, and again whenever a row comes from another table.
+     * Rows from another table must have the same columns, but they can be in a different order.
+     * The joined columns don't change once they are worked out, so each of them is found by name in the new table.
+     *
+     * @param probeTable The table of the rows that are streamed through.
+     * @throws IllegalStateException If the table doesn't have the same columns as the table that the joined columns were worked out for.
+     */
+    public void bind(Table probeTable)
+    {
+        boolean firstBinding = this.boundProbeTable == null;
+        this.boundProbeTable = probeTable;
+
+        // Work out which table is on which side:
+        Table leftTable = this.indexedTableIsLeft ? this.indexedTable : probeTable;
+        Table rightTable = this.indexedTableIsLeft ? probeTable : this.indexedTable;
+        Set<String> rightKeyColumnNames = new HashSet<>(this.indexedTableIsLeft ? this.probeKeyColumnNames : this.indexedKeyColumnNames);
+
+        // Take all the columns of the left side, and then the columns of the right side that aren't there yet:
+        List<String> joinedColumnNames = new ArrayList<>();
+        List<Boolean> joinedColumnIsIndexed = new ArrayList<>();
+        List<Integer> joinedColumnSourceIndices = new ArrayList<>();
+        Set<String> seenColumnNames = new HashSet<>();
+        for (Column column : leftTable.columns)
+        {
+            if (!seenColumnNames.add(column.name)) continue;
+            joinedColumnNames.add(column.name);
+            joinedColumnIsIndexed.add(this.indexedTableIsLeft);
+            joinedColumnSourceIndices.add(column.index);
+        }
+        for (Column column : rightTable.columns)
+        {
+            if (rightKeyColumnNames.contains(column.name) || !seenColumnNames.add(column.name)) continue;
+            joinedColumnNames.add(column.name);
+            joinedColumnIsIndexed.add(!this.indexedTableIsLeft);
+            joinedColumnSourceIndices.add(column.index);
+        }
+
+        // Create the joined columns the first time:
+        if (firstBinding)
+        {
+            for (String joinedColumnName : joinedColumnNames)
+            {
+                this.joinedTable.columns.addColumn(joinedColumnName);
+            }
+        }
+
+        // Make sure that the table has the same columns as the first one, in any order:
+        if (joinedColumnNames.size() != this.joinedTable.columns.getColumnCount()) throw new IllegalStateException("The rows have " + joinedColumnNames.size() + " joined columns " + joinedColumnNames + " but the first rows had " + this.joinedTable.columns.getColumnCount() + ".");
+
+        // Save the mapping for each joined column, finding it by name because the columns of this table might be in a different order:
+        this.joinedColumnIsIndexed = new boolean[joinedColumnNames.size()];
+        this.joinedColumnSourceIndices = new int[joinedColumnNames.size()];
+        for (Column joinedColumn : this.joinedTable.columns)
+        {
+            int i = joinedColumnNames.indexOf(joinedColumn.name);
+            if (i < 0) throw new IllegalStateException("The rows don't have the column '" + joinedColumn.name + "' that the first rows were joined with.");
+            this.joinedColumnIsIndexed[joinedColumn.index] = joinedColumnIsIndexed.get(i);
+            this.joinedColumnSourceIndices[joinedColumn.index] = joinedColumnSourceIndices.get(i);
+        }
+        this.joinedValues = new Object[joinedColumnNames.size()];
+    }
+
+    /**
+     * Joins the next row that is streamed through and pushes each joined row downstream.
+     *
+     * @param probeRow The row to join.
+     */
+    @Override
+    public void handleRow(Row probeRow) throws Exception
+    {
+        // Make sure that we know the joined columns for this table:
+        if (probeRow.getTable() != this.boundProbeTable) this.bind(probeRow.getTable());
+        this.probedRowCount++;
+
+        // Join the row with every matching row in the index:
+        String key = this.index.createKey(probeRow, this.probeKeySchema);
+        boolean matched = false;
+        for (int indexedRowIndex = this.index.getFirstRow(key); indexedRowIndex >= 0; indexedRowIndex = this.index.getNextRow(indexedRowIndex))
+        {
+            this.pushJoinedRow(probeRow, this.indexedTable.rows.getRow(indexedRowIndex));
+            matched = true;
+        }
+
+        // Keep the row without a match for a left join:
+        if (!matched && this.joinType == JoinType.LEFT) this.pushJoinedRow(probeRow, null);
+    }
+
+    /**
+     * Fills the joined row and pushes it downstream.
+     *
+     * @param probeRow   The row that was streamed through.
+     * @param indexedRow The matching row in the indexed table. Null if there isn't a match, in which case its columns are empty.
+     */
+    private void pushJoinedRow(Row probeRow, Row indexedRow) throws Exception
+    {
+        // Fill the joined values:
+        for (int i = 0; i < this.joinedValues.length; i++)
+        {
+            Row sourceRow = this.joinedColumnIsIndexed[i] ? indexedRow : probeRow;
+            this.joinedValues[i] = sourceRow == null ? "" : sourceRow.getCellByColumnIndexAsString(this.joinedColumnSourceIndices[i]);
+        }
+
+        // Reuse the joined table for this row:
+        this.joinedTable.rows.clear();
+        Row joinedRow = this.joinedTable.rows.addRow();
+        this.joinedTable.rows.setCells(joinedRow.getRowIndex(), this.joinedValues);
+        this.joinedRowCount++;
+
+        // Handle the joined row:
+        this.downstream.handleRow(joinedRow);
+    }
+}
@@ -0,0 +1,22 @@
+package io.nanovc.certificates.generation;
+
+/**
+ * How rows of data are joined with the rows of another data source.
+ */
+public enum JoinType
+{
+    /**
+     * Only rows that have a match in the other data source are kept.
+     * A row is repeated for each match that it has.
+     */
+    INNER,
+
+    /**
+     * Every row is kept, even if it doesn't have a match in the other data source.
+     * The columns from the other data source are empty for rows without a match.
+     * A row is repeated for each match that it has.
+     */
+    LEFT,
+
+    ;
+}
@@ -0,0 +1,278 @@
+package io.nanovc.certificates.generation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This extracts rectangular data from raw rows as they are streamed, one row at a time.
+ * It is the streaming equivalent of extracting the rectangular data from a whole table,
+ * except that the header row is detected from a bounded look-ahead window of rows instead of from the whole table,
+ * or it is given explicitly.
+ * <p>
+ * Once the header row is found, each row after it is pushed to the {@link RowHandler} straight away.
+ * A single row table is reused for every row so that memory stays flat no matter how many rows there are.
+ * <p>
+ * If it's given a {@link ColumnProjection} then the table only has the columns in the projection.
+ * Once the header row is found, the reader of the raw rows can ask {@link #isRawColumnNeeded(int)} so that it doesn't decode the other cells at all.
+ */
+public class RectangularRowStreamer
+{
+    /**
+     * The index of the header row in the raw rows. Negative to detect the header row as the first of the widest rows in the look-ahead window.
+     */
+    private final int headerRowIndex;
+
+    /**
+     * The number of raw rows to look at when detecting the header row.
+     */
+    private final int lookAheadRowCount;
+
+    /**
+     * The handler for each rectangular row.
+     */
+    private final RowHandler rowHandler;
+
+    /**
+     * The columns to keep. Null to keep all the columns.
+     */
+    private final ColumnProjection projection;
+
+    /**
+     * The index of each column that we keep in the raw rows, in order.
+     * This is null until the header row is found, and stays null if we keep all the columns.
+     */
+    private int[] keptRawColumnIndices;
+
+    /**
+     * Whether each column of the raw rows is kept, indexed by the column in the raw rows.
+     * This is null until the header row is found, and stays null if we keep all the columns.
+     */
+    private boolean[] rawColumnIsKept;
+
+    /**
+     * The table with the columns from the header row, which is reused for each rectangular row.
+     */
+    private final Table table = new Table();
+
+    /**
+     * The raw rows that we are holding on to while we look for the header row.
+     * This is null once the header row is found.
+     */
+    private List<Object[]> lookAheadRows = new ArrayList<>();
+
+    /**
+     * The number of raw rows that we have been given so far.
+     */
+    private int rawRowCount;
+
+    /**
+     * Creates a new streamer of rectangular rows.
+     *
+     * @param headerRowIndex    The index of the header row in the raw rows. Negative to detect the header row as the first of the widest rows in the look-ahead window.
+     * @param lookAheadRowCount The number of raw rows to look at when detecting the header row.
+     * @param rowHandler        The handler for each rectangular row.
+     */
+    public RectangularRowStreamer(int headerRowIndex, int lookAheadRowCount, RowHandler rowHandler)
+    {
+        this(headerRowIndex, lookAheadRowCount, null, rowHandler);
+    }
+
+    /**
+     * Creates a new streamer of rectangular rows that only keeps the columns in the given projection.
+     *
+     * @param headerRowIndex    The index of the header row in the raw rows. Negative to detect the header row as the first of the widest rows in the look-ahead window.
+     * @param lookAheadRowCount The number of raw rows to look at when detecting the header row.
+     * @param projection        The columns to keep. Null to keep all the columns.
+     * @param rowHandler        The handler for each rectangular row.
+     */
+    public RectangularRowStreamer(int headerRowIndex, int lookAheadRowCount, ColumnProjection projection, RowHandler rowHandler)
+    {
+        this.headerRowIndex = headerRowIndex;
+        this.lookAheadRowCount = Math.max(1, lookAheadRowCount);
+        this.projection = projection;
+        this.rowHandler = rowHandler;
+    }
+
+    /**
+     * Checks whether the cells in a column of the raw rows are needed.
+     * Every cell is needed until the header row is found, because we don't know which columns are which yet.
+     * After that, only the cells in the columns of the projection are needed and the reader can skip decoding the others.
+     *
+     * @param rawColumnIndex The index of the column in the raw rows.
+     * @return True if the cells in the column are needed. False if they can be skipped.
+     */
+    public boolean isRawColumnNeeded(int rawColumnIndex)
+    {
+        if (this.rawColumnIsKept == null) return true;
+        return rawColumnIndex < this.rawColumnIsKept.length && this.rawColumnIsKept[rawColumnIndex];
+    }
+
+    /**
+     * Gets the table with the columns from the header row.
+     * The table only has the row that is currently being handled.
+     *
+     * @return The table with the columns from the header row.
+     */
+    public Table getTable()
+    {
+        return this.table;
+    }
+
+    /**
+     * Checks whether the header row has been found yet.
+     *
+     * @return True if the header row has been found. False if we are still looking for it.
+     */
+    public boolean hasFoundHeaderRow()
+    {
+        return this.lookAheadRows == null;
+    }
+
+    /**
+     * Accepts the next raw row.
+     * The raw row is copied, so it can be reused by the caller once this returns.
+     *
+     * @param rawRow The next raw row.
+     */
+    public void acceptRawRow(Row rawRow) throws Exception
+    {
+        int rawRowIndex = this.rawRowCount++;
+
+        // Check whether we have already found the header row:
+        if (this.hasFoundHeaderRow())
+        {
+            // Push the row straight through:
+            this.handleRow(rawRow.getSnapshotOfValues());
+            return;
+        }
+
+        // Check whether this is the explicit header row:
+        if (rawRowIndex == this.headerRowIndex)
+        {
+            // This is the header row.
+            this.lookAheadRows = null;
+            this.createColumns(rawRow.getSnapshotOfValues());
+            return;
+        }
+
+        // Hold on to the row until we find the header row:
+        if (this.headerRowIndex < 0) this.lookAheadRows.add(rawRow.getSnapshotOfValues());
+
+        // Detect the header row once the look-ahead window is full:
+        if (this.headerRowIndex < 0 && this.lookAheadRows.size() >= this.lookAheadRowCount) this.detectHeaderRow();
+    }
+
+    /**
+     * Finishes the stream once there are no more raw rows.
+     * If the stream was shorter than the look-ahead window then the header row is detected from all the rows that we were given.
+     */
+    public void finish() throws Exception
+    {
+        if (!this.hasFoundHeaderRow() && this.headerRowIndex < 0) this.detectHeaderRow();
+    }
+
+    /**
+     * Detects the header row as the first of the widest rows in the look-ahead window,
+     * and then pushes the rows after it through.
+     */
+    private void detectHeaderRow() throws Exception
+    {
+        List<Object[]> rows = this.lookAheadRows;
+        this.lookAheadRows = null;
+
+        // Find the width of the widest row:
+        int widestRow = 0;
+        for (Object[] row : rows)
+        {
+            widestRow = Math.max(widestRow, row.length);
+        }
+
+        // Find the first row that matches the widest row:
+        int headerIndex = 0;
+        while (headerIndex < rows.size() && rows.get(headerIndex).length != widestRow) headerIndex++;
+        if (headerIndex == rows.size()) return;
+
+        // Create the columns from the header row:
+        this.createColumns(rows.get(headerIndex));
+
+        // Push the rows after the header row through:
+        for (int i = headerIndex + 1; i < rows.size(); i++)
+        {
+            this.handleRow(rows.get(i));
+        }
+    }
+
+    /**
+     * Creates the columns of the table from the header row.
+     *
+     * @param headerValues The values of the header row.
+     */
+    private void createColumns(Object[] headerValues)
+    {
+        // Check whether we keep all the columns:
+        if (this.projection == null)
+        {
+            for (Object cellValue : headerValues)
+            {
+                this.table.columns.addColumn(Objects.toString(cellValue));
+            }
+            return;
+        }
+
+        // Only create the columns in the projection, remembering where they are in the raw rows:
+        List<Integer> keptRawColumnIndices = new ArrayList<>();
+        this.rawColumnIsKept = new boolean[headerValues.length];
+        for (int i = 0; i < headerValues.length; i++)
+        {
+            String columnName = Objects.toString(headerValues[i]);
+            if (this.projection.includes(columnName))
+            {
+                this.table.columns.addColumn(columnName);
+                keptRawColumnIndices.add(i);
+                this.rawColumnIsKept[i] = true;
+            }
+        }
+        this.keptRawColumnIndices = keptRawColumnIndices.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Handles a rectangular row by reusing the single row of the table for it.
+     *
+     * @param values The values of the row.
+     */
+    private void handleRow(Object[] values) throws Exception
+    {
+        // Only keep the values in the projection:
+        if (this.keptRawColumnIndices != null) values = this.projectValues(values);
+
+        // Reuse the table for this row:
+        this.table.rows.clear();
+        Row row = this.table.rows.addRow();
+        this.table.rows.setCells(row.getRowIndex(), values);
+
+        // Handle the row:
+        this.rowHandler.handleRow(row);
+    }
+
+    /**
+     * Picks the values of the columns that we keep out of a raw row.
+     * Rows that are shorter than the header row stay short.
+     *
+     * @param values The values of the raw row.
+     * @return The values of the columns that we keep, in order.
+     */
+    private Object[] projectValues(Object[] values)
+    {
+        // The kept columns are in order, so only the first few of them can be in a short row:
+        int keptCount = 0;
+        while (keptCount < this.keptRawColumnIndices.length && this.keptRawColumnIndices[keptCount] < values.length) keptCount++;
+
+        Object[] keptValues = new Object[keptCount];
+        for (int i = 0; i < keptCount; i++)
+        {
+            keptValues[i] = values[this.keptRawColumnIndices[i]];
+        }
+        return keptValues;
+    }
+}
@@ -4,6 +4,9 @@ import java.util.*;
 
 /**
  * A row in a table.
+ * <p>
+ * The values of the row are stored by column in the {@link RowCollection} of the table,
+ * so a row is just a light weight view of the values at its index.
  */
 public class Row implements Iterable<Object>
 {
@@ -12,102 +15,67 @@ public class Row implements Iterable<Object>
      */
     private final Table table;
 
-    /**
-     * The values of the row as an array.
-     * Use this when we have rectangular data.
-     */
-    private Object[] valueArray;
-
-    /**
-     * The values of the row as an array list.
-     * Use this when we don't have rectangular data.
-     */
-    private ArrayList<Object> valueList;
-
     /**
      * The index of the row in the table.
      */
-    private int rowIndex;
+    private final int rowIndex;
 
     /**
      * Creates a new row.
      * @param table The table that the row belongs to.
      * @param rowIndex The index of the row in the table.
      */
-    public Row(Table table, int rowIndex) {this.table = table;}
-
-    /**
-     * Gets the value list.
-     * It initializes it first if necessary.
-     * @return The value list.
-     */
-    protected ArrayList<Object> getValueList()
+    public Row(Table table, int rowIndex)
     {
-        if (this.valueList == null)
-        {
-            // Initialize the value list:
-            this.valueList = new ArrayList<>();
-        }
-        return valueList;
+        this.table = table;
+        this.rowIndex = rowIndex;
     }
 
     /**
-     * Checks whether we have a value list (without creating one unnecessarily).
-     * @return True if we have a value list. False if we don't.
+     * Gets the table that this row belongs to.
+     * @return The table that this row belongs to.
      */
-    protected boolean hasValueList()
+    public Table getTable()
     {
-        return this.valueList != null;
+        return this.table;
     }
 
     /**
-     * Checks whether we have a value array (without creating one unnecessarily).
-     * @return True if we have a value array. False if we don't.
+     * Gets the index of the row in the table.
+     * @return The index of the row in the table.
      */
-    protected boolean hasValueArray()
+    public int getRowIndex()
     {
-        return this.valueArray != null;
+        return this.rowIndex;
     }
 
     /**
      * Appends a cell value at the end of the row.
-     * @param value The value to add to the row.
+     * @param value The value to add to the row. This can be text, a number ({@link java.math.BigDecimal}), a date ({@link java.time.LocalDateTime}) or a {@link Boolean}.
      */
-    public void appendCell(String value)
+    public void appendCell(Object value)
     {
-        this.getValueList().add(value);
+        this.table.rows.appendCell(this.rowIndex, value);
     }
 
     @Override public String toString()
     {
         StringJoiner joiner = new StringJoiner("|");
-        if (this.hasValueList())
+        int width = this.getWidth();
+        if (width > 0)
         {
-            // We have a value list.
+            // We have values.
 
             // Add all the values:
-            this.getValueList().forEach(value -> joiner.add(Objects.toString( value)));
+            for (int i = 0; i < width; i++)
+            {
+                joiner.add(this.getCellByColumnIndexAsString(i));
+            }
         }
         else
         {
-            // We don't have a value list.
-
-            // Check if we have a value array:
-            if (this.hasValueArray())
-            {
-                // We have a value array.
-
-                // Add all the values:
-                for (int i = 0; i < this.valueArray.length; i++)
-                {
-                    joiner.add(Objects.toString(this.valueArray[i]));
-                }
-            }
-            else
-            {
-                // We don't have any values.
-                joiner.add("EMPTY ROW");
-            }
+            // We don't have any values.
+            joiner.add("EMPTY ROW");
         }
         return joiner.toString();
     }
@@ -118,9 +86,7 @@ public class Row implements Iterable<Object>
      */
     public int getWidth()
     {
-        if (hasValueArray()) return this.valueArray.length;
-        else if (hasValueList()) return this.getValueList().size();
-        else return 0;
+        return this.table.rows.getWidth(this.rowIndex);
     }
 
     /**
@@ -131,9 +97,7 @@ public class Row implements Iterable<Object>
     @Override
     public Iterator<Object> iterator()
     {
-        if (hasValueList()) return this.getValueList().iterator();
-        else if (hasValueArray()) return Arrays.stream(this.valueArray).iterator();
-        else return Collections.emptyIterator();
+        return Arrays.asList(this.getSnapshotOfValues()).iterator();
     }
 
     /**
@@ -147,44 +111,8 @@ public class Row implements Iterable<Object>
         {
             // We are a rectangular row because we have columns.
 
-            // Get the row width we are expecting to be:
-            int expectedRowWidth = this.table.columns.getColumnCount();
-
-            // Check whether the other row matches exactly:
-            if (row.getWidth() == expectedRowWidth)
-            {
-                // The other row matches the expected width exactly.
-
-                // Set the value array for the row:
-                this.valueArray = row.getSnapshotOfValues();
-
-                // Clear the value list if any:
-                this.valueList = null;
-            }
-            else
-            {
-                // The other row doesn't match the expected width exactly.
-
-                // Add the values to our list:
-                ArrayList<Object> list = this.getValueList();
-                list.clear();
-                if (row.hasValueArray())
-                {
-                    // The other row has an array.
-                    for (Object cellValue : row.valueArray)
-                    {
-                        list.add(cellValue);
-                    }
-                }
-                else if (row.hasValueList())
-                {
-                    // The other row has a value list.
-                    list.addAll(row.getValueList());
-                }
-
-                // Clear the value array if any:
-                this.valueArray = null;
-            }
+            // Replace our values with the values of the other row:
+            this.table.rows.setCells(this.rowIndex, row.getSnapshotOfValues());
         }
         else
         {
@@ -199,15 +127,13 @@ public class Row implements Iterable<Object>
      */
     public Object[] getSnapshotOfValues()
     {
-        if (this.hasValueArray())
-        {
-            return Arrays.copyOf(this.valueArray, this.valueArray.length);
-        }
-        else if (this.hasValueList())
+        int width = this.getWidth();
+        Object[] values = new Object[width];
+        for (int i = 0; i < width; i++)
         {
-            return this.getValueList().toArray();
+            values[i] = this.table.rows.getCell(this.rowIndex, i);
         }
-        else return new Object[0];
+        return values;
     }
 
     /**
@@ -228,8 +154,22 @@ public class Row implements Iterable<Object>
         else return "";
     }
 
+    /**
+     * Gets the typed value of the column.
+     * @param columnIndex The index of the column that we want to get.
+     * @return The value of the given column. Null if the column is out of range.
+     */
+    public Object getCellByColumnIndex(int columnIndex)
+    {
+        // Make sure the column index is in range:
+        if (columnIndex >= this.getWidth() || columnIndex < 0) return null;
+
+        return this.table.rows.getCell(this.rowIndex, columnIndex);
+    }
+
     /**
      * Gets the value of the column as a string.
+     * Values that aren't text are formatted with the {@link Column#format format} of the column.
      * @param columnIndex The index of the column that we want to get.
      * @return The value of the given column as a string.
      */
@@ -238,28 +178,14 @@ public class Row implements Iterable<Object>
         // Make sure the column index is in range:
         if (columnIndex >= this.getWidth() || columnIndex < 0) return "";
 
-        // Check if we have values:
-        if (hasValueArray())
-        {
-            // We have a value array.
-
-            // Get the cell value:
-            Object cellValue = this.valueArray[columnIndex];
-
-            return Objects.toString(cellValue);
-        }
-        else if (hasValueList())
-        {
-            // We have a value list.
-
-            // Get the cell value:
-            Object cellValue = this.valueList.get(columnIndex);
+        // Get the cell value, which is usually already a string:
+        Object cellValue = this.table.rows.getCell(this.rowIndex, columnIndex);
+        if (cellValue instanceof String) return (String) cellValue;
+        if (cellValue == null) return "null";
 
-            return Objects.toString(cellValue);
-        }
-        else
-        {
-            return "";
-        }
+        // Format the typed value for its column:
+        Column column = this.table.columns.getColumn(columnIndex);
+        CellFormat format = column == null || column.format == null ? CellFormat.DEFAULT : column.format;
+        return format.format(cellValue);
     }
 }
@@ -1,33 +1,132 @@
 package io.nanovc.certificates.generation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * A collection of {@link Row rows}.
+ * <p>
+ * The values of the rows are stored by column rather than by row, in a {@link ColumnStorage} for each cell position.
+ * This keeps the values of a column together and lets each column be dictionary encoded.
+ * The {@link Row rows} themselves are just light weight views over this storage that are created when they are needed.
+ * <p>
+ * A collection can also be a view over a range of the rows of another collection, without copying them.
+ * This is how the rectangular data is taken from the raw data, where the rows after the header row are exactly the rows that we want.
+ * The view only gets its own storage (by copying the rows) if it's changed.
  */
 public class RowCollection implements Iterable<Row>
 {
     /**
-     * The rows.
+     * The initial number of rows that we have space for.
      */
-    private ArrayList<Row> rows = new ArrayList<>();
+    private static final int INITIAL_CAPACITY = 16;
 
+    /**
+     * The storage for each cell position of the rows.
+     * Rows don't have to be rectangular, so the storage for a cell position only has values for the rows that are wide enough.
+     */
+    private final ArrayList<ColumnStorage> cellStorage = new ArrayList<>();
+
+    /**
+     * The width (number of cells) of each row.
+     */
+    private int[] rowWidths = new int[INITIAL_CAPACITY];
+
+    /**
+     * The number of rows.
+     */
+    private int rowCount;
 
     /**
      * The table that these columns belong to.
      */
     private final Table table;
 
+    /**
+     * The rows that this collection is a view over.
+     * Null if this collection has its own storage.
+     */
+    private RowCollection viewedRows;
+
+    /**
+     * The index of the row in the {@link #viewedRows} that is the first row of this collection.
+     */
+    private int viewedRowOffset;
+
     public RowCollection(Table table) {this.table = table;}
 
+    /**
+     * Makes this collection a view over the rows of another collection, starting at the given row, without copying them.
+     * Any rows that this collection had before are dropped.
+     * @param viewedRows    The rows to view.
+     * @param firstRowIndex The index of the row in the viewed rows that becomes the first row of this collection.
+     */
+    void viewRows(RowCollection viewedRows, int firstRowIndex)
+    {
+        // Drop our own rows:
+        this.rowWidths = new int[INITIAL_CAPACITY];
+        this.rowCount = 0;
+        this.cellStorage.clear();
+
+        // View the rows of the other collection, making sure that we view its storage directly:
+        if (viewedRows.viewedRows != null)
+        {
+            firstRowIndex += viewedRows.viewedRowOffset;
+            viewedRows = viewedRows.viewedRows;
+        }
+        this.viewedRows = viewedRows;
+        this.viewedRowOffset = firstRowIndex;
+    }
+
+    /**
+     * Checks whether this collection is a view over the rows of another collection.
+     * @return True if this collection is a view over the rows of another collection. False if it has its own storage.
+     */
+    public boolean isView()
+    {
+        return this.viewedRows != null;
+    }
+
+    /**
+     * Makes sure that this collection has its own storage, so that it can be changed.
+     * If this collection is a view then the viewed rows are copied into its own storage.
+     */
+    private void ensureOwnStorage()
+    {
+        // Check whether we are a view:
+        if (this.viewedRows == null) return;
+
+        // Copy the viewed rows into our own storage:
+        RowCollection viewedRows = this.viewedRows;
+        int viewedRowOffset = this.viewedRowOffset;
+        int rowCount = Math.max(0, viewedRows.rowCount - viewedRowOffset);
+        this.viewedRows = null;
+        this.viewedRowOffset = 0;
+        this.rowWidths = new int[Math.max(INITIAL_CAPACITY, rowCount)];
+        for (int rowIndex = 0; rowIndex < rowCount; rowIndex++)
+        {
+            int width = viewedRows.getWidth(rowIndex + viewedRowOffset);
+            for (int columnIndex = 0; columnIndex < width; columnIndex++)
+            {
+                this.getCellStorage(columnIndex).set(rowIndex, viewedRows.getCell(rowIndex + viewedRowOffset, columnIndex));
+            }
+            this.rowWidths[rowIndex] = width;
+        }
+        this.rowCount = rowCount;
+    }
+
     /**
      * Gets the number of rows.
      * @return The number of rows.
      */
     public int getRowCount()
     {
-        return this.rows.size();
+        if (this.viewedRows != null) return Math.max(0, this.viewedRows.rowCount - this.viewedRowOffset);
+        return this.rowCount;
     }
 
 
@@ -37,9 +136,130 @@ public class RowCollection implements Iterable<Row>
      */
     public Row addRow()
     {
-        Row row = new Row(this.table, this.getRowCount());
-        this.rows.add(row);
-        return row;
+        // Make sure that we can change the rows:
+        this.ensureOwnStorage();
+
+        // Make sure that we have space for the row:
+        if (this.rowCount == this.rowWidths.length)
+        {
+            this.rowWidths = Arrays.copyOf(this.rowWidths, this.rowWidths.length + (this.rowWidths.length >> 1));
+        }
+        return new Row(this.table, this.rowCount++);
+    }
+
+    /**
+     * Removes all the rows, keeping the storage so that it can be reused.
+     * This lets a table be reused for each row when rows are streamed one at a time.
+     * Any rows that were handed out before this are no longer valid.
+     */
+    public void clear()
+    {
+        // Stop viewing other rows, since there is nothing to keep:
+        if (this.viewedRows != null)
+        {
+            this.viewedRows = null;
+            this.viewedRowOffset = 0;
+            return;
+        }
+
+        Arrays.fill(this.rowWidths, 0, this.rowCount, 0);
+        this.rowCount = 0;
+        for (ColumnStorage storage : this.cellStorage)
+        {
+            storage.clear();
+        }
+    }
+
+    /**
+     * Gets the row at the given index.
+     * @param rowIndex The index of the row to get.
+     * @return The row at the given index.
+     */
+    public Row getRow(int rowIndex)
+    {
+        int rowCount = this.getRowCount();
+        if (rowIndex < 0 || rowIndex >= rowCount) throw new IndexOutOfBoundsException("Row " + rowIndex + " is out of range for " + rowCount + " rows.");
+        return new Row(this.table, rowIndex);
+    }
+
+    /**
+     * Gets the distinct values in the cells at the given column index, across all the rows.
+     * This is cheap because the values of each column are dictionary encoded, so it's a quick way to scan a whole column.
+     * Every value in the column is included, but values that were overwritten (or that are in the rows before a view) may also be included.
+     * @param columnIndex The index of the column to get the distinct values for.
+     * @return The distinct values in the cells at the given column index.
+     */
+    public List<Object> getDistinctValues(int columnIndex)
+    {
+        // A view shares the storage of the viewed rows, so this includes the values of the rows before the view (such as the header row):
+        if (this.viewedRows != null) return this.viewedRows.getDistinctValues(columnIndex);
+
+        if (columnIndex < 0 || columnIndex >= this.cellStorage.size()) return Collections.emptyList();
+        return this.cellStorage.get(columnIndex).getDistinctValues();
+    }
+
+    /**
+     * Gets the width (number of cells) of the given row.
+     * @param rowIndex The index of the row.
+     * @return The width (number of cells) of the row.
+     */
+    int getWidth(int rowIndex)
+    {
+        if (this.viewedRows != null) return this.viewedRows.getWidth(rowIndex + this.viewedRowOffset);
+        return this.rowWidths[rowIndex];
+    }
+
+    /**
+     * Gets the value of a cell.
+     * @param rowIndex    The index of the row.
+     * @param columnIndex The index of the cell in the row. This must be less than the width of the row.
+     * @return The value of the cell.
+     */
+    Object getCell(int rowIndex, int columnIndex)
+    {
+        if (this.viewedRows != null) return this.viewedRows.getCell(rowIndex + this.viewedRowOffset, columnIndex);
+        return this.cellStorage.get(columnIndex).get(rowIndex);
+    }
+
+    /**
+     * Appends a cell value at the end of the given row.
+     * @param rowIndex The index of the row.
+     * @param value    The value to add to the row.
+     */
+    void appendCell(int rowIndex, Object value)
+    {
+        this.ensureOwnStorage();
+        int columnIndex = this.rowWidths[rowIndex]++;
+        this.getCellStorage(columnIndex).set(rowIndex, value);
+    }
+
+    /**
+     * Replaces all the values of the given row.
+     * @param rowIndex The index of the row.
+     * @param values   The new values for the row.
+     */
+    void setCells(int rowIndex, Object[] values)
+    {
+        this.ensureOwnStorage();
+        for (int columnIndex = 0; columnIndex < values.length; columnIndex++)
+        {
+            this.getCellStorage(columnIndex).set(rowIndex, values[columnIndex]);
+        }
+        this.rowWidths[rowIndex] = values.length;
+    }
+
+    /**
+     * Gets the storage for the given cell position, creating it if necessary.
+     * @param columnIndex The index of the cell in the row.
+     * @return The storage for the cell position.
+     */
+    private ColumnStorage getCellStorage(int columnIndex)
+    {
+        while (this.cellStorage.size() <= columnIndex)
+        {
+            this.cellStorage.add(new ColumnStorage());
+        }
+        return this.cellStorage.get(columnIndex);
     }
 
     /**
@@ -50,6 +270,25 @@ public class RowCollection implements Iterable<Row>
     @Override
     public Iterator<Row> iterator()
     {
-        return this.rows.iterator();
+        return new Iterator<>()
+        {
+            /**
+             * The index of the next row.
+             */
+            private int nextRowIndex;
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.nextRowIndex < RowCollection.this.getRowCount();
+            }
+
+            @Override
+            public Row next()
+            {
+                if (!this.hasNext()) throw new NoSuchElementException();
+                return new Row(RowCollection.this.table, this.nextRowIndex++);
+            }
+        };
     }
 }
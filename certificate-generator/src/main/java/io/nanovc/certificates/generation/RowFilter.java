@@ -0,0 +1,340 @@
+package io.nanovc.certificates.generation;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * This decides which rows of data to keep, based on a list of {@link RowFilterConfig row filters} that must all match.
+ * The filters are compiled once, so that the filter values are only parsed as numbers, dates and booleans once
+ * and the columns are only looked up by name once through a {@link RowSchema}.
+ * <p>
+ * The filter can be put in front of a {@link RowHandler} so that rows are filtered as they are streamed out of the data,
+ * which means that rejected rows are never copied into a table.
+ * It counts the rows that it keeps and rejects so that they can be reported.
+ * A filter is not thread safe, so each thread should have its own.
+ */
+public class RowFilter
+{
+    /**
+     * The columns that the filters are on, in the same order as the conditions.
+     */
+    private final RowSchema schema;
+
+    /**
+     * The compiled condition for each filter.
+     */
+    private final Condition[] conditions;
+
+    /**
+     * The table that we last checked the columns for.
+     */
+    private Table checkedTable;
+
+    /**
+     * The number of rows that matched all the filters.
+     */
+    private long keptRowCount;
+
+    /**
+     * The number of rows that didn't match all the filters.
+     */
+    private long rejectedRowCount;
+
+    /**
+     * Compiles the given filters.
+     *
+     * @param filterConfigs The filters that must all match for a row to be kept.
+     * @throws IllegalArgumentException If a filter doesn't have a column name or a value to compare with.
+     */
+    public RowFilter(List<RowFilterConfig> filterConfigs)
+    {
+        String[] columnNames = new String[filterConfigs.size()];
+        this.conditions = new Condition[filterConfigs.size()];
+        for (int i = 0; i < filterConfigs.size(); i++)
+        {
+            RowFilterConfig filterConfig = filterConfigs.get(i);
+            if (filterConfig.columnName == null || filterConfig.columnName.isEmpty()) throw new IllegalArgumentException("The row filter doesn't have a column name: " + filterConfig);
+            columnNames[i] = filterConfig.columnName;
+            this.conditions[i] = new Condition(filterConfig);
+        }
+        this.schema = new RowSchema(columnNames);
+    }
+
+    /**
+     * Gets the number of rows that matched all the filters.
+     *
+     * @return The number of rows that were kept.
+     */
+    public long getKeptRowCount()
+    {
+        return this.keptRowCount;
+    }
+
+    /**
+     * Gets the number of rows that didn't match all the filters.
+     *
+     * @return The number of rows that were rejected.
+     */
+    public long getRejectedRowCount()
+    {
+        return this.rejectedRowCount;
+    }
+
+    /**
+     * Checks whether the given row matches all the filters, and counts it as kept or rejected.
+     *
+     * @param row The row to check.
+     * @return True if the row must be kept. False if it must be rejected.
+     * @throws IllegalStateException If the data doesn't have one of the columns that are filtered on.
+     */
+    public boolean accepts(Row row)
+    {
+        // Make sure that the table has the columns that we filter on, once for each table:
+        if (row.getTable() != this.checkedTable) this.checkColumns(row.getTable());
+
+        // Check each condition in turn, stopping at the first one that doesn't match:
+        for (int i = 0; i < this.conditions.length; i++)
+        {
+            if (!this.conditions[i].matches(this.schema.getCell(row, i)))
+            {
+                this.rejectedRowCount++;
+                return false;
+            }
+        }
+        this.keptRowCount++;
+        return true;
+    }
+
+    /**
+     * Creates a row handler that only passes the rows that match all the filters on to the given handler.
+     *
+     * @param downstream The handler for the rows that are kept.
+     * @return The handler that filters the rows.
+     */
+    public RowHandler createRowHandler(RowHandler downstream)
+    {
+        return row ->
+        {
+            if (this.accepts(row)) downstream.handleRow(row);
+        };
+    }
+
+    /**
+     * Makes sure that the given table has all the columns that we filter on.
+     *
+     * @param table The table to check.
+     * @throws IllegalStateException If the table doesn't have one of the columns.
+     */
+    private void checkColumns(Table table)
+    {
+        this.schema.bind(table);
+        for (int i = 0; i < this.schema.getColumnCount(); i++)
+        {
+            if (this.schema.getColumnIndex(i) < 0) throw new IllegalStateException("The data doesn't have the column '" + this.schema.getColumnName(i) + "' for the row filter: " + this.conditions[i].filterConfig);
+        }
+        this.checkedTable = table;
+    }
+
+    /**
+     * A filter that has been compiled, with its values already parsed as every type of value that a cell can have.
+     */
+    private static final class Condition
+    {
+        /**
+         * The filter that this condition was compiled from.
+         */
+        private final RowFilterConfig filterConfig;
+
+        /**
+         * The operator to compare with.
+         */
+        private final RowFilterOperator operator;
+
+        /**
+         * Whether the operator orders the values instead of checking whether they are equal.
+         */
+        private final boolean isOrdering;
+
+        /**
+         * The values to compare with, as text.
+         */
+        private final String[] texts;
+
+        /**
+         * The values to compare with, as numbers. An entry is null if that value isn't a number.
+         */
+        private final BigDecimal[] numbers;
+
+        /**
+         * The values to compare with, as dates. An entry is null if that value isn't a date.
+         */
+        private final LocalDateTime[] dates;
+
+        /**
+         * Whether each of the dates only has a date without a time, in which case only the date of a cell is compared.
+         */
+        private final boolean[] datesWithoutTime;
+
+        /**
+         * The values to compare with, as booleans. An entry is null if that value isn't a boolean.
+         */
+        private final Boolean[] booleans;
+
+        /**
+         * Compiles the given filter.
+         *
+         * @param filterConfig The filter to compile.
+         * @throws IllegalArgumentException If the filter doesn't have a value to compare with.
+         */
+        private Condition(RowFilterConfig filterConfig)
+        {
+            this.filterConfig = filterConfig;
+            this.operator = filterConfig.operator == null ? RowFilterOperator.EQUALS : filterConfig.operator;
+
+            // Get the values to compare with:
+            boolean hasManyValues = this.operator == RowFilterOperator.IN || this.operator == RowFilterOperator.NOT_IN;
+            this.isOrdering = !hasManyValues && this.operator != RowFilterOperator.EQUALS && this.operator != RowFilterOperator.NOT_EQUALS;
+            if (hasManyValues)
+            {
+                if (filterConfig.values == null) throw new IllegalArgumentException("The row filter doesn't have values to compare with: " + filterConfig);
+                this.texts = filterConfig.values.toArray(new String[0]);
+            }
+            else
+            {
+                if (filterConfig.value == null) throw new IllegalArgumentException("The row filter doesn't have a value to compare with: " + filterConfig);
+                this.texts = new String[] { filterConfig.value };
+            }
+
+            // Parse the values as every type of value that a cell can have:
+            this.numbers = new BigDecimal[this.texts.length];
+            this.dates = new LocalDateTime[this.texts.length];
+            this.datesWithoutTime = new boolean[this.texts.length];
+            this.booleans = new Boolean[this.texts.length];
+            for (int i = 0; i < this.texts.length; i++)
+            {
+                String text = this.texts[i].trim();
+                this.numbers[i] = parseNumber(text);
+                try
+                {
+                    this.dates[i] = LocalDate.parse(text).atStartOfDay();
+                    this.datesWithoutTime[i] = true;
+                }
+                catch (DateTimeParseException e)
+                {
+                    try
+                    {
+                        this.dates[i] = LocalDateTime.parse(text);
+                    }
+                    catch (DateTimeParseException e2)
+                    {
+                        this.dates[i] = null;
+                    }
+                }
+                if (text.equalsIgnoreCase("true")) this.booleans[i] = Boolean.TRUE;
+                else if (text.equalsIgnoreCase("false")) this.booleans[i] = Boolean.FALSE;
+            }
+        }
+
+        /**
+         * Checks whether the given value of a cell matches this condition.
+         *
+         * @param value The typed value of the cell.
+         * @return True if the value matches. False if it doesn't.
+         */
+        private boolean matches(Object value)
+        {
+            switch (this.operator)
+            {
+                case EQUALS:
+                    return this.compare(value, 0) == 0;
+
+                case NOT_EQUALS:
+                    return this.compare(value, 0) != 0;
+
+                case IN:
+                case NOT_IN:
+                    boolean isInValues = false;
+                    for (int i = 0; i < this.texts.length && !isInValues; i++)
+                    {
+                        isInValues = this.compare(value, i) == 0;
+                    }
+                    return isInValues == (this.operator == RowFilterOperator.IN);
+
+                case GREATER_THAN:
+                    return this.compare(value, 0) > 0;
+
+                case GREATER_THAN_OR_EQUAL:
+                    return this.compare(value, 0) >= 0;
+
+                case LESS_THAN:
+                    return this.compare(value, 0) < 0;
+
+                case LESS_THAN_OR_EQUAL:
+                    return this.compare(value, 0) <= 0;
+
+                default:
+                    throw new IllegalStateException("Unknown row filter operator: " + this.operator);
+            }
+        }
+
+        /**
+         * Compares the given value of a cell with one of the values of this condition.
+         * Numbers and dates are compared by their value if the filter value can be parsed the same way.
+         * Text is compared by number if both sides are numbers, otherwise everything is compared as text.
+         *
+         * @param value      The typed value of the cell.
+         * @param valueIndex The index of the value of this condition to compare with.
+         * @return Negative if the cell is less than the filter value, zero if they are equal and positive if the cell is greater.
+         */
+        private int compare(Object value, int valueIndex)
+        {
+            if (value instanceof BigDecimal && this.numbers[valueIndex] != null)
+            {
+                return ((BigDecimal) value).compareTo(this.numbers[valueIndex]);
+            }
+            if (value instanceof LocalDateTime && this.dates[valueIndex] != null)
+            {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                if (this.datesWithoutTime[valueIndex]) dateTime = dateTime.truncatedTo(ChronoUnit.DAYS);
+                return dateTime.compareTo(this.dates[valueIndex]);
+            }
+            if (value instanceof Boolean && this.booleans[valueIndex] != null)
+            {
+                return ((Boolean) value).compareTo(this.booleans[valueIndex]);
+            }
+
+            // Compare everything else as text:
+            String text = value == null ? "" : CellFormat.DEFAULT.format(value);
+            if (this.numbers[valueIndex] != null && this.isOrdering)
+            {
+                // This is an ordering, so compare numbers in text by their value:
+                BigDecimal number = parseNumber(text.trim());
+                if (number != null) return number.compareTo(this.numbers[valueIndex]);
+            }
+            return text.compareTo(this.texts[valueIndex]);
+        }
+
+        /**
+         * Parses the given text as a number.
+         *
+         * @param text The text to parse.
+         * @return The number. Null if the text isn't a number.
+         */
+        private static BigDecimal parseNumber(String text)
+        {
+            if (text.isEmpty()) return null;
+            try
+            {
+                return new BigDecimal(text);
+            }
+            catch (NumberFormatException e)
+            {
+                return null;
+            }
+        }
+    }
+}
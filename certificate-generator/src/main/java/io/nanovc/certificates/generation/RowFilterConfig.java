@@ -0,0 +1,45 @@
+package io.nanovc.certificates.generation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The configuration for a filter on the rows of data.
+ * eg: {"columnName": "Result", "operator": "EQUALS", "value": "Pass"}
+ * eg: {"columnName": "Completion Date", "operator": "GREATER_THAN_OR_EQUAL", "value": "2024-10-01"}
+ */
+public class RowFilterConfig
+{
+    /**
+     * The name of the column to filter on.
+     */
+    public String columnName;
+
+    /**
+     * How the value of the column is compared with the filter value.
+     */
+    public RowFilterOperator operator = RowFilterOperator.EQUALS;
+
+    /**
+     * The value to compare with.
+     * Dates are given in ISO format. eg: "2024-10-01" or "2024-10-01T14:30"
+     */
+    public String value;
+
+    /**
+     * The values to compare with for the {@link RowFilterOperator#IN} and {@link RowFilterOperator#NOT_IN} operators.
+     */
+    public List<String> values = new ArrayList<>();
+
+    /**
+     * Describes the filter for messages.
+     *
+     * @return A description of the filter. eg: "Result EQUALS Pass"
+     */
+    @Override
+    public String toString()
+    {
+        boolean hasManyValues = this.operator == RowFilterOperator.IN || this.operator == RowFilterOperator.NOT_IN;
+        return this.columnName + " " + this.operator + " " + (hasManyValues ? this.values : this.value);
+    }
+}
@@ -0,0 +1,50 @@
+package io.nanovc.certificates.generation;
+
+/**
+ * How the value of a column is compared with the values of a {@link RowFilterConfig row filter}.
+ * Numbers and dates are compared by their value, everything else is compared as text.
+ */
+public enum RowFilterOperator
+{
+    /**
+     * The value of the column must be equal to the filter value.
+     */
+    EQUALS,
+
+    /**
+     * The value of the column must not be equal to the filter value.
+     */
+    NOT_EQUALS,
+
+    /**
+     * The value of the column must be equal to one of the filter values.
+     */
+    IN,
+
+    /**
+     * The value of the column must not be equal to any of the filter values.
+     */
+    NOT_IN,
+
+    /**
+     * The value of the column must be greater than the filter value.
+     */
+    GREATER_THAN,
+
+    /**
+     * The value of the column must be greater than or equal to the filter value.
+     */
+    GREATER_THAN_OR_EQUAL,
+
+    /**
+     * The value of the column must be less than the filter value.
+     */
+    LESS_THAN,
+
+    /**
+     * The value of the column must be less than or equal to the filter value.
+     */
+    LESS_THAN_OR_EQUAL,
+
+    ;
+}
@@ -0,0 +1,16 @@
+package io.nanovc.certificates.generation;
+
+/**
+ * This handles rows of data one at a time as they are streamed, without the whole table ever being loaded.
+ * The row is only valid while it is being handled because the table behind it is reused for the next row.
+ */
+@FunctionalInterface
+public interface RowHandler
+{
+    /**
+     * Handles the next row of data.
+     *
+     * @param row The row to handle. This is only valid until this method returns.
+     */
+    void handleRow(Row row) throws Exception;
+}
@@ -0,0 +1,157 @@
+package io.nanovc.certificates.generation;
+
+import java.util.List;
+
+/**
+ * This is a fixed list of column names that are resolved to column indices once, so that the cells of each row can be read by index.
+ * Reading a cell through a schema is just array indexing, without looking the column up by name for every row.
+ * <p>
+ * The schema binds itself to the table of the first row that it reads, and only binds again if it's given a row from another table.
+ * This means that the same schema works for a whole table, or for the single row table that is reused when rows are streamed.
+ * A schema is not thread safe, so each thread should have its own.
+ */
+public class RowSchema
+{
+    /**
+     * The names of the columns in the schema.
+     */
+    private final String[] columnNames;
+
+    /**
+     * The index of each column of the schema in the table that we are bound to.
+     * The index is negative if the table doesn't have the column.
+     */
+    private final int[] columnIndices;
+
+    /**
+     * The table that the column indices were resolved for. Null if we haven't been bound yet.
+     */
+    private Table boundTable;
+
+    /**
+     * The number of columns that the bound table had when we were bound to it.
+     */
+    private int boundColumnCount;
+
+    /**
+     * Creates a new schema for the given column names.
+     *
+     * @param columnNames The names of the columns in the schema.
+     */
+    public RowSchema(String... columnNames)
+    {
+        this.columnNames = columnNames.clone();
+        this.columnIndices = new int[columnNames.length];
+    }
+
+    /**
+     * Creates a new schema for the given column names.
+     *
+     * @param columnNames The names of the columns in the schema.
+     */
+    public RowSchema(List<String> columnNames)
+    {
+        this(columnNames.toArray(new String[0]));
+    }
+
+    /**
+     * Gets the number of columns in the schema.
+     *
+     * @return The number of columns in the schema.
+     */
+    public int getColumnCount()
+    {
+        return this.columnNames.length;
+    }
+
+    /**
+     * Gets the name of a column in the schema.
+     *
+     * @param schemaIndex The index of the column in the schema.
+     * @return The name of the column.
+     */
+    public String getColumnName(int schemaIndex)
+    {
+        return this.columnNames[schemaIndex];
+    }
+
+    /**
+     * Resolves the columns of the schema to the columns of the given table.
+     * This is done automatically when a row is read from a table that we are not bound to yet.
+     *
+     * @param table The table to bind to.
+     */
+    public void bind(Table table)
+    {
+        for (int i = 0; i < this.columnNames.length; i++)
+        {
+            Column column = table.columns.getColumn(this.columnNames[i]);
+            this.columnIndices[i] = column == null ? -1 : column.index;
+        }
+        this.boundTable = table;
+        this.boundColumnCount = table.columns.getColumnCount();
+    }
+
+    /**
+     * Gets the index of a column of the schema in the table that we are bound to.
+     *
+     * @param schemaIndex The index of the column in the schema.
+     * @return The index of the column in the bound table. Negative if the table doesn't have the column.
+     */
+    public int getColumnIndex(int schemaIndex)
+    {
+        return this.columnIndices[schemaIndex];
+    }
+
+    /**
+     * Gets the typed value of a column of the schema in the given row.
+     *
+     * @param row         The row to read the value from.
+     * @param schemaIndex The index of the column in the schema.
+     * @return The value of the column. Null if the table doesn't have the column.
+     */
+    public Object getCell(Row row, int schemaIndex)
+    {
+        this.ensureBound(row);
+        return row.getCellByColumnIndex(this.columnIndices[schemaIndex]);
+    }
+
+    /**
+     * Gets the value of a column of the schema in the given row as a string.
+     *
+     * @param row         The row to read the value from.
+     * @param schemaIndex The index of the column in the schema.
+     * @return The value of the column as a string. Empty if the table doesn't have the column.
+     */
+    public String getCellAsString(Row row, int schemaIndex)
+    {
+        this.ensureBound(row);
+        return row.getCellByColumnIndexAsString(this.columnIndices[schemaIndex]);
+    }
+
+    /**
+     * Gets the values of all the columns of the schema in the given row as strings.
+     *
+     * @param row    The row to read the values from.
+     * @param values The array to fill with the values, indexed by the column in the schema.
+     */
+    public void getCellsAsStrings(Row row, String[] values)
+    {
+        this.ensureBound(row);
+        for (int i = 0; i < this.columnIndices.length; i++)
+        {
+            values[i] = row.getCellByColumnIndexAsString(this.columnIndices[i]);
+        }
+    }
+
+    /**
+     * Makes sure that we are bound to the table of the given row.
+     *
+     * @param row The row that we are about to read.
+     */
+    private void ensureBound(Row row)
+    {
+        Table table = row.getTable();
+        if (table != this.boundTable || table.columns.getColumnCount() != this.boundColumnCount) this.bind(table);
+    }
+}
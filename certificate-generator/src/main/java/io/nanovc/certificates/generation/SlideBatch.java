@@ -0,0 +1,180 @@
+package io.nanovc.certificates.generation;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This makes the packages for batches of certificates from a {@link SlideBatchTemplate}, one batch after the other.
+ * Each slide is written to the package as soon as it is added, so the rows of data don't need to be kept until the batch is finished.
+ * Each slide also remembers the path of the file that its page must end up in once the batch has been exported.
+ * <p>
+ * A batch is reused for every package that a thread makes, so it is not thread safe.
+ * Create one with {@link SlideBatchTemplate#createBatch(ExplodedTemplateContext)} and close it when you are done making packages with it.
+ */
+public class SlideBatch implements AutoCloseable
+{
+    /**
+     * The size of the buffer for writing the package.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The batch template that the slides come from.
+     */
+    private final SlideBatchTemplate batchTemplate;
+
+    /**
+     * The context to write the values of each slide with.
+     */
+    private final ExplodedTemplateContext context;
+
+    /**
+     * The path to the package of the current batch. Null if a batch hasn't been started.
+     */
+    private Path packagePath;
+
+    /**
+     * The output stream for the package of the current batch. Null if a batch hasn't been started.
+     */
+    private OutputStream outputStream;
+
+    /**
+     * The writer for the package of the current batch. Null if a batch hasn't been started.
+     */
+    private ZipPackageWriter writer;
+
+    /**
+     * The path of the file for the page of each slide in the current batch, in the order of the slides.
+     */
+    private List<Path> pagePaths = new ArrayList<>();
+
+    /**
+     * The number of batches that have been started.
+     */
+    private int batchCount;
+
+    /**
+     * Creates a new batch. Use {@link SlideBatchTemplate#createBatch(ExplodedTemplateContext)} to create a batch.
+     *
+     * @param batchTemplate The batch template that the slides come from.
+     * @param context       The context to write the values of each slide with.
+     */
+    SlideBatch(SlideBatchTemplate batchTemplate, ExplodedTemplateContext context)
+    {
+        this.batchTemplate = batchTemplate;
+        this.context = context;
+    }
+
+    /**
+     * Starts the package for a new batch at the given path.
+     *
+     * @param packagePath The path to write the package of the batch to.
+     */
+    public void start(Path packagePath) throws IOException
+    {
+        if (this.isStarted()) throw new IllegalStateException("The batch at " + this.packagePath + " must be finished before another one is started.");
+
+        // Start writing the package with all the parts of the template that are the same in every batch:
+        this.outputStream = new BufferedOutputStream(Files.newOutputStream(packagePath), OUTPUT_BUFFER_SIZE);
+        this.writer = new ZipPackageWriter(this.outputStream, this.batchTemplate.getBatchPrefix());
+        this.packagePath = packagePath;
+        this.batchCount++;
+    }
+
+    /**
+     * Checks whether a batch has been started and not finished yet.
+     *
+     * @return True if a batch has been started and not finished yet.
+     */
+    public boolean isStarted()
+    {
+        return this.writer != null;
+    }
+
+    /**
+     * Adds a slide with the values from the given row of data to the current batch.
+     *
+     * @param data     The row of data with the values for the slide. This is not kept once the slide has been added.
+     * @param pagePath The path of the file that the page for this slide must end up in once the batch has been exported.
+     */
+    public void addSlide(Row data, Path pagePath) throws IOException
+    {
+        if (!this.isStarted()) throw new IllegalStateException("A batch must be started before slides are added to it.");
+        this.batchTemplate.writeSlide(this.context, this.writer, this.pagePaths.size(), data);
+        this.pagePaths.add(pagePath);
+    }
+
+    /**
+     * Gets the number of slides in the current batch.
+     *
+     * @return The number of slides in the current batch.
+     */
+    public int getSlideCount()
+    {
+        return this.pagePaths.size();
+    }
+
+    /**
+     * Gets the number of batches that have been started.
+     * This can be used to give each batch its own package.
+     *
+     * @return The number of batches that have been started.
+     */
+    public int getBatchCount()
+    {
+        return this.batchCount;
+    }
+
+    /**
+     * Gets the path to the package of the current batch.
+     *
+     * @return The path to the package of the current batch. Null if a batch hasn't been started.
+     */
+    public Path getPackagePath()
+    {
+        return this.packagePath;
+    }
+
+    /**
+     * Finishes the package of the current batch so that another batch can be started.
+     *
+     * @return The path of the file for the page of each slide in the batch, in the order of the slides.
+     */
+    public List<Path> finish() throws IOException
+    {
+        if (!this.isStarted()) throw new IllegalStateException("A batch must be started before it can be finished.");
+        if (this.pagePaths.isEmpty()) throw new IllegalStateException("A batch must have at least one slide.");
+
+        // Write the parts that list the slides and then the central directory:
+        this.batchTemplate.writeSlideList(this.context, this.writer, this.pagePaths.size());
+        this.writer.finish();
+        this.outputStream.close();
+
+        // Get ready for the next batch:
+        List<Path> pagePaths = this.pagePaths;
+        this.pagePaths = new ArrayList<>();
+        this.outputStream = null;
+        this.writer = null;
+        this.packagePath = null;
+        return pagePaths;
+    }
+
+    /**
+     * Closes the package of a batch that wasn't finished, leaving it incomplete.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (this.outputStream != null)
+        {
+            this.outputStream.close();
+            this.outputStream = null;
+            this.writer = null;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package io.nanovc.certificates.generation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This makes PowerPoint packages with a batch of certificates in them, one slide for each row of data.
+ * A batch can be exported to PDF once and then split up into a PDF for each certificate,
+ * which saves the cost of opening, exporting and closing a presentation for every certificate.
+ * <p>
+ * The template must have a single slide and all the template values must be on that slide.
+ * The first slide of each batch is the slide of the template, and each slide after it is a copy of the slide with its own values.
+ * The copies share everything else in the template (the layout, master, theme and media), but not the notes of the slide.
+ * The content types, the list of slides in the presentation and the relationships of the presentation are rewritten for each batch.
+ * <p>
+ * The batch template doesn't change once it is initialized, so it can be shared by any number of threads,
+ * as long as each thread makes its batches with its own {@link SlideBatch}.
+ */
+public class SlideBatchTemplate
+{
+    /**
+     * The path in the package to the content types.
+     */
+    public static final String CONTENT_TYPES_PATH = "[Content_Types].xml";
+
+    /**
+     * The path in the package to the presentation.
+     */
+    public static final String PRESENTATION_PATH = "ppt/presentation.xml";
+
+    /**
+     * The path in the package to the relationships of the presentation.
+     */
+    public static final String PRESENTATION_RELATIONSHIPS_PATH = "ppt/_rels/presentation.xml.rels";
+
+    /**
+     * The folder in the package that the presentation is in. Relationships of the presentation are relative to this.
+     */
+    private static final String PRESENTATION_FOLDER = "ppt/";
+
+    /**
+     * The content type of a slide.
+     */
+    private static final String SLIDE_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.presentationml.slide+xml";
+
+    /**
+     * The type of the relationship from the presentation to a slide.
+     */
+    private static final String SLIDE_RELATIONSHIP_TYPE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships/slide";
+
+    /**
+     * Finds each slide in the list of slides of the presentation.
+     */
+    private static final Pattern SLIDE_ID_PATTERN = Pattern.compile("<(?:\\w+:)?sldId\\b[^>]*?/>");
+
+    /**
+     * Finds the id attribute of a slide. The first group is the id.
+     */
+    private static final Pattern SLIDE_ID_ATTRIBUTE_PATTERN = Pattern.compile("\\sid=\"(\\d+)\"");
+
+    /**
+     * Finds the relationship id attribute of a slide, whatever the prefix for the relationships namespace is.
+     */
+    private static final Pattern SLIDE_RELATIONSHIP_ID_ATTRIBUTE_PATTERN = Pattern.compile("(\\s\\w+:id=\")[^\"]*(\")");
+
+    /**
+     * Finds the end of the list of slides of the presentation.
+     */
+    private static final Pattern SLIDE_ID_LIST_END_PATTERN = Pattern.compile("</(?:\\w+:)?sldIdLst>");
+
+    /**
+     * Finds the relationship from a slide to its notes, which can't be shared by the copies of the slide.
+     */
+    private static final Pattern NOTES_RELATIONSHIP_PATTERN = Pattern.compile("<Relationship\\b[^>]*?Type=\"[^\"]*/notesSlide\"[^>]*/>");
+
+    /**
+     * The template that the slide comes from.
+     */
+    public final ExplodedTemplate template;
+
+    /**
+     * The entries of the template that are the same in every batch, already serialized as the start of every batch.
+     * This is everything except the slide, the content types, the presentation and the relationships of the presentation.
+     */
+    protected ZipPackagePrefix batchPrefix;
+
+    /**
+     * The entry of the slide in the template.
+     */
+    protected ZipPackageEntry slideEntry;
+
+    /**
+     * The content of the slide, split up into literal UTF-8 bytes and the slots for the template values.
+     */
+    protected CompiledTemplateContent slideContent;
+
+    /**
+     * The entry of the relationships of the slide in the template. The copies of the slide are modelled on this.
+     */
+    protected ZipPackageEntry slideRelationshipsEntry;
+
+    /**
+     * The relationships for each copy of the slide, which are the relationships of the slide without its notes.
+     */
+    protected byte[] copiedSlideRelationships;
+
+    /**
+     * The entry of the content types in the template.
+     */
+    protected ZipPackageEntry contentTypesEntry;
+
+    /**
+     * The entry of the presentation in the template.
+     */
+    protected ZipPackageEntry presentationEntry;
+
+    /**
+     * The entry of the relationships of the presentation in the template.
+     */
+    protected ZipPackageEntry presentationRelationshipsEntry;
+
+    /**
+     * The content types in the template. The copies of the slide are added to these for each batch.
+     */
+    protected String contentTypes;
+
+    /**
+     * The presentation in the template. The copies of the slide are added to its list of slides for each batch.
+     */
+    protected String presentation;
+
+    /**
+     * The relationships of the presentation in the template. The copies of the slide are added to these for each batch.
+     */
+    protected String presentationRelationships;
+
+    /**
+     * The element for the slide in the list of slides of the presentation. Each copy of the slide gets a copy of this element.
+     */
+    protected String slideIdElement;
+
+    /**
+     * The id for the first copy of the slide in the list of slides of the presentation.
+     */
+    protected long firstCopiedSlideId;
+
+    /**
+     * Creates a new batch template for the slide of the given template.
+     *
+     * @param template The template with the slide to make batches of. It must already be initialized.
+     */
+    public SlideBatchTemplate(ExplodedTemplate template)
+    {
+        this.template = template;
+    }
+
+    /**
+     * Initializes the batch template by reading the parts of the template that change for each batch.
+     *
+     * @throws IOException If the template doesn't have a single slide with all the template values on it.
+     */
+    public void initialize() throws IOException
+    {
+        // Make sure that all the template values are on a single slide:
+        if (this.template.replacementEntries.length != 1)
+        {
+            throw new IOException("Batches can only be made when all the template values are in a single slide, but they are in " + this.template.replacementEntries.length + " files of " + this.template.templatePath);
+        }
+        this.slideEntry = this.template.replacementEntries[0];
+        this.slideContent = this.template.replacementContents[0];
+        if (!this.slideEntry.name.startsWith(PRESENTATION_FOLDER + "slides/"))
+        {
+            throw new IOException("Batches can only be made when the template values are on a slide, but they are in " + this.slideEntry.name + " of " + this.template.templatePath);
+        }
+
+        // Open the template so that we can read the parts that change for each batch:
+        try (ZipPackage templatePackage = new ZipPackage(this.template.templatePath))
+        {
+            // Read the parts that change for each batch:
+            this.contentTypesEntry = getRequiredEntry(templatePackage, CONTENT_TYPES_PATH);
+            this.presentationEntry = getRequiredEntry(templatePackage, PRESENTATION_PATH);
+            this.presentationRelationshipsEntry = getRequiredEntry(templatePackage, PRESENTATION_RELATIONSHIPS_PATH);
+            this.contentTypes = readContent(templatePackage, this.contentTypesEntry);
+            this.presentation = readContent(templatePackage, this.presentationEntry);
+            this.presentationRelationships = readContent(templatePackage, this.presentationRelationshipsEntry);
+
+            // Make sure that the template has a single slide, so that each batch only has the slides that we make:
+            Matcher slideIdMatcher = SLIDE_ID_PATTERN.matcher(this.presentation);
+            if (!slideIdMatcher.find()) throw new IOException("The presentation of the template " + this.template.templatePath + " has no slides.");
+            this.slideIdElement = slideIdMatcher.group();
+            if (slideIdMatcher.find()) throw new IOException("Batches can only be made from a template with a single slide, but " + this.template.templatePath + " has more.");
+
+            // The copies of the slide come after it in the list of slides:
+            Matcher slideIdAttributeMatcher = SLIDE_ID_ATTRIBUTE_PATTERN.matcher(this.slideIdElement);
+            if (!slideIdAttributeMatcher.find()) throw new IOException("The slide in the presentation of the template " + this.template.templatePath + " has no id.");
+            this.firstCopiedSlideId = Long.parseLong(slideIdAttributeMatcher.group(1)) + 1;
+
+            // Work out the relationships for the copies of the slide, which don't share the notes of the slide:
+            this.slideRelationshipsEntry = getRequiredEntry(templatePackage, getRelationshipsPath(this.slideEntry.name));
+            String slideRelationships = readContent(templatePackage, this.slideRelationshipsEntry);
+            this.copiedSlideRelationships = NOTES_RELATIONSHIP_PATTERN.matcher(slideRelationships).replaceAll("").getBytes(StandardCharsets.UTF_8);
+
+            // Serialize all the entries that are the same in every batch:
+            List<String> changingEntryNames = List.of(this.slideEntry.name, CONTENT_TYPES_PATH, PRESENTATION_PATH, PRESENTATION_RELATIONSHIPS_PATH);
+            ContentBuffer prefixBuffer = new ContentBuffer((int) Files.size(this.template.templatePath));
+            ZipPackageWriter prefixWriter = new ZipPackageWriter(prefixBuffer);
+            byte[] copyBuffer = new byte[64 * 1024];
+            for (ZipPackageEntry entry : templatePackage.getEntries())
+            {
+                if (changingEntryNames.contains(entry.name)) continue;
+
+                // Copy the entry without decompressing it:
+                prefixWriter.copyRawEntry(templatePackage, entry, copyBuffer);
+            }
+            this.batchPrefix = prefixWriter.toPrefix(prefixBuffer);
+        }
+    }
+
+    /**
+     * Creates a new batch for making packages from this batch template.
+     * Each thread that makes batches needs its own.
+     *
+     * @param context The context to write the values of each slide with. This must not be used by another thread at the same time.
+     * @return A new batch that hasn't been started yet. Close it when you are done making batches with it.
+     */
+    public SlideBatch createBatch(ExplodedTemplateContext context)
+    {
+        return new SlideBatch(this, context);
+    }
+
+    /**
+     * Writes a slide of a batch with the values from the given row of data.
+     *
+     * @param context    The context to write the values with.
+     * @param writer     The writer for the package of the batch.
+     * @param slideIndex The index of the slide in the batch. The first slide replaces the slide of the template and the others are copies of it.
+     * @param data       The row of data with the values for the slide.
+     */
+    void writeSlide(ExplodedTemplateContext context, ZipPackageWriter writer, int slideIndex, Row data) throws IOException
+    {
+        // Get the replacement values from the row of data, in the same order as the template values in the matcher:
+        String[] replacementValues = context.replacementValues;
+        context.replacementSchema.getCellsAsStrings(data, replacementValues);
+
+        // Write the slide with the values in the slots:
+        ContentBuffer contentBuffer = context.contentBuffer;
+        contentBuffer.reset();
+        this.slideContent.writeTo(replacementValues, context.replacementValuesAreSafe, contentBuffer, context.encoder);
+
+        // Check whether this is the slide of the template:
+        if (slideIndex == 0)
+        {
+            // The first slide keeps the name and relationships of the slide in the template:
+            writer.writeEntry(this.slideEntry, contentBuffer.getArray(), contentBuffer.size(), context.compressor);
+            return;
+        }
+
+        // Write the copy of the slide and its relationships:
+        String copiedSlidePath = getCopiedSlidePath(slideIndex);
+        writer.writeEntry(this.slideEntry.copyWithName(copiedSlidePath), contentBuffer.getArray(), contentBuffer.size(), context.compressor);
+        writer.writeEntry(this.slideRelationshipsEntry.copyWithName(getRelationshipsPath(copiedSlidePath)), this.copiedSlideRelationships, this.copiedSlideRelationships.length, context.compressor);
+    }
+
+    /**
+     * Writes the parts of the package that list the slides of the batch.
+     *
+     * @param context    The context to compress the parts with.
+     * @param writer     The writer for the package of the batch.
+     * @param slideCount The number of slides in the batch.
+     */
+    void writeSlideList(ExplodedTemplateContext context, ZipPackageWriter writer, int slideCount) throws IOException
+    {
+        // Describe each copy of the slide:
+        StringBuilder contentTypeOverrides = new StringBuilder();
+        StringBuilder slideIds = new StringBuilder();
+        StringBuilder slideRelationships = new StringBuilder();
+        for (int slideIndex = 1; slideIndex < slideCount; slideIndex++)
+        {
+            String copiedSlidePath = getCopiedSlidePath(slideIndex);
+            String relationshipId = "rIdBatchSlide" + slideIndex;
+            contentTypeOverrides.append("<Override PartName=\"/").append(copiedSlidePath).append("\" ContentType=\"").append(SLIDE_CONTENT_TYPE).append("\"/>");
+            String slideIdElement = SLIDE_ID_ATTRIBUTE_PATTERN.matcher(this.slideIdElement).replaceFirst(" id=\"" + (this.firstCopiedSlideId + slideIndex - 1) + "\"");
+            slideIds.append(SLIDE_RELATIONSHIP_ID_ATTRIBUTE_PATTERN.matcher(slideIdElement).replaceFirst("$1" + relationshipId + "$2"));
+            slideRelationships.append("<Relationship Id=\"").append(relationshipId).append("\" Type=\"").append(SLIDE_RELATIONSHIP_TYPE).append("\" Target=\"").append(copiedSlidePath.substring(PRESENTATION_FOLDER.length())).append("\"/>");
+        }
+
+        // Add the copies to the parts that list the slides:
+        writeContent(context, writer, this.contentTypesEntry, insertBefore(this.contentTypes, "</Types>", contentTypeOverrides));
+        writeContent(context, writer, this.presentationEntry, insertBefore(this.presentation, SLIDE_ID_LIST_END_PATTERN, slideIds));
+        writeContent(context, writer, this.presentationRelationshipsEntry, insertBefore(this.presentationRelationships, "</Relationships>", slideRelationships));
+    }
+
+    /**
+     * Gets the prefix that every batch starts with.
+     *
+     * @return The entries of the template that are the same in every batch, already serialized.
+     */
+    ZipPackagePrefix getBatchPrefix()
+    {
+        return this.batchPrefix;
+    }
+
+    /**
+     * Gets the path in the package for a copy of the slide. The copies are next to the slide of the template.
+     *
+     * @param slideIndex The index of the slide in the batch, from 1 for the first copy.
+     * @return The path in the package for the copy of the slide.
+     */
+    protected String getCopiedSlidePath(int slideIndex)
+    {
+        String slideFolder = this.slideEntry.name.substring(0, this.slideEntry.name.lastIndexOf('/') + 1);
+        return slideFolder + "batchSlide" + slideIndex + ".xml";
+    }
+
+    /**
+     * Gets the path in the package for the relationships of the given part.
+     * eg: "ppt/slides/_rels/slide1.xml.rels" for "ppt/slides/slide1.xml"
+     *
+     * @param partPath The path in the package of the part.
+     * @return The path in the package for the relationships of the part.
+     */
+    protected static String getRelationshipsPath(String partPath)
+    {
+        int nameStart = partPath.lastIndexOf('/') + 1;
+        return partPath.substring(0, nameStart) + "_rels/" + partPath.substring(nameStart) + ".rels";
+    }
+
+    /**
+     * Gets an entry that must be in the template.
+     *
+     * @param templatePackage The package of the template.
+     * @param name            The name of the entry.
+     * @return The entry.
+     * @throws IOException If the template doesn't have the entry.
+     */
+    private ZipPackageEntry getRequiredEntry(ZipPackage templatePackage, String name) throws IOException
+    {
+        ZipPackageEntry entry = templatePackage.getEntry(name);
+        if (entry == null) throw new IOException("Batches can't be made because the template " + this.template.templatePath + " doesn't have: " + name);
+        return entry;
+    }
+
+    /**
+     * Reads the content of an entry as UTF-8 text.
+     *
+     * @param templatePackage The package of the template.
+     * @param entry           The entry to read.
+     * @return The content of the entry.
+     */
+    private static String readContent(ZipPackage templatePackage, ZipPackageEntry entry) throws IOException
+    {
+        try (InputStream inputStream = templatePackage.getInputStream(entry))
+        {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes an entry with the given text content.
+     *
+     * @param context       The context to compress the content with.
+     * @param writer        The writer for the package of the batch.
+     * @param templateEntry The entry in the template that we are writing new content for.
+     * @param content       The new content of the entry.
+     */
+    private static void writeContent(ExplodedTemplateContext context, ZipPackageWriter writer, ZipPackageEntry templateEntry, String content) throws IOException
+    {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        writer.writeEntry(templateEntry, bytes, bytes.length, context.compressor);
+    }
+
+    /**
+     * Inserts text before the last occurrence of the given end tag.
+     *
+     * @param content The content to insert into.
+     * @param endTag  The end tag to insert before.
+     * @param text    The text to insert.
+     * @return The content with the text inserted.
+     */
+    private static String insertBefore(String content, String endTag, CharSequence text) throws IOException
+    {
+        int index = content.lastIndexOf(endTag);
+        if (index < 0) throw new IOException("Batches can't be made because " + endTag + " was not found in the template.");
+        return content.substring(0, index) + text + content.substring(index);
+    }
+
+    /**
+     * Inserts text before the first match of the given end tag pattern.
+     *
+     * @param content       The content to insert into.
+     * @param endTagPattern The pattern for the end tag to insert before.
+     * @param text          The text to insert.
+     * @return The content with the text inserted.
+     */
+    private static String insertBefore(String content, Pattern endTagPattern, CharSequence text) throws IOException
+    {
+        Matcher matcher = endTagPattern.matcher(content);
+        if (!matcher.find()) throw new IOException("Batches can't be made because the list of slides was not found in the template.");
+        return content.substring(0, matcher.start()) + text + content.substring(matcher.start());
+    }
+}
@@ -0,0 +1,123 @@
+package io.nanovc.certificates.generation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This splits the {@link RowFilterConfig row filters} between the rows of certificate data and the rows after the other data sources are joined with them.
+ * The filters on columns that the certificate data has are pushed down in front of the joins, so that the rows they reject are never joined.
+ * The filters on columns that only the joined data sources supply are applied to the joined rows, because the certificate data doesn't have those columns.
+ * <p>
+ * The filters are split when the first row of certificate data comes through, because that is when its columns are known.
+ * Each side is a {@link RowFilter} that counts the rows that it keeps and rejects, so that they can be reported.
+ * A split filter is not thread safe, so each thread should have its own.
+ */
+public class SplitRowFilter
+{
+    /**
+     * The filters that must all match for a row to be kept.
+     */
+    private final List<RowFilterConfig> filterConfigs;
+
+    /**
+     * The table of certificate data that the filters were split for. Null until they are split.
+     */
+    private Table splitTable;
+
+    /**
+     * The filter for the rows of certificate data, before they are joined. Null if none of the filters are on the columns of the certificate data.
+     */
+    private RowFilter pushedDownFilter;
+
+    /**
+     * The filter for the joined rows. Null if all the filters are on the columns of the certificate data.
+     */
+    private RowFilter joinedFilter;
+
+    /**
+     * Creates a new filter that is split when the first row of certificate data comes through.
+     *
+     * @param filterConfigs The filters that must all match for a row to be kept.
+     */
+    public SplitRowFilter(List<RowFilterConfig> filterConfigs)
+    {
+        this.filterConfigs = filterConfigs;
+    }
+
+    /**
+     * Splits the filters between the certificate data and the joined rows, based on the columns of the given table of certificate data.
+     * This is done automatically for the first row of certificate data. Other tables of certificate data must have the same columns, in any order.
+     *
+     * @param table The table of certificate data, before it is joined with the other data sources.
+     * @throws IllegalArgumentException If a filter doesn't have a column name or a value to compare with.
+     */
+    public void split(Table table)
+    {
+        // Check whether we have already split the filters:
+        if (this.splitTable != null) return;
+
+        // Push the filters on the columns of the certificate data down, and leave the rest for the joined rows:
+        List<RowFilterConfig> pushedDownFilterConfigs = new ArrayList<>();
+        List<RowFilterConfig> joinedFilterConfigs = new ArrayList<>();
+        for (RowFilterConfig filterConfig : this.filterConfigs)
+        {
+            boolean isOnCertificateData = filterConfig.columnName != null && table.columns.getColumn(filterConfig.columnName) != null;
+            (isOnCertificateData ? pushedDownFilterConfigs : joinedFilterConfigs).add(filterConfig);
+        }
+        this.pushedDownFilter = pushedDownFilterConfigs.isEmpty() ? null : new RowFilter(pushedDownFilterConfigs);
+        this.joinedFilter = joinedFilterConfigs.isEmpty() ? null : new RowFilter(joinedFilterConfigs);
+        this.splitTable = table;
+    }
+
+    /**
+     * Gets the filter for the rows of certificate data, before they are joined.
+     *
+     * @return The filter for the rows of certificate data. Null if the filters haven't been split yet or none of them are on the columns of the certificate data.
+     */
+    public RowFilter getPushedDownFilter()
+    {
+        return this.pushedDownFilter;
+    }
+
+    /**
+     * Gets the filter for the joined rows.
+     *
+     * @return The filter for the joined rows. Null if the filters haven't been split yet or all of them are on the columns of the certificate data.
+     */
+    public RowFilter getJoinedFilter()
+    {
+        return this.joinedFilter;
+    }
+
+    /**
+     * Creates a row handler for the rows of certificate data, before they are joined, that only passes the rows that match the pushed down filters on to the given handler.
+     * The filters are split when the first row comes through.
+     *
+     * @param downstream The handler for the rows that are kept, which joins them with the other data sources.
+     * @return The handler that filters the rows of certificate data.
+     */
+    public RowHandler createPushedDownRowHandler(RowHandler downstream)
+    {
+        return row ->
+        {
+            this.split(row.getTable());
+            if (this.pushedDownFilter == null || this.pushedDownFilter.accepts(row)) downstream.handleRow(row);
+        };
+    }
+
+    /**
+     * Creates a row handler for the joined rows that only passes the rows that match the rest of the filters on to the given handler.
+     *
+     * @param downstream The handler for the joined rows that are kept.
+     * @return The handler that filters the joined rows.
+     * @throws IllegalStateException If a joined row comes through before the filters are split.
+     */
+    public RowHandler createJoinedRowHandler(RowHandler downstream)
+    {
+        return row ->
+        {
+            if (this.splitTable == null) throw new IllegalStateException("The row filters must be split on the certificate data before the joined rows are filtered.");
+            if (this.joinedFilter == null || this.joinedFilter.accepts(row)) downstream.handleRow(row);
+        };
+    }
+}
@@ -0,0 +1,458 @@
+package io.nanovc.certificates.generation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * A cache of compact binary snapshots of tables that were parsed from source files, so that later runs don't need to parse the source files again.
+ * Parsing a spreadsheet means unzipping it and parsing its XML, which is slow, while a snapshot is memory mapped and decoded directly.
+ * <p>
+ * Each snapshot is keyed by the path to the source file and a variant (eg: the sheet and header row that were read),
+ * and it remembers the size, the last modified time and a CRC32C hash of the content of the source file.
+ * A snapshot is only used if all of these still match the source file, otherwise the source file is parsed again and the snapshot is replaced.
+ * <p>
+ * The values of each column are stored once in a dictionary (keeping their type), followed by a code for each row,
+ * so repeated values (like course names and training centres) take little space and are shared when the snapshot is loaded.
+ * The cache is thread safe, so several sources can be loaded through it at the same time.
+ */
+public class TableSnapshotCache
+{
+    /**
+     * The magic number at the start of each snapshot: "NVCT".
+     */
+    private static final int MAGIC = 0x4E564354;
+
+    /**
+     * The version of the snapshot format. Snapshots with another version are ignored.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The code for a cell that is past the end of its row.
+     */
+    private static final int MISSING_CODE = -1;
+
+    /**
+     * The code for a cell with a null value.
+     */
+    private static final int NULL_CODE = -2;
+
+    /**
+     * The type tag for a text value.
+     */
+    private static final byte TEXT_TYPE = 0;
+
+    /**
+     * The type tag for a number value.
+     */
+    private static final byte NUMBER_TYPE = 1;
+
+    /**
+     * The type tag for a date value.
+     */
+    private static final byte DATE_TYPE = 2;
+
+    /**
+     * The type tag for a boolean value.
+     */
+    private static final byte BOOLEAN_TYPE = 3;
+
+    /**
+     * The size of the window of a source file that is mapped at a time while it is hashed.
+     */
+    private static final long HASH_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The folder where the snapshots are stored.
+     */
+    private final Path cacheFolder;
+
+    /**
+     * Creates a cache that stores the snapshots in the given folder.
+     * The folder is created when the first snapshot is saved.
+     *
+     * @param cacheFolder The folder where the snapshots are stored.
+     */
+    public TableSnapshotCache(Path cacheFolder)
+    {
+        this.cacheFolder = cacheFolder;
+    }
+
+    /**
+     * Gets the folder where the snapshots are stored.
+     *
+     * @return The folder where the snapshots are stored.
+     */
+    public Path getCacheFolder()
+    {
+        return this.cacheFolder;
+    }
+
+    /**
+     * Gets the table for the source file from its snapshot, or parses the source file and saves a snapshot if there isn't a valid one.
+     * Problems with the snapshot itself are never fatal, the source file is just parsed instead.
+     *
+     * @param sourcePath The path to the source file.
+     * @param variant    What was read from the source file. eg: "Sheet 0|Header -1"
+     * @param parser     Parses the table from the source file if there isn't a valid snapshot.
+     * @return The table for the source file.
+     */
+    public Table getOrParse(Path sourcePath, String variant, Supplier<Table> parser)
+    {
+        // Describe the source file as it is now:
+        SourceState sourceState;
+        try
+        {
+            sourceState = SourceState.of(sourcePath);
+        }
+        catch (IOException e)
+        {
+            // We can't look at the source file, so let the parser report the problem:
+            return parser.get();
+        }
+
+        // Try to load the snapshot:
+        Path snapshotPath = this.getSnapshotPath(sourcePath, variant);
+        try
+        {
+            Table table = this.load(snapshotPath, sourceState, variant);
+            if (table != null) return table;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // The snapshot is damaged, so parse the source file again.
+        }
+
+        // Parse the source file and save a snapshot for next time:
+        Table table = parser.get();
+        try
+        {
+            this.save(snapshotPath, sourceState, variant, table);
+        }
+        catch (IOException e)
+        {
+            // The snapshot is only an optimisation, so carry on without it.
+        }
+        return table;
+    }
+
+    /**
+     * Gets the path of the snapshot for the given source file and variant.
+     *
+     * @param sourcePath The path to the source file.
+     * @param variant    What was read from the source file.
+     * @return The path of the snapshot.
+     */
+    public Path getSnapshotPath(Path sourcePath, String variant)
+    {
+        CRC32C keyHash = new CRC32C();
+        keyHash.update((sourcePath.toAbsolutePath().normalize() + "\n" + variant).getBytes(StandardCharsets.UTF_8));
+        return this.cacheFolder.resolve(sourcePath.getFileName() + "." + Long.toHexString(keyHash.getValue()) + ".snapshot");
+    }
+
+    /**
+     * Loads the table from the snapshot if it is still valid for the source file.
+     *
+     * @param snapshotPath The path of the snapshot.
+     * @param sourceState  The state of the source file now.
+     * @param variant      What was read from the source file.
+     * @return The table from the snapshot. Null if there isn't a snapshot or it is out of date.
+     */
+    private Table load(Path snapshotPath, SourceState sourceState, String variant) throws IOException
+    {
+        if (!Files.isRegularFile(snapshotPath)) return null;
+
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ))
+        {
+            // Map the whole snapshot:
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // Check that the snapshot is for this source file as it is now:
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+            if (!sourceState.path.equals(readString(buffer)) || !variant.equals(readString(buffer))) return null;
+            if (buffer.getLong() != sourceState.size || buffer.getLong() != sourceState.lastModifiedMillis || buffer.getInt() != sourceState.contentHash) return null;
+
+            // Read the columns:
+            Table table = new Table();
+            int columnCount = buffer.getInt();
+            for (int i = 0; i < columnCount; i++)
+            {
+                table.columns.addColumn(readString(buffer));
+            }
+
+            // Read the width of each row:
+            int rowCount = buffer.getInt();
+            int storedColumnCount = buffer.getInt();
+            int[] rowWidths = new int[rowCount];
+            for (int rowIndex = 0; rowIndex < rowCount; rowIndex++)
+            {
+                rowWidths[rowIndex] = buffer.getInt();
+            }
+
+            // Read the cells of each column, through its dictionary:
+            Object[][] cells = new Object[storedColumnCount][rowCount];
+            for (int columnIndex = 0; columnIndex < storedColumnCount; columnIndex++)
+            {
+                Object[] dictionary = new Object[buffer.getInt()];
+                for (int i = 0; i < dictionary.length; i++)
+                {
+                    dictionary[i] = readValue(buffer);
+                }
+                for (int rowIndex = 0; rowIndex < rowCount; rowIndex++)
+                {
+                    int code = buffer.getInt();
+                    cells[columnIndex][rowIndex] = code >= 0 ? dictionary[code] : null;
+                }
+            }
+
+            // Fill the rows:
+            for (int rowIndex = 0; rowIndex < rowCount; rowIndex++)
+            {
+                Object[] values = new Object[rowWidths[rowIndex]];
+                for (int columnIndex = 0; columnIndex < values.length; columnIndex++)
+                {
+                    values[columnIndex] = cells[columnIndex][rowIndex];
+                }
+                Row row = table.rows.addRow();
+                table.rows.setCells(row.getRowIndex(), values);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Saves a snapshot of the table.
+     * The snapshot is written to a temporary file first and then moved into place, so a snapshot is never half written.
+     *
+     * @param snapshotPath The path of the snapshot.
+     * @param sourceState  The state of the source file that the table was parsed from.
+     * @param variant      What was read from the source file.
+     * @param table        The table to save.
+     */
+    private void save(Path snapshotPath, SourceState sourceState, String variant, Table table) throws IOException
+    {
+        Files.createDirectories(this.cacheFolder);
+        Path temporaryPath = Files.createTempFile(this.cacheFolder, snapshotPath.getFileName().toString(), ".tmp");
+        try
+        {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath), 64 * 1024)))
+            {
+                // Write the key and the state of the source file:
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                writeString(output, sourceState.path);
+                writeString(output, variant);
+                output.writeLong(sourceState.size);
+                output.writeLong(sourceState.lastModifiedMillis);
+                output.writeInt(sourceState.contentHash);
+
+                // Write the columns:
+                output.writeInt(table.columns.getColumnCount());
+                for (Column column : table.columns)
+                {
+                    writeString(output, column.name);
+                }
+
+                // Write the width of each row:
+                int rowCount = table.rows.getRowCount();
+                int storedColumnCount = 0;
+                output.writeInt(rowCount);
+                for (int rowIndex = 0; rowIndex < rowCount; rowIndex++)
+                {
+                    storedColumnCount = Math.max(storedColumnCount, table.rows.getWidth(rowIndex));
+                }
+                output.writeInt(storedColumnCount);
+                for (int rowIndex = 0; rowIndex < rowCount; rowIndex++)
+                {
+                    output.writeInt(table.rows.getWidth(rowIndex));
+                }
+
+                // Write the cells of each column, through a dictionary:
+                int[] codes = new int[rowCount];
+                for (int columnIndex = 0; columnIndex < storedColumnCount; columnIndex++)
+                {
+                    // Give each distinct value a code:
+                    Map<Object, Integer> dictionary = new HashMap<>();
+                    for (int rowIndex = 0; rowIndex < rowCount; rowIndex++)
+                    {
+                        if (columnIndex >= table.rows.getWidth(rowIndex))
+                        {
+                            codes[rowIndex] = MISSING_CODE;
+                        }
+                        else
+                        {
+                            Object value = table.rows.getCell(rowIndex, columnIndex);
+                            codes[rowIndex] = value == null ? NULL_CODE : dictionary.computeIfAbsent(value, v -> dictionary.size());
+                        }
+                    }
+
+                    // Write the dictionary in code order and then the codes:
+                    Object[] dictionaryValues = new Object[dictionary.size()];
+                    dictionary.forEach((value, code) -> dictionaryValues[code] = value);
+                    output.writeInt(dictionaryValues.length);
+                    for (Object value : dictionaryValues)
+                    {
+                        writeValue(output, value);
+                    }
+                    for (int rowIndex = 0; rowIndex < rowCount; rowIndex++)
+                    {
+                        output.writeInt(codes[rowIndex]);
+                    }
+                }
+            }
+
+            // Move the snapshot into place:
+            Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * Writes a typed value as its type tag followed by the value.
+     */
+    private static void writeValue(DataOutputStream output, Object value) throws IOException
+    {
+        if (value instanceof BigDecimal)
+        {
+            output.writeByte(NUMBER_TYPE);
+            writeString(output, value.toString());
+        }
+        else if (value instanceof LocalDateTime)
+        {
+            output.writeByte(DATE_TYPE);
+            writeString(output, value.toString());
+        }
+        else if (value instanceof Boolean)
+        {
+            output.writeByte(BOOLEAN_TYPE);
+            output.writeBoolean((Boolean) value);
+        }
+        else
+        {
+            output.writeByte(TEXT_TYPE);
+            writeString(output, value.toString());
+        }
+    }
+
+    /**
+     * Reads a typed value that was written by {@link #writeValue}.
+     */
+    private static Object readValue(MappedByteBuffer buffer) throws IOException
+    {
+        byte type = buffer.get();
+        switch (type)
+        {
+            case TEXT_TYPE:
+                return readString(buffer);
+            case NUMBER_TYPE:
+                return new BigDecimal(readString(buffer));
+            case DATE_TYPE:
+                return LocalDateTime.parse(readString(buffer));
+            case BOOLEAN_TYPE:
+                return buffer.get() != 0;
+            default:
+                throw new IOException("Unknown type of value in snapshot: " + type);
+        }
+    }
+
+    /**
+     * Writes a string as its length in UTF-8 bytes followed by the bytes.
+     */
+    private static void writeString(DataOutputStream output, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads a string that was written by {@link #writeString}.
+     */
+    private static String readString(MappedByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The state of a source file that a snapshot is valid for.
+     */
+    private static final class SourceState
+    {
+        /**
+         * The absolute path to the source file.
+         */
+        final String path;
+
+        /**
+         * The size of the source file in bytes.
+         */
+        final long size;
+
+        /**
+         * The time that the source file was last modified.
+         */
+        final long lastModifiedMillis;
+
+        /**
+         * The CRC32C hash of the content of the source file.
+         */
+        final int contentHash;
+
+        /**
+         * Creates the state of a source file.
+         */
+        private SourceState(String path, long size, long lastModifiedMillis, int contentHash)
+        {
+            this.path = path;
+            this.size = size;
+            this.lastModifiedMillis = lastModifiedMillis;
+            this.contentHash = contentHash;
+        }
+
+        /**
+         * Gets the state of the source file now.
+         *
+         * @param sourcePath The path to the source file.
+         * @return The state of the source file now.
+         */
+        static SourceState of(Path sourcePath) throws IOException
+        {
+            try (FileChannel channel = FileChannel.open(sourcePath, StandardOpenOption.READ))
+            {
+                // Hash the content of the file a window at a time:
+                long size = channel.size();
+                CRC32C contentHash = new CRC32C();
+                for (long position = 0; position < size; position += HASH_WINDOW_SIZE)
+                {
+                    contentHash.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(HASH_WINDOW_SIZE, size - position)));
+                }
+
+                return new SourceState(
+                    sourcePath.toAbsolutePath().normalize().toString(),
+                    size,
+                    Files.getLastModifiedTime(sourcePath).toMillis(),
+                    (int) contentHash.getValue()
+                );
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package io.nanovc.certificates.generation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This finds all the template values in some content in a single left-to-right pass.
+ * It is an Aho-Corasick automaton that is compiled once from all the template values that we want to find.
+ * Matches are reported leftmost-longest and never overlap, so a replacement value is never searched again for other template values.
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm">Aho-Corasick Algorithm</a>
+ */
+public class TemplateValueMatcher
+{
+    /**
+     * The state that we start at (the root of the trie).
+     */
+    private static final int ROOT_STATE = 0;
+
+    /**
+     * The template values that this matcher finds.
+     * The index of the value is the index that is reported for a match.
+     */
+    private final String[] templateValues;
+
+    /**
+     * The characters for the transitions out of each state, sorted so that we can binary search them.
+     */
+    private final char[][] transitionCharacters;
+
+    /**
+     * The target states for the transitions out of each state, aligned with {@link #transitionCharacters}.
+     */
+    private final int[][] transitionTargets;
+
+    /**
+     * The state to fall back to for each state when there is no transition for the next character.
+     */
+    private final int[] failureStates;
+
+    /**
+     * The depth of each state in the trie, which is the length of the prefix that it represents.
+     */
+    private final int[] depths;
+
+    /**
+     * The index of the longest template value that ends at each state (including through the failure links).
+     * This is -1 if no template value ends at the state.
+     */
+    private final int[] longestOutputs;
+
+    /**
+     * Creates a new matcher for the given compiled automaton.
+     * Use {@link #compile(List)} to create a matcher.
+     */
+    private TemplateValueMatcher(String[] templateValues, char[][] transitionCharacters, int[][] transitionTargets, int[] failureStates, int[] depths, int[] longestOutputs)
+    {
+        this.templateValues = templateValues;
+        this.transitionCharacters = transitionCharacters;
+        this.transitionTargets = transitionTargets;
+        this.failureStates = failureStates;
+        this.depths = depths;
+        this.longestOutputs = longestOutputs;
+    }
+
+    /**
+     * Compiles a matcher for the given template values.
+     * If the same template value is given more than once then the first index is the one that is reported.
+     *
+     * @param templateValues The template values to find. Empty values are ignored.
+     * @return The compiled matcher for the template values.
+     */
+    public static TemplateValueMatcher compile(List<String> templateValues)
+    {
+        // Build the trie using growable structures first:
+        List<StringBuilder> characters = new ArrayList<>();
+        List<List<Integer>> targets = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+
+        // Create the root state:
+        characters.add(new StringBuilder());
+        targets.add(new ArrayList<>());
+        depths.add(0);
+        outputs.add(-1);
+
+        // Add each template value to the trie:
+        for (int valueIndex = 0; valueIndex < templateValues.size(); valueIndex++)
+        {
+            // Get the template value:
+            String templateValue = templateValues.get(valueIndex);
+
+            // Skip empty values because they would match everywhere:
+            if (templateValue == null || templateValue.isEmpty()) continue;
+
+            // Walk down the trie, creating states as we go:
+            int state = ROOT_STATE;
+            for (int i = 0; i < templateValue.length(); i++)
+            {
+                char c = templateValue.charAt(i);
+                int characterIndex = characters.get(state).indexOf(String.valueOf(c));
+                if (characterIndex >= 0)
+                {
+                    // We already have a transition for this character.
+                    state = targets.get(state).get(characterIndex);
+                }
+                else
+                {
+                    // We need a new state for this character.
+                    int newState = characters.size();
+                    characters.add(new StringBuilder());
+                    targets.add(new ArrayList<>());
+                    depths.add(i + 1);
+                    outputs.add(-1);
+
+                    // Link the new state:
+                    characters.get(state).append(c);
+                    targets.get(state).add(newState);
+                    state = newState;
+                }
+            }
+
+            // Flag that the template value ends at this state (keeping the first one for duplicates):
+            if (outputs.get(state) < 0) outputs.set(state, valueIndex);
+        }
+        // Now we have the trie.
+
+        // Freeze the transitions into sorted arrays:
+        int stateCount = characters.size();
+        char[][] transitionCharacters = new char[stateCount][];
+        int[][] transitionTargets = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++)
+        {
+            // Get the characters and targets for this state:
+            char[] stateCharacters = characters.get(state).toString().toCharArray();
+            int[] stateTargets = new int[stateCharacters.length];
+
+            // Sort the transitions by character:
+            Integer[] order = new Integer[stateCharacters.length];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Character.compare(stateCharacters[a], stateCharacters[b]));
+            char[] sortedCharacters = new char[stateCharacters.length];
+            for (int i = 0; i < order.length; i++)
+            {
+                sortedCharacters[i] = stateCharacters[order[i]];
+                stateTargets[i] = targets.get(state).get(order[i]);
+            }
+
+            transitionCharacters[state] = sortedCharacters;
+            transitionTargets[state] = stateTargets;
+        }
+
+        // Compute the failure links and the longest outputs breadth first:
+        int[] failureStates = new int[stateCount];
+        int[] depthArray = depths.stream().mapToInt(Integer::intValue).toArray();
+        int[] longestOutputs = outputs.stream().mapToInt(Integer::intValue).toArray();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int target : transitionTargets[ROOT_STATE])
+        {
+            failureStates[target] = ROOT_STATE;
+            queue.add(target);
+        }
+        while (!queue.isEmpty())
+        {
+            int state = queue.poll();
+            for (int i = 0; i < transitionCharacters[state].length; i++)
+            {
+                char c = transitionCharacters[state][i];
+                int target = transitionTargets[state][i];
+
+                // Find the longest proper suffix that can continue with this character:
+                int fallback = failureStates[state];
+                while (fallback != ROOT_STATE && findTransition(transitionCharacters, transitionTargets, fallback, c) < 0)
+                {
+                    fallback = failureStates[fallback];
+                }
+                int fallbackTarget = findTransition(transitionCharacters, transitionTargets, fallback, c);
+                failureStates[target] = fallbackTarget >= 0 ? fallbackTarget : ROOT_STATE;
+
+                // If no template value ends exactly here then the longest one is the one from the suffix:
+                if (longestOutputs[target] < 0) longestOutputs[target] = longestOutputs[failureStates[target]];
+
+                queue.add(target);
+            }
+        }
+
+        return new TemplateValueMatcher(templateValues.toArray(new String[0]), transitionCharacters, transitionTargets, failureStates, depthArray, longestOutputs);
+    }
+
+    /**
+     * Finds the target of the transition out of the given state for the given character.
+     *
+     * @return The target state. -1 if there is no transition for the character.
+     */
+    private static int findTransition(char[][] transitionCharacters, int[][] transitionTargets, int state, char c)
+    {
+        int index = Arrays.binarySearch(transitionCharacters[state], c);
+        return index >= 0 ? transitionTargets[state][index] : -1;
+    }
+
+    /**
+     * Moves from the given state with the given character, following failure links as necessary.
+     *
+     * @param state The state that we are in.
+     * @param c     The next character.
+     * @return The next state.
+     */
+    private int step(int state, char c)
+    {
+        while (true)
+        {
+            int target = findTransition(this.transitionCharacters, this.transitionTargets, state, c);
+            if (target >= 0) return target;
+            if (state == ROOT_STATE) return ROOT_STATE;
+            state = this.failureStates[state];
+        }
+    }
+
+    /**
+     * Gets the number of template values that this matcher was compiled from.
+     *
+     * @return The number of template values that this matcher was compiled from.
+     */
+    public int getTemplateValueCount()
+    {
+        return this.templateValues.length;
+    }
+
+    /**
+     * Finds all the template values in the content.
+     * Matches are reported from left to right, choosing the longest template value when several start at the same position.
+     *
+     * @param content The content to search.
+     * @param handler The handler to call for each match that is found.
+     */
+    public void findMatches(CharSequence content, MatchHandler handler)
+    {
+        int length = content.length();
+        int state = ROOT_STATE;
+
+        // Keep track of the best match that we have found but not reported yet:
+        int pendingStart = -1;
+        int pendingEnd = -1;
+        int pendingValueIndex = -1;
+
+        int position = 0;
+        while (true)
+        {
+            if (position < length)
+            {
+                // Move to the next state:
+                state = this.step(state, content.charAt(position));
+                position++;
+
+                // Check whether a template value ends here:
+                int valueIndex = this.longestOutputs[state];
+                if (valueIndex >= 0)
+                {
+                    // A template value ends here.
+                    int start = position - this.templateValues[valueIndex].length();
+
+                    // Keep it if it starts earlier than, or is longer than, the pending match:
+                    if (pendingValueIndex < 0 || start <= pendingStart)
+                    {
+                        pendingStart = start;
+                        pendingEnd = position;
+                        pendingValueIndex = valueIndex;
+                    }
+                }
+
+                // Check whether any future match could still start at or before the pending match:
+                if (pendingValueIndex < 0 || pendingStart >= position - this.depths[state]) continue;
+            }
+            else if (pendingValueIndex < 0)
+            {
+                // We have reached the end and there is nothing left to report.
+                break;
+            }
+            // If we get here then the pending match is final.
+
+            // Report the match:
+            handler.onMatch(pendingStart, pendingEnd, pendingValueIndex);
+
+            // Carry on searching directly after the match so that matches never overlap:
+            position = pendingEnd;
+            state = ROOT_STATE;
+            pendingStart = -1;
+            pendingEnd = -1;
+            pendingValueIndex = -1;
+        }
+    }
+
+    /**
+     * Replaces all the template values in the content with the given replacement values in a single pass.
+     *
+     * @param content           The content to perform the replacements in.
+     * @param replacementValues The replacement values, indexed by the template value that they replace.
+     * @param output            The output to append the replaced content to.
+     */
+    public void replace(String content, String[] replacementValues, StringBuilder output)
+    {
+        // Keep track of where the last match ended:
+        int[] copiedUpTo = {0};
+
+        // Find all the matches:
+        this.findMatches(
+            content,
+            (start, end, valueIndex) ->
+            {
+                // Copy the content before the match:
+                output.append(content, copiedUpTo[0], start);
+
+                // Write the replacement value:
+                output.append(replacementValues[valueIndex]);
+
+                copiedUpTo[0] = end;
+            }
+        );
+
+        // Copy the content after the last match:
+        output.append(content, copiedUpTo[0], content.length());
+    }
+
+    /**
+     * A handler for matches that are found by a {@link TemplateValueMatcher}.
+     */
+    @FunctionalInterface
+    public interface MatchHandler
+    {
+        /**
+         * Called when a template value is found.
+         *
+         * @param start      The index in the content where the match starts (inclusive).
+         * @param end        The index in the content where the match ends (exclusive).
+         * @param valueIndex The index of the template value that was found.
+         */
+        void onMatch(int start, int end, int valueIndex);
+    }
+}
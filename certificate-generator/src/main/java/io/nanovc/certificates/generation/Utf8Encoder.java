@@ -0,0 +1,178 @@
+package io.nanovc.certificates.generation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This encodes text as UTF-8 straight into an output stream.
+ * It can also escape the text for XML in the same pass, so that values can be written into the XML of a template.
+ * It reuses the same buffer for every value so that encoding doesn't allocate any memory.
+ * An encoder is not thread safe, so each thread should have its own.
+ */
+public class Utf8Encoder
+{
+    /**
+     * The size of the buffer that we encode into before writing to the output stream.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The byte that we write for characters that can't be encoded, the same as {@link String#getBytes}.
+     */
+    private static final byte REPLACEMENT_BYTE = '?';
+
+    /**
+     * The longest escape sequence that we write for XML.
+     */
+    private static final int MAX_BYTES_PER_ESCAPE = 6;
+
+    /**
+     * The escape sequences for XML.
+     */
+    private static final byte[] AMPERSAND_ESCAPE = "&amp;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LESS_THAN_ESCAPE = "&lt;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] GREATER_THAN_ESCAPE = "&gt;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUOTE_ESCAPE = "&quot;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] APOSTROPHE_ESCAPE = "&apos;".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The buffer that we encode into before writing to the output stream.
+     */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /**
+     * Encodes the text as UTF-8 and writes it to the output stream.
+     *
+     * @param text   The text to encode.
+     * @param output The output stream to write the encoded bytes to.
+     */
+    public void write(CharSequence text, OutputStream output) throws IOException
+    {
+        this.write(text, output, false);
+    }
+
+    /**
+     * Encodes the text as UTF-8, escaping it for XML, and writes it to the output stream.
+     * The characters that are special in XML text and attributes are written as entities,
+     * and control characters that are not allowed in XML are dropped.
+     *
+     * @param text   The text to escape and encode.
+     * @param output The output stream to write the encoded bytes to.
+     */
+    public void writeXmlEscaped(CharSequence text, OutputStream output) throws IOException
+    {
+        this.write(text, output, true);
+    }
+
+    /**
+     * Checks whether the text has any characters that need to be escaped for XML.
+     * Text that doesn't need escaping can be written with {@link #write} instead of {@link #writeXmlEscaped}.
+     *
+     * @param text The text to check.
+     * @return True if the text needs to be escaped for XML. False if it can be written as it is.
+     */
+    public static boolean needsXmlEscaping(CharSequence text)
+    {
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c == '&' || c == '<' || c == '>' || c == '"' || c == '\'' || isDisallowedInXml(c)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the character is a control character that is not allowed in XML 1.0.
+     *
+     * @param c The character to check.
+     * @return True if the character is not allowed in XML.
+     */
+    private static boolean isDisallowedInXml(char c)
+    {
+        return c < 0x20 && c != '\t' && c != '\n' && c != '\r';
+    }
+
+    /**
+     * Encodes the text as UTF-8 and writes it to the output stream.
+     *
+     * @param text      The text to encode.
+     * @param output    The output stream to write the encoded bytes to.
+     * @param escapeXml True to escape the text for XML while we encode it.
+     */
+    private void write(CharSequence text, OutputStream output, boolean escapeXml) throws IOException
+    {
+        int length = text.length();
+        int position = 0;
+        for (int i = 0; i < length; i++)
+        {
+            // Make sure that we have space for the next code point or escape sequence:
+            if (position > BUFFER_SIZE - MAX_BYTES_PER_ESCAPE)
+            {
+                output.write(this.buffer, 0, position);
+                position = 0;
+            }
+
+            char c = text.charAt(i);
+            if (escapeXml && c < 0x80)
+            {
+                // Check whether this character needs to be escaped:
+                byte[] escape = switch (c)
+                {
+                    case '&' -> AMPERSAND_ESCAPE;
+                    case '<' -> LESS_THAN_ESCAPE;
+                    case '>' -> GREATER_THAN_ESCAPE;
+                    case '"' -> QUOTE_ESCAPE;
+                    case '\'' -> APOSTROPHE_ESCAPE;
+                    default -> null;
+                };
+                if (escape != null)
+                {
+                    // Write the escape sequence:
+                    System.arraycopy(escape, 0, this.buffer, position, escape.length);
+                    position += escape.length;
+                    continue;
+                }
+
+                // Drop control characters that would make the XML invalid:
+                if (isDisallowedInXml(c)) continue;
+            }
+
+            if (c < 0x80)
+            {
+                // ASCII.
+                this.buffer[position++] = (byte) c;
+            }
+            else if (c < 0x800)
+            {
+                // Two bytes.
+                this.buffer[position++] = (byte) (0xC0 | (c >> 6));
+                this.buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1)))
+            {
+                // Four bytes for a surrogate pair.
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                this.buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                this.buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                this.buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                this.buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(c))
+            {
+                // An unpaired surrogate can't be encoded.
+                this.buffer[position++] = REPLACEMENT_BYTE;
+            }
+            else
+            {
+                // Three bytes.
+                this.buffer[position++] = (byte) (0xE0 | (c >> 12));
+                this.buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                this.buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        // Write whatever is left in the buffer:
+        if (position > 0) output.write(this.buffer, 0, position);
+    }
+}
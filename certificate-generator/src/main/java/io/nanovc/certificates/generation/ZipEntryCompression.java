@@ -0,0 +1,53 @@
+package io.nanovc.certificates.generation;
+
+import java.util.zip.Deflater;
+
+/**
+ * How the content of the entries that we write to a zip file is compressed.
+ * Packages that are thrown away once they are converted don't need to be small, so they can be stored without compression.
+ * Packages that are kept should rather be compressed.
+ */
+public enum ZipEntryCompression
+{
+    /**
+     * The content is stored without compression.
+     * This is the cheapest to write but gives the biggest files.
+     */
+    STORED(Deflater.NO_COMPRESSION),
+
+    /**
+     * The content is deflated with the fastest compression level.
+     */
+    FAST(Deflater.BEST_SPEED),
+
+    /**
+     * The content is deflated with the default compression level.
+     * This is what Office uses when it saves a file.
+     */
+    DEFAULT(Deflater.DEFAULT_COMPRESSION),
+
+    ;
+
+    /**
+     * The level to use for the {@link Deflater}.
+     */
+    private final int deflateLevel;
+
+    /**
+     * @param deflateLevel The level to use for the {@link Deflater}.
+     */
+    ZipEntryCompression(int deflateLevel)
+    {
+        this.deflateLevel = deflateLevel;
+    }
+
+    /**
+     * Gets the level to use for the {@link Deflater}.
+     *
+     * @return The level to use for the {@link Deflater}.
+     */
+    public int getDeflateLevel()
+    {
+        return this.deflateLevel;
+    }
+}
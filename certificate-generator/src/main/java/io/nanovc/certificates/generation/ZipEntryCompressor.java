@@ -0,0 +1,290 @@
+package io.nanovc.certificates.generation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * This compresses the content of zip entries that we write with a {@link ZipPackageWriter}.
+ * The deflater and buffers are reused for every entry, so a compressor is not thread safe and each thread should have its own.
+ * <p>
+ * Large content can be deflated in parallel, the same way that pigz does it.
+ * The content is split into blocks that are each deflated on their own, with the end of the previous block as the dictionary.
+ * Every block except the last is ended with a sync flush so that the compressed blocks can simply be joined into one deflate stream.
+ *
+ * @see <a href="https://zlib.net/pigz/">pigz</a>
+ */
+public class ZipEntryCompressor
+{
+    /**
+     * The size of the chunks that we deflate into.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * The size of the blocks that are deflated in parallel.
+     * This is the same as the default for pigz.
+     */
+    private static final int PARALLEL_BLOCK_SIZE = 128 * 1024;
+
+    /**
+     * The size of the dictionary that each block is primed with from the end of the previous block.
+     * This is the largest window that deflate can refer back to.
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    /**
+     * How the content is compressed.
+     */
+    private final ZipEntryCompression compression;
+
+    /**
+     * The smallest content that is deflated in parallel.
+     * Content smaller than this is deflated on the calling thread.
+     * Zero or less to never deflate in parallel.
+     */
+    private final int parallelThreshold;
+
+    /**
+     * The executor that deflates the blocks of large content in parallel. Null to never deflate in parallel.
+     */
+    private final Executor parallelExecutor;
+
+    /**
+     * The deflater that compresses the content.
+     * It produces raw deflate data (no zlib header) as the zip format expects.
+     */
+    private final Deflater deflater;
+
+    /**
+     * The deflaters for the blocks that are deflated in parallel, reused for every entry.
+     */
+    private final ConcurrentLinkedQueue<Deflater> parallelDeflaters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The checksum of the uncompressed content.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * The buffer that holds the compressed content.
+     */
+    private final ContentBuffer compressedContent = new ContentBuffer(CHUNK_SIZE);
+
+    /**
+     * The chunk that we deflate into before copying to the compressed content.
+     */
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+
+    /**
+     * The size of the content before it was compressed.
+     */
+    private long uncompressedSize;
+
+    /**
+     * Creates a compressor that deflates with the default compression level on the calling thread.
+     */
+    public ZipEntryCompressor()
+    {
+        this(ZipEntryCompression.DEFAULT, 0, null);
+    }
+
+    /**
+     * Creates a compressor with the given compression.
+     *
+     * @param compression       How the content is compressed.
+     * @param parallelThreshold The smallest content that is deflated in parallel. Zero or less to never deflate in parallel.
+     * @param parallelExecutor  The executor that deflates the blocks of large content in parallel. Null to never deflate in parallel.
+     */
+    public ZipEntryCompressor(ZipEntryCompression compression, int parallelThreshold, Executor parallelExecutor)
+    {
+        this.compression = compression;
+        this.parallelThreshold = parallelThreshold;
+        this.parallelExecutor = parallelExecutor;
+        this.deflater = new Deflater(compression.getDeflateLevel(), true);
+    }
+
+    /**
+     * Gets how the content is compressed.
+     * When the content is {@link ZipEntryCompression#STORED} then there is no compressed content and the original content must be written as it is.
+     *
+     * @return How the content is compressed.
+     */
+    public ZipEntryCompression getCompression()
+    {
+        return this.compression;
+    }
+
+    /**
+     * Compresses the given content.
+     * The results are available until the next call to compress.
+     * When the content is {@link ZipEntryCompression#STORED} then only the checksum and size are worked out.
+     *
+     * @param content The content to compress.
+     * @param offset  The offset in the array where the content starts.
+     * @param length  The length of the content.
+     */
+    public void compress(byte[] content, int offset, int length)
+    {
+        // Compute the checksum:
+        this.crc.reset();
+        this.crc.update(content, offset, length);
+        this.uncompressedSize = length;
+
+        // Check whether we need to deflate the content at all:
+        this.compressedContent.reset();
+        if (this.compression == ZipEntryCompression.STORED) return;
+
+        // Check whether the content is big enough to deflate in parallel:
+        if (this.parallelExecutor != null && this.parallelThreshold > 0 && length >= this.parallelThreshold)
+        {
+            // Deflate the blocks of the content in parallel:
+            this.compressInParallel(content, offset, length);
+        }
+        else
+        {
+            // Deflate the content on this thread:
+            this.deflater.reset();
+            this.deflater.setInput(content, offset, length);
+            this.deflater.finish();
+            while (!this.deflater.finished())
+            {
+                int compressedLength = this.deflater.deflate(this.chunk);
+                this.compressedContent.write(this.chunk, 0, compressedLength);
+            }
+        }
+    }
+
+    /**
+     * Deflates the content as separate blocks in parallel and joins the compressed blocks together.
+     *
+     * @param content The content to compress.
+     * @param offset  The offset in the array where the content starts.
+     * @param length  The length of the content.
+     */
+    private void compressInParallel(byte[] content, int offset, int length)
+    {
+        // Start deflating each block:
+        List<CompletableFuture<ContentBuffer>> compressedBlocks = new ArrayList<>();
+        int end = offset + length;
+        for (int blockStart = offset; blockStart < end; blockStart += PARALLEL_BLOCK_SIZE)
+        {
+            int start = blockStart;
+            int blockLength = Math.min(PARALLEL_BLOCK_SIZE, end - start);
+            boolean lastBlock = start + blockLength == end;
+            int dictionaryLength = Math.min(DICTIONARY_SIZE, start - offset);
+            compressedBlocks.add(CompletableFuture.supplyAsync(() -> this.compressBlock(content, start, blockLength, dictionaryLength, lastBlock), this.parallelExecutor));
+        }
+
+        // Join the compressed blocks in order:
+        for (CompletableFuture<ContentBuffer> compressedBlock : compressedBlocks)
+        {
+            ContentBuffer block = compressedBlock.join();
+            this.compressedContent.write(block.getArray(), 0, block.size());
+        }
+    }
+
+    /**
+     * Deflates a single block of the content.
+     *
+     * @param content          The content that the block is in.
+     * @param start            The offset in the array where the block starts.
+     * @param length           The length of the block.
+     * @param dictionaryLength The length of the content just before the block to use as the dictionary.
+     * @param lastBlock        True if this is the last block of the content, in which case the deflate stream is finished.
+     * @return The compressed block.
+     */
+    private ContentBuffer compressBlock(byte[] content, int start, int length, int dictionaryLength, boolean lastBlock)
+    {
+        // Get a deflater for this block:
+        Deflater blockDeflater = this.parallelDeflaters.poll();
+        if (blockDeflater == null) blockDeflater = new Deflater(this.compression.getDeflateLevel(), true);
+        try
+        {
+            ContentBuffer compressedBlock = new ContentBuffer(length / 2 + 64);
+            byte[] blockChunk = new byte[CHUNK_SIZE];
+
+            // Prime the deflater with the end of the previous block so that it compresses as well as a single stream:
+            blockDeflater.reset();
+            if (dictionaryLength > 0) blockDeflater.setDictionary(content, start - dictionaryLength, dictionaryLength);
+            blockDeflater.setInput(content, start, length);
+
+            if (lastBlock)
+            {
+                // Finish the deflate stream:
+                blockDeflater.finish();
+                while (!blockDeflater.finished())
+                {
+                    int compressedLength = blockDeflater.deflate(blockChunk);
+                    compressedBlock.write(blockChunk, 0, compressedLength);
+                }
+            }
+            else
+            {
+                // Flush to a byte boundary so that the next block can follow straight after this one:
+                int compressedLength;
+                do
+                {
+                    compressedLength = blockDeflater.deflate(blockChunk, 0, blockChunk.length, Deflater.SYNC_FLUSH);
+                    compressedBlock.write(blockChunk, 0, compressedLength);
+                }
+                while (compressedLength == blockChunk.length);
+            }
+            return compressedBlock;
+        }
+        finally
+        {
+            // Keep the deflater for the next block:
+            this.parallelDeflaters.offer(blockDeflater);
+        }
+    }
+
+    /**
+     * Gets the CRC-32 of the content that was last compressed.
+     *
+     * @return The CRC-32 of the content that was last compressed.
+     */
+    public long getCrc()
+    {
+        return this.crc.getValue();
+    }
+
+    /**
+     * Gets the size of the content that was last compressed, before it was compressed.
+     *
+     * @return The size of the content before it was compressed.
+     */
+    public long getUncompressedSize()
+    {
+        return this.uncompressedSize;
+    }
+
+    /**
+     * Gets the compressed content.
+     * Only the first {@link ContentBuffer#size()} bytes are valid.
+     * This is empty when the content is {@link ZipEntryCompression#STORED}.
+     *
+     * @return The compressed content.
+     */
+    public ContentBuffer getCompressedContent()
+    {
+        return this.compressedContent;
+    }
+
+    /**
+     * Releases the native resources of the compressor.
+     */
+    public void end()
+    {
+        this.deflater.end();
+        Deflater parallelDeflater;
+        while ((parallelDeflater = this.parallelDeflaters.poll()) != null)
+        {
+            parallelDeflater.end();
+        }
+    }
+}
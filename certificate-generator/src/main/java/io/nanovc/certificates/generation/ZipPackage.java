@@ -0,0 +1,342 @@
+package io.nanovc.certificates.generation;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A read only view of a zip file (like a .pptx, .docx or .xlsx package).
+ * It reads the central directory so that entries can be read, or copied raw (still compressed) into a {@link ZipPackageWriter}.
+ * Zip64 and encrypted packages are not supported because Office packages don't use them.
+ *
+ * @see <a href="https://pkware.cachefly.net/webdocs/casestudies/APPNOTE.TXT">ZIP File Format Specification</a>
+ */
+public class ZipPackage implements AutoCloseable
+{
+    /**
+     * The signature of a local file header.
+     */
+    static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+
+    /**
+     * The signature of a central directory file header.
+     */
+    static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+
+    /**
+     * The signature of the end of central directory record.
+     */
+    static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    /**
+     * The size of a local file header without the name and extra field.
+     */
+    static final int LOCAL_FILE_HEADER_SIZE = 30;
+
+    /**
+     * The size of a central directory file header without the name, extra field and comment.
+     */
+    static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+
+    /**
+     * The size of the end of central directory record without the comment.
+     */
+    static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    /**
+     * The largest comment that can be at the end of a zip file.
+     */
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    /**
+     * The path to the zip file.
+     */
+    private final Path path;
+
+    /**
+     * The channel that we read the zip file with.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The entries in the zip file, in the order of the central directory, indexed by name.
+     */
+    private final LinkedHashMap<String, ZipPackageEntry> entriesByName = new LinkedHashMap<>();
+
+    /**
+     * Opens the zip file at the given path and reads its central directory.
+     *
+     * @param path The path to the zip file.
+     */
+    public ZipPackage(Path path) throws IOException
+    {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try
+        {
+            this.readCentralDirectory();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Don't leak the channel if the zip file is invalid:
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the path to the zip file.
+     *
+     * @return The path to the zip file.
+     */
+    public Path getPath()
+    {
+        return this.path;
+    }
+
+    /**
+     * Gets the entries in the zip file in the order of the central directory.
+     *
+     * @return The entries in the zip file.
+     */
+    public List<ZipPackageEntry> getEntries()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(this.entriesByName.values()));
+    }
+
+    /**
+     * Gets the entry with the given name.
+     *
+     * @param name The name of the entry (the path within the zip file).
+     * @return The entry with the given name. Null if it's not found.
+     */
+    public ZipPackageEntry getEntry(String name)
+    {
+        return this.entriesByName.get(name);
+    }
+
+    /**
+     * Reads the central directory of the zip file to find all the entries.
+     */
+    private void readCentralDirectory() throws IOException
+    {
+        // Read the tail of the file where the end of central directory record is:
+        long fileSize = this.channel.size();
+        int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = this.read(fileSize - tailSize, tailSize);
+
+        // Search backwards for the end of central directory record:
+        int endOfCentralDirectoryPosition = -1;
+        for (int position = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; position >= 0; position--)
+        {
+            if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+            {
+                endOfCentralDirectoryPosition = position;
+                break;
+            }
+        }
+        if (endOfCentralDirectoryPosition < 0) throw new ZipException("The end of central directory record was not found in " + this.path);
+
+        // Read the end of central directory record:
+        int entryCount = Short.toUnsignedInt(tail.getShort(endOfCentralDirectoryPosition + 10));
+        long centralDirectorySize = Integer.toUnsignedLong(tail.getInt(endOfCentralDirectoryPosition + 12));
+        long centralDirectoryOffset = Integer.toUnsignedLong(tail.getInt(endOfCentralDirectoryPosition + 16));
+        if (entryCount == 0xFFFF || centralDirectoryOffset == 0xFFFFFFFFL)
+        {
+            throw new ZipException("Zip64 files are not supported: " + this.path);
+        }
+
+        // Read the whole central directory:
+        ByteBuffer centralDirectory = this.read(centralDirectoryOffset, (int) centralDirectorySize);
+        int position = 0;
+        for (int i = 0; i < entryCount; i++)
+        {
+            if (centralDirectory.getInt(position) != CENTRAL_DIRECTORY_HEADER_SIGNATURE)
+            {
+                throw new ZipException("Invalid central directory header for entry " + i + " in " + this.path);
+            }
+
+            // Read the details of the entry:
+            ZipPackageEntry entry = new ZipPackageEntry();
+            entry.versionNeededToExtract = Short.toUnsignedInt(centralDirectory.getShort(position + 6));
+            entry.flags = Short.toUnsignedInt(centralDirectory.getShort(position + 8));
+            entry.compressionMethod = Short.toUnsignedInt(centralDirectory.getShort(position + 10));
+            entry.dosTime = Short.toUnsignedInt(centralDirectory.getShort(position + 12));
+            entry.dosDate = Short.toUnsignedInt(centralDirectory.getShort(position + 14));
+            entry.crc = Integer.toUnsignedLong(centralDirectory.getInt(position + 16));
+            entry.compressedSize = Integer.toUnsignedLong(centralDirectory.getInt(position + 20));
+            entry.uncompressedSize = Integer.toUnsignedLong(centralDirectory.getInt(position + 24));
+            int nameLength = Short.toUnsignedInt(centralDirectory.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(centralDirectory.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(centralDirectory.getShort(position + 32));
+            entry.internalAttributes = Short.toUnsignedInt(centralDirectory.getShort(position + 36));
+            entry.externalAttributes = Integer.toUnsignedLong(centralDirectory.getInt(position + 38));
+            entry.localHeaderOffset = Integer.toUnsignedLong(centralDirectory.getInt(position + 42));
+
+            // Read the name of the entry. Office part names are always ASCII, so UTF-8 reads them either way:
+            entry.nameBytes = new byte[nameLength];
+            centralDirectory.get(position + CENTRAL_DIRECTORY_HEADER_SIZE, entry.nameBytes);
+            entry.name = new String(entry.nameBytes, StandardCharsets.UTF_8);
+
+            // Make sure that we can handle the entry:
+            if ((entry.flags & ZipPackageEntry.FLAG_ENCRYPTED) != 0)
+            {
+                throw new ZipException("Encrypted entries are not supported: " + entry.name);
+            }
+            if (entry.compressedSize == 0xFFFFFFFFL || entry.uncompressedSize == 0xFFFFFFFFL || entry.localHeaderOffset == 0xFFFFFFFFL)
+            {
+                throw new ZipException("Zip64 entries are not supported: " + entry.name);
+            }
+
+            // Find where the data starts by reading the local file header, because its extra field can differ from the central one:
+            ByteBuffer localHeader = this.read(entry.localHeaderOffset, LOCAL_FILE_HEADER_SIZE);
+            if (localHeader.getInt(0) != LOCAL_FILE_HEADER_SIGNATURE)
+            {
+                throw new ZipException("Invalid local file header for entry: " + entry.name);
+            }
+            int localNameLength = Short.toUnsignedInt(localHeader.getShort(26));
+            int localExtraLength = Short.toUnsignedInt(localHeader.getShort(28));
+            entry.dataOffset = entry.localHeaderOffset + LOCAL_FILE_HEADER_SIZE + localNameLength + localExtraLength;
+
+            // Index the entry:
+            this.entriesByName.put(entry.name, entry);
+
+            // Move to the next header:
+            position += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+    }
+
+    /**
+     * Reads the given range of the zip file.
+     *
+     * @param offset The offset in the zip file to read from.
+     * @param length The number of bytes to read.
+     * @return The bytes that were read, in little endian order as the zip format expects.
+     */
+    private ByteBuffer read(long offset, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining())
+        {
+            if (this.channel.read(buffer, offset + buffer.position()) < 0) throw new EOFException("Unexpected end of zip file: " + this.path);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Opens a stream that reads the uncompressed content of the given entry.
+     *
+     * @param entry The entry to read.
+     * @return A stream that reads the uncompressed content of the entry.
+     */
+    public InputStream getInputStream(ZipPackageEntry entry) throws IOException
+    {
+        // Read the compressed data:
+        InputStream rawStream = new EntryDataInputStream(entry);
+
+        // Decompress the data if necessary:
+        return switch (entry.compressionMethod)
+        {
+            case ZipPackageEntry.METHOD_STORED -> rawStream;
+            case ZipPackageEntry.METHOD_DEFLATED -> new InflaterInputStream(rawStream, new Inflater(true))
+            {
+                @Override public void close() throws IOException
+                {
+                    // Release the native resources of the inflater that we created:
+                    super.close();
+                    this.inf.end();
+                }
+            };
+            default -> throw new ZipException("Unsupported compression method " + entry.compressionMethod + " for entry: " + entry.name);
+        };
+    }
+
+    /**
+     * Copies the compressed data of the given entry, as it is, to the output stream.
+     *
+     * @param entry   The entry to copy the data for.
+     * @param output  The output stream to copy the data to.
+     * @param scratch A buffer to copy the data through.
+     */
+    public void copyRawData(ZipPackageEntry entry, OutputStream output, byte[] scratch) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(scratch);
+        long position = entry.dataOffset;
+        long remaining = entry.compressedSize;
+        while (remaining > 0)
+        {
+            // Read the next chunk:
+            buffer.clear().limit((int) Math.min(scratch.length, remaining));
+            int read = this.channel.read(buffer, position);
+            if (read < 0) throw new EOFException("Unexpected end of zip file: " + this.path);
+
+            // Write the chunk:
+            output.write(scratch, 0, read);
+            position += read;
+            remaining -= read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.channel.close();
+    }
+
+    /**
+     * An input stream that reads the compressed data of an entry.
+     * It reads at absolute positions so that several streams can read from the zip file at the same time.
+     */
+    private class EntryDataInputStream extends InputStream
+    {
+        /**
+         * The position in the zip file of the next byte to read.
+         */
+        private long position;
+
+        /**
+         * The number of bytes that are left to read.
+         */
+        private long remaining;
+
+        /**
+         * @param entry The entry to read the compressed data for.
+         */
+        EntryDataInputStream(ZipPackageEntry entry)
+        {
+            this.position = entry.dataOffset;
+            this.remaining = entry.compressedSize;
+        }
+
+        @Override public int read() throws IOException
+        {
+            byte[] single = new byte[1];
+            return this.read(single, 0, 1) < 0 ? -1 : Byte.toUnsignedInt(single[0]);
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (this.remaining <= 0) return -1;
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, this.remaining));
+            int read = ZipPackage.this.channel.read(buffer, this.position);
+            if (read < 0) throw new EOFException("Unexpected end of zip file: " + ZipPackage.this.path);
+            this.position += read;
+            this.remaining -= read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package io.nanovc.certificates.generation;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The details of an entry in a {@link ZipPackage}, as described by its central directory.
+ * This is everything we need to copy the entry into another zip file without decompressing it.
+ */
+public class ZipPackageEntry
+{
+    /**
+     * The general purpose flag that says the sizes and CRC are in a data descriptor after the data.
+     */
+    public static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+
+    /**
+     * The general purpose flag that says the entry is encrypted.
+     */
+    public static final int FLAG_ENCRYPTED = 0x0001;
+
+    /**
+     * The compression method for entries that are stored without compression.
+     */
+    public static final int METHOD_STORED = 0;
+
+    /**
+     * The compression method for entries that are compressed with deflate.
+     */
+    public static final int METHOD_DEFLATED = 8;
+
+    /**
+     * The name of the entry (the path within the zip file).
+     */
+    public String name;
+
+    /**
+     * The name of the entry, encoded the same way as it was in the zip file.
+     */
+    public byte[] nameBytes;
+
+    /**
+     * The version needed to extract the entry.
+     */
+    public int versionNeededToExtract;
+
+    /**
+     * The general purpose bit flags for the entry.
+     */
+    public int flags;
+
+    /**
+     * The compression method for the entry.
+     * eg: {@link #METHOD_STORED} or {@link #METHOD_DEFLATED}
+     */
+    public int compressionMethod;
+
+    /**
+     * The last modified time of the entry in MS-DOS format.
+     */
+    public int dosTime;
+
+    /**
+     * The last modified date of the entry in MS-DOS format.
+     */
+    public int dosDate;
+
+    /**
+     * The CRC-32 of the uncompressed data.
+     */
+    public long crc;
+
+    /**
+     * The size of the compressed data in bytes.
+     */
+    public long compressedSize;
+
+    /**
+     * The size of the uncompressed data in bytes.
+     */
+    public long uncompressedSize;
+
+    /**
+     * The internal file attributes of the entry.
+     */
+    public int internalAttributes;
+
+    /**
+     * The external file attributes of the entry.
+     */
+    public long externalAttributes;
+
+    /**
+     * The offset of the local file header for the entry in the zip file.
+     */
+    public long localHeaderOffset;
+
+    /**
+     * The offset of the compressed data for the entry in the zip file.
+     */
+    public long dataOffset;
+
+    /**
+     * Creates a copy of this entry with a different name, keeping the dates, flags and attributes.
+     * This is used for writing new entries that are modelled on an entry in a template.
+     * The sizes, CRC and offsets are copied too, but they are replaced when the new entry is written.
+     *
+     * @param name The name of the new entry (the path within the zip file). This is encoded as UTF-8.
+     * @return A copy of this entry with the new name.
+     */
+    public ZipPackageEntry copyWithName(String name)
+    {
+        ZipPackageEntry copy = new ZipPackageEntry();
+        copy.name = name;
+        copy.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        copy.versionNeededToExtract = this.versionNeededToExtract;
+        copy.flags = this.flags;
+        copy.compressionMethod = this.compressionMethod;
+        copy.dosTime = this.dosTime;
+        copy.dosDate = this.dosDate;
+        copy.crc = this.crc;
+        copy.compressedSize = this.compressedSize;
+        copy.uncompressedSize = this.uncompressedSize;
+        copy.internalAttributes = this.internalAttributes;
+        copy.externalAttributes = this.externalAttributes;
+        copy.localHeaderOffset = this.localHeaderOffset;
+        copy.dataOffset = this.dataOffset;
+        return copy;
+    }
+
+    @Override public String toString()
+    {
+        return this.name;
+    }
+}
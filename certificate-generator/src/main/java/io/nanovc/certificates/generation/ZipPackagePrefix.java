@@ -0,0 +1,69 @@
+package io.nanovc.certificates.generation;
+
+/**
+ * The start of a zip file that has already been serialized, so that it can be written out as a single block.
+ * It holds the local file headers and compressed data for a set of entries, along with their central directory headers.
+ * A {@link ZipPackageWriter} can start from a prefix and then only write the entries that differ between files.
+ */
+public class ZipPackagePrefix
+{
+    /**
+     * The local file headers and compressed data of the entries, exactly as they are written at the start of the zip file.
+     */
+    private final byte[] data;
+
+    /**
+     * The central directory headers of the entries.
+     * The offsets in these headers are relative to the start of the zip file, which is where the prefix is written.
+     */
+    private final byte[] centralDirectory;
+
+    /**
+     * The number of entries in the prefix.
+     */
+    private final int entryCount;
+
+    /**
+     * Creates a new prefix.
+     *
+     * @param data             The local file headers and compressed data of the entries.
+     * @param centralDirectory The central directory headers of the entries.
+     * @param entryCount       The number of entries in the prefix.
+     */
+    public ZipPackagePrefix(byte[] data, byte[] centralDirectory, int entryCount)
+    {
+        this.data = data;
+        this.centralDirectory = centralDirectory;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Gets the local file headers and compressed data of the entries.
+     *
+     * @return The local file headers and compressed data of the entries.
+     */
+    public byte[] getData()
+    {
+        return this.data;
+    }
+
+    /**
+     * Gets the central directory headers of the entries.
+     *
+     * @return The central directory headers of the entries.
+     */
+    public byte[] getCentralDirectory()
+    {
+        return this.centralDirectory;
+    }
+
+    /**
+     * Gets the number of entries in the prefix.
+     *
+     * @return The number of entries in the prefix.
+     */
+    public int getEntryCount()
+    {
+        return this.entryCount;
+    }
+}
@@ -0,0 +1,250 @@
+package io.nanovc.certificates.generation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This writes a zip file (like a .pptx, .docx or .xlsx package) to an output stream in a single forward pass.
+ * Entries from another {@link ZipPackage} can be copied raw (still compressed), so only the entries that change need to be compressed.
+ * A writer can also start from a {@link ZipPackagePrefix} that was serialized earlier, so that the entries that never change are written as a single block.
+ * Call {@link #finish()} after all the entries have been written so that the central directory is written.
+ *
+ * @see <a href="https://pkware.cachefly.net/webdocs/casestudies/APPNOTE.TXT">ZIP File Format Specification</a>
+ */
+public class ZipPackageWriter
+{
+    /**
+     * The version of the zip specification that we write (2.0).
+     */
+    private static final int VERSION_MADE_BY = 20;
+
+    /**
+     * The version needed to extract deflated entries (2.0).
+     */
+    private static final int VERSION_NEEDED_FOR_DEFLATE = 20;
+
+    /**
+     * The version needed to extract stored entries (1.0).
+     */
+    private static final int VERSION_NEEDED_FOR_STORED = 10;
+
+    /**
+     * The output stream that we write the zip file to.
+     */
+    private final OutputStream output;
+
+    /**
+     * The prefix that the zip file started with. Null if the zip file didn't start with a prefix.
+     */
+    private final ZipPackagePrefix prefix;
+
+    /**
+     * The central directory headers for the entries that we have written so far (after the prefix).
+     */
+    private final ContentBuffer centralDirectory = new ContentBuffer(4096);
+
+    /**
+     * The buffer that we serialize headers into before writing them.
+     */
+    private ByteBuffer header = ByteBuffer.allocate(ZipPackage.CENTRAL_DIRECTORY_HEADER_SIZE + 256).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The number of bytes that we have written to the output stream so far.
+     */
+    private long position;
+
+    /**
+     * The number of entries that we have written so far.
+     */
+    private int entryCount;
+
+    /**
+     * Creates a new writer for the given output stream.
+     *
+     * @param output The output stream to write the zip file to.
+     */
+    public ZipPackageWriter(OutputStream output)
+    {
+        this.output = output;
+        this.prefix = null;
+    }
+
+    /**
+     * Creates a new writer for the given output stream and writes the prefix to it straight away.
+     *
+     * @param output The output stream to write the zip file to.
+     * @param prefix The prefix to start the zip file with.
+     */
+    public ZipPackageWriter(OutputStream output, ZipPackagePrefix prefix) throws IOException
+    {
+        this.output = output;
+        this.prefix = prefix;
+
+        // Write the prefix as a single block:
+        this.output.write(prefix.getData());
+        this.position = prefix.getData().length;
+        this.entryCount = prefix.getEntryCount();
+    }
+
+    /**
+     * Copies the entry from the source zip file without decompressing it.
+     *
+     * @param source  The zip file that the entry is in.
+     * @param entry   The entry to copy.
+     * @param scratch A buffer to copy the data through.
+     */
+    public void copyRawEntry(ZipPackage source, ZipPackageEntry entry, byte[] scratch) throws IOException
+    {
+        // Write the header for the entry:
+        this.writeHeaders(entry, entry.compressionMethod, entry.versionNeededToExtract, entry.crc, entry.compressedSize, entry.uncompressedSize);
+
+        // Copy the compressed data:
+        source.copyRawData(entry, this.output, scratch);
+        this.position += entry.compressedSize;
+    }
+
+    /**
+     * Writes an entry with new content, compressing it with the given compressor.
+     * If the compressor stores the content without compression then the content is written as it is.
+     *
+     * @param templateEntry The entry that we are writing new content for. The name, dates and attributes are kept from this entry.
+     * @param content       The uncompressed content of the entry.
+     * @param length        The length of the content.
+     * @param compressor    The compressor to compress the content with.
+     */
+    public void writeEntry(ZipPackageEntry templateEntry, byte[] content, int length, ZipEntryCompressor compressor) throws IOException
+    {
+        // Compress the content:
+        compressor.compress(content, 0, length);
+
+        // Check whether the content is stored without compression:
+        if (compressor.getCompression() == ZipEntryCompression.STORED)
+        {
+            // Write the header for the entry:
+            int versionNeeded = Math.max(templateEntry.versionNeededToExtract, VERSION_NEEDED_FOR_STORED);
+            this.writeHeaders(templateEntry, ZipPackageEntry.METHOD_STORED, versionNeeded, compressor.getCrc(), length, length);
+
+            // Write the content as it is:
+            this.output.write(content, 0, length);
+            this.position += length;
+            return;
+        }
+        ContentBuffer compressedContent = compressor.getCompressedContent();
+
+        // Write the header for the entry:
+        int versionNeeded = Math.max(templateEntry.versionNeededToExtract, VERSION_NEEDED_FOR_DEFLATE);
+        this.writeHeaders(templateEntry, ZipPackageEntry.METHOD_DEFLATED, versionNeeded, compressor.getCrc(), compressedContent.size(), compressor.getUncompressedSize());
+
+        // Write the compressed data:
+        this.output.write(compressedContent.getArray(), 0, compressedContent.size());
+        this.position += compressedContent.size();
+    }
+
+    /**
+     * Writes the local file header for an entry and adds its central directory header.
+     * The sizes are always written in the local file header, so we never need a data descriptor.
+     */
+    private void writeHeaders(ZipPackageEntry entry, int compressionMethod, int versionNeeded, long crc, long compressedSize, long uncompressedSize) throws IOException
+    {
+        int flags = entry.flags & ~ZipPackageEntry.FLAG_DATA_DESCRIPTOR;
+
+        // Make sure the header buffer is big enough for the name:
+        if (this.header.capacity() < ZipPackage.CENTRAL_DIRECTORY_HEADER_SIZE + entry.nameBytes.length)
+        {
+            this.header = ByteBuffer.allocate(ZipPackage.CENTRAL_DIRECTORY_HEADER_SIZE + entry.nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        // Write the local file header:
+        this.header.clear();
+        this.header.putInt(ZipPackage.LOCAL_FILE_HEADER_SIGNATURE);
+        this.header.putShort((short) versionNeeded);
+        this.header.putShort((short) flags);
+        this.header.putShort((short) compressionMethod);
+        this.header.putShort((short) entry.dosTime);
+        this.header.putShort((short) entry.dosDate);
+        this.header.putInt((int) crc);
+        this.header.putInt((int) compressedSize);
+        this.header.putInt((int) uncompressedSize);
+        this.header.putShort((short) entry.nameBytes.length);
+        this.header.putShort((short) 0);
+        this.header.put(entry.nameBytes);
+        this.output.write(this.header.array(), 0, this.header.position());
+        long localHeaderOffset = this.position;
+        this.position += this.header.position();
+
+        // Add the central directory header:
+        this.header.clear();
+        this.header.putInt(ZipPackage.CENTRAL_DIRECTORY_HEADER_SIGNATURE);
+        this.header.putShort((short) VERSION_MADE_BY);
+        this.header.putShort((short) versionNeeded);
+        this.header.putShort((short) flags);
+        this.header.putShort((short) compressionMethod);
+        this.header.putShort((short) entry.dosTime);
+        this.header.putShort((short) entry.dosDate);
+        this.header.putInt((int) crc);
+        this.header.putInt((int) compressedSize);
+        this.header.putInt((int) uncompressedSize);
+        this.header.putShort((short) entry.nameBytes.length);
+        this.header.putShort((short) 0);
+        this.header.putShort((short) 0);
+        this.header.putShort((short) 0);
+        this.header.putShort((short) entry.internalAttributes);
+        this.header.putInt((int) entry.externalAttributes);
+        this.header.putInt((int) localHeaderOffset);
+        this.header.put(entry.nameBytes);
+        this.centralDirectory.write(this.header.array(), 0, this.header.position());
+        this.entryCount++;
+    }
+
+    /**
+     * Gets the prefix for everything that has been written so far.
+     * This is only valid when the writer is writing to a {@link ContentBuffer} and didn't start with a prefix itself.
+     *
+     * @param writtenContent The buffer that this writer has been writing to.
+     * @return The prefix for everything that has been written so far.
+     */
+    public ZipPackagePrefix toPrefix(ContentBuffer writtenContent)
+    {
+        if (this.prefix != null) throw new IllegalStateException("A prefix can't be created from a writer that started with a prefix.");
+        return new ZipPackagePrefix(writtenContent.toByteArray(), this.centralDirectory.toByteArray(), this.entryCount);
+    }
+
+    /**
+     * Writes the central directory and the end of central directory record.
+     * The output stream is flushed but not closed.
+     */
+    public void finish() throws IOException
+    {
+        long centralDirectoryOffset = this.position;
+        long centralDirectorySize = 0;
+
+        // Write the central directory for the prefix:
+        if (this.prefix != null)
+        {
+            this.output.write(this.prefix.getCentralDirectory());
+            centralDirectorySize += this.prefix.getCentralDirectory().length;
+        }
+
+        // Write the central directory for the entries after the prefix:
+        this.output.write(this.centralDirectory.getArray(), 0, this.centralDirectory.size());
+        centralDirectorySize += this.centralDirectory.size();
+        this.position += centralDirectorySize;
+
+        // Write the end of central directory record:
+        this.header.clear();
+        this.header.putInt(ZipPackage.END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        this.header.putShort((short) 0);
+        this.header.putShort((short) 0);
+        this.header.putShort((short) this.entryCount);
+        this.header.putShort((short) this.entryCount);
+        this.header.putInt((int) centralDirectorySize);
+        this.header.putInt((int) centralDirectoryOffset);
+        this.header.putShort((short) 0);
+        this.output.write(this.header.array(), 0, this.header.position());
+        this.position += this.header.position();
+
+        this.output.flush();
+    }
+}
@@ -0,0 +1,304 @@
+package io.nanovc.certificates.office.libreoffice;
+
+import com.sun.star.beans.PropertyValue;
+import com.sun.star.bridge.UnoUrlResolver;
+import com.sun.star.bridge.XUnoUrlResolver;
+import com.sun.star.comp.helper.Bootstrap;
+import com.sun.star.connection.NoConnectException;
+import com.sun.star.frame.XComponentLoader;
+import com.sun.star.frame.XDesktop;
+import com.sun.star.lang.DisposedException;
+import com.sun.star.lang.XComponent;
+import com.sun.star.lib.uno.adapter.ByteArrayToXInputStreamAdapter;
+import com.sun.star.uno.UnoRuntime;
+import com.sun.star.uno.XComponentContext;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is used for automating a headless LibreOffice listener.
+ * The listener is a long-lived soffice process that accepts UNO connections on a socket.
+ * We connect to it once when it starts and then reuse the connection for every document, instead of starting soffice for each file.
+ * Each listener needs its own user profile, because LibreOffice locks the profile that it is running with.
+ * @see <a href="https://api.libreoffice.org/docs/idl/ref/servicecom_1_1sun_1_1star_1_1frame_1_1Desktop.html">Desktop Service</a>
+ */
+public class LibreOffice implements AutoCloseable
+{
+    /**
+     * The path to the soffice executable. eg: "soffice" to find it on the path, or "/usr/bin/soffice"
+     */
+    protected final String pathToSoffice;
+
+    /**
+     * The path to the folder with the user profile of this listener. No other listener may use the same profile at the same time.
+     */
+    protected final Path profilePath;
+
+    /**
+     * How long to wait for the listener to start accepting connections.
+     */
+    protected final Duration startTimeout;
+
+    /**
+     * The soffice process that is listening for connections. Null if we haven't been started.
+     */
+    protected Process process;
+
+    /**
+     * The desktop of the listener, which we use to terminate it.
+     * @see <a href="https://api.libreoffice.org/docs/idl/ref/interfacecom_1_1sun_1_1star_1_1frame_1_1XDesktop.html">XDesktop Interface</a>
+     */
+    protected XDesktop desktop;
+
+    /**
+     * The desktop of the listener, which we use to load documents.
+     * @see <a href="https://api.libreoffice.org/docs/idl/ref/interfacecom_1_1sun_1_1star_1_1frame_1_1XComponentLoader.html">XComponentLoader Interface</a>
+     */
+    protected XComponentLoader componentLoader;
+
+    /**
+     * Creates a new LibreOffice listener that hasn't been started yet.
+     *
+     * @param pathToSoffice The path to the soffice executable. eg: "soffice" to find it on the path, or "/usr/bin/soffice"
+     * @param profilePath   The path to the folder with the user profile of this listener. No other listener may use the same profile at the same time.
+     * @param startTimeout  How long to wait for the listener to start accepting connections.
+     */
+    public LibreOffice(String pathToSoffice, Path profilePath, Duration startTimeout)
+    {
+        this.pathToSoffice = pathToSoffice;
+        this.profilePath = profilePath;
+        this.startTimeout = startTimeout;
+    }
+
+    /**
+     * Starts the LibreOffice listener and connects to it.
+     * @see <a href="https://help.libreoffice.org/latest/en-US/text/shared/guide/start_parameters.html">Starting LibreOffice With Parameters</a>
+     */
+    public void start() throws Exception
+    {
+        // Listen on a port that is free, so that several listeners can run side by side:
+        String connection = "socket,host=127.0.0.1,port=" + findFreePort() + ";urp;StarOffice.ComponentContext";
+
+        // Start the listener with its own user profile:
+        this.process = new ProcessBuilder(
+            this.pathToSoffice,
+            "--headless",
+            "--invisible",
+            "--nologo",
+            "--nodefault",
+            "--norestore",
+            "--nolockcheck",
+            "-env:UserInstallation=" + this.profilePath.toAbsolutePath().normalize().toUri(),
+            "--accept=" + connection
+        )
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+
+        try
+        {
+            // Connect to the listener, waiting for it to start accepting connections:
+            XComponentContext remoteContext = connect(connection);
+
+            // Find components of interest:
+            Object desktopObject = remoteContext.getServiceManager().createInstanceWithContext("com.sun.star.frame.Desktop", remoteContext);
+            this.desktop = UnoRuntime.queryInterface(XDesktop.class, desktopObject);
+            this.componentLoader = UnoRuntime.queryInterface(XComponentLoader.class, desktopObject);
+        }
+        catch (Exception e)
+        {
+            // Don't leave the listener running if we couldn't connect to it:
+            quit();
+            throw e;
+        }
+    }
+
+    /**
+     * Connects to the listener, retrying until it accepts the connection or until the start timeout has passed.
+     *
+     * @param connection The description of the connection that the listener accepts.
+     * @return The component context of the listener.
+     */
+    protected XComponentContext connect(String connection) throws Exception
+    {
+        // Create the local end of the connection:
+        XComponentContext localContext = Bootstrap.createInitialComponentContext(null);
+        XUnoUrlResolver resolver = UnoUrlResolver.create(localContext);
+
+        long deadline = System.nanoTime() + this.startTimeout.toNanos();
+        while (true)
+        {
+            try
+            {
+                // Try to connect:
+                Object initialObject = resolver.resolve("uno:" + connection);
+                return UnoRuntime.queryInterface(XComponentContext.class, initialObject);
+            }
+            catch (NoConnectException e)
+            {
+                // Check whether we should keep waiting for the listener:
+                if (!this.process.isAlive()) throw new IOException("LibreOffice exited with code " + this.process.exitValue() + " before it accepted a connection. Check that " + this.pathToSoffice + " is installed.", e);
+                if (System.nanoTime() > deadline) throw new IOException("LibreOffice didn't accept a connection within " + this.startTimeout.toSeconds() + " seconds.", e);
+
+                // Give the listener a moment to start:
+                Thread.sleep(250);
+            }
+        }
+    }
+
+    /**
+     * Quits the LibreOffice listener.
+     * @see <a href="https://api.libreoffice.org/docs/idl/ref/interfacecom_1_1sun_1_1star_1_1frame_1_1XDesktop.html">XDesktop Interface</a>
+     */
+    public void quit() throws InterruptedException
+    {
+        // Ask the listener to terminate:
+        if (this.desktop != null)
+        {
+            try
+            {
+                this.desktop.terminate();
+            }
+            catch (DisposedException e)
+            {
+                // The connection drops while the listener terminates, or the listener has already gone.
+            }
+        }
+
+        // Wait for the process to exit, killing it if it doesn't:
+        if (this.process != null)
+        {
+            // If we never connected then we can't ask the listener to terminate, so stop the process instead:
+            if (this.desktop == null) this.process.destroy();
+
+            if (!this.process.waitFor(10, TimeUnit.SECONDS))
+            {
+                this.process.destroyForcibly();
+                this.process.waitFor();
+            }
+        }
+
+        // Free the components:
+        this.process = null;
+        this.desktop = null;
+        this.componentLoader = null;
+    }
+
+    /**
+     * Opens a presentation at the given path, without showing it.
+     * @see <a href="https://api.libreoffice.org/docs/idl/ref/interfacecom_1_1sun_1_1star_1_1frame_1_1XComponentLoader.html">XComponentLoader Interface</a>
+     * @param pathToPresentation The path to the presentation that we want to open.
+     * @return The presentation that was opened.
+     * @throws IOException If LibreOffice couldn't open the presentation.
+     */
+    public Presentation openPresentation(Path pathToPresentation) throws IOException
+    {
+        try
+        {
+            // Open the presentation:
+            XComponent component = this.componentLoader.loadComponentFromURL(
+                toURL(pathToPresentation),
+                "_blank",
+                0,
+                new PropertyValue[] { property("Hidden", true), property("ReadOnly", true) }
+            );
+            if (component == null) throw new IOException("LibreOffice couldn't open " + pathToPresentation);
+
+            // Create the presentation wrapper:
+            return new Presentation(component);
+        }
+        catch (com.sun.star.io.IOException | com.sun.star.lang.IllegalArgumentException e)
+        {
+            throw new IOException("LibreOffice couldn't open " + pathToPresentation, e);
+        }
+    }
+
+    /**
+     * Opens a presentation from memory, without showing it and without the presentation ever touching the file system.
+     * The presentation is read through a UNO input stream from the special "private:stream" URL.
+     * @see <a href="https://api.libreoffice.org/docs/idl/ref/servicecom_1_1sun_1_1star_1_1document_1_1MediaDescriptor.html">MediaDescriptor Service</a>
+     * @param presentationBuffer The presentation, from the position to the limit of the buffer. Its position isn't moved.
+     * @return The presentation that was opened.
+     * @throws IOException If LibreOffice couldn't open the presentation.
+     */
+    public Presentation openPresentation(ByteBuffer presentationBuffer) throws IOException
+    {
+        // Copy the presentation into an array for the input stream to read:
+        byte[] presentationBytes = new byte[presentationBuffer.remaining()];
+        presentationBuffer.duplicate().get(presentationBytes);
+
+        try
+        {
+            // Open the presentation from the input stream:
+            XComponent component = this.componentLoader.loadComponentFromURL(
+                "private:stream",
+                "_blank",
+                0,
+                new PropertyValue[] { property("InputStream", new ByteArrayToXInputStreamAdapter(presentationBytes)), property("Hidden", true), property("ReadOnly", true) }
+            );
+            if (component == null) throw new IOException("LibreOffice couldn't open the presentation from memory.");
+
+            // Create the presentation wrapper:
+            return new Presentation(component);
+        }
+        catch (com.sun.star.io.IOException | com.sun.star.lang.IllegalArgumentException e)
+        {
+            throw new IOException("LibreOffice couldn't open the presentation from memory.", e);
+        }
+    }
+
+    /**
+     * Gets the URL that LibreOffice uses for the file at the given path.
+     *
+     * @param path The path to the file.
+     * @return The file URL for the absolute path. eg: "file:///tmp/Albert.pptx"
+     */
+    static String toURL(Path path)
+    {
+        return path.toAbsolutePath().normalize().toUri().toString();
+    }
+
+    /**
+     * Creates a property to pass to LibreOffice.
+     *
+     * @param name  The name of the property.
+     * @param value The value of the property.
+     * @return The property.
+     */
+    static PropertyValue property(String name, Object value)
+    {
+        PropertyValue property = new PropertyValue();
+        property.Name = name;
+        property.Value = value;
+        return property;
+    }
+
+    /**
+     * Finds a port on the loopback address that nothing is listening on.
+     *
+     * @return A free port.
+     */
+    private static int findFreePort() throws IOException
+    {
+        try (var serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress()))
+        {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    /**
+     * Quits the LibreOffice listener.
+     * This method is invoked automatically on objects managed by the {@code try}-with-resources statement.
+     */
+    @Override
+    public void close() throws Exception
+    {
+        quit();
+    }
+}
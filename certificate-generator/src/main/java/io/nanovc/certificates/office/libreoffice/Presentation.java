@@ -0,0 +1,80 @@
+package io.nanovc.certificates.office.libreoffice;
+
+import com.sun.star.beans.PropertyValue;
+import com.sun.star.frame.XStorable;
+import com.sun.star.lang.XComponent;
+import com.sun.star.uno.UnoRuntime;
+import com.sun.star.util.CloseVetoException;
+import com.sun.star.util.XCloseable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A presentation that is open in LibreOffice Impress.
+ * @see <a href="https://api.libreoffice.org/docs/idl/ref/servicecom_1_1sun_1_1star_1_1presentation_1_1PresentationDocument.html">PresentationDocument Service</a>
+ */
+public class Presentation
+{
+    /**
+     * The name of the filter that exports Impress documents to PDF.
+     */
+    public static final String PDF_EXPORT_FILTER = "impress_pdf_Export";
+
+    /**
+     * The document component that we are wrapping.
+     */
+    protected XComponent component;
+
+    /**
+     * Creates a new presentation wrapper for the given document component.
+     *
+     * @param component The document component that we are wrapping.
+     */
+    public Presentation(XComponent component)
+    {
+        this.component = component;
+    }
+
+    /**
+     * Exports the presentation to a PDF file.
+     * @see <a href="https://api.libreoffice.org/docs/idl/ref/interfacecom_1_1sun_1_1star_1_1frame_1_1XStorable.html">XStorable Interface</a>
+     * @param pdfPath The path of the PDF file to write.
+     * @throws IOException If LibreOffice couldn't export the presentation.
+     */
+    public void exportToPDF(Path pdfPath) throws IOException
+    {
+        try
+        {
+            XStorable storable = UnoRuntime.queryInterface(XStorable.class, this.component);
+            storable.storeToURL(LibreOffice.toURL(pdfPath), new PropertyValue[] { LibreOffice.property("FilterName", PDF_EXPORT_FILTER) });
+        }
+        catch (com.sun.star.io.IOException e)
+        {
+            throw new IOException("LibreOffice couldn't export the presentation to " + pdfPath, e);
+        }
+    }
+
+    /**
+     * Closes the presentation.
+     * @see <a href="https://api.libreoffice.org/docs/idl/ref/interfacecom_1_1sun_1_1star_1_1util_1_1XCloseable.html">XCloseable Interface</a>
+     */
+    public void close()
+    {
+        XCloseable closeable = UnoRuntime.queryInterface(XCloseable.class, this.component);
+        if (closeable == null)
+        {
+            this.component.dispose();
+            return;
+        }
+
+        try
+        {
+            closeable.close(true);
+        }
+        catch (CloseVetoException e)
+        {
+            // Whoever vetoed the close now owns the presentation and closes it when they are done.
+        }
+    }
+}
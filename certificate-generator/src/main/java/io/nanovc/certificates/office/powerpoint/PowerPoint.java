@@ -83,6 +83,27 @@ public class PowerPoint implements AutoCloseable
         return presentation;
     }
 
+    /**
+     * Runs a macro in PowerPoint. The macro must be in a presentation that is open.
+     * @see <a href="https://learn.microsoft.com/en-us/office/vba/api/powerpoint.application.run">Run Method</a>
+     * @param macroName The name of the macro to run. eg: "'Batch Export.pptm'!BatchExport.ExportManifest"
+     * @param arguments The arguments to pass to the macro.
+     * @return The value that the macro returned.
+     */
+    public Variant run(String macroName, Object... arguments)
+    {
+        // Put the name of the macro in front of its arguments:
+        Variant[] variants = new Variant[arguments.length + 1];
+        variants[0] = new Variant(macroName);
+        for (int i = 0; i < arguments.length; i++)
+        {
+            variants[i + 1] = new Variant(arguments[i]);
+        }
+
+        // Run the macro:
+        return this.application.invoke("Run", variants);
+    }
+
     /**
      * Closes this resource, relinquishing any underlying resources.
      * This method is invoked automatically on objects managed by the
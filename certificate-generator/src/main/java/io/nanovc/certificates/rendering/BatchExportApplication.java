@@ -0,0 +1,40 @@
+package io.nanovc.certificates.rendering;
+
+import java.nio.file.Path;
+
+/**
+ * An application that exports every package in a {@link BatchExportManifest} to PDF in a single call.
+ * The loop over the packages runs inside the application, so there is only one round trip to the application for the whole batch.
+ * eg: {@link PowerPointBatchExportApplication} runs a macro inside PowerPoint.
+ * An application is only used from the thread that started it.
+ */
+public interface BatchExportApplication extends AutoCloseable
+{
+    /**
+     * Starts the application so that it is ready to export batches.
+     */
+    void start() throws Exception;
+
+    /**
+     * Exports every package in the manifest to PDF and writes the status of each package back into the manifest.
+     *
+     * @param manifestPath The path of the manifest file, as written by {@link BatchExportManifest#write(Path)}.
+     */
+    void exportManifest(Path manifestPath) throws Exception;
+
+    /**
+     * Stops the application.
+     * It is safe to stop an application that was never started or that was already stopped.
+     */
+    void stop() throws Exception;
+
+    /**
+     * Stops the application.
+     * This method is invoked automatically on objects managed by the {@code try}-with-resources statement.
+     */
+    @Override
+    default void close() throws Exception
+    {
+        this.stop();
+    }
+}
@@ -0,0 +1,180 @@
+package io.nanovc.certificates.rendering;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is the list of packages that a {@link BatchExportApplication} exports to PDF in a single call.
+ * <p>
+ * The manifest is a UTF-8 text file with a line for each package: the path to the package, a tab and the path of the PDF.
+ * The application reports back by writing the manifest again with a tab and a status at the end of each line,
+ * which is {@link #STATUS_OK} or {@link #STATUS_FAILED} followed by a tab and the reason.
+ * All paths are absolute, so the application doesn't need to know the working folder of the generator.
+ */
+public class BatchExportManifest
+{
+    /**
+     * The status of a package that was exported to PDF.
+     */
+    public static final String STATUS_OK = "OK";
+
+    /**
+     * The status of a package that couldn't be exported to PDF. A tab and the reason follow it.
+     */
+    public static final String STATUS_FAILED = "FAILED";
+
+    /**
+     * The byte order mark that some applications write at the start of UTF-8 files.
+     */
+    private static final String BYTE_ORDER_MARK = "\uFEFF";
+
+    /**
+     * The packages to export, in the order of the manifest.
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Adds a package to export.
+     *
+     * @param packagePath The path to the package to export.
+     * @param pdfPath     The path of the PDF to export the package to.
+     */
+    public void add(Path packagePath, Path pdfPath)
+    {
+        this.entries.add(new Entry(packagePath.toAbsolutePath().normalize(), pdfPath.toAbsolutePath().normalize()));
+    }
+
+    /**
+     * Gets the packages to export, in the order of the manifest.
+     *
+     * @return The packages to export.
+     */
+    public List<Entry> getEntries()
+    {
+        return this.entries;
+    }
+
+    /**
+     * Gets the number of packages to export.
+     *
+     * @return The number of packages to export.
+     */
+    public int size()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Removes all the packages so that the manifest can be reused for the next batch.
+     */
+    public void clear()
+    {
+        this.entries.clear();
+    }
+
+    /**
+     * Writes the manifest for the application to read.
+     *
+     * @param manifestPath The path of the manifest file.
+     */
+    public void write(Path manifestPath) throws IOException
+    {
+        StringBuilder manifest = new StringBuilder();
+        for (Entry entry : this.entries)
+        {
+            manifest.append(entry.packagePath).append('\t').append(entry.pdfPath).append('\n');
+        }
+        Files.writeString(manifestPath, manifest, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the status of each package from the manifest, after the application has written it again.
+     * Packages without a status are marked as failed.
+     *
+     * @param manifestPath The path of the manifest file.
+     * @throws IOException If the manifest can't be read, or if it doesn't have the same packages in the same order.
+     */
+    public void readStatuses(Path manifestPath) throws IOException
+    {
+        // Read the lines of the manifest, ignoring a byte order mark and blank lines:
+        String manifest = Files.readString(manifestPath, StandardCharsets.UTF_8);
+        if (manifest.startsWith(BYTE_ORDER_MARK)) manifest = manifest.substring(BYTE_ORDER_MARK.length());
+        List<String> lines = new ArrayList<>();
+        for (String line : manifest.split("\r?\n"))
+        {
+            if (!line.isEmpty()) lines.add(line);
+        }
+        if (lines.size() != this.entries.size()) throw new IOException("Expected " + this.entries.size() + " packages in the manifest " + manifestPath + " but there are " + lines.size());
+
+        // Read the status of each package:
+        for (int i = 0; i < lines.size(); i++)
+        {
+            Entry entry = this.entries.get(i);
+            String[] fields = lines.get(i).split("\t", 4);
+            if (!fields[0].equals(entry.packagePath.toString())) throw new IOException("Expected " + entry.packagePath + " on line " + (i + 1) + " of the manifest " + manifestPath + " but found " + fields[0]);
+
+            if (fields.length < 3)
+            {
+                entry.status = STATUS_FAILED;
+                entry.message = "No status was reported for the package.";
+            }
+            else
+            {
+                entry.status = fields[2];
+                entry.message = fields.length > 3 ? fields[3] : null;
+            }
+        }
+    }
+
+    /**
+     * A package in the manifest.
+     */
+    public static class Entry
+    {
+        /**
+         * The absolute path to the package to export.
+         */
+        public final Path packagePath;
+
+        /**
+         * The absolute path of the PDF to export the package to.
+         */
+        public final Path pdfPath;
+
+        /**
+         * The status that the application reported. Null until the statuses have been read.
+         */
+        public String status;
+
+        /**
+         * The reason that the package couldn't be exported. Null if it was exported.
+         */
+        public String message;
+
+        /**
+         * Creates a new entry.
+         *
+         * @param packagePath The absolute path to the package to export.
+         * @param pdfPath     The absolute path of the PDF to export the package to.
+         */
+        public Entry(Path packagePath, Path pdfPath)
+        {
+            this.packagePath = packagePath;
+            this.pdfPath = pdfPath;
+        }
+
+        /**
+         * Checks whether the application reported that the package was exported.
+         *
+         * @return True if the package was exported.
+         */
+        public boolean isExported()
+        {
+            return STATUS_OK.equals(this.status);
+        }
+    }
+}
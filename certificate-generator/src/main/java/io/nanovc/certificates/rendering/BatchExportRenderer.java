@@ -0,0 +1,237 @@
+package io.nanovc.certificates.rendering;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * This renders packages to PDF by collecting them into a {@link BatchExportManifest} and having a {@link BatchExportApplication} export the whole manifest in one call.
+ * This saves a round trip to the application for every package, which adds up when there are thousands of them.
+ * <p>
+ * The packages are handed over with {@link #renderToPDFAsync}, and the manifest is exported once it has {@link #getManifestSize()} packages in it.
+ * Call {@link #flush()} to export the packages that are left over. The futures for the packages complete once their manifest has been exported,
+ * or complete exceptionally with the reason that the application reported for a package that failed.
+ * The renderer is only used from the thread that started it.
+ */
+public class BatchExportRenderer implements CertificateRenderer
+{
+    /**
+     * The application that exports each manifest.
+     */
+    private final BatchExportApplication application;
+
+    /**
+     * The number of packages to collect before the manifest is exported.
+     */
+    private final int manifestSize;
+
+    /**
+     * The packages that have been collected for the next manifest.
+     */
+    private final BatchExportManifest manifest = new BatchExportManifest();
+
+    /**
+     * The future for each package in the {@link #manifest}, in the same order.
+     */
+    private final List<CompletableFuture<Path>> results = new ArrayList<>();
+
+    /**
+     * The path of the manifest file that is handed to the application. Null if we haven't been started.
+     */
+    private Path manifestPath;
+
+    /**
+     * Creates a new renderer that exports its manifests with the given application.
+     *
+     * @param application  The application that exports each manifest.
+     * @param manifestSize The number of packages to collect before the manifest is exported.
+     */
+    public BatchExportRenderer(BatchExportApplication application, int manifestSize)
+    {
+        if (manifestSize < 1) throw new IllegalArgumentException("A manifest must hold at least one package but a size of " + manifestSize + " was requested.");
+        this.application = application;
+        this.manifestSize = manifestSize;
+    }
+
+    /**
+     * Gets the number of packages that are collected before the manifest is exported.
+     *
+     * @return The number of packages in each full manifest.
+     */
+    public int getManifestSize()
+    {
+        return this.manifestSize;
+    }
+
+    /**
+     * Starts the application and creates the manifest file that is handed to it.
+     */
+    @Override
+    public void start() throws Exception
+    {
+        this.manifestPath = Files.createTempFile("certificate-export-", ".manifest");
+        this.application.start();
+    }
+
+    /**
+     * Adds the package to the manifest and waits for it to be exported.
+     *
+     * @param packagePath The path to the populated package to render.
+     * @param pdfPath     The path of the PDF file to write.
+     */
+    @Override
+    public void renderToPDF(Path packagePath, Path pdfPath) throws Exception
+    {
+        try
+        {
+            CompletableFuture<Path> result = this.renderToPDFAsync(packagePath, pdfPath);
+            this.flush();
+            result.join();
+        }
+        catch (CompletionException e)
+        {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Adds the package to the manifest, exporting the manifest if it is full.
+     *
+     * @param packagePath The path to the populated package to render.
+     * @param pdfPath     The path of the PDF file to write.
+     * @return A future that completes once the manifest with the package in it has been exported.
+     */
+    @Override
+    public CompletableFuture<Path> renderToPDFAsync(Path packagePath, Path pdfPath)
+    {
+        // Make sure that we have been started:
+        if (this.manifestPath == null) throw new IllegalStateException("The batch export renderer must be started before it can render.");
+
+        // Add the package to the manifest:
+        CompletableFuture<Path> result = new CompletableFuture<>();
+        this.manifest.add(packagePath, pdfPath);
+        this.results.add(result);
+
+        // Export the manifest if it is full:
+        if (this.manifest.size() >= this.manifestSize)
+        {
+            try
+            {
+                this.flush();
+            }
+            catch (Exception e)
+            {
+                // The future for each package in the manifest has already been completed with the failure.
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the package to a temporary file and adds it to the manifest, exporting the manifest if it is full.
+     * The temporary file is deleted once the manifest with the package in it has been exported.
+     *
+     * @param packageBuffer        The populated package, from the position to the limit of the buffer. The buffer is only read while this is called.
+     * @param packageFileExtension The file extension of the package. eg: ".pptx"
+     * @param pdfPath              The path of the PDF file to write.
+     * @return A future that completes once the manifest with the package in it has been exported.
+     */
+    @Override
+    public CompletableFuture<Path> renderToPDFAsync(ByteBuffer packageBuffer, String packageFileExtension, Path pdfPath)
+    {
+        // Write the package to a temporary file for the application to open:
+        Path packagePath;
+        try
+        {
+            packagePath = CertificateRenderer.writeTemporaryPackage(packageBuffer, packageFileExtension);
+        }
+        catch (IOException e)
+        {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // Add the package to the manifest, deleting the temporary file once it has been exported:
+        return this.renderToPDFAsync(packagePath, pdfPath).whenComplete((exportedPath, failure) ->
+        {
+            try
+            {
+                Files.deleteIfExists(packagePath);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Exports the packages in the manifest, completing the future for each of them.
+     */
+    @Override
+    public void flush() throws Exception
+    {
+        // Check whether there is anything to export:
+        if (this.manifest.size() == 0) return;
+
+        try
+        {
+            // Export the whole manifest in one call to the application:
+            this.manifest.write(this.manifestPath);
+            this.application.exportManifest(this.manifestPath);
+            this.manifest.readStatuses(this.manifestPath);
+
+            // Complete the future for each package with its status:
+            List<BatchExportManifest.Entry> entries = this.manifest.getEntries();
+            for (int i = 0; i < entries.size(); i++)
+            {
+                BatchExportManifest.Entry entry = entries.get(i);
+                if (entry.isExported()) this.results.get(i).complete(entry.pdfPath);
+                else this.results.get(i).completeExceptionally(new IOException("Failed to export " + entry.packagePath + " to PDF: " + entry.message));
+            }
+        }
+        catch (Exception e)
+        {
+            // The application couldn't export the manifest, so every package in it failed:
+            for (CompletableFuture<Path> result : this.results)
+            {
+                result.completeExceptionally(e);
+            }
+            throw e;
+        }
+        finally
+        {
+            // Get ready for the next manifest:
+            this.manifest.clear();
+            this.results.clear();
+        }
+    }
+
+    /**
+     * Exports the packages that are left in the manifest and then stops the application.
+     */
+    @Override
+    public void stop() throws Exception
+    {
+        // Check whether we were started:
+        if (this.manifestPath == null) return;
+
+        try
+        {
+            // Export the packages that are left:
+            this.flush();
+        }
+        finally
+        {
+            // Stop the application and clean up the manifest file:
+            this.application.stop();
+            Files.deleteIfExists(this.manifestPath);
+            this.manifestPath = null;
+        }
+    }
+}
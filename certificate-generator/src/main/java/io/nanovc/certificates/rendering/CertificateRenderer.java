@@ -0,0 +1,161 @@
+package io.nanovc.certificates.rendering;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This renders populated packages (such as PowerPoint presentations) to PDF files.
+ * A renderer is started once, used to render every certificate, and then stopped.
+ * <p>
+ * The generator doesn't care how the PDF is made, so different renderers can be plugged in.
+ * eg: {@link PowerPointRenderer} automates PowerPoint on Windows and {@link StubRenderer} writes placeholder PDFs on any machine.
+ * A renderer is only used from the thread that started it.
+ * <p>
+ * Renderers that can work on several packages at once (such as a {@link RendererPool}) render them in the background through {@link #renderToPDFAsync}.
+ * <p>
+ * Packages can also be handed over in memory, so that a package that isn't kept never has to be written by the generator.
+ * Renderers that can only open files get the package in a temporary file that is deleted once it has been rendered.
+ */
+public interface CertificateRenderer extends AutoCloseable
+{
+    /**
+     * Starts the renderer so that it is ready to render packages.
+     */
+    void start() throws Exception;
+
+    /**
+     * Renders the populated package at the given path to a PDF file.
+     *
+     * @param packagePath The path to the populated package to render.
+     * @param pdfPath     The path of the PDF file to write.
+     */
+    void renderToPDF(Path packagePath, Path pdfPath) throws Exception;
+
+    /**
+     * Renders the populated package at the given path to a PDF file, possibly in the background.
+     * By default, the package is rendered straight away on the calling thread and the future that is returned is already complete.
+     * Renderers that can work on several packages at once override this so that the caller can carry on producing the next package.
+     *
+     * @param packagePath The path to the populated package to render.
+     * @param pdfPath     The path of the PDF file to write.
+     * @return A future that completes with the path of the PDF file once it has been written, or completes exceptionally if rendering failed.
+     */
+    default CompletableFuture<Path> renderToPDFAsync(Path packagePath, Path pdfPath)
+    {
+        try
+        {
+            // Render the package straight away:
+            this.renderToPDF(packagePath, pdfPath);
+            return CompletableFuture.completedFuture(pdfPath);
+        }
+        catch (Exception e)
+        {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Renders the populated package in the buffer to a PDF file.
+     * By default, the package is written to a temporary file which is rendered with {@link #renderToPDF(Path, Path)} and then deleted.
+     * Renderers that can read a package from memory override this so that the package never touches the file system.
+     *
+     * @param packageBuffer        The populated package, from the position to the limit of the buffer. The buffer is only read while this is called, and its position isn't moved.
+     * @param packageFileExtension The file extension of the package, so that the renderer knows what kind of package it is. eg: ".pptx"
+     * @param pdfPath              The path of the PDF file to write.
+     */
+    default void renderToPDF(ByteBuffer packageBuffer, String packageFileExtension, Path pdfPath) throws Exception
+    {
+        // Write the package to a temporary file for the renderer to open:
+        Path packagePath = writeTemporaryPackage(packageBuffer, packageFileExtension);
+        try
+        {
+            this.renderToPDF(packagePath, pdfPath);
+        }
+        finally
+        {
+            Files.deleteIfExists(packagePath);
+        }
+    }
+
+    /**
+     * Renders the populated package in the buffer to a PDF file, possibly in the background.
+     * The buffer is only read while this is called, so the caller can reuse it for the next package as soon as this returns.
+     * By default, the package is rendered straight away on the calling thread and the future that is returned is already complete.
+     *
+     * @param packageBuffer        The populated package, from the position to the limit of the buffer. The buffer is only read while this is called, and its position isn't moved.
+     * @param packageFileExtension The file extension of the package, so that the renderer knows what kind of package it is. eg: ".pptx"
+     * @param pdfPath              The path of the PDF file to write.
+     * @return A future that completes with the path of the PDF file once it has been written, or completes exceptionally if rendering failed.
+     */
+    default CompletableFuture<Path> renderToPDFAsync(ByteBuffer packageBuffer, String packageFileExtension, Path pdfPath)
+    {
+        try
+        {
+            // Render the package straight away:
+            this.renderToPDF(packageBuffer, packageFileExtension, pdfPath);
+            return CompletableFuture.completedFuture(pdfPath);
+        }
+        catch (Exception e)
+        {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Writes the package in the buffer to a new temporary file, for renderers that can only open files.
+     * The caller must delete the file once it has been rendered.
+     *
+     * @param packageBuffer        The populated package, from the position to the limit of the buffer. Its position isn't moved.
+     * @param packageFileExtension The file extension of the package. eg: ".pptx"
+     * @return The path of the temporary file with the package in it.
+     */
+    static Path writeTemporaryPackage(ByteBuffer packageBuffer, String packageFileExtension) throws IOException
+    {
+        Path packagePath = Files.createTempFile("certificate-", packageFileExtension);
+        try (FileChannel channel = FileChannel.open(packagePath, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer bytes = packageBuffer.duplicate();
+            while (bytes.hasRemaining())
+            {
+                channel.write(bytes);
+            }
+        }
+        catch (IOException e)
+        {
+            // Don't leave half a package behind:
+            Files.deleteIfExists(packagePath);
+            throw e;
+        }
+        return packagePath;
+    }
+
+    /**
+     * Renders everything that has been handed to the renderer but is still waiting to be rendered.
+     * Renderers that collect packages so that they can render several of them at once (such as {@link BatchExportRenderer}) override this.
+     * By default, every package is rendered as soon as it is handed over, so there is nothing to do.
+     */
+    default void flush() throws Exception
+    {
+    }
+
+    /**
+     * Stops the renderer and releases everything that it was holding on to.
+     * It is safe to stop a renderer that was never started or that was already stopped.
+     */
+    void stop() throws Exception;
+
+    /**
+     * Stops the renderer.
+     * This method is invoked automatically on objects managed by the {@code try}-with-resources statement.
+     */
+    @Override
+    default void close() throws Exception
+    {
+        this.stop();
+    }
+}
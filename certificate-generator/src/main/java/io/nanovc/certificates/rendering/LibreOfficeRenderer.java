@@ -0,0 +1,206 @@
+package io.nanovc.certificates.rendering;
+
+import com.sun.star.lang.DisposedException;
+import io.nanovc.certificates.office.libreoffice.LibreOffice;
+import io.nanovc.certificates.office.libreoffice.Presentation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * This renders populated presentations to PDF with a headless LibreOffice listener.
+ * The renderer starts its own listener, with its own user profile, and connects to it once.
+ * The connection is reused for every presentation, so soffice isn't started for each file.
+ * Put several of these in a {@link RendererPool} for a pool of listeners that render at the same time.
+ * This works anywhere that LibreOffice is installed, including Linux.
+ */
+public class LibreOfficeRenderer implements CertificateRenderer
+{
+    /**
+     * The path to the soffice executable. eg: "soffice" to find it on the path, or "/usr/bin/soffice"
+     */
+    private final String pathToSoffice;
+
+    /**
+     * The path to the folder where the user profile of the listener is created. Null to create it in the temporary folder.
+     */
+    private final Path profilesFolder;
+
+    /**
+     * How long to wait for the listener to start accepting connections.
+     */
+    private final Duration startTimeout;
+
+    /**
+     * The path to the user profile of our listener. Null if we haven't been started.
+     */
+    protected Path profilePath;
+
+    /**
+     * The LibreOffice listener that we are connected to. Null if we haven't been started.
+     */
+    protected LibreOffice libreOffice;
+
+    /**
+     * Creates a new renderer that starts its own LibreOffice listener.
+     *
+     * @param pathToSoffice  The path to the soffice executable. eg: "soffice" to find it on the path, or "/usr/bin/soffice"
+     * @param profilesFolder The path to the folder where the user profile of the listener is created. Null to create it in the temporary folder.
+     * @param startTimeout   How long to wait for the listener to start accepting connections.
+     */
+    public LibreOfficeRenderer(String pathToSoffice, Path profilesFolder, Duration startTimeout)
+    {
+        this.pathToSoffice = pathToSoffice;
+        this.profilesFolder = profilesFolder;
+        this.startTimeout = startTimeout;
+    }
+
+    /**
+     * Creates a user profile that only our listener uses, then starts the listener and connects to it.
+     */
+    @Override
+    public void start() throws Exception
+    {
+        // Create a user profile that only our listener uses, because LibreOffice locks the profile that it runs with:
+        if (this.profilesFolder == null)
+        {
+            this.profilePath = Files.createTempDirectory("libreoffice-profile-");
+        }
+        else
+        {
+            Files.createDirectories(this.profilesFolder);
+            this.profilePath = Files.createTempDirectory(this.profilesFolder, "libreoffice-profile-");
+        }
+
+        try
+        {
+            // Start the listener:
+            startLibreOffice();
+        }
+        catch (Exception e)
+        {
+            // Don't leave the user profile behind if the listener didn't start:
+            stop();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts the listener with our user profile and connects to it.
+     */
+    protected void startLibreOffice() throws Exception
+    {
+        this.libreOffice = new LibreOffice(this.pathToSoffice, this.profilePath, this.startTimeout);
+        this.libreOffice.start();
+    }
+
+    /**
+     * Opens the populated presentation in LibreOffice and exports it as a PDF.
+     * If the listener has gone away, it is started again and the presentation is rendered once more.
+     *
+     * @param packagePath The path to the populated presentation to render.
+     * @param pdfPath     The path of the PDF file to write.
+     */
+    @Override
+    public void renderToPDF(Path packagePath, Path pdfPath) throws Exception
+    {
+        try
+        {
+            exportToPDF(packagePath, pdfPath);
+        }
+        catch (DisposedException e)
+        {
+            // The listener crashed or was killed, so start it again and try once more:
+            this.libreOffice.quit();
+            startLibreOffice();
+            exportToPDF(packagePath, pdfPath);
+        }
+    }
+
+    /**
+     * Opens the populated presentation in LibreOffice straight from memory and exports it as a PDF, so the presentation never touches the file system.
+     * If the listener has gone away, it is started again and the presentation is rendered once more.
+     *
+     * @param packageBuffer        The populated presentation, from the position to the limit of the buffer. Its position isn't moved.
+     * @param packageFileExtension The file extension of the presentation. LibreOffice detects the kind of presentation from its content, so this isn't needed.
+     * @param pdfPath              The path of the PDF file to write.
+     */
+    @Override
+    public void renderToPDF(ByteBuffer packageBuffer, String packageFileExtension, Path pdfPath) throws Exception
+    {
+        try
+        {
+            exportToPDF(this.libreOffice.openPresentation(packageBuffer), pdfPath);
+        }
+        catch (DisposedException e)
+        {
+            // The listener crashed or was killed, so start it again and try once more:
+            this.libreOffice.quit();
+            startLibreOffice();
+            exportToPDF(this.libreOffice.openPresentation(packageBuffer), pdfPath);
+        }
+    }
+
+    /**
+     * Opens the populated presentation on our connection to the listener and exports it as a PDF.
+     *
+     * @param packagePath The path to the populated presentation to render.
+     * @param pdfPath     The path of the PDF file to write.
+     */
+    protected void exportToPDF(Path packagePath, Path pdfPath) throws IOException
+    {
+        exportToPDF(this.libreOffice.openPresentation(packagePath), pdfPath);
+    }
+
+    /**
+     * Exports the presentation that is open on our connection to the listener as a PDF, and then closes it.
+     *
+     * @param presentation The presentation to export.
+     * @param pdfPath      The path of the PDF file to write.
+     */
+    protected void exportToPDF(Presentation presentation, Path pdfPath) throws IOException
+    {
+        try
+        {
+            // Export the presentation as a PDF:
+            presentation.exportToPDF(pdfPath);
+        }
+        finally
+        {
+            // Close the presentation:
+            presentation.close();
+        }
+    }
+
+    /**
+     * Quits the LibreOffice listener and deletes its user profile.
+     */
+    @Override
+    public void stop() throws Exception
+    {
+        // Check whether we need to quit:
+        if (this.libreOffice != null)
+        {
+            this.libreOffice.quit();
+            this.libreOffice = null;
+        }
+
+        // Delete the user profile:
+        if (this.profilePath != null)
+        {
+            try (Stream<Path> paths = Files.walk(this.profilePath))
+            {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                {
+                    Files.deleteIfExists(path);
+                }
+            }
+            this.profilePath = null;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.nanovc.certificates.rendering;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.multipdf.Splitter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * This splits a PDF with many pages into a PDF for each page.
+ * This is used when a batch of certificates is rendered to a single PDF, with a page for each certificate.
+ * <p>
+ * The pages are split at the level of the PDF objects, so nothing is rendered again.
+ * Each new PDF gets the page and the objects that it refers to (such as fonts and images), copied as they are.
+ */
+public class PdfSplitter
+{
+    /**
+     * Splits the PDF into a PDF for each page.
+     *
+     * @param pdfPath   The path to the PDF to split.
+     * @param pagePaths The path of the PDF to write for each page, in the order of the pages.
+     * @throws IOException If the PDF can't be read, or if it doesn't have a page for each path.
+     */
+    public static void splitPages(Path pdfPath, List<Path> pagePaths) throws IOException
+    {
+        try (PDDocument document = Loader.loadPDF(pdfPath.toFile()))
+        {
+            // Make sure that there is a page for each path:
+            if (document.getNumberOfPages() != pagePaths.size())
+            {
+                throw new IOException("Expected " + pagePaths.size() + " pages in " + pdfPath + " but there are " + document.getNumberOfPages());
+            }
+
+            // Split the document into a document for each page:
+            Splitter splitter = new Splitter();
+            splitter.setSplitAtPage(1);
+            List<PDDocument> pages = splitter.split(document);
+
+            // Save each page to its own path:
+            try
+            {
+                for (int i = 0; i < pages.size(); i++)
+                {
+                    pages.get(i).save(pagePaths.get(i).toFile());
+                }
+            }
+            finally
+            {
+                // Release each page:
+                for (PDDocument page : pages)
+                {
+                    page.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package io.nanovc.certificates.rendering;
+
+import io.nanovc.certificates.office.powerpoint.PowerPoint;
+import io.nanovc.certificates.office.powerpoint.Presentation;
+
+import java.nio.file.Path;
+
+/**
+ * This exports batches of packages to PDF by running a macro inside PowerPoint, so the whole batch is a single call through COM.
+ * The macro is the BatchExport module that comes with the generator (BatchExport.bas in the resources next to this class).
+ * Import it into a macro enabled presentation (.pptm) and point this application at that presentation.
+ * This only works on Windows with Office installed, and PowerPoint must be allowed to run the macros in the presentation.
+ */
+public class PowerPointBatchExportApplication implements BatchExportApplication
+{
+    /**
+     * The name of the macro that exports a manifest, as it is in the BatchExport module.
+     */
+    public static final String DEFAULT_MACRO_NAME = "BatchExport.ExportManifest";
+
+    /**
+     * The path to the macro enabled presentation that has the macro in it.
+     */
+    private final Path macroPresentationPath;
+
+    /**
+     * The name of the macro in the presentation that exports a manifest. eg: "BatchExport.ExportManifest"
+     */
+    private final String macroName;
+
+    /**
+     * The PowerPoint application that we are automating. Null if we haven't been started.
+     */
+    protected PowerPoint powerPoint;
+
+    /**
+     * The presentation with the macro in it, which stays open so that the macro can be run. Null if we haven't been started.
+     */
+    protected Presentation macroPresentation;
+
+    /**
+     * Creates a new application that runs the default macro in the given presentation.
+     *
+     * @param macroPresentationPath The path to the macro enabled presentation that has the macro in it.
+     */
+    public PowerPointBatchExportApplication(Path macroPresentationPath)
+    {
+        this(macroPresentationPath, DEFAULT_MACRO_NAME);
+    }
+
+    /**
+     * Creates a new application that runs the given macro in the given presentation.
+     *
+     * @param macroPresentationPath The path to the macro enabled presentation that has the macro in it.
+     * @param macroName             The name of the macro in the presentation that exports a manifest. eg: "BatchExport.ExportManifest"
+     */
+    public PowerPointBatchExportApplication(Path macroPresentationPath, String macroName)
+    {
+        this.macroPresentationPath = macroPresentationPath;
+        this.macroName = macroName;
+    }
+
+    /**
+     * Starts PowerPoint and opens the presentation with the macro in it.
+     */
+    @Override
+    public void start()
+    {
+        this.powerPoint = new PowerPoint();
+        this.powerPoint.start();
+        this.macroPresentation = this.powerPoint.openPresentation(this.macroPresentationPath);
+    }
+
+    /**
+     * Runs the macro in PowerPoint for the manifest.
+     *
+     * @param manifestPath The path of the manifest file.
+     */
+    @Override
+    public void exportManifest(Path manifestPath)
+    {
+        // Qualify the macro with the presentation that it is in:
+        String qualifiedMacroName = "'" + this.macroPresentationPath.getFileName() + "'!" + this.macroName;
+
+        // Run the macro, which loops through the whole manifest inside PowerPoint:
+        this.powerPoint.run(qualifiedMacroName, manifestPath.toAbsolutePath().normalize().toString());
+    }
+
+    /**
+     * Closes the presentation with the macro in it and quits PowerPoint.
+     */
+    @Override
+    public void stop()
+    {
+        // Close the presentation with the macro in it:
+        if (this.macroPresentation != null)
+        {
+            this.macroPresentation.close();
+            this.macroPresentation = null;
+        }
+
+        // Quit PowerPoint:
+        if (this.powerPoint != null)
+        {
+            this.powerPoint.quit();
+            this.powerPoint = null;
+        }
+    }
+}
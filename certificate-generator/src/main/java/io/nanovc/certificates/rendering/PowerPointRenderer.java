@@ -0,0 +1,62 @@
+package io.nanovc.certificates.rendering;
+
+import io.nanovc.certificates.office.powerpoint.PowerPoint;
+import io.nanovc.certificates.office.powerpoint.Presentation;
+import io.nanovc.certificates.office.powerpoint.SaveAsFileType;
+
+import java.nio.file.Path;
+
+/**
+ * This renders populated presentations to PDF by automating PowerPoint.
+ * This only works on Windows with Office installed.
+ */
+public class PowerPointRenderer implements CertificateRenderer
+{
+    /**
+     * The PowerPoint application that we are automating. Null if we haven't been started.
+     */
+    protected PowerPoint powerPoint;
+
+    /**
+     * Starts the PowerPoint application.
+     */
+    @Override
+    public void start()
+    {
+        this.powerPoint = new PowerPoint();
+        this.powerPoint.start();
+    }
+
+    /**
+     * Opens the populated presentation in PowerPoint and saves it as a PDF.
+     *
+     * @param packagePath The path to the populated presentation to render.
+     * @param pdfPath     The path of the PDF file to write.
+     */
+    @Override
+    public void renderToPDF(Path packagePath, Path pdfPath)
+    {
+        // Open the presentation:
+        Presentation presentation = this.powerPoint.openPresentation(packagePath);
+
+        // Save the presentation as a PDF:
+        presentation.saveAs(pdfPath, SaveAsFileType.ppSaveAsPDF, true);
+
+        // Close the presentation:
+        presentation.close();
+    }
+
+    /**
+     * Quits the PowerPoint application.
+     */
+    @Override
+    public void stop()
+    {
+        // Check whether we need to quit:
+        if (this.powerPoint != null)
+        {
+            this.powerPoint.quit();
+            this.powerPoint = null;
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package io.nanovc.certificates.rendering;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * This renders several packages at once by sharing the work between a pool of renderers.
+ * Each renderer is created, started, used and stopped on its own worker thread.
+ * The renderers only render in parallel if each of them owns its own process, like the {@link StubRenderer} and the {@link LibreOfficeRenderer}.
+ * This doesn't work for {@link PowerPointRenderer} or {@link BatchExportRenderer}, because PowerPoint is a single instance COM server:
+ * every worker would attach to the same PowerPoint application, wait for it in turn, and the first worker to stop would quit it for all the others.
+ * <p>
+ * Packages are handed to the workers through a bounded work queue.
+ * When the queue is full, {@link #renderToPDFAsync} waits for a worker to take a package, so the producer never gets too far ahead of the renderers.
+ * {@link #flush()} flushes the renderer of every worker once the packages that are already queued have been handed to them.
+ * The pool itself is only used from the thread that started it.
+ */
+public class RendererPool implements CertificateRenderer
+{
+    /**
+     * Creates each of the renderers in the pool. This is called on the worker thread that uses the renderer.
+     */
+    private final Supplier<CertificateRenderer> rendererFactory;
+
+    /**
+     * The number of worker threads, each with its own renderer.
+     */
+    private final int workerCount;
+
+    /**
+     * The number of packages that can be waiting in the work queue before {@link #renderToPDFAsync} waits for a worker to take one.
+     */
+    private final int queueCapacity;
+
+    /**
+     * The packages that are waiting for a worker to render them. Null if we haven't been started.
+     */
+    private BlockingQueue<RenderJob> workQueue;
+
+    /**
+     * The worker threads. Empty if we haven't been started.
+     */
+    private final List<Thread> workers = new ArrayList<>();
+
+    /**
+     * Creates a pool of renderers with a work queue that holds two packages for each worker.
+     *
+     * @param workerCount     The number of worker threads, each with its own renderer.
+     * @param rendererFactory Creates each of the renderers in the pool. This is called on the worker thread that uses the renderer.
+     */
+    public RendererPool(int workerCount, Supplier<CertificateRenderer> rendererFactory)
+    {
+        this(workerCount, workerCount * 2, rendererFactory);
+    }
+
+    /**
+     * Creates a pool of renderers.
+     *
+     * @param workerCount     The number of worker threads, each with its own renderer.
+     * @param queueCapacity   The number of packages that can be waiting in the work queue before {@link #renderToPDFAsync} waits for a worker to take one.
+     * @param rendererFactory Creates each of the renderers in the pool. This is called on the worker thread that uses the renderer.
+     */
+    public RendererPool(int workerCount, int queueCapacity, Supplier<CertificateRenderer> rendererFactory)
+    {
+        if (workerCount < 1) throw new IllegalArgumentException("A renderer pool needs at least one worker but " + workerCount + " were requested.");
+        if (queueCapacity < 1) throw new IllegalArgumentException("The work queue of a renderer pool must hold at least one package but a capacity of " + queueCapacity + " was requested.");
+        this.workerCount = workerCount;
+        this.queueCapacity = queueCapacity;
+        this.rendererFactory = rendererFactory;
+    }
+
+    /**
+     * Gets the number of worker threads, each with its own renderer.
+     *
+     * @return The number of worker threads.
+     */
+    public int getWorkerCount()
+    {
+        return this.workerCount;
+    }
+
+    /**
+     * Gets the number of packages that can be waiting in the work queue.
+     *
+     * @return The capacity of the work queue.
+     */
+    public int getQueueCapacity()
+    {
+        return this.queueCapacity;
+    }
+
+    /**
+     * Starts each worker thread and waits until each of them has started its own renderer.
+     * If any renderer fails to start then the workers that did start are stopped again and the failure is thrown.
+     */
+    @Override
+    public void start() throws Exception
+    {
+        // Make sure that we aren't running already:
+        if (this.workQueue != null) throw new IllegalStateException("The renderer pool has already been started.");
+
+        // Create the work queue:
+        this.workQueue = new ArrayBlockingQueue<>(this.queueCapacity);
+
+        // Start each worker, remembering when its renderer is ready:
+        List<CompletableFuture<Void>> startingWorkers = new ArrayList<>(this.workerCount);
+        for (int workerIndex = 0; workerIndex < this.workerCount; workerIndex++)
+        {
+            CompletableFuture<Void> started = new CompletableFuture<>();
+            Thread worker = new Thread(() -> work(started), "Renderer-" + workerIndex);
+            worker.setDaemon(true);
+            this.workers.add(worker);
+            startingWorkers.add(started);
+            worker.start();
+        }
+
+        // Wait for each renderer to be started, remembering the first one that failed:
+        Exception startFailure = null;
+        for (CompletableFuture<Void> started : startingWorkers)
+        {
+            try
+            {
+                started.get();
+            }
+            catch (ExecutionException e)
+            {
+                if (startFailure == null) startFailure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        // Check whether any renderer failed to start:
+        if (startFailure != null)
+        {
+            // Stop the workers that did start:
+            this.stop();
+
+            // Throw the reason that the renderer didn't start:
+            throw startFailure;
+        }
+    }
+
+    /**
+     * Renders the package on one of the workers and waits for the PDF to be written.
+     * The workers are flushed so that renderers that collect packages render this one straight away.
+     *
+     * @param packagePath The path to the populated package to render.
+     * @param pdfPath     The path of the PDF file to write.
+     */
+    @Override
+    public void renderToPDF(Path packagePath, Path pdfPath) throws Exception
+    {
+        try
+        {
+            CompletableFuture<Path> result = this.renderToPDFAsync(packagePath, pdfPath);
+            if (!result.isDone()) this.flush();
+            result.join();
+        }
+        catch (CompletionException e)
+        {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Queues the package to be rendered by the next free worker.
+     * This waits if the work queue is full.
+     *
+     * @param packagePath The path to the populated package to render.
+     * @param pdfPath     The path of the PDF file to write.
+     * @return A future that completes, on the worker thread, with the path of the PDF file once it has been written.
+     */
+    @Override
+    public CompletableFuture<Path> renderToPDFAsync(Path packagePath, Path pdfPath)
+    {
+        // Make sure that we have been started:
+        if (this.workQueue == null) throw new IllegalStateException("The renderer pool must be started before it can render.");
+
+        // Queue the package for the workers, waiting for space if the queue is full:
+        return queue(new RenderJob(packagePath, null, null, pdfPath));
+    }
+
+    /**
+     * Renders the package in the buffer on one of the workers and waits for the PDF to be written.
+     * The workers are flushed so that renderers that collect packages render this one straight away.
+     *
+     * @param packageBuffer        The populated package, from the position to the limit of the buffer. Its position isn't moved.
+     * @param packageFileExtension The file extension of the package. eg: ".pptx"
+     * @param pdfPath              The path of the PDF file to write.
+     */
+    @Override
+    public void renderToPDF(ByteBuffer packageBuffer, String packageFileExtension, Path pdfPath) throws Exception
+    {
+        try
+        {
+            CompletableFuture<Path> result = this.renderToPDFAsync(packageBuffer, packageFileExtension, pdfPath);
+            if (!result.isDone()) this.flush();
+            result.join();
+        }
+        catch (CompletionException e)
+        {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Copies the package in the buffer and queues the copy to be rendered by the next free worker.
+     * The copy is taken before this returns, so the caller can reuse the buffer for the next package straight away.
+     * This waits if the work queue is full.
+     *
+     * @param packageBuffer        The populated package, from the position to the limit of the buffer. Its position isn't moved.
+     * @param packageFileExtension The file extension of the package. eg: ".pptx"
+     * @param pdfPath              The path of the PDF file to write.
+     * @return A future that completes, on the worker thread, with the path of the PDF file once it has been written.
+     */
+    @Override
+    public CompletableFuture<Path> renderToPDFAsync(ByteBuffer packageBuffer, String packageFileExtension, Path pdfPath)
+    {
+        // Make sure that we have been started:
+        if (this.workQueue == null) throw new IllegalStateException("The renderer pool must be started before it can render.");
+
+        // Copy the package, because the caller reuses the buffer while the package waits in the queue:
+        ByteBuffer packageCopy = ByteBuffer.allocate(packageBuffer.remaining());
+        packageCopy.put(packageBuffer.duplicate()).flip();
+
+        // Queue the copy for the workers, waiting for space if the queue is full:
+        return queue(new RenderJob(null, packageCopy, packageFileExtension, pdfPath));
+    }
+
+    /**
+     * Puts the job in the work queue, waiting for space if the queue is full.
+     *
+     * @param job The job to queue.
+     * @return The future of the job.
+     */
+    private CompletableFuture<Path> queue(RenderJob job)
+    {
+        try
+        {
+            this.workQueue.put(job);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            job.result.completeExceptionally(e);
+        }
+        return job.result;
+    }
+
+    /**
+     * Waits for the workers to render every package that is already queued and then flushes the renderer of each worker.
+     * Each worker takes exactly one flush from the queue, because it waits for the other workers to take theirs before it carries on.
+     */
+    @Override
+    public void flush() throws Exception
+    {
+        // Make sure that we have been started:
+        if (this.workQueue == null) throw new IllegalStateException("The renderer pool must be started before it can be flushed.");
+
+        // Queue a flush for each worker behind the packages that are already queued:
+        CountDownLatch flushedWorkers = new CountDownLatch(this.workers.size());
+        List<RenderJob> flushJobs = new ArrayList<>(this.workers.size());
+        for (int i = 0; i < this.workers.size(); i++)
+        {
+            RenderJob flushJob = new RenderJob(flushedWorkers);
+            flushJobs.add(flushJob);
+            this.workQueue.put(flushJob);
+        }
+
+        // Wait for each worker to flush, throwing the first failure:
+        for (RenderJob flushJob : flushJobs)
+        {
+            try
+            {
+                flushJob.result.join();
+            }
+            catch (CompletionException e)
+            {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+    }
+
+    /**
+     * Waits for the workers to render every package that is already queued and then stops each worker and its renderer.
+     */
+    @Override
+    public void stop() throws Exception
+    {
+        // Check whether we were started:
+        if (this.workQueue == null) return;
+
+        // Tell each worker to finish once the packages before it are done:
+        for (int i = 0; i < this.workers.size(); i++)
+        {
+            this.workQueue.put(RenderJob.STOP);
+        }
+
+        // Wait for the workers to finish:
+        for (Thread worker : this.workers)
+        {
+            worker.join();
+        }
+        this.workers.clear();
+        this.workQueue = null;
+    }
+
+    /**
+     * The work that each worker thread does.
+     * The renderer is created, started and stopped on this thread, so that it only ever gets used from one thread.
+     *
+     * @param started Completed once the renderer has started, or completed exceptionally if it couldn't be started.
+     */
+    private void work(CompletableFuture<Void> started)
+    {
+        // Create and start our own renderer:
+        CertificateRenderer renderer = null;
+        try
+        {
+            renderer = this.rendererFactory.get();
+            renderer.start();
+            started.complete(null);
+        }
+        catch (Throwable e)
+        {
+            // Report the failure and carry on without a renderer, so that we still take our turn to stop:
+            started.completeExceptionally(e);
+            stopQuietly(renderer);
+            renderer = null;
+        }
+
+        try
+        {
+            // Render each package until we are told to stop:
+            while (true)
+            {
+                RenderJob job = this.workQueue.take();
+                if (job == RenderJob.STOP) break;
+
+                // Check whether we must flush our renderer:
+                if (job.flushedWorkers != null)
+                {
+                    try
+                    {
+                        if (renderer != null) renderer.flush();
+                        job.result.complete(null);
+                    }
+                    catch (Throwable e)
+                    {
+                        job.result.completeExceptionally(e);
+                    }
+
+                    // Wait for the other workers to take their flush, so that we don't take two:
+                    job.flushedWorkers.countDown();
+                    job.flushedWorkers.await();
+                    continue;
+                }
+
+                try
+                {
+                    // Hand the package to our renderer, which might hold on to it until it is full or flushed:
+                    if (renderer == null) throw new IllegalStateException("The renderer on " + Thread.currentThread().getName() + " failed to start.");
+                    CompletableFuture<Path> rendering = job.packageBuffer == null ? renderer.renderToPDFAsync(job.packagePath, job.pdfPath) : renderer.renderToPDFAsync(job.packageBuffer, job.packageFileExtension, job.pdfPath);
+                    rendering.whenComplete((pdfPath, failure) ->
+                    {
+                        if (failure == null) job.result.complete(job.pdfPath);
+                        else job.result.completeExceptionally(failure);
+                    });
+                }
+                catch (Throwable e)
+                {
+                    job.result.completeExceptionally(e);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            stopQuietly(renderer);
+        }
+    }
+
+    /**
+     * Stops the renderer, ignoring any failure because there is nobody left to report it to.
+     *
+     * @param renderer The renderer to stop. Null to do nothing.
+     */
+    private static void stopQuietly(CertificateRenderer renderer)
+    {
+        if (renderer == null) return;
+        try
+        {
+            renderer.stop();
+        }
+        catch (Exception e)
+        {
+            System.err.println("Failed to stop the renderer on " + Thread.currentThread().getName() + ": " + e);
+        }
+    }
+
+    /**
+     * A package that is waiting in the work queue to be rendered.
+     */
+    private static final class RenderJob
+    {
+        /**
+         * The job that tells a worker to stop once the packages before it are done.
+         */
+        static final RenderJob STOP = new RenderJob(null, null, null, null);
+
+        /**
+         * The path to the populated package to render. Null if the package is in the {@link #packageBuffer}.
+         */
+        final Path packagePath;
+
+        /**
+         * The copy of the populated package to render. Null if the package is in the file at the {@link #packagePath}.
+         */
+        final ByteBuffer packageBuffer;
+
+        /**
+         * The file extension of the package in the {@link #packageBuffer}. eg: ".pptx"
+         */
+        final String packageFileExtension;
+
+        /**
+         * The path of the PDF file to write.
+         */
+        final Path pdfPath;
+
+        /**
+         * Counts down as each worker takes its flush. Null if this job renders a package instead of flushing.
+         */
+        final CountDownLatch flushedWorkers;
+
+        /**
+         * Completed by the worker once the PDF has been written, or once the renderer has been flushed.
+         */
+        final CompletableFuture<Path> result = new CompletableFuture<>();
+
+        RenderJob(Path packagePath, ByteBuffer packageBuffer, String packageFileExtension, Path pdfPath)
+        {
+            this.packagePath = packagePath;
+            this.packageBuffer = packageBuffer;
+            this.packageFileExtension = packageFileExtension;
+            this.pdfPath = pdfPath;
+            this.flushedWorkers = null;
+        }
+
+        RenderJob(CountDownLatch flushedWorkers)
+        {
+            this.packagePath = null;
+            this.packageBuffer = null;
+            this.packageFileExtension = null;
+            this.pdfPath = null;
+            this.flushedWorkers = flushedWorkers;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package io.nanovc.certificates.rendering;
+
+/**
+ * The kinds of {@link CertificateRenderer renderers} that come with the certificate generator.
+ */
+public enum RendererType
+{
+    /**
+     * Renders the certificates by automating PowerPoint through COM. This only works on Windows with Office installed.
+     */
+    POWERPOINT,
+
+    /**
+     * Renders the certificates with a macro that runs inside PowerPoint and exports a whole manifest of files in one call through COM.
+     * This only works on Windows with Office installed, and needs a macro enabled presentation with the BatchExport macro module in it.
+     */
+    POWERPOINT_MACRO,
+
+    /**
+     * Renders the certificates with a headless LibreOffice listener that stays running and is connected to once.
+     * This works anywhere that LibreOffice is installed, including Linux.
+     * Each renderer in a pool starts its own listener with its own user profile.
+     */
+    LIBREOFFICE,
+
+    /**
+     * Writes a tiny placeholder PDF for each certificate, after waiting for a configurable time to simulate the work of a real renderer.
+     * This works on any machine, so the rest of the generation pipeline can be run and measured without Office.
+     */
+    STUB,
+
+    ;
+
+    /**
+     * Checks whether several renderers of this type can render at the same time in a {@link RendererPool}.
+     * PowerPoint is a single instance COM server, so every renderer would attach to the same PowerPoint application instead of rendering in parallel,
+     * and the first renderer to stop would quit the application while the others are still using it.
+     *
+     * @return True if each renderer of this type owns its own process. False if they would share a single PowerPoint application.
+     */
+    public boolean canRenderInParallel()
+    {
+        return this != POWERPOINT && this != POWERPOINT_MACRO;
+    }
+}
@@ -0,0 +1,314 @@
+package io.nanovc.certificates.rendering;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * This is a renderer that doesn't need Office, so the rest of the generation pipeline can be run and measured on any machine.
+ * It writes a tiny but valid PDF for each package, with a page for each slide in the package and the name of the package on each page.
+ * The PDF only depends on the name of the package and the number of slides in it, so the output is the same every time.
+ * <p>
+ * Real renderers take a while for each certificate, so the stub can wait for a configurable time before it writes each PDF.
+ * This simulates the latency of a real renderer when measuring throughput.
+ */
+public class StubRenderer implements CertificateRenderer
+{
+    /**
+     * Finds the slides in a PowerPoint package.
+     */
+    private static final Pattern SLIDE_ENTRY_PATTERN = Pattern.compile("ppt/slides/[^/]+\\.xml");
+
+    /**
+     * How long to wait before writing each PDF, to simulate the latency of a real renderer.
+     */
+    private final Duration renderLatency;
+
+    /**
+     * The number of PDFs that have been rendered since we were started.
+     */
+    private long renderCount;
+
+    /**
+     * Whether we have been started and not stopped yet.
+     */
+    private boolean started;
+
+    /**
+     * Creates a stub renderer that writes each PDF straight away.
+     */
+    public StubRenderer()
+    {
+        this(Duration.ZERO);
+    }
+
+    /**
+     * Creates a stub renderer that waits before writing each PDF.
+     *
+     * @param renderLatency How long to wait before writing each PDF, to simulate the latency of a real renderer.
+     */
+    public StubRenderer(Duration renderLatency)
+    {
+        this.renderLatency = renderLatency;
+    }
+
+    /**
+     * Gets how long we wait before writing each PDF.
+     *
+     * @return How long we wait before writing each PDF.
+     */
+    public Duration getRenderLatency()
+    {
+        return this.renderLatency;
+    }
+
+    /**
+     * Gets the number of PDFs that have been rendered since we were started.
+     *
+     * @return The number of PDFs that have been rendered.
+     */
+    public long getRenderCount()
+    {
+        return this.renderCount;
+    }
+
+    /**
+     * Starts the renderer.
+     */
+    @Override
+    public void start()
+    {
+        this.started = true;
+        this.renderCount = 0;
+    }
+
+    /**
+     * Waits for the simulated latency and then writes a placeholder PDF for the package.
+     *
+     * @param packagePath The path to the populated package to render.
+     * @param pdfPath     The path of the PDF file to write.
+     */
+    @Override
+    public void renderToPDF(Path packagePath, Path pdfPath) throws Exception
+    {
+        writePDF(packagePath.getFileName().toString(), countSlides(packagePath), pdfPath);
+    }
+
+    /**
+     * Waits for the simulated latency and then writes a placeholder PDF for the package in the buffer, without writing the package to a file.
+     * The PDF is the same as for a package file with the same name as the PDF and the given file extension.
+     *
+     * @param packageBuffer        The populated package, from the position to the limit of the buffer. Its position isn't moved.
+     * @param packageFileExtension The file extension of the package. eg: ".pptx"
+     * @param pdfPath              The path of the PDF file to write.
+     */
+    @Override
+    public void renderToPDF(ByteBuffer packageBuffer, String packageFileExtension, Path pdfPath) throws Exception
+    {
+        // Name the package after the PDF, the same as the generator names the package files:
+        String pdfFileName = pdfPath.getFileName().toString();
+        String packageName = (pdfFileName.endsWith(".pdf") ? pdfFileName.substring(0, pdfFileName.length() - ".pdf".length()) : pdfFileName) + packageFileExtension;
+
+        writePDF(packageName, countSlides(packageBuffer), pdfPath);
+    }
+
+    /**
+     * Waits for the simulated latency and then writes a placeholder PDF with a page for each slide.
+     *
+     * @param packageName The name of the package, which is shown on each page.
+     * @param slideCount  The number of slides in the package.
+     * @param pdfPath     The path of the PDF file to write.
+     */
+    protected void writePDF(String packageName, int slideCount, Path pdfPath) throws Exception
+    {
+        // Make sure that we have been started, the same as a real renderer:
+        if (!this.started) throw new IllegalStateException("The stub renderer must be started before it can render.");
+
+        // Simulate the time that a real renderer takes:
+        if (!this.renderLatency.isZero()) Thread.sleep(this.renderLatency.toMillis(), this.renderLatency.toNanosPart() % 1_000_000);
+
+        // Write the placeholder PDF with a page for each slide:
+        List<String> pageTexts = new ArrayList<>(slideCount);
+        for (int slide = 1; slide <= slideCount; slide++)
+        {
+            pageTexts.add(slideCount == 1 ? packageName : packageName + " " + slide);
+        }
+        Files.write(pdfPath, createPDF(pageTexts));
+        this.renderCount++;
+    }
+
+    /**
+     * Counts the slides in the package, the same as the pages that a real renderer would make.
+     *
+     * @param packagePath The path to the package.
+     * @return The number of slides in the package. One if the package doesn't exist or isn't a PowerPoint package, because a real renderer always makes at least one page.
+     */
+    protected int countSlides(Path packagePath)
+    {
+        // Check whether there is a package to look in:
+        if (!Files.isRegularFile(packagePath)) return 1;
+
+        // Count the slides in the package:
+        try (ZipFile zipFile = new ZipFile(packagePath.toFile()))
+        {
+            int slideCount = (int) zipFile.stream().filter(entry -> SLIDE_ENTRY_PATTERN.matcher(entry.getName()).matches()).count();
+            return Math.max(slideCount, 1);
+        }
+        catch (IOException e)
+        {
+            // This isn't a zip package:
+            return 1;
+        }
+    }
+
+    /**
+     * Counts the slides in the package in the buffer, the same as the pages that a real renderer would make.
+     *
+     * @param packageBuffer The package, from the position to the limit of the buffer. Its position isn't moved.
+     * @return The number of slides in the package. One if the package isn't a PowerPoint package, because a real renderer always makes at least one page.
+     */
+    protected int countSlides(ByteBuffer packageBuffer)
+    {
+        // Read the entries of the package straight out of the buffer:
+        ByteBuffer bytes = packageBuffer.duplicate();
+        int slideCount = 0;
+        try (ZipInputStream zipInputStream = new ZipInputStream(new InputStream()
+        {
+            @Override
+            public int read()
+            {
+                return bytes.hasRemaining() ? bytes.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length)
+            {
+                if (!bytes.hasRemaining()) return -1;
+                int count = Math.min(length, bytes.remaining());
+                bytes.get(buffer, offset, count);
+                return count;
+            }
+        }))
+        {
+            for (ZipEntry entry = zipInputStream.getNextEntry(); entry != null; entry = zipInputStream.getNextEntry())
+            {
+                if (SLIDE_ENTRY_PATTERN.matcher(entry.getName()).matches()) slideCount++;
+            }
+        }
+        catch (IOException e)
+        {
+            // This isn't a zip package:
+            return 1;
+        }
+        return Math.max(slideCount, 1);
+    }
+
+    /**
+     * Stops the renderer.
+     */
+    @Override
+    public void stop()
+    {
+        this.started = false;
+    }
+
+    /**
+     * Creates a tiny but valid PDF with a single landscape A4 page that shows the given line of text.
+     *
+     * @param text The line of text to show on the page. Characters outside of printable ASCII are replaced with '?'.
+     * @return The bytes of the PDF.
+     */
+    public static byte[] createPDF(String text)
+    {
+        return createPDF(List.of(text));
+    }
+
+    /**
+     * Creates a tiny but valid PDF with a landscape A4 page for each of the given lines of text.
+     * The cross reference table has the exact byte offset of each object, so PDF readers can open the file without repairing it.
+     *
+     * @param pageTexts The line of text to show on each page. Characters outside of printable ASCII are replaced with '?'.
+     * @return The bytes of the PDF.
+     */
+    public static byte[] createPDF(List<String> pageTexts)
+    {
+        // Define the objects of the document, with a page and its content for each line of text after the catalog, the pages and the font:
+        List<String> objects = new ArrayList<>();
+        StringBuilder pageReferences = new StringBuilder();
+        for (int page = 0; page < pageTexts.size(); page++)
+        {
+            if (page > 0) pageReferences.append(' ');
+            pageReferences.append(4 + page * 2).append(" 0 R");
+        }
+        objects.add("<< /Type /Catalog /Pages 2 0 R >>");
+        objects.add("<< /Type /Pages /Kids [" + pageReferences + "] /Count " + pageTexts.size() + " >>");
+        objects.add("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>");
+        for (int page = 0; page < pageTexts.size(); page++)
+        {
+            String content = "BT /F1 24 Tf 72 500 Td (" + escapeText(pageTexts.get(page)) + ") Tj ET";
+            objects.add("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 842 595] /Resources << /Font << /F1 3 0 R >> >> /Contents " + (5 + page * 2) + " 0 R >>");
+            objects.add("<< /Length " + content.length() + " >>\nstream\n" + content + "\nendstream");
+        }
+
+        // Write the objects, remembering where each one starts:
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        writeAscii(pdf, "%PDF-1.4\n");
+        int[] objectOffsets = new int[objects.size()];
+        for (int i = 0; i < objects.size(); i++)
+        {
+            objectOffsets[i] = pdf.size();
+            writeAscii(pdf, (i + 1) + " 0 obj\n" + objects.get(i) + "\nendobj\n");
+        }
+
+        // Write the cross reference table and the trailer:
+        int crossReferenceOffset = pdf.size();
+        writeAscii(pdf, "xref\n0 " + (objects.size() + 1) + "\n0000000000 65535 f \n");
+        for (int objectOffset : objectOffsets)
+        {
+            writeAscii(pdf, String.format("%010d 00000 n \n", objectOffset));
+        }
+        writeAscii(pdf, "trailer\n<< /Size " + (objects.size() + 1) + " /Root 1 0 R >>\nstartxref\n" + crossReferenceOffset + "\n%%EOF\n");
+        return pdf.toByteArray();
+    }
+
+    /**
+     * Escapes the text for a PDF string.
+     *
+     * @param text The text to escape. Characters outside of printable ASCII are replaced with '?'.
+     * @return The escaped text.
+     */
+    private static String escapeText(String text)
+    {
+        StringBuilder escapedText = new StringBuilder();
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c == '(' || c == ')' || c == '\\') escapedText.append('\\').append(c);
+            else if (c < ' ' || c > '~') escapedText.append('?');
+            else escapedText.append(c);
+        }
+        return escapedText.toString();
+    }
+
+    /**
+     * Writes ASCII text to the PDF.
+     *
+     * @param pdf  The PDF to write to.
+     * @param text The text to write.
+     */
+    private static void writeAscii(ByteArrayOutputStream pdf, String text)
+    {
+        pdf.writeBytes(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,76 @@
+Attribute VB_Name = "BatchExport"
+' Exports a whole manifest of presentations to PDF inside PowerPoint, so that the certificate generator
+' only makes one call through COM for the whole batch instead of several calls for every presentation.
+'
+' Import this module into a macro enabled presentation (.pptm) and point pathToBatchExportMacroPresentation at it.
+' The generator runs ExportManifest through Application.Run with the path of the manifest.
+'
+' The manifest is a UTF-8 text file with a line for each presentation: the path to the presentation, a tab and the path of the PDF.
+' The status of each presentation is written back to the manifest at the end of its line:
+' a tab and OK, or a tab, FAILED, a tab and the reason.
+Option Explicit
+
+Public Sub ExportManifest(ByVal manifestPath As String)
+    Dim lines() As String
+    Dim fields() As String
+    Dim report As String
+    Dim i As Long
+
+    ' Read the manifest:
+    lines = Split(ReadUtf8(manifestPath), vbLf)
+
+    ' Export each presentation in the manifest:
+    For i = LBound(lines) To UBound(lines)
+        If Len(Replace(lines(i), vbCr, "")) > 0 Then
+            fields = Split(Replace(lines(i), vbCr, ""), vbTab)
+            report = report & fields(0) & vbTab & fields(1) & vbTab & ExportPresentation(fields(0), fields(1)) & vbLf
+        End If
+    Next i
+
+    ' Write the status of each presentation back to the manifest:
+    WriteUtf8 manifestPath, report
+End Sub
+
+Private Function ExportPresentation(ByVal presentationPath As String, ByVal pdfPath As String) As String
+    Dim presentation As Object
+    Dim reason As String
+
+    On Error GoTo Failed
+    Set presentation = Presentations.Open(presentationPath, ReadOnly:=msoTrue, Untitled:=msoFalse, WithWindow:=msoFalse)
+    presentation.SaveAs pdfPath, ppSaveAsPDF, msoTrue
+    presentation.Close
+    ExportPresentation = "OK"
+    Exit Function
+
+Failed:
+    ' Keep the reason on its own line of the manifest:
+    reason = Replace(Replace(Replace(Err.Description, vbTab, " "), vbCr, " "), vbLf, " ")
+    ExportPresentation = "FAILED" & vbTab & reason
+    Resume CloseAfterFailure
+
+CloseAfterFailure:
+    On Error Resume Next
+    If Not presentation Is Nothing Then presentation.Close
+End Function
+
+Private Function ReadUtf8(ByVal path As String) As String
+    Dim stream As Object
+    Set stream = CreateObject("ADODB.Stream")
+    stream.Type = 2
+    stream.Charset = "utf-8"
+    stream.Open
+    stream.LoadFromFile path
+    ReadUtf8 = stream.ReadText
+    stream.Close
+End Function
+
+Private Sub WriteUtf8(ByVal path As String, ByVal text As String)
+    Dim stream As Object
+    Set stream = CreateObject("ADODB.Stream")
+    stream.Type = 2
+    stream.Charset = "utf-8"
+    stream.Open
+    stream.WriteText text
+    stream.SaveToFile path, 2
+    stream.Close
+End Sub
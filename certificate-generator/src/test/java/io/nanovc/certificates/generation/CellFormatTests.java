@@ -0,0 +1,85 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link CellFormat} and how typed cells are formatted for their column.
+ */
+class CellFormatTests
+{
+    @Test
+    public void formatDatesNumbersAndBooleans()
+    {
+        CellFormat dateFormat = new CellFormat("d MMMM yyyy", Locale.forLanguageTag("en-ZA"));
+        assertEquals("1 October 2024", dateFormat.format(LocalDateTime.of(2024, 10, 1, 0, 0)));
+
+        CellFormat numberFormat = new CellFormat("#,##0.00", Locale.forLanguageTag("de-DE"));
+        assertEquals("1.234,50", numberFormat.format(new BigDecimal("1234.5")));
+
+        CellFormat booleanFormat = new CellFormat("Yes|No", Locale.ROOT);
+        assertEquals("Yes", booleanFormat.format(true));
+        assertEquals("No", booleanFormat.format(false));
+
+        // Text is used as it is, no matter what the pattern is:
+        assertEquals("Not a date", dateFormat.format("Not a date"));
+    }
+
+    @Test
+    public void formatWithDefaults()
+    {
+        assertEquals("2024-10-01", CellFormat.DEFAULT.format(LocalDateTime.of(2024, 10, 1, 0, 0)));
+        assertEquals("2024-10-01T14:30", CellFormat.DEFAULT.format(LocalDateTime.of(2024, 10, 1, 14, 30)));
+        assertEquals("8206191234001", CellFormat.DEFAULT.format(new BigDecimal("8206191234001")));
+        assertEquals("TRUE", CellFormat.DEFAULT.format(true));
+        assertEquals("null", CellFormat.DEFAULT.format(null));
+    }
+
+    @Test
+    public void cacheFormattedValues()
+    {
+        CellFormat format = new CellFormat("d MMMM yyyy", Locale.ENGLISH);
+        String first = format.format(LocalDateTime.of(2024, 10, 1, 0, 0));
+        String second = format.format(LocalDateTime.of(2024, 10, 1, 0, 0));
+        assertSame(first, second);
+    }
+
+    @Test
+    public void formatTypedCellsForTheirColumn()
+    {
+        Table table = new Table();
+        table.columns.addColumn("Completion Date");
+        table.columns.addColumn("Mark");
+        table.columns.getColumn("Completion Date").format = new CellFormat("d MMMM yyyy", Locale.ENGLISH);
+        Row row = table.rows.addRow();
+        row.appendCell(LocalDateTime.of(2024, 10, 1, 0, 0));
+        row.appendCell(new BigDecimal("72.5"));
+
+        assertEquals("1 October 2024", row.getCellByColumnNameAsString("Completion Date"));
+        assertEquals("72.5", row.getCellByColumnNameAsString("Mark"));
+        assertEquals(new BigDecimal("72.5"), row.getCellByColumnIndex(1));
+        assertEquals("1 October 2024|72.5", row.toString());
+    }
+
+    @Test
+    public void recogniseDateFormats() throws Exception
+    {
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            assertTrue(generator.isDateFormat(14, "m/d/yyyy"));
+            assertTrue(generator.isDateFormat(164, "d mmmm yyyy"));
+            assertTrue(generator.isDateFormat(165, "[$-409]h:mm AM/PM"));
+            assertFalse(generator.isDateFormat(0, "General"));
+            assertFalse(generator.isDateFormat(166, "#,##0.00 \"days\""));
+            assertFalse(generator.isDateFormat(167, "[Red]0.00"));
+        }
+    }
+}
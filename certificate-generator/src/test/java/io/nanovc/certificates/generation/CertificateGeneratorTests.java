@@ -1,8 +1,21 @@
 package io.nanovc.certificates.generation;
 
+import io.nanovc.certificates.rendering.RendererPool;
+import io.nanovc.certificates.rendering.RendererType;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Tests the {@link CertificateGenerator}.
@@ -36,4 +49,90 @@ class CertificateGeneratorTests
             generator.generateCertificates();
         }
     }
+
+    @Test
+    public void certificateGenerationWithStubRendererTest(@TempDir Path outputFolder) throws Exception
+    {
+        // Render with the stub so that this works without Office:
+        List<Path> producedFiles = generateWithStubRenderer(outputFolder, 1, 0, 1);
+
+        // There must be a PDF for each certificate and no populated files left behind:
+        assertFalse(producedFiles.isEmpty());
+        assertTrue(producedFiles.stream().allMatch(path -> path.getFileName().toString().endsWith(".pdf")));
+    }
+
+    @Test
+    public void certificateGenerationWithPooledRenderersTest(@TempDir Path outputFolder) throws Exception
+    {
+        // Render with several stubs at once:
+        List<Path> producedFiles = generateWithStubRenderer(outputFolder, 4, 10, 1);
+
+        // There must be a PDF for each certificate and no populated files left behind:
+        assertFalse(producedFiles.isEmpty());
+        assertTrue(producedFiles.stream().allMatch(path -> path.getFileName().toString().endsWith(".pdf")));
+    }
+
+    @Test
+    public void rejectPooledPowerPointRenderersTest() throws Exception
+    {
+        try (var generator = new CertificateGenerator())
+        {
+            var config = new CertificateGenerationConfig();
+            config.rendererCount = 4;
+
+            // PowerPoint is a single instance application, so its renderers can't be pooled:
+            for (RendererType rendererType : List.of(RendererType.POWERPOINT, RendererType.POWERPOINT_MACRO))
+            {
+                config.rendererType = rendererType;
+                var exception = assertThrows(IllegalArgumentException.class, () -> generator.createRenderer(config));
+                assertTrue(exception.getMessage().contains("rendererCount of 4"), exception.getMessage());
+            }
+
+            // The other renderers own their own processes, so they are pooled:
+            for (RendererType rendererType : List.of(RendererType.LIBREOFFICE, RendererType.STUB))
+            {
+                config.rendererType = rendererType;
+                assertInstanceOf(RendererPool.class, generator.createRenderer(config));
+            }
+        }
+    }
+
+    @Test
+    public void certificateGenerationInBatchesTest(@TempDir Path outputFolder) throws Exception
+    {
+        // Generate the certificates one at a time and then in batches:
+        List<Path> pdfsOneAtATime = generateWithStubRenderer(outputFolder.resolve("One at a time"), 1, 0, 1);
+        List<Path> pdfsInBatches = generateWithStubRenderer(outputFolder.resolve("In batches"), 1, 0, 2);
+
+        // The batches must give the same PDFs, with the same names and folders:
+        assertFalse(pdfsOneAtATime.isEmpty());
+        assertEquals(pdfsOneAtATime, pdfsInBatches);
+    }
+
+    /**
+     * Generates the certificates with the stub renderer and gets the paths of the files that were produced, relative to the output folder.
+     * The snapshots of the parsed spreadsheets are left out.
+     */
+    private static List<Path> generateWithStubRenderer(Path outputFolder, int rendererCount, long stubRenderLatencyMillis, int batchSize) throws Exception
+    {
+        try (var generator = new CertificateGenerator())
+        {
+            var config = new CertificateGenerationConfig();
+            config.pathToExcelData = Paths.get("..","certificate-generator-folders", "Certificate Generator Data.xlsx").toString();
+            config.pathToTemplatePresentation = Paths.get("..","certificate-generator-folders", "3. Template", "Template.pptx").toString();
+            config.pathToTemplateMappingSpreadsheet = Paths.get("..","certificate-generator-folders", "3. Template", "Template Replacement Values.xlsx").toString();
+            config.pathToOutputFolder = outputFolder.toString();
+            config.rendererType = RendererType.STUB;
+            config.rendererCount = rendererCount;
+            config.stubRenderLatencyMillis = stubRenderLatencyMillis;
+            config.batchSize = batchSize;
+
+            generator.initialize(config);
+            generator.generateCertificates();
+        }
+        try (Stream<Path> files = Files.walk(outputFolder))
+        {
+            return files.filter(Files::isRegularFile).filter(path -> !path.startsWith(outputFolder.resolve(".snapshots"))).map(outputFolder::relativize).sorted().toList();
+        }
+    }
 }
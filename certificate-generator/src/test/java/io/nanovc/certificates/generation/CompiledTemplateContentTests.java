@@ -0,0 +1,110 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link CompiledTemplateContent}.
+ */
+class CompiledTemplateContentTests
+{
+    /**
+     * Compiles the content and writes it out with the given values.
+     */
+    private static String write(String content, List<String> templateValues, String... values) throws IOException
+    {
+        var compiledContent = CompiledTemplateContent.compile(content, TemplateValueMatcher.compile(templateValues));
+        var buffer = new ContentBuffer(16);
+        compiledContent.writeTo(values, null, buffer, new Utf8Encoder());
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void writeSlots() throws IOException
+    {
+        assertEquals(
+            "<a:t>Albert</a:t><a:t>Einstein</a:t><a:t>Albert</a:t>",
+            write("<a:t>FirstName</a:t><a:t>LastName</a:t><a:t>FirstName</a:t>", List.of("FirstName", "LastName"), "Albert", "Einstein")
+        );
+    }
+
+    @Test
+    public void countSlots()
+    {
+        var compiledContent = CompiledTemplateContent.compile("FirstName LastName FirstName", TemplateValueMatcher.compile(List.of("FirstName", "LastName")));
+        assertEquals(3, compiledContent.getSlotCount());
+    }
+
+    @Test
+    public void writeContentWithoutSlots() throws IOException
+    {
+        assertEquals("Nothing to replace", write("Nothing to replace", List.of("FirstName"), "Albert"));
+    }
+
+    @Test
+    public void writeMultiByteCharacters() throws IOException
+    {
+        // Cover 2, 3 and 4 byte encodings in both the literals and the values:
+        assertEquals(
+            "Zoë — Müller 𝄞 ✓",
+            write("FirstName — LastName 𝄞 ✓", List.of("FirstName", "LastName"), "Zoë", "Müller")
+        );
+    }
+
+    @Test
+    public void encodeLongValues() throws IOException
+    {
+        // Make a value that spans several encoder buffers:
+        String longValue = "ü𝄞a".repeat(5000);
+        assertEquals("[" + longValue + "]", write("[Value]", List.of("Value"), longValue));
+    }
+
+    @Test
+    public void encodeLikeStringGetBytes() throws IOException
+    {
+        // Unpaired surrogates can't be encoded:
+        String value = "a\uD800b\uDC00c";
+        var buffer = new ContentBuffer(16);
+        new Utf8Encoder().write(value, buffer);
+        assertEquals(new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void escapeValuesForXml() throws IOException
+    {
+        assertEquals(
+            "<a:t>Smith &amp; Sons</a:t><a:t>O&lt;Brien &gt; &quot;Q&quot; &apos;A&apos;</a:t>",
+            write("<a:t>FirstName</a:t><a:t>LastName</a:t>", List.of("FirstName", "LastName"), "Smith & Sons", "O<Brien > \"Q\" 'A'")
+        );
+    }
+
+    @Test
+    public void dropControlCharactersThatAreNotAllowedInXml() throws IOException
+    {
+        assertEquals("[a\tb\nc]", write("[Value]", List.of("Value"), "a\tb\u0001\n\u001Fc"));
+    }
+
+    @Test
+    public void writeSafeValuesWithoutEscaping() throws IOException
+    {
+        var compiledContent = CompiledTemplateContent.compile("[FirstName|LastName]", TemplateValueMatcher.compile(List.of("FirstName", "LastName")));
+        var buffer = new ContentBuffer(16);
+        compiledContent.writeTo(new String[]{"A&B", "C&D"}, new boolean[]{true, false}, buffer, new Utf8Encoder());
+        assertEquals("[A&B|C&amp;D]", buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void classifyValuesThatNeedEscaping()
+    {
+        assertFalse(Utf8Encoder.needsXmlEscaping("Albert Einstein ü 𝄞"));
+        assertTrue(Utf8Encoder.needsXmlEscaping("Smith & Sons"));
+        assertTrue(Utf8Encoder.needsXmlEscaping("Bad\u0000Value"));
+    }
+}
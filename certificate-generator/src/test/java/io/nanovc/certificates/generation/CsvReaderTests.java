@@ -0,0 +1,111 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the {@link CsvReader}.
+ */
+class CsvReaderTests
+{
+    /**
+     * Writes the content to a CSV file.
+     */
+    private static Path writeCsv(Path folder, String content) throws IOException
+    {
+        Path path = folder.resolve("data.csv");
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    /**
+     * Reads the CSV file with the given window size and returns the rows as strings.
+     */
+    private static List<String> readRows(Path path, long windowSize) throws IOException
+    {
+        List<String> rows = new ArrayList<>();
+        for (Row row : new CsvReader(',', windowSize).readTable(path).rows)
+        {
+            rows.add(row.toString());
+        }
+        return rows;
+    }
+
+    @Test
+    public void readPlainFields(@TempDir Path folder) throws IOException
+    {
+        Path path = writeCsv(folder, "First Name,Last Name,Course\nAlbert,Einstein,Physics\r\nMarie,,Chemistry");
+        assertEquals(List.of("First Name|Last Name|Course", "Albert|Einstein|Physics", "Marie||Chemistry"), readRows(path, 1024));
+    }
+
+    @Test
+    public void readQuotedFields(@TempDir Path folder) throws IOException
+    {
+        Path path = writeCsv(folder, "Name,Note\n\"Smith, John\",\"Said \"\"hi\"\"\nthen left\"\n");
+        var table = new CsvReader().readTable(path);
+        assertEquals(2, table.rows.getRowCount());
+        assertEquals("Smith, John", table.rows.getRow(1).getCellByColumnIndexAsString(0));
+        assertEquals("Said \"hi\"\nthen left", table.rows.getRow(1).getCellByColumnIndexAsString(1));
+    }
+
+    @Test
+    public void skipByteOrderMarkAndEmptyLines(@TempDir Path folder) throws IOException
+    {
+        Path path = folder.resolve("data.csv");
+        Files.write(path, ("﻿Zoë,Müller\n\n\r\nA,B\n").getBytes(StandardCharsets.UTF_8));
+        assertEquals(List.of("Zoë|Müller", "A|B"), readRows(path, 1024));
+    }
+
+    @Test
+    public void readAcrossWindows(@TempDir Path folder) throws IOException
+    {
+        // Make records that cross the window boundaries, including one that is longer than a window:
+        StringBuilder content = new StringBuilder();
+        List<String> expectedRows = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+        {
+            String longValue = "x".repeat(i * 3);
+            content.append("Row").append(i).append(",\"").append(longValue).append(",\"\"q\"\"\"\r\n");
+            expectedRows.add("Row" + i + "|" + longValue + ",\"q\"");
+        }
+        Path path = writeCsv(folder, content.toString());
+
+        assertEquals(expectedRows, readRows(path, 16));
+    }
+
+    @Test
+    public void streamRows(@TempDir Path folder) throws Exception
+    {
+        Path path = writeCsv(folder, "A,B\n1,2\n3,4\n");
+        List<String> rows = new ArrayList<>();
+        new CsvReader().stream(path, row -> rows.add(row.toString() + "@" + row.getTable().rows.getRowCount()));
+        assertEquals(List.of("A|B@1", "1|2@1", "3|4@1"), rows);
+    }
+
+    @Test
+    public void skipFieldsThatAreNotNeeded(@TempDir Path folder) throws Exception
+    {
+        Path path = writeCsv(folder, "A,B,C\n1,\"2,\"\"two\"\"\",3\n4,5,6\n");
+        List<String> rows = new ArrayList<>();
+        new CsvReader().stream(path, columnIndex -> columnIndex != 1, row -> rows.add(row.toString()));
+        assertEquals(List.of("A||C", "1||3", "4||6"), rows);
+    }
+
+    @Test
+    public void readLearnerData() throws IOException
+    {
+        // Read the learner data that our upstream systems export:
+        var table = new CsvReader().readTable(Paths.get("..", "certificate-generator-folders", "2. Learner Data", "learner-data.csv"));
+        assertEquals("Training Centre|First Name|Last Name|ID Number", table.rows.getRow(0).toString());
+    }
+}
@@ -0,0 +1,205 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests how the {@link CertificateGeneratorBase} loads data from several files and sheets.
+ */
+class DataLoadingTests
+{
+    /**
+     * Writes the content to a CSV file in the folder.
+     */
+    private static void writeCsv(Path folder, String fileName, String content) throws IOException
+    {
+        Files.write(folder.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a config that reads the data from the given path.
+     */
+    private static CertificateGenerationConfig createConfig(String pathToData)
+    {
+        CertificateGenerationConfig config = new CertificateGenerationConfig();
+        config.pathToExcelData = pathToData;
+        return config;
+    }
+
+    @Test
+    public void loadFolderOfTrainingCentres() throws Exception
+    {
+        // Our course results arrive as one file per training centre:
+        var config = createConfig(Paths.get("..", "certificate-generator-folders", "1. Course Data").toString());
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            assertEquals(2, generator.resolveDataSources(config).size());
+
+            Table data = generator.loadActualData(config);
+            assertEquals("First Name||Last Name||Course Name||Result", data.toString().lines().findFirst().orElseThrow());
+            assertEquals(200, data.rows.getRowCount());
+        }
+    }
+
+    @Test
+    public void loadGlobAndMergeColumnsByName(@TempDir Path folder) throws Exception
+    {
+        writeCsv(folder, "Durban.csv", "Title\nFirst Name,Course Name\nAlbert,Physics\n");
+        writeCsv(folder, "Johannesburg.csv", "Course Name,First Name\nChemistry,Marie\n");
+        writeCsv(folder, "Notes.txt", "Not data");
+
+        var config = createConfig(folder + "/*.csv");
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            Table data = generator.loadActualData(config);
+            assertEquals(2, data.rows.getRowCount());
+            assertEquals("Albert|Physics", data.rows.getRow(0).toString());
+            assertEquals("Marie|Chemistry", data.rows.getRow(1).toString());
+
+            // Streaming the files gives the same rows:
+            List<String> streamedRows = new ArrayList<>();
+            generator.streamActualData(config, row -> streamedRows.add(row.getCellByColumnNameAsString("First Name")));
+            assertEquals(List.of("Albert", "Marie"), streamedRows);
+        }
+    }
+
+    @Test
+    public void rejectFilesWithDifferentColumns(@TempDir Path folder) throws Exception
+    {
+        writeCsv(folder, "Durban.csv", "First Name,Course Name\nAlbert,Physics\n");
+        writeCsv(folder, "Johannesburg.csv", "First Name,Result\nMarie,Pass\n");
+
+        var config = createConfig(folder.toString());
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            var exception = assertThrows(IllegalStateException.class, () -> generator.loadActualData(config));
+            assertTrue(exception.getMessage().contains("Missing: [Course Name]. Extra: [Result]."), exception.getMessage());
+        }
+    }
+
+    @Test
+    public void loadSheetsByName() throws Exception
+    {
+        var config = createConfig(Paths.get("..", "certificate-generator-folders", "Certificate Generator Data.xlsx").toString());
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            Table firstSheet = generator.loadActualData(config);
+
+            // Reading the sheet twice by name merges both copies:
+            config.dataSheetNames = List.of("Certificates for Printing", "Certificates for Printing");
+            Table sheets = generator.loadActualData(config);
+            assertEquals(firstSheet.rows.getRowCount() * 2, sheets.rows.getRowCount());
+        }
+    }
+
+    @Test
+    public void loadOnlyProjectedColumns(@TempDir Path folder) throws Exception
+    {
+        writeCsv(folder, "Durban.csv", "ID,First Name,Notes,Course Name\n1,Albert,Late,Physics\n");
+        writeCsv(folder, "Johannesburg.csv", "Course Name,Notes,First Name,ID\nChemistry,,Marie,2\n");
+
+        var config = createConfig(folder.toString());
+        var projection = new ColumnProjection(List.of("First Name", "Course Name"));
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            Table data = generator.loadActualData(config, projection);
+            assertEquals("First Name||Course Name", data.toString().lines().findFirst().orElseThrow());
+            assertEquals("Albert|Physics", data.rows.getRow(0).toString());
+            assertEquals("Marie|Chemistry", data.rows.getRow(1).toString());
+
+            // Streaming the files gives the same columns:
+            List<String> streamedRows = new ArrayList<>();
+            generator.streamActualData(config, projection, row -> streamedRows.add(row.toString()));
+            assertEquals(List.of("Albert|Physics", "Chemistry|Marie"), streamedRows);
+        }
+    }
+
+    @Test
+    public void projectSpreadsheetColumns(@TempDir Path folder) throws Exception
+    {
+        var config = createConfig(Paths.get("..", "certificate-generator-folders", "Certificate Generator Data.xlsx").toString());
+        config.pathToSnapshotCacheFolder = folder.toString();
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            // Project the last and first columns of the full data:
+            Table fullData = generator.loadActualData(config);
+            String firstColumnName = fullData.columns.getColumn(0).name;
+            String lastColumnName = fullData.columns.getColumn(fullData.columns.getColumnCount() - 1).name;
+            var projection = new ColumnProjection(List.of(lastColumnName, firstColumnName));
+
+            // The projected data has the same rows, and is the same again from its own snapshot:
+            for (int attempt = 0; attempt < 2; attempt++)
+            {
+                Table projectedData = generator.loadActualData(config, projection);
+                assertEquals(2, projectedData.columns.getColumnCount());
+                assertEquals(fullData.rows.getRowCount(), projectedData.rows.getRowCount());
+                for (int i = 0; i < fullData.rows.getRowCount(); i++)
+                {
+                    assertEquals(fullData.rows.getRow(i).getCellByColumnNameAsString(firstColumnName), projectedData.rows.getRow(i).getCellByColumnNameAsString(firstColumnName));
+                    assertEquals(fullData.rows.getRow(i).getCellByColumnNameAsString(lastColumnName), projectedData.rows.getRow(i).getCellByColumnNameAsString(lastColumnName));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void keepColumnFormatsWhenMergingFolder(@TempDir Path folder) throws Exception
+    {
+        writeCsv(folder, "Durban.csv", "First Name,Notes,Course Name\nAlbert,Late,Physics\n");
+        writeCsv(folder, "Johannesburg.csv", "Course Name,Notes,First Name\nChemistry,,Marie\n");
+
+        var config = createConfig(folder.toString());
+        config.columnFormats = Map.of("Course Name", "d MMMM yyyy");
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            // The merged table must keep the formats whether or not the columns are projected:
+            Table data = generator.loadActualData(config);
+            assertNotNull(data.columns.getColumn("Course Name").format);
+
+            Table projectedData = generator.loadActualData(config, new ColumnProjection(List.of("First Name", "Course Name")));
+            assertEquals(2, projectedData.rows.getRowCount());
+            assertNotNull(projectedData.columns.getColumn("Course Name").format);
+        }
+    }
+
+    @Test
+    public void streamFilesWithReorderedColumnsThroughJoin(@TempDir Path folder) throws Exception
+    {
+        Path resultsFolder = Files.createDirectories(folder.resolve("Results"));
+        writeCsv(resultsFolder, "Durban.csv", "ID,First Name,Result\n1,Albert,Pass\n");
+        writeCsv(resultsFolder, "Johannesburg.csv", "Result,ID,First Name\nFail,2,Marie\n");
+        writeCsv(folder, "Learners.csv", "ID,Training Centre\n1,Durban\n2,Johannesburg\n");
+
+        var config = createConfig(resultsFolder.toString());
+        var learners = new DataSourceConfig();
+        learners.path = folder.resolve("Learners.csv").toString();
+        learners.keyColumnNames = List.of("ID");
+        config.joinedDataSources.add(learners);
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            // The joined rows must keep the columns of the first file, with the values of each file under the right column:
+            List<String> streamedRows = new ArrayList<>();
+            generator.streamActualData(config, row -> streamedRows.add(row.toString()));
+            assertEquals(List.of("1|Albert|Pass|Durban", "2|Marie|Fail|Johannesburg"), streamedRows);
+
+            // Loading and joining the files gives the same rows:
+            Table joinedData = generator.joinData(config, generator.loadActualData(config));
+            assertEquals("ID||First Name||Result||Training Centre", joinedData.toString().lines().findFirst().orElseThrow());
+            assertEquals("2|Marie|Fail|Johannesburg", joinedData.rows.getRow(1).toString());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link EntryNamePattern}.
+ */
+class EntryNamePatternTests
+{
+    @Test
+    public void matchLiteralNames()
+    {
+        var pattern = EntryNamePattern.compile("docProps/core.xml");
+        assertTrue(pattern.matches("docProps/core.xml"));
+        assertFalse(pattern.matches("docProps/coreXxml"));
+        assertFalse(EntryNamePattern.hasWildcards("docProps/core.xml"));
+    }
+
+    @Test
+    public void matchWithinAFolder()
+    {
+        var pattern = EntryNamePattern.compile("ppt/slides/*.xml");
+        assertTrue(pattern.matches("ppt/slides/slide1.xml"));
+        assertTrue(pattern.matches("ppt/slides/slide12.xml"));
+        assertFalse(pattern.matches("ppt/slides/_rels/slide1.xml.rels"));
+        assertFalse(pattern.matches("ppt/slideLayouts/slideLayout1.xml"));
+        assertTrue(EntryNamePattern.hasWildcards("ppt/slides/*.xml"));
+    }
+
+    @Test
+    public void matchAcrossFolders()
+    {
+        var pattern = EntryNamePattern.compile("ppt/**.xml");
+        assertTrue(pattern.matches("ppt/slides/slide1.xml"));
+        assertTrue(pattern.matches("ppt/notesSlides/notesSlide1.xml"));
+        assertFalse(pattern.matches("docProps/core.xml"));
+    }
+
+    @Test
+    public void matchSingleCharacters()
+    {
+        var pattern = EntryNamePattern.compile("ppt/slides/slide?.xml");
+        assertTrue(pattern.matches("ppt/slides/slide1.xml"));
+        assertFalse(pattern.matches("ppt/slides/slide10.xml"));
+    }
+}
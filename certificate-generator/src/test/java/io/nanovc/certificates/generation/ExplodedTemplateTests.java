@@ -0,0 +1,241 @@
+package io.nanovc.certificates.generation;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the {@link ExplodedTemplate}.
+ */
+class ExplodedTemplateTests
+{
+    /**
+     * Creates a template with a slide that has the template values in it and some other entry that doesn't change.
+     */
+    private static Path createTemplate(Path folder) throws IOException
+    {
+        Path path = folder.resolve("template.pptx");
+        try (var zipOutputStream = new ZipOutputStream(Files.newOutputStream(path)))
+        {
+            zipOutputStream.putNextEntry(new ZipEntry("ppt/slides/slide1.xml"));
+            zipOutputStream.write("<p:sld><a:t>FirstName</a:t><a:t>LastName</a:t></p:sld>".getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+
+            zipOutputStream.putNextEntry(new ZipEntry("docProps/app.xml"));
+            zipOutputStream.write("<Properties/>".getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+        }
+        return path;
+    }
+
+    /**
+     * Creates a table with the given column names and a row for each set of values.
+     */
+    private static Table createTable(List<String> columnNames, List<List<String>> rows)
+    {
+        Table table = new Table();
+        for (String columnName : columnNames)
+        {
+            table.columns.addColumn(columnName);
+        }
+        for (List<String> values : rows)
+        {
+            Row row = table.rows.addRow();
+            for (String value : values)
+            {
+                row.appendCell(value);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Creates an initialized exploded template for the given template file.
+     */
+    private static ExplodedTemplate createExplodedTemplate(Path templatePath) throws IOException
+    {
+        return createExplodedTemplate(templatePath, ZipEntryCompression.DEFAULT);
+    }
+
+    /**
+     * Creates an initialized exploded template for the given template file.
+     */
+    private static ExplodedTemplate createExplodedTemplate(Path templatePath, ZipEntryCompression compression) throws IOException
+    {
+        ExplodedTemplateConfig config = new ExplodedTemplateConfig();
+        config.templatePath = templatePath.toString();
+        config.replacementFileCompression = compression;
+
+        ExplodedTemplate explodedTemplate = new ExplodedTemplate(config);
+        explodedTemplate.initialize(createTable(List.of("First Name", "Last Name"), List.of(List.of("FirstName", "LastName"))));
+        return explodedTemplate;
+    }
+
+    /**
+     * Reads the content of an entry in a produced file with the JDK.
+     */
+    private static String readEntry(Path path, String entryName) throws IOException
+    {
+        try (var zipFile = new ZipFile(path.toFile()))
+        {
+            try (var inputStream = zipFile.getInputStream(zipFile.getEntry(entryName)))
+            {
+                return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    @Test
+    public void produceFile(@TempDir Path folder) throws Exception
+    {
+        Table data = createTable(List.of("First Name", "Last Name"), List.of(List.of("Smith & Sons", "Einstein")));
+        try (var explodedTemplate = createExplodedTemplate(createTemplate(folder)))
+        {
+            Path producedPath = folder.resolve("produced.pptx");
+            explodedTemplate.produceFile(data.rows.iterator().next(), producedPath);
+
+            assertEquals("<p:sld><a:t>Smith &amp; Sons</a:t><a:t>Einstein</a:t></p:sld>", readEntry(producedPath, "ppt/slides/slide1.xml"));
+            assertEquals("<Properties/>", readEntry(producedPath, "docProps/app.xml"));
+        }
+    }
+
+    @Test
+    public void produceInMemory(@TempDir Path folder) throws Exception
+    {
+        Table data = createTable(List.of("First Name", "Last Name"), List.of(List.of("Albert", "Einstein")));
+        Row row = data.rows.iterator().next();
+        try
+            (
+                var explodedTemplate = createExplodedTemplate(createTemplate(folder));
+                var context = explodedTemplate.createContext()
+            )
+        {
+            // Produce the file so that we can compare the in memory packages with it:
+            Path producedPath = folder.resolve("produced.pptx");
+            explodedTemplate.produceFile(context, row, producedPath);
+            byte[] fileBytes = Files.readAllBytes(producedPath);
+
+            // Produce into an output stream:
+            var outputStream = new ByteArrayOutputStream();
+            explodedTemplate.produceTo(context, row, outputStream);
+            assertArrayEquals(fileBytes, outputStream.toByteArray());
+
+            // Produce into a direct buffer, after some content that is already in the buffer:
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            buffer.put((byte) 1);
+            int length = explodedTemplate.produceTo(context, row, buffer);
+            assertEquals(fileBytes.length, length);
+            byte[] bufferBytes = new byte[length];
+            buffer.flip().position(1);
+            buffer.get(bufferBytes);
+            assertArrayEquals(fileBytes, bufferBytes);
+
+            // Produce into the package buffer of the context:
+            ByteBuffer packageBuffer = explodedTemplate.produce(context, row);
+            byte[] packageBytes = new byte[packageBuffer.remaining()];
+            packageBuffer.get(packageBytes);
+            assertArrayEquals(fileBytes, packageBytes);
+
+            // A buffer that is too small overflows:
+            assertThrows(BufferOverflowException.class, () -> explodedTemplate.produceTo(context, row, ByteBuffer.allocate(16)));
+        }
+    }
+
+    @Test
+    public void produceFileWithoutCompression(@TempDir Path folder) throws Exception
+    {
+        Table data = createTable(List.of("First Name", "Last Name"), List.of(List.of("Albert", "Einstein")));
+        try (var explodedTemplate = createExplodedTemplate(createTemplate(folder), ZipEntryCompression.STORED))
+        {
+            Path producedPath = folder.resolve("produced.pptx");
+            explodedTemplate.produceFile(data.rows.iterator().next(), producedPath);
+
+            assertEquals("<p:sld><a:t>Albert</a:t><a:t>Einstein</a:t></p:sld>", readEntry(producedPath, "ppt/slides/slide1.xml"));
+            try (var zipFile = new ZipFile(producedPath.toFile()))
+            {
+                assertEquals(ZipEntry.STORED, zipFile.getEntry("ppt/slides/slide1.xml").getMethod());
+                assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("docProps/app.xml").getMethod());
+            }
+        }
+    }
+
+    @Test
+    public void produceFilesConcurrently(@TempDir Path folder) throws Exception
+    {
+        // Create enough data for the threads to overlap:
+        int rowCount = 200;
+        List<List<String>> rows = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++)
+        {
+            rows.add(List.of("First" + i, "Last & " + i));
+        }
+        Table data = createTable(List.of("First Name", "Last Name"), rows);
+        List<Row> dataRows = new ArrayList<>();
+        data.rows.forEach(dataRows::add);
+
+        try (var explodedTemplate = createExplodedTemplate(createTemplate(folder)))
+        {
+            boolean[] replacementValuesAreSafe = explodedTemplate.classifyData(data);
+
+            // Produce the files from several threads, each with its own context:
+            int threadCount = 8;
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            try
+            {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int thread = 0; thread < threadCount; thread++)
+                {
+                    int firstRow = thread;
+                    futures.add(executor.submit(() ->
+                    {
+                        try (var context = explodedTemplate.createContext(replacementValuesAreSafe))
+                        {
+                            for (int i = firstRow; i < rowCount; i += threadCount)
+                            {
+                                explodedTemplate.produceFile(context, dataRows.get(i), folder.resolve("produced" + i + ".pptx"));
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures)
+                {
+                    future.get();
+                }
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+
+            // Make sure that every file has its own values:
+            for (int i = 0; i < rowCount; i++)
+            {
+                assertEquals(
+                    "<p:sld><a:t>First" + i + "</a:t><a:t>Last &amp; " + i + "</a:t></p:sld>",
+                    readEntry(folder.resolve("produced" + i + ".pptx"), "ppt/slides/slide1.xml")
+                );
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the {@link HashJoin} and the {@link HashIndex} behind it.
+ */
+class HashJoinTests
+{
+    /**
+     * Creates a table with the given header and rows, where each row is separated with '|'.
+     */
+    private static Table createTable(String header, String... rows)
+    {
+        Table table = new Table();
+        for (String columnName : header.split("\\|"))
+        {
+            table.columns.addColumn(columnName);
+        }
+        for (String values : rows)
+        {
+            Row row = table.rows.addRow();
+            for (String value : values.split("\\|", -1))
+            {
+                row.appendCell(value);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Gets the header and the rows of the table as strings.
+     */
+    private static List<String> toStrings(Table table)
+    {
+        List<String> strings = new ArrayList<>();
+        List<String> columnNames = new ArrayList<>();
+        for (Column column : table.columns)
+        {
+            columnNames.add(column.name);
+        }
+        strings.add(String.join("|", columnNames));
+        for (Row row : table.rows)
+        {
+            strings.add(row.toString());
+        }
+        return strings;
+    }
+
+    @Test
+    public void innerJoin() throws Exception
+    {
+        Table results = createTable("Learner ID|Course Name", "1|Physics", "2|Chemistry", "3|Biology", "1|Maths");
+        Table learners = createTable("Learner ID|First Name", "1|Albert", "2|Marie");
+
+        Table joined = HashJoin.joinTables(results, List.of("Learner ID"), learners, List.of("Learner ID"), JoinType.INNER);
+
+        assertEquals(
+            List.of("Learner ID|Course Name|First Name", "1|Physics|Albert", "2|Chemistry|Marie", "1|Maths|Albert"),
+            toStrings(joined)
+        );
+    }
+
+    @Test
+    public void innerJoinIndexesTheSmallerSide() throws Exception
+    {
+        // The left side is smaller, so it is indexed and the rows come out in the order of the right side:
+        Table learners = createTable("Learner ID|First Name", "1|Albert", "2|Marie");
+        Table results = createTable("ID|Course Name", "2|Chemistry", "1|Physics", "2|Biology");
+
+        Table joined = HashJoin.joinTables(learners, List.of("Learner ID"), results, List.of("ID"), JoinType.INNER);
+
+        assertEquals(
+            List.of("Learner ID|First Name|Course Name", "2|Marie|Chemistry", "1|Albert|Physics", "2|Marie|Biology"),
+            toStrings(joined)
+        );
+    }
+
+    @Test
+    public void leftJoinKeepsRowsWithoutAMatch() throws Exception
+    {
+        Table results = createTable("Learner ID|Course Name", "1|Physics", "3|Biology");
+        Table learners = createTable("Learner ID|First Name|Course Name", "1|Albert|Ignored", "2|Marie|Ignored");
+
+        Table joined = HashJoin.joinTables(results, List.of("Learner ID"), learners, List.of("Learner ID"), JoinType.LEFT);
+
+        assertEquals(
+            List.of("Learner ID|Course Name|First Name", "1|Physics|Albert", "3|Biology|"),
+            toStrings(joined)
+        );
+    }
+
+    @Test
+    public void joinOnCompositeKeyWithDuplicates() throws Exception
+    {
+        Table results = createTable("First Name|Last Name|Course Name", "Albert|Einstein|Physics", "Marie|Curie|Chemistry");
+        Table centres = createTable("First|Last|Training Centre", "Albert|Einstein|Durban", "Albert|Curie|Nowhere", "Albert|Einstein|Johannesburg");
+
+        HashIndex index = new HashIndex(centres, List.of("First", "Last"));
+        assertEquals(2, index.getKeyCount());
+
+        Table joined = HashJoin.joinTables(results, List.of("First Name", "Last Name"), centres, List.of("First", "Last"), JoinType.INNER);
+
+        assertEquals(
+            List.of("First Name|Last Name|Course Name|Training Centre", "Albert|Einstein|Physics|Durban", "Albert|Einstein|Physics|Johannesburg"),
+            toStrings(joined)
+        );
+    }
+
+    @Test
+    public void streamRowsThroughTheJoin() throws Exception
+    {
+        Table learners = createTable("Learner ID|First Name", "1|Albert", "2|Marie");
+        List<String> joinedRows = new ArrayList<>();
+        HashJoin join = new HashJoin(learners, List.of("Learner ID"), List.of("Learner ID"), JoinType.INNER, false, row -> joinedRows.add(row.getCellByColumnNameAsString("First Name") + "@" + row.getTable().rows.getRowCount()));
+
+        // Stream the rows through a table that is reused for each row, the same as when the data is streamed from a file:
+        Table streamed = createTable("Learner ID|Course Name");
+        for (String values : new String[]{"2|Chemistry", "5|Nothing", "1|Physics"})
+        {
+            streamed.rows.clear();
+            Row row = streamed.rows.addRow();
+            for (String value : values.split("\\|")) row.appendCell(value);
+            join.handleRow(row);
+        }
+
+        assertEquals(List.of("Marie@1", "Albert@1"), joinedRows);
+        assertEquals(3, join.getProbedRowCount());
+        assertEquals(2, join.getJoinedRowCount());
+    }
+
+    @Test
+    public void streamRowsFromTablesWithReorderedColumns() throws Exception
+    {
+        Table learners = createTable("Learner ID|Training Centre", "1|Durban", "2|Johannesburg");
+        List<String> joinedRows = new ArrayList<>();
+        HashJoin join = new HashJoin(learners, List.of("Learner ID"), List.of("Learner ID"), JoinType.INNER, false, row -> joinedRows.add(row.getCellByColumnNameAsString("First Name") + " " + row.getCellByColumnNameAsString("Result") + " " + row.getCellByColumnNameAsString("Training Centre")));
+
+        // The second table has the same columns in a different order, so each joined column must be found again by name:
+        for (Row row : createTable("Learner ID|First Name|Result", "1|Albert|Pass").rows) join.handleRow(row);
+        for (Row row : createTable("Result|Learner ID|First Name", "Fail|2|Marie").rows) join.handleRow(row);
+        assertEquals(List.of("Albert Pass Durban", "Marie Fail Johannesburg"), joinedRows);
+        assertEquals(List.of("Learner ID|First Name|Result|Training Centre", "2|Marie|Fail|Johannesburg"), toStrings(join.getJoinedTable()));
+
+        // A table with other columns must be rejected:
+        assertThrows(IllegalStateException.class, () -> join.handleRow(createTable("Learner ID|First Name|Mark", "1|Albert|90").rows.getRow(0)));
+    }
+}
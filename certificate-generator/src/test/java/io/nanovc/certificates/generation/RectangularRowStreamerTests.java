@@ -0,0 +1,135 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link RectangularRowStreamer}.
+ */
+class RectangularRowStreamerTests
+{
+    /**
+     * Streams the given raw rows and collects what the handler sees for each rectangular row.
+     */
+    private static List<String> stream(int headerRowIndex, int lookAheadRowCount, List<List<String>> rawRows) throws Exception
+    {
+        List<String> handledRows = new ArrayList<>();
+        RectangularRowStreamer streamer = new RectangularRowStreamer(
+            headerRowIndex,
+            lookAheadRowCount,
+            row -> handledRows.add(row.getCellByColumnNameAsString("First Name") + " " + row.getCellByColumnNameAsString("Last Name"))
+        );
+
+        // Reuse a single raw row, the same way that the spreadsheet is streamed:
+        Table rawTable = new Table();
+        for (List<String> values : rawRows)
+        {
+            rawTable.rows.clear();
+            Row rawRow = rawTable.rows.addRow();
+            values.forEach(rawRow::appendCell);
+            streamer.acceptRawRow(rawRow);
+        }
+        streamer.finish();
+        return handledRows;
+    }
+
+    /**
+     * Creates raw rows with a title, then a header, then the given number of learners.
+     */
+    private static List<List<String>> createRawRows(int learnerCount)
+    {
+        List<List<String>> rawRows = new ArrayList<>();
+        rawRows.add(List.of("Learner Report"));
+        rawRows.add(List.of("First Name", "Last Name", "Course Name"));
+        for (int i = 0; i < learnerCount; i++)
+        {
+            rawRows.add(List.of("First" + i, "Last" + i, "Physics"));
+        }
+        return rawRows;
+    }
+
+    @Test
+    public void detectHeaderFromLookAheadWindow() throws Exception
+    {
+        List<String> handledRows = stream(-1, 5, createRawRows(20));
+        assertEquals(20, handledRows.size());
+        assertEquals("First0 Last0", handledRows.get(0));
+        assertEquals("First19 Last19", handledRows.get(19));
+    }
+
+    @Test
+    public void detectHeaderInShortStream() throws Exception
+    {
+        List<String> handledRows = stream(-1, 100, createRawRows(3));
+        assertEquals(List.of("First0 Last0", "First1 Last1", "First2 Last2"), handledRows);
+    }
+
+    @Test
+    public void useExplicitHeaderRow() throws Exception
+    {
+        // The explicit header row doesn't have to be the widest:
+        List<List<String>> rawRows = new ArrayList<>();
+        rawRows.add(List.of("Report", "For", "Everyone", "Wide"));
+        rawRows.add(List.of("First Name", "Last Name"));
+        rawRows.add(List.of("Albert", "Einstein"));
+
+        assertEquals(List.of("Albert Einstein"), stream(1, 1, rawRows));
+    }
+
+    @Test
+    public void handleRowsBeforeStreamEnds() throws Exception
+    {
+        // Rows after the look-ahead window must be handled as they arrive, before the stream is finished:
+        List<String> handledRows = new ArrayList<>();
+        RectangularRowStreamer streamer = new RectangularRowStreamer(-1, 2, row -> handledRows.add(row.getCellByColumnNameAsString("First Name")));
+        Table rawTable = new Table();
+        for (List<String> values : createRawRows(10))
+        {
+            rawTable.rows.clear();
+            Row rawRow = rawTable.rows.addRow();
+            values.forEach(rawRow::appendCell);
+            streamer.acceptRawRow(rawRow);
+        }
+        assertTrue(streamer.hasFoundHeaderRow());
+        assertEquals(10, handledRows.size());
+        assertEquals(1, streamer.getTable().rows.getRowCount());
+    }
+
+    @Test
+    public void keepOnlyProjectedColumns() throws Exception
+    {
+        List<List<String>> rawRows = new ArrayList<>();
+        rawRows.add(List.of("Learner Report"));
+        rawRows.add(List.of("ID", "First Name", "Notes", "Course Name"));
+        rawRows.add(List.of("1", "Albert", "Late", "Physics"));
+        rawRows.add(List.of("2", "Marie"));
+
+        List<String> handledRows = new ArrayList<>();
+        RectangularRowStreamer streamer = new RectangularRowStreamer(-1, 10, new ColumnProjection(List.of("Course Name", "First Name", "Missing")), row -> handledRows.add(row.toString()));
+
+        // Every cell is needed until the header row is found:
+        assertTrue(streamer.isRawColumnNeeded(2));
+        Table rawTable = new Table();
+        for (List<String> values : rawRows)
+        {
+            rawTable.rows.clear();
+            Row rawRow = rawTable.rows.addRow();
+            values.forEach(rawRow::appendCell);
+            streamer.acceptRawRow(rawRow);
+        }
+        streamer.finish();
+
+        // Only the projected columns are kept, in the order of the header, and short rows stay short:
+        assertEquals(2, streamer.getTable().columns.getColumnCount());
+        assertEquals(List.of("Albert|Physics", "Marie"), handledRows);
+        assertTrue(streamer.isRawColumnNeeded(1));
+        assertFalse(streamer.isRawColumnNeeded(2));
+        assertFalse(streamer.isRawColumnNeeded(10));
+    }
+}
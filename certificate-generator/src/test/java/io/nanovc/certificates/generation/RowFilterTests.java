@@ -0,0 +1,233 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link RowFilter}.
+ */
+class RowFilterTests
+{
+    /**
+     * Creates a filter config.
+     */
+    private static RowFilterConfig createFilter(String columnName, RowFilterOperator operator, String... values)
+    {
+        RowFilterConfig filterConfig = new RowFilterConfig();
+        filterConfig.columnName = columnName;
+        filterConfig.operator = operator;
+        if (operator == RowFilterOperator.IN || operator == RowFilterOperator.NOT_IN) filterConfig.values = List.of(values);
+        else filterConfig.value = values[0];
+        return filterConfig;
+    }
+
+    /**
+     * Creates a table of learners with typed marks and completion dates.
+     */
+    private static Table createTable()
+    {
+        Table table = new Table();
+        table.columns.addColumn("First Name");
+        table.columns.addColumn("Result");
+        table.columns.addColumn("Mark");
+        table.columns.addColumn("Completion Date");
+        addRow(table, "Albert", "Pass", "72.5", LocalDateTime.of(2024, 10, 1, 14, 30));
+        addRow(table, "Marie", "Pass", "91", LocalDateTime.of(2024, 9, 15, 0, 0));
+        addRow(table, "Isaac", "Fail", "40", LocalDateTime.of(2024, 10, 2, 0, 0));
+        return table;
+    }
+
+    private static void addRow(Table table, String firstName, String result, String mark, LocalDateTime completionDate)
+    {
+        Row row = table.rows.addRow();
+        row.appendCell(firstName);
+        row.appendCell(result);
+        row.appendCell(new BigDecimal(mark));
+        row.appendCell(completionDate);
+    }
+
+    /**
+     * Gets the first names of the rows that the filters keep.
+     */
+    private static List<String> filter(Table table, RowFilterConfig... filterConfigs)
+    {
+        RowFilter rowFilter = new RowFilter(List.of(filterConfigs));
+        List<String> firstNames = new ArrayList<>();
+        for (Row row : table.rows)
+        {
+            if (rowFilter.accepts(row)) firstNames.add(row.getCellByColumnNameAsString("First Name"));
+        }
+        return firstNames;
+    }
+
+    @Test
+    public void filterText()
+    {
+        Table table = createTable();
+        assertEquals(List.of("Albert", "Marie"), filter(table, createFilter("Result", RowFilterOperator.EQUALS, "Pass")));
+        assertEquals(List.of("Isaac"), filter(table, createFilter("Result", RowFilterOperator.NOT_EQUALS, "Pass")));
+        assertEquals(List.of("Albert", "Isaac"), filter(table, createFilter("First Name", RowFilterOperator.IN, "Isaac", "Albert")));
+        assertEquals(List.of("Marie"), filter(table, createFilter("First Name", RowFilterOperator.NOT_IN, "Isaac", "Albert")));
+    }
+
+    @Test
+    public void filterNumbersAndDatesByValue()
+    {
+        Table table = createTable();
+        assertEquals(List.of("Albert", "Marie"), filter(table, createFilter("Mark", RowFilterOperator.GREATER_THAN_OR_EQUAL, "72.50")));
+        assertEquals(List.of("Marie"), filter(table, createFilter("Mark", RowFilterOperator.EQUALS, "91.0")));
+
+        // A date without a time matches any time on that day:
+        assertEquals(List.of("Albert"), filter(table, createFilter("Completion Date", RowFilterOperator.EQUALS, "2024-10-01")));
+        assertEquals(List.of("Albert", "Isaac"), filter(table, createFilter("Completion Date", RowFilterOperator.GREATER_THAN_OR_EQUAL, "2024-10-01")));
+        assertEquals(List.of("Marie"), filter(table, createFilter("Completion Date", RowFilterOperator.LESS_THAN, "2024-10-01T00:00")));
+
+        // All the filters must match:
+        assertEquals(List.of("Albert"), filter(table, createFilter("Result", RowFilterOperator.EQUALS, "Pass"), createFilter("Mark", RowFilterOperator.LESS_THAN, "80")));
+    }
+
+    @Test
+    public void countKeptAndRejectedRows() throws Exception
+    {
+        RowFilter rowFilter = new RowFilter(List.of(createFilter("Result", RowFilterOperator.EQUALS, "Pass")));
+        List<String> handledRows = new ArrayList<>();
+        RowHandler rowHandler = rowFilter.createRowHandler(row -> handledRows.add(row.getCellByColumnNameAsString("First Name")));
+        for (Row row : createTable().rows)
+        {
+            rowHandler.handleRow(row);
+        }
+        assertEquals(List.of("Albert", "Marie"), handledRows);
+        assertEquals(2, rowFilter.getKeptRowCount());
+        assertEquals(1, rowFilter.getRejectedRowCount());
+    }
+
+    @Test
+    public void rejectFilterOnMissingColumn()
+    {
+        RowFilter rowFilter = new RowFilter(List.of(createFilter("Grade", RowFilterOperator.EQUALS, "A")));
+        Row row = createTable().rows.getRow(0);
+        assertThrows(IllegalStateException.class, () -> rowFilter.accepts(row));
+        assertFalse(rowFilter.getKeptRowCount() > 0);
+    }
+
+    @Test
+    public void filterRowsWhileLoadingCsvFiles(@TempDir Path folder) throws Exception
+    {
+        Files.write(folder.resolve("Durban.csv"), "First Name,Result,Mark\nAlbert,Pass,72\nIsaac,Fail,40\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(folder.resolve("Johannesburg.csv"), "Result,First Name,Mark\nPass,Marie,9\nFail,Niels,100\n".getBytes(StandardCharsets.UTF_8));
+
+        CertificateGenerationConfig config = new CertificateGenerationConfig();
+        config.pathToExcelData = folder.toString();
+        config.rowFilters.add(createFilter("Result", RowFilterOperator.EQUALS, "Pass"));
+        config.rowFilters.add(createFilter("Mark", RowFilterOperator.LESS_THAN, "80"));
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            // The numbers in the CSV text are compared by value, so "9" is less than "80":
+            Table data = generator.loadActualData(config);
+            assertEquals(2, data.rows.getRowCount());
+            assertEquals("Albert|Pass|72", data.rows.getRow(0).toString());
+            assertEquals("Marie|Pass|9", data.rows.getRow(1).toString());
+
+            // Streaming the files gives the same rows:
+            List<String> streamedRows = new ArrayList<>();
+            generator.streamActualData(config, row -> streamedRows.add(row.getCellByColumnNameAsString("First Name")));
+            assertEquals(List.of("Albert", "Marie"), streamedRows);
+
+            // A single file is filtered too, and keeps its columns even if every row is rejected:
+            config.pathToExcelData = folder.resolve("Durban.csv").toString();
+            config.rowFilters.get(0).value = "Distinction";
+            Table emptyData = generator.loadActualData(config);
+            assertEquals(0, emptyData.rows.getRowCount());
+            assertEquals(3, emptyData.columns.getColumnCount());
+        }
+    }
+
+    @Test
+    public void filterOnColumnsOfJoinedDataSources(@TempDir Path folder) throws Exception
+    {
+        Path resultsFolder = Files.createDirectories(folder.resolve("Results"));
+        Files.write(resultsFolder.resolve("Durban.csv"), "Learner ID,First Name,Result\n1,Albert,Pass\n2,Isaac,Fail\n3,Marie,Pass\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(resultsFolder.resolve("Johannesburg.csv"), "Result,Learner ID,First Name\nPass,4,Niels\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(folder.resolve("Learners.csv"), "Learner ID,Training Centre\n1,Durban\n2,Durban\n3,Johannesburg\n4,Durban\n".getBytes(StandardCharsets.UTF_8));
+
+        CertificateGenerationConfig config = new CertificateGenerationConfig();
+        config.pathToExcelData = resultsFolder.toString();
+        DataSourceConfig learners = new DataSourceConfig();
+        learners.path = folder.resolve("Learners.csv").toString();
+        learners.keyColumnNames = List.of("Learner ID");
+        config.joinedDataSources.add(learners);
+
+        // Only the learner master file has the training centre, so that filter must wait for the join:
+        config.rowFilters.add(createFilter("Result", RowFilterOperator.EQUALS, "Pass"));
+        config.rowFilters.add(createFilter("Training Centre", RowFilterOperator.EQUALS, "Durban"));
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            // The rows are only filtered on the result while they are loaded:
+            Table data = generator.loadActualData(config);
+            assertEquals(3, data.rows.getRowCount());
+
+            // The joined rows are filtered on the training centre:
+            Table joinedData = generator.joinData(config, data);
+            assertEquals(2, joinedData.rows.getRowCount());
+            assertEquals("1|Albert|Pass|Durban", joinedData.rows.getRow(0).toString());
+            assertEquals("4|Niels|Pass|Durban", joinedData.rows.getRow(1).toString());
+
+            // Streaming the files gives the same rows:
+            List<String> streamedRows = new ArrayList<>();
+            generator.streamActualData(config, row -> streamedRows.add(row.getCellByColumnNameAsString("First Name")));
+            assertEquals(List.of("Albert", "Niels"), streamedRows);
+
+            // A filter on a column that none of the data has must still be rejected:
+            config.rowFilters.add(createFilter("Grade", RowFilterOperator.EQUALS, "A"));
+            var exception = assertThrows(RuntimeException.class, () -> generator.joinData(config, generator.loadActualData(config)));
+            assertTrue(exception.getMessage().contains("The data doesn't have the column 'Grade'"), exception.getMessage());
+            assertThrows(IllegalStateException.class, () -> generator.streamActualData(config, row -> {}));
+        }
+    }
+
+    @Test
+    public void splitFiltersOnColumnsOfCertificateData() throws Exception
+    {
+        SplitRowFilter rowFilter = new SplitRowFilter(List.of(createFilter("Result", RowFilterOperator.EQUALS, "Pass"), createFilter("Training Centre", RowFilterOperator.EQUALS, "Durban")));
+        List<String> handledRows = new ArrayList<>();
+        RowHandler joinedRowHandler = rowFilter.createJoinedRowHandler(row -> handledRows.add(row.getCellByColumnNameAsString("First Name")));
+
+        // Joined rows can't be filtered until the filters are split on the certificate data:
+        Table joinedData = new Table();
+        joinedData.columns.addColumn("First Name");
+        joinedData.columns.addColumn("Training Centre");
+        for (String[] values : new String[][]{{"Albert", "Durban"}, {"Marie", "Johannesburg"}})
+        {
+            Row row = joinedData.rows.addRow();
+            for (String value : values) row.appendCell(value);
+        }
+        assertThrows(IllegalStateException.class, () -> joinedRowHandler.handleRow(joinedData.rows.getRow(0)));
+
+        // The filter on the result is pushed down and the filter on the training centre is left for the joined rows:
+        Table certificateData = new Table();
+        certificateData.columns.addColumn("First Name");
+        certificateData.columns.addColumn("Result");
+        rowFilter.split(certificateData);
+        for (Row row : joinedData.rows)
+        {
+            joinedRowHandler.handleRow(row);
+        }
+        assertEquals(List.of("Albert"), handledRows);
+        assertEquals(0, rowFilter.getPushedDownFilter().getKeptRowCount());
+        assertEquals(1, rowFilter.getJoinedFilter().getKeptRowCount());
+        assertEquals(1, rowFilter.getJoinedFilter().getRejectedRowCount());
+    }
+}
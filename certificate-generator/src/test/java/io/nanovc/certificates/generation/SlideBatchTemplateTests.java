@@ -0,0 +1,149 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link SlideBatchTemplate} and the {@link SlideBatch}.
+ */
+class SlideBatchTemplateTests
+{
+    /**
+     * Creates a presentation with a single slide that has the template values in it and notes.
+     */
+    private static Path createTemplate(Path folder, String slideIds) throws IOException
+    {
+        Path path = folder.resolve("template.pptx");
+        try (var zipOutputStream = new ZipOutputStream(Files.newOutputStream(path)))
+        {
+            writeEntry(zipOutputStream, "[Content_Types].xml", "<Types><Override PartName=\"/ppt/slides/slide1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.presentationml.slide+xml\"/></Types>");
+            writeEntry(zipOutputStream, "ppt/presentation.xml", "<p:presentation><p:sldIdLst>" + slideIds + "</p:sldIdLst></p:presentation>");
+            writeEntry(zipOutputStream, "ppt/_rels/presentation.xml.rels", "<Relationships><Relationship Id=\"rId2\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/slide\" Target=\"slides/slide1.xml\"/></Relationships>");
+            writeEntry(zipOutputStream, "ppt/slides/slide1.xml", "<p:sld><a:t>FirstName</a:t></p:sld>");
+            writeEntry(zipOutputStream, "ppt/slides/_rels/slide1.xml.rels", "<Relationships><Relationship Id=\"rId2\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/notesSlide\" Target=\"../notesSlides/notesSlide1.xml\"/><Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/slideLayout\" Target=\"../slideLayouts/slideLayout7.xml\"/></Relationships>");
+            writeEntry(zipOutputStream, "docProps/app.xml", "<Properties/>");
+        }
+        return path;
+    }
+
+    private static void writeEntry(ZipOutputStream zipOutputStream, String name, String content) throws IOException
+    {
+        zipOutputStream.putNextEntry(new ZipEntry(name));
+        zipOutputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        zipOutputStream.closeEntry();
+    }
+
+    private static String readEntry(ZipFile zipFile, String name) throws IOException
+    {
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null) return null;
+        try (var inputStream = zipFile.getInputStream(entry))
+        {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Creates an initialized exploded template that replaces first names.
+     */
+    private static ExplodedTemplate createExplodedTemplate(Path templatePath) throws IOException
+    {
+        Table templateMappings = new Table();
+        templateMappings.columns.addColumn("First Name");
+        templateMappings.rows.addRow().appendCell("FirstName");
+
+        ExplodedTemplateConfig config = new ExplodedTemplateConfig();
+        config.templatePath = templatePath.toString();
+        ExplodedTemplate explodedTemplate = new ExplodedTemplate(config);
+        explodedTemplate.initialize(templateMappings);
+        return explodedTemplate;
+    }
+
+    @Test
+    public void makeBatchWithSlideForEachRow(@TempDir Path folder) throws Exception
+    {
+        Path templatePath = createTemplate(folder, "<p:sldId id=\"256\" r:id=\"rId2\"/>");
+        ExplodedTemplate explodedTemplate = createExplodedTemplate(templatePath);
+        SlideBatchTemplate batchTemplate = new SlideBatchTemplate(explodedTemplate);
+        batchTemplate.initialize();
+
+        // Create the data:
+        Table data = new Table();
+        data.columns.addColumn("First Name");
+        for (String firstName : List.of("Albert", "Marie & Pierre", "Niels"))
+        {
+            data.rows.addRow().appendCell(firstName);
+        }
+
+        // Make two batches with the same batch, to make sure that it can be reused:
+        try (var context = explodedTemplate.createContext(); var slideBatch = batchTemplate.createBatch(context))
+        {
+            slideBatch.start(folder.resolve("Batch 1.pptx"));
+            slideBatch.addSlide(data.rows.getRow(0), folder.resolve("Albert.pdf"));
+            assertEquals(List.of(folder.resolve("Albert.pdf")), slideBatch.finish());
+            assertFalse(slideBatch.isStarted());
+
+            slideBatch.start(folder.resolve("Batch 2.pptx"));
+            for (Row row : data.rows)
+            {
+                slideBatch.addSlide(row, folder.resolve(row.getCellByColumnIndexAsString(0) + ".pdf"));
+            }
+            assertEquals(3, slideBatch.getSlideCount());
+            assertEquals(2, slideBatch.getBatchCount());
+            assertEquals(3, slideBatch.finish().size());
+        }
+
+        // The first batch must only have the slide of the template:
+        try (var zipFile = new ZipFile(folder.resolve("Batch 1.pptx").toFile()))
+        {
+            assertEquals("<p:sld><a:t>Albert</a:t></p:sld>", readEntry(zipFile, "ppt/slides/slide1.xml"));
+            assertNull(zipFile.getEntry("ppt/slides/batchSlide1.xml"));
+            assertEquals("<p:presentation><p:sldIdLst><p:sldId id=\"256\" r:id=\"rId2\"/></p:sldIdLst></p:presentation>", readEntry(zipFile, "ppt/presentation.xml"));
+        }
+
+        // The second batch must have a slide for each row, with the copies listed in the presentation:
+        try (var zipFile = new ZipFile(folder.resolve("Batch 2.pptx").toFile()))
+        {
+            assertEquals("<p:sld><a:t>Albert</a:t></p:sld>", readEntry(zipFile, "ppt/slides/slide1.xml"));
+            assertEquals("<p:sld><a:t>Marie &amp; Pierre</a:t></p:sld>", readEntry(zipFile, "ppt/slides/batchSlide1.xml"));
+            assertEquals("<p:sld><a:t>Niels</a:t></p:sld>", readEntry(zipFile, "ppt/slides/batchSlide2.xml"));
+            assertEquals("<Properties/>", readEntry(zipFile, "docProps/app.xml"));
+
+            // The copies must keep the layout but not the notes of the slide:
+            String copiedRelationships = readEntry(zipFile, "ppt/slides/_rels/batchSlide1.xml.rels");
+            assertTrue(copiedRelationships.contains("slideLayout7.xml"));
+            assertFalse(copiedRelationships.contains("notesSlide"));
+            assertTrue(readEntry(zipFile, "ppt/slides/_rels/slide1.xml.rels").contains("notesSlide"));
+
+            assertEquals(
+                "<p:presentation><p:sldIdLst><p:sldId id=\"256\" r:id=\"rId2\"/><p:sldId id=\"257\" r:id=\"rIdBatchSlide1\"/><p:sldId id=\"258\" r:id=\"rIdBatchSlide2\"/></p:sldIdLst></p:presentation>",
+                readEntry(zipFile, "ppt/presentation.xml")
+            );
+            assertTrue(readEntry(zipFile, "ppt/_rels/presentation.xml.rels").contains("<Relationship Id=\"rIdBatchSlide2\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/slide\" Target=\"slides/batchSlide2.xml\"/></Relationships>"));
+            assertTrue(readEntry(zipFile, "[Content_Types].xml").contains("<Override PartName=\"/ppt/slides/batchSlide2.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.presentationml.slide+xml\"/></Types>"));
+        }
+    }
+
+    @Test
+    public void rejectTemplateWithSeveralSlides(@TempDir Path folder) throws Exception
+    {
+        Path templatePath = createTemplate(folder, "<p:sldId id=\"256\" r:id=\"rId2\"/><p:sldId id=\"257\" r:id=\"rId3\"/>");
+        SlideBatchTemplate batchTemplate = new SlideBatchTemplate(createExplodedTemplate(templatePath));
+        assertThrows(IOException.class, batchTemplate::initialize);
+    }
+}
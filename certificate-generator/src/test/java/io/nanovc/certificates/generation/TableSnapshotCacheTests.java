@@ -0,0 +1,114 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link TableSnapshotCache}.
+ */
+class TableSnapshotCacheTests
+{
+    /**
+     * Creates a table with a ragged row, a null value, typed values and repeated values.
+     */
+    private static Table createTable()
+    {
+        Table table = new Table();
+        table.columns.addColumn("First Name");
+        table.columns.addColumn("Course Name");
+        for (int i = 0; i < 10; i++)
+        {
+            Row row = table.rows.addRow();
+            row.appendCell("Zoë " + i);
+            row.appendCell("Physics");
+        }
+        table.rows.addRow().appendCell("Short");
+        table.rows.addRow().appendCell(null);
+        Row typedRow = table.rows.addRow();
+        typedRow.appendCell(LocalDateTime.of(2024, 10, 1, 0, 0));
+        typedRow.appendCell(new BigDecimal("72.50"));
+        typedRow.appendCell(Boolean.TRUE);
+        return table;
+    }
+
+    @Test
+    public void reuseSnapshotUntilSourceChanges(@TempDir Path folder) throws Exception
+    {
+        Path source = folder.resolve("data.xlsx");
+        Files.writeString(source, "version 1");
+
+        TableSnapshotCache cache = new TableSnapshotCache(folder.resolve(".snapshots"));
+        AtomicInteger parseCount = new AtomicInteger();
+
+        // The first time we need to parse the source:
+        Table parsed = cache.getOrParse(source, "Sheet 0", () -> { parseCount.incrementAndGet(); return createTable(); });
+        assertEquals(1, parseCount.get());
+        assertTrue(Files.isRegularFile(cache.getSnapshotPath(source, "Sheet 0")));
+
+        // The second time we get the same table from the snapshot:
+        Table loaded = cache.getOrParse(source, "Sheet 0", () -> { parseCount.incrementAndGet(); return createTable(); });
+        assertEquals(1, parseCount.get());
+        assertEquals(parsed.toString(), loaded.toString());
+        assertEquals(1, loaded.rows.getRow(10).getWidth());
+        assertEquals("null", loaded.rows.getRow(11).getCellByColumnIndexAsString(0));
+        assertTrue(loaded.rows.getDistinctValues(1).contains("Physics"));
+        assertEquals(new BigDecimal("72.50"), loaded.rows.getRow(12).getCellByColumnIndex(1));
+        assertEquals(LocalDateTime.of(2024, 10, 1, 0, 0), loaded.rows.getRow(12).getCellByColumnIndex(0));
+
+        // Another variant has its own snapshot:
+        cache.getOrParse(source, "Sheet 1", () -> { parseCount.incrementAndGet(); return createTable(); });
+        assertEquals(2, parseCount.get());
+
+        // Changing the source means that it must be parsed again:
+        Files.writeString(source, "version 2");
+        cache.getOrParse(source, "Sheet 0", () -> { parseCount.incrementAndGet(); return createTable(); });
+        assertEquals(3, parseCount.get());
+    }
+
+    @Test
+    public void parseAgainIfSnapshotIsDamaged(@TempDir Path folder) throws Exception
+    {
+        Path source = folder.resolve("data.xlsx");
+        Files.writeString(source, "content");
+        TableSnapshotCache cache = new TableSnapshotCache(folder);
+        cache.getOrParse(source, "Sheet 0", TableSnapshotCacheTests::createTable);
+
+        // Cut the snapshot short:
+        Path snapshotPath = cache.getSnapshotPath(source, "Sheet 0");
+        byte[] bytes = Files.readAllBytes(snapshotPath);
+        Files.write(snapshotPath, Arrays.copyOf(bytes, bytes.length / 2));
+
+        Table table = cache.getOrParse(source, "Sheet 0", TableSnapshotCacheTests::createTable);
+        assertEquals(createTable().toString(), table.toString());
+    }
+
+    @Test
+    public void loadSpreadsheetThroughSnapshot(@TempDir Path folder) throws Exception
+    {
+        CertificateGenerationConfig config = new CertificateGenerationConfig();
+        config.pathToExcelData = Paths.get("..", "certificate-generator-folders", "Certificate Generator Data.xlsx").toString();
+        config.pathToSnapshotCacheFolder = folder.toString();
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            Table parsed = generator.loadActualData(config);
+            Table loaded = generator.loadActualData(config);
+            assertEquals(parsed.toString(), loaded.toString());
+
+            try (var snapshots = Files.list(folder))
+            {
+                assertEquals(1, snapshots.count());
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link Table} and how its rows are stored by column.
+ */
+class TableTests
+{
+    @Test
+    public void storeRaggedRows()
+    {
+        Table table = new Table();
+        table.rows.addRow().appendCell("Title");
+        Row header = table.rows.addRow();
+        header.appendCell("First Name");
+        header.appendCell("Last Name");
+        table.rows.addRow();
+
+        assertEquals(3, table.rows.getRowCount());
+        assertEquals(1, table.rows.getRow(0).getWidth());
+        assertEquals(2, table.rows.getRow(1).getWidth());
+        assertEquals("Title", table.rows.getRow(0).getCellByColumnIndexAsString(0));
+        assertEquals("", table.rows.getRow(0).getCellByColumnIndexAsString(1));
+        assertEquals("First Name|Last Name", table.rows.getRow(1).toString());
+        assertEquals("EMPTY ROW", table.rows.getRow(2).toString());
+    }
+
+    @Test
+    public void readCellsByColumnName()
+    {
+        Table table = new Table();
+        table.columns.addColumn("First Name");
+        table.columns.addColumn("Course Name");
+        Row row = table.rows.addRow();
+        row.appendCell("Albert");
+        row.appendCell("Physics");
+
+        assertEquals("Physics", row.getCellByColumnNameAsString("Course Name"));
+        assertEquals("", row.getCellByColumnNameAsString("Missing"));
+        assertArrayEquals(new Object[]{"Albert", "Physics"}, row.getSnapshotOfValues());
+    }
+
+    @Test
+    public void copyValuesFromAnotherTable()
+    {
+        Table raw = new Table();
+        Row rawRow = raw.rows.addRow();
+        rawRow.appendCell("Albert");
+        rawRow.appendCell("Physics");
+
+        Table rectangular = new Table();
+        rectangular.columns.addColumn("First Name");
+        rectangular.columns.addColumn("Course Name");
+        Row row = rectangular.rows.addRow();
+        row.copyValuesFromAnotherRow(rawRow);
+
+        assertEquals("Albert|Physics", row.toString());
+    }
+
+    @Test
+    public void dictionaryEncodeRepeatedValues()
+    {
+        // Fill a column with a few repeated values and another with unique values:
+        Table table = new Table();
+        int rowCount = 10_000;
+        for (int i = 0; i < rowCount; i++)
+        {
+            Row row = table.rows.addRow();
+            row.appendCell("Course " + (i % 3));
+            row.appendCell("ID " + i);
+        }
+
+        // The repeated values are only kept once:
+        assertEquals(List.of("Course 0", "Course 1", "Course 2"), table.rows.getDistinctValues(0));
+
+        // All the values must still be there:
+        assertEquals(rowCount, table.rows.getDistinctValues(1).size());
+        for (int i = 0; i < rowCount; i++)
+        {
+            Row row = table.rows.getRow(i);
+            assertEquals("Course " + (i % 3), row.getCellByColumnIndexAsString(0));
+            assertEquals("ID " + i, row.getCellByColumnIndexAsString(1));
+        }
+    }
+
+    @Test
+    public void stopDictionaryEncodingDistinctValues()
+    {
+        ColumnStorage storage = new ColumnStorage();
+        for (int i = 0; i < 5000; i++)
+        {
+            storage.set(i, i % 2 == 0 ? "Same" : "Value " + i);
+        }
+        assertFalse(storage.isDictionaryEncoded());
+        assertEquals("Same", storage.get(4000));
+        assertEquals("Value 4001", storage.get(4001));
+
+        ColumnStorage repeated = new ColumnStorage();
+        for (int i = 0; i < 5000; i++)
+        {
+            repeated.set(i, "Value " + (i % 10));
+        }
+        assertTrue(repeated.isDictionaryEncoded());
+    }
+
+    @Test
+    public void readCellsThroughSchema()
+    {
+        RowSchema schema = new RowSchema("Last Name", "Missing", "First Name");
+
+        Table table = new Table();
+        table.columns.addColumn("First Name");
+        table.columns.addColumn("Last Name");
+        Row row = table.rows.addRow();
+        row.appendCell("Albert");
+        row.appendCell("Einstein");
+
+        String[] values = new String[schema.getColumnCount()];
+        schema.getCellsAsStrings(row, values);
+        assertArrayEquals(new String[]{"Einstein", "", "Albert"}, values);
+        assertEquals(-1, schema.getColumnIndex(1));
+
+        // A row from a table with the columns in another order binds the schema again:
+        Table otherTable = new Table();
+        otherTable.columns.addColumn("Last Name");
+        otherTable.columns.addColumn("First Name");
+        Row otherRow = otherTable.rows.addRow();
+        otherRow.appendCell("Curie");
+        otherRow.appendCell("Marie");
+        assertEquals("Marie", schema.getCellAsString(otherRow, 2));
+    }
+
+    @Test
+    public void extractRectangularDataAsView() throws Exception
+    {
+        Table raw = new Table();
+        raw.rows.addRow().appendCell("Certificates for Printing");
+        Row header = raw.rows.addRow();
+        header.appendCell("First Name");
+        header.appendCell("Course Name");
+        Row data = raw.rows.addRow();
+        data.appendCell("Albert");
+        data.appendCell("Physics");
+
+        try (var generator = new CertificateGeneratorBase<CertificateGenerationConfig>())
+        {
+            // The rows after the header are viewed without being copied:
+            Table rectangular = generator.extractRectangularData(raw);
+            assertTrue(rectangular.rows.isView());
+            assertEquals(1, rectangular.rows.getRowCount());
+            assertEquals("Physics", rectangular.rows.getRow(0).getCellByColumnNameAsString("Course Name"));
+
+            // Changing the view gives it its own copy of the rows, leaving the raw data alone:
+            rectangular.rows.getRow(0).appendCell("Extra");
+            assertFalse(rectangular.rows.isView());
+            assertEquals("Albert|Physics|Extra", rectangular.rows.getRow(0).toString());
+            assertEquals("Albert|Physics", raw.rows.getRow(2).toString());
+        }
+    }
+}
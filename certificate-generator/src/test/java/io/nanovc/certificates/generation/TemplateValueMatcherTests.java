@@ -0,0 +1,79 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the {@link TemplateValueMatcher}.
+ */
+class TemplateValueMatcherTests
+{
+    /**
+     * Replaces the template values in the content using a freshly compiled matcher.
+     */
+    private static String replace(String content, List<String> templateValues, String... replacementValues)
+    {
+        var matcher = TemplateValueMatcher.compile(templateValues);
+        var output = new StringBuilder();
+        matcher.replace(content, replacementValues, output);
+        return output.toString();
+    }
+
+    @Test
+    public void replaceSimpleValues()
+    {
+        assertEquals(
+            "<a:t>Albert</a:t><a:t>Einstein</a:t>",
+            replace("<a:t>FirstName</a:t><a:t>LastName</a:t>", List.of("FirstName", "LastName"), "Albert", "Einstein")
+        );
+    }
+
+    @Test
+    public void replaceWithNoMatches()
+    {
+        assertEquals("Nothing to see here", replace("Nothing to see here", List.of("FirstName"), "Albert"));
+        assertEquals("", replace("", List.of("FirstName"), "Albert"));
+    }
+
+    @Test
+    public void replacementValuesAreNotReplacedAgain()
+    {
+        // The first replacement value contains the second template value:
+        assertEquals("[LastName] Einstein", replace("FirstName LastName", List.of("FirstName", "LastName"), "[LastName]", "Einstein"));
+    }
+
+    @Test
+    public void longestValueWinsAtTheSamePosition()
+    {
+        assertEquals("Albert Einstein!", replace("Name NameLong!", List.of("Name", "NameLong"), "Albert", "Einstein"));
+    }
+
+    @Test
+    public void leftmostValueWinsWhenValuesOverlap()
+    {
+        assertEquals("1c 2", replace("abc bcd", List.of("ab", "bcd"), "1", "2"));
+        assertEquals("x_y", replace("abcde_bcd", List.of("bcd", "abcde"), "y", "x"));
+    }
+
+    @Test
+    public void repeatedValuesAreAllReplaced()
+    {
+        assertEquals("Albert and Albert and Albert", replace("Name and Name and Name", List.of("Name"), "Albert"));
+    }
+
+    @Test
+    public void partialPrefixesAreNotReplaced()
+    {
+        assertEquals("Nam Albert Na", replace("Nam Name Na", List.of("Name"), "Albert"));
+        assertEquals("aaX", replace("aaab", List.of("ab", "aaaa"), "X", "Y"));
+    }
+
+    @Test
+    public void duplicateValuesUseTheFirstMapping()
+    {
+        assertEquals("First", replace("Name", List.of("Name", "Name"), "First", "Second"));
+    }
+}
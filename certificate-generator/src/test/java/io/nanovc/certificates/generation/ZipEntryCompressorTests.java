@@ -0,0 +1,120 @@
+package io.nanovc.certificates.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link ZipEntryCompressor}.
+ */
+class ZipEntryCompressorTests
+{
+    /**
+     * Creates content that is large and compressible, but not trivially so.
+     */
+    private static byte[] createContent(int length)
+    {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < length)
+        {
+            builder.append("<a:t>Value ").append(random.nextInt(1000)).append("</a:t>");
+        }
+        return builder.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Inflates the raw deflate data that the compressor produced.
+     */
+    private static byte[] inflate(ContentBuffer compressedContent, int uncompressedLength) throws DataFormatException
+    {
+        Inflater inflater = new Inflater(true);
+        try
+        {
+            inflater.setInput(compressedContent.getArray(), 0, compressedContent.size());
+            byte[] uncompressed = new byte[uncompressedLength];
+            int position = 0;
+            while (!inflater.finished() && position < uncompressedLength)
+            {
+                position += inflater.inflate(uncompressed, position, uncompressedLength - position);
+            }
+            assertEquals(uncompressedLength, position);
+            return uncompressed;
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    @Test
+    public void deflateInParallelBlocks() throws Exception
+    {
+        // Make content that spans several blocks and ends part way through a block:
+        byte[] content = createContent(1_000_003);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ZipEntryCompressor parallelCompressor = new ZipEntryCompressor(ZipEntryCompression.DEFAULT, 1024, executor);
+        ZipEntryCompressor serialCompressor = new ZipEntryCompressor();
+        try
+        {
+            parallelCompressor.compress(content, 0, content.length);
+            serialCompressor.compress(content, 0, content.length);
+
+            // The blocks must join into a single valid deflate stream:
+            assertArrayEquals(content, inflate(parallelCompressor.getCompressedContent(), content.length));
+
+            // The checksum is for the whole content:
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            assertEquals(crc.getValue(), parallelCompressor.getCrc());
+
+            // Priming each block with a dictionary keeps it close to the size of a single stream:
+            assertTrue(parallelCompressor.getCompressedContent().size() < serialCompressor.getCompressedContent().size() * 1.05);
+        }
+        finally
+        {
+            parallelCompressor.end();
+            serialCompressor.end();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void compressAtEachLevel() throws Exception
+    {
+        byte[] content = createContent(50_000);
+        for (ZipEntryCompression compression : ZipEntryCompression.values())
+        {
+            ZipEntryCompressor compressor = new ZipEntryCompressor(compression, 0, null);
+            try
+            {
+                compressor.compress(content, 0, content.length);
+                assertEquals(content.length, compressor.getUncompressedSize());
+                if (compression == ZipEntryCompression.STORED)
+                {
+                    // Stored content is written as it is, so there is nothing compressed:
+                    assertEquals(0, compressor.getCompressedContent().size());
+                }
+                else
+                {
+                    assertArrayEquals(content, inflate(compressor.getCompressedContent(), content.length));
+                }
+            }
+            finally
+            {
+                compressor.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package io.nanovc.certificates.generation;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the {@link ZipPackage} and the {@link ZipPackageWriter}.
+ */
+class ZipPackageTests
+{
+    /**
+     * Creates a zip file with a deflated entry (which uses a data descriptor) and a stored entry.
+     */
+    private static Path createZipFile(Path folder) throws IOException
+    {
+        Path path = folder.resolve("source.zip");
+        try (var zipOutputStream = new ZipOutputStream(Files.newOutputStream(path)))
+        {
+            zipOutputStream.putNextEntry(new ZipEntry("ppt/slides/slide1.xml"));
+            zipOutputStream.write("<p:sld>FirstName LastName</p:sld>".repeat(100).getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+
+            byte[] image = "not really an image".getBytes(StandardCharsets.UTF_8);
+            CRC32 crc = new CRC32();
+            crc.update(image);
+            ZipEntry imageEntry = new ZipEntry("ppt/media/image1.png");
+            imageEntry.setMethod(ZipEntry.STORED);
+            imageEntry.setSize(image.length);
+            imageEntry.setCrc(crc.getValue());
+            zipOutputStream.putNextEntry(imageEntry);
+            zipOutputStream.write(image);
+            zipOutputStream.closeEntry();
+        }
+        return path;
+    }
+
+    /**
+     * Reads all the entries of a zip file with the JDK so that we check our output with an independent reader.
+     */
+    private static List<String> readWithJdk(Path path) throws IOException
+    {
+        List<String> entries = new ArrayList<>();
+        try (var zipFile = new ZipFile(path.toFile()))
+        {
+            var zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements())
+            {
+                var entry = zipEntries.nextElement();
+                try (var inputStream = zipFile.getInputStream(entry))
+                {
+                    entries.add(entry.getName() + "=" + IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void readEntries(@TempDir Path folder) throws IOException
+    {
+        try (var zipPackage = new ZipPackage(createZipFile(folder)))
+        {
+            assertEquals(2, zipPackage.getEntries().size());
+
+            var slide = zipPackage.getEntry("ppt/slides/slide1.xml");
+            assertEquals(ZipPackageEntry.METHOD_DEFLATED, slide.compressionMethod);
+            try (var inputStream = zipPackage.getInputStream(slide))
+            {
+                assertEquals("<p:sld>FirstName LastName</p:sld>".repeat(100), IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+            }
+
+            var image = zipPackage.getEntry("ppt/media/image1.png");
+            assertEquals(ZipPackageEntry.METHOD_STORED, image.compressionMethod);
+            try (var inputStream = zipPackage.getInputStream(image))
+            {
+                assertEquals("not really an image", IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void copyEntriesRaw(@TempDir Path folder) throws IOException
+    {
+        Path sourcePath = createZipFile(folder);
+        Path copyPath = folder.resolve("copy.zip");
+        try (var zipPackage = new ZipPackage(sourcePath); OutputStream outputStream = Files.newOutputStream(copyPath))
+        {
+            var writer = new ZipPackageWriter(outputStream);
+            for (ZipPackageEntry entry : zipPackage.getEntries())
+            {
+                writer.copyRawEntry(zipPackage, entry, new byte[7]);
+            }
+            writer.finish();
+        }
+        assertEquals(readWithJdk(sourcePath), readWithJdk(copyPath));
+    }
+
+    @Test
+    public void replaceEntry(@TempDir Path folder) throws IOException
+    {
+        Path sourcePath = createZipFile(folder);
+        Path outputPath = folder.resolve("output.zip");
+        byte[] newContent = "<p:sld>Albert Einstein</p:sld>".getBytes(StandardCharsets.UTF_8);
+        var compressor = new ZipEntryCompressor();
+        try (var zipPackage = new ZipPackage(sourcePath); OutputStream outputStream = Files.newOutputStream(outputPath))
+        {
+            var writer = new ZipPackageWriter(outputStream);
+            for (ZipPackageEntry entry : zipPackage.getEntries())
+            {
+                if (entry.name.equals("ppt/slides/slide1.xml")) writer.writeEntry(entry, newContent, newContent.length, compressor);
+                else writer.copyRawEntry(zipPackage, entry, new byte[1024]);
+            }
+            writer.finish();
+        }
+        finally
+        {
+            compressor.end();
+        }
+        assertEquals(
+            List.of("ppt/slides/slide1.xml=<p:sld>Albert Einstein</p:sld>", "ppt/media/image1.png=not really an image"),
+            readWithJdk(outputPath)
+        );
+    }
+
+    @Test
+    public void writeFromPrefix(@TempDir Path folder) throws IOException
+    {
+        Path sourcePath = createZipFile(folder);
+        var compressor = new ZipEntryCompressor();
+        try (var zipPackage = new ZipPackage(sourcePath))
+        {
+            // Serialize everything except the slide into a prefix:
+            var prefixBuffer = new ContentBuffer(16);
+            var prefixWriter = new ZipPackageWriter(prefixBuffer);
+            prefixWriter.copyRawEntry(zipPackage, zipPackage.getEntry("ppt/media/image1.png"), new byte[1024]);
+            ZipPackagePrefix prefix = prefixWriter.toPrefix(prefixBuffer);
+            assertEquals(1, prefix.getEntryCount());
+
+            // Produce several files from the same prefix:
+            for (String name : List.of("Albert", "Marie"))
+            {
+                Path outputPath = folder.resolve(name + ".zip");
+                byte[] newContent = ("<p:sld>" + name + "</p:sld>").getBytes(StandardCharsets.UTF_8);
+                try (OutputStream outputStream = Files.newOutputStream(outputPath))
+                {
+                    var writer = new ZipPackageWriter(outputStream, prefix);
+                    writer.writeEntry(zipPackage.getEntry("ppt/slides/slide1.xml"), newContent, newContent.length, compressor);
+                    writer.finish();
+                }
+                assertEquals(
+                    List.of("ppt/media/image1.png=not really an image", "ppt/slides/slide1.xml=<p:sld>" + name + "</p:sld>"),
+                    readWithJdk(outputPath)
+                );
+            }
+        }
+        finally
+        {
+            compressor.end();
+        }
+    }
+}
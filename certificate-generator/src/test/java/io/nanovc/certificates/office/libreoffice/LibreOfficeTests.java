@@ -0,0 +1,53 @@
+package io.nanovc.certificates.office.libreoffice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link LibreOffice}.
+ */
+class LibreOfficeTests
+{
+    @Test
+    public void startQuitTest(@TempDir Path folder) throws Exception
+    {
+        try (var libreOffice = new LibreOffice("soffice", folder.resolve("profile"), Duration.ofSeconds(60)))
+        {
+            libreOffice.start();
+            libreOffice.quit();
+        }
+    }
+
+    @Test
+    public void saveLibreOfficeToPDF(@TempDir Path folder) throws Exception
+    {
+        // Define the paths:
+        Path presentationPath = Paths.get("../example-template/example-template.pptx");
+        Path pdfFullPath = folder.resolve("java-pptx-to-pdf.pdf");
+
+        try (var libreOffice = new LibreOffice("soffice", folder.resolve("profile"), Duration.ofSeconds(60)))
+        {
+            libreOffice.start();
+
+            // Render twice on the same connection:
+            for (int i = 0; i < 2; i++)
+            {
+                Presentation presentation = libreOffice.openPresentation(presentationPath);
+
+                presentation.exportToPDF(pdfFullPath);
+
+                presentation.close();
+            }
+
+            libreOffice.quit();
+        }
+        assertTrue(Files.size(pdfFullPath) > 0);
+    }
+}
@@ -0,0 +1,188 @@
+package io.nanovc.certificates.rendering;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link BatchExportRenderer} and the {@link BatchExportManifest}.
+ */
+class BatchExportRendererTests
+{
+    /**
+     * Stands in for PowerPoint by doing what the BatchExport macro does, without leaving the test.
+     * It writes a stub PDF for each package in the manifest and fails the packages with "fail" in their name.
+     * Like ADODB.Stream, it writes the manifest back with a byte order mark.
+     */
+    private static class FakeBatchExportApplication implements BatchExportApplication
+    {
+        /**
+         * The number of manifests that have been exported.
+         */
+        final AtomicInteger exportCount = new AtomicInteger();
+
+        /**
+         * True while the application is started.
+         */
+        volatile boolean started;
+
+        @Override
+        public void start()
+        {
+            this.started = true;
+        }
+
+        @Override
+        public void exportManifest(Path manifestPath) throws IOException
+        {
+            assertTrue(this.started);
+            this.exportCount.incrementAndGet();
+
+            StringBuilder report = new StringBuilder("\uFEFF");
+            for (String line : Files.readAllLines(manifestPath, StandardCharsets.UTF_8))
+            {
+                String[] fields = line.split("\t");
+                Path packagePath = Path.of(fields[0]);
+                if (packagePath.getFileName().toString().contains("fail"))
+                {
+                    report.append(line).append("\tFAILED\tThe presentation is corrupt.\r\n");
+                }
+                else
+                {
+                    Files.write(Path.of(fields[1]), StubRenderer.createPDF(packagePath.getFileName().toString()));
+                    report.append(line).append("\tOK\r\n");
+                }
+            }
+            Files.writeString(manifestPath, report, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void stop()
+        {
+            this.started = false;
+        }
+    }
+
+    @Test
+    public void exportFullManifestsAndFlushTheRest(@TempDir Path folder) throws Exception
+    {
+        var application = new FakeBatchExportApplication();
+        try (var renderer = new BatchExportRenderer(application, 3))
+        {
+            // It must be started first:
+            assertThrows(IllegalStateException.class, () -> renderer.renderToPDFAsync(folder.resolve("Albert.pptx"), folder.resolve("Albert.pdf")));
+            renderer.start();
+
+            // Nothing must be exported until the manifest is full:
+            List<CompletableFuture<Path>> renders = new ArrayList<>();
+            for (int i = 0; i < 5; i++)
+            {
+                renders.add(renderer.renderToPDFAsync(folder.resolve("Albert " + i + ".pptx"), folder.resolve("Albert " + i + ".pdf")));
+                assertEquals(i < 2 ? 0 : 1, application.exportCount.get());
+            }
+            assertTrue(renders.get(2).isDone());
+            assertFalse(renders.get(3).isDone());
+
+            // Flushing must export the rest:
+            renderer.flush();
+            assertEquals(2, application.exportCount.get());
+            for (int i = 0; i < 5; i++)
+            {
+                assertEquals(folder.resolve("Albert " + i + ".pdf"), renders.get(i).join());
+                assertTrue(Files.exists(folder.resolve("Albert " + i + ".pdf")));
+            }
+
+            // Flushing an empty manifest must not call the application:
+            renderer.flush();
+            assertEquals(2, application.exportCount.get());
+        }
+        assertFalse(application.started);
+    }
+
+    @Test
+    public void reportPackagesThatFailToExport(@TempDir Path folder) throws Exception
+    {
+        try (var renderer = new BatchExportRenderer(new FakeBatchExportApplication(), 10))
+        {
+            renderer.start();
+            CompletableFuture<Path> albert = renderer.renderToPDFAsync(folder.resolve("Albert.pptx"), folder.resolve("Albert.pdf"));
+            CompletableFuture<Path> failed = renderer.renderToPDFAsync(folder.resolve("fail.pptx"), folder.resolve("fail.pdf"));
+            renderer.flush();
+
+            // The other packages in the manifest must still be exported:
+            assertEquals(folder.resolve("Albert.pdf"), albert.join());
+            CompletionException failure = assertThrows(CompletionException.class, failed::join);
+            assertInstanceOf(IOException.class, failure.getCause());
+            assertTrue(failure.getCause().getMessage().contains("The presentation is corrupt."));
+
+            // Rendering a single package must throw the reason that it failed:
+            assertThrows(IOException.class, () -> renderer.renderToPDF(folder.resolve("fail again.pptx"), folder.resolve("fail again.pdf")));
+        }
+    }
+
+    @Test
+    public void collectManifestsOnEachWorkerOfPool(@TempDir Path folder) throws Exception
+    {
+        List<FakeBatchExportApplication> applications = new ArrayList<>();
+        try (var pool = new RendererPool(2, () ->
+        {
+            var application = new FakeBatchExportApplication();
+            synchronized (applications)
+            {
+                applications.add(application);
+            }
+            return new BatchExportRenderer(application, 100);
+        }))
+        {
+            pool.start();
+            List<CompletableFuture<Path>> renders = new ArrayList<>();
+            for (int i = 0; i < 6; i++)
+            {
+                renders.add(pool.renderToPDFAsync(folder.resolve("Albert " + i + ".pptx"), folder.resolve("Albert " + i + ".pdf")));
+            }
+
+            // Flushing the pool must export the manifest of every worker:
+            pool.flush();
+            for (int i = 0; i < 6; i++)
+            {
+                assertEquals(folder.resolve("Albert " + i + ".pdf"), renders.get(i).join());
+            }
+            assertTrue(applications.stream().allMatch(application -> application.exportCount.get() <= 1));
+        }
+    }
+
+    @Test
+    public void rejectManifestThatWasChanged(@TempDir Path folder) throws Exception
+    {
+        BatchExportManifest manifest = new BatchExportManifest();
+        manifest.add(folder.resolve("Albert.pptx"), folder.resolve("Albert.pdf"));
+        manifest.add(folder.resolve("Marie.pptx"), folder.resolve("Marie.pdf"));
+        Path manifestPath = folder.resolve("export.manifest");
+
+        // A package without a status must be marked as failed:
+        manifest.write(manifestPath);
+        Files.writeString(manifestPath, Files.readString(manifestPath).replaceFirst("\n", "\tOK\n"));
+        manifest.readStatuses(manifestPath);
+        assertTrue(manifest.getEntries().get(0).isExported());
+        assertFalse(manifest.getEntries().get(1).isExported());
+
+        // A manifest with other packages in it must be rejected:
+        Files.writeString(manifestPath, folder.resolve("Marie.pptx") + "\t" + folder.resolve("Marie.pdf") + "\tOK\n");
+        assertThrows(IOException.class, () -> manifest.readStatuses(manifestPath));
+    }
+}
@@ -0,0 +1,48 @@
+package io.nanovc.certificates.rendering;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the {@link PdfSplitter}.
+ */
+class PdfSplitterTests
+{
+    @Test
+    public void splitPageIntoEachPath(@TempDir Path folder) throws Exception
+    {
+        Path pdfPath = folder.resolve("Batch.pdf");
+        Files.write(pdfPath, StubRenderer.createPDF(List.of("Albert", "Marie", "Niels")));
+
+        List<Path> pagePaths = List.of(folder.resolve("Albert.pdf"), folder.resolve("Marie.pdf"), folder.resolve("Niels.pdf"));
+        PdfSplitter.splitPages(pdfPath, pagePaths);
+
+        // Each PDF must have a single page:
+        for (Path pagePath : pagePaths)
+        {
+            try (PDDocument document = Loader.loadPDF(pagePath.toFile()))
+            {
+                assertEquals(1, document.getNumberOfPages());
+            }
+        }
+    }
+
+    @Test
+    public void rejectWrongNumberOfPages(@TempDir Path folder) throws Exception
+    {
+        Path pdfPath = folder.resolve("Batch.pdf");
+        Files.write(pdfPath, StubRenderer.createPDF(List.of("Albert", "Marie")));
+
+        assertThrows(IOException.class, () -> PdfSplitter.splitPages(pdfPath, List.of(folder.resolve("Albert.pdf"))));
+    }
+}
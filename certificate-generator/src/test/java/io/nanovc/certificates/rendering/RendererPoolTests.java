@@ -0,0 +1,126 @@
+package io.nanovc.certificates.rendering;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link RendererPool}.
+ */
+class RendererPoolTests
+{
+    @Test
+    public void renderOnSeveralWorkersAtOnce(@TempDir Path folder) throws Exception
+    {
+        // Remember which thread each renderer was started on:
+        Set<String> startingThreads = ConcurrentHashMap.newKeySet();
+        try (var pool = new RendererPool(4, () -> new StubRenderer(Duration.ofMillis(100))
+        {
+            @Override
+            public void start()
+            {
+                startingThreads.add(Thread.currentThread().getName());
+                super.start();
+            }
+        }))
+        {
+            // It must be started first:
+            assertThrows(IllegalStateException.class, () -> pool.renderToPDFAsync(folder.resolve("Albert.pptx"), folder.resolve("Albert.pdf")));
+            pool.start();
+
+            // Each renderer must be started on its own worker:
+            assertEquals(Set.of("Renderer-0", "Renderer-1", "Renderer-2", "Renderer-3"), startingThreads);
+
+            // Render eight certificates, which would take 800ms one after the other:
+            long start = System.nanoTime();
+            List<CompletableFuture<Path>> renders = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+            {
+                renders.add(pool.renderToPDFAsync(folder.resolve("Albert " + i + ".pptx"), folder.resolve("Albert " + i + ".pdf")));
+            }
+            for (int i = 0; i < 8; i++)
+            {
+                assertEquals(folder.resolve("Albert " + i + ".pdf"), renders.get(i).join());
+                assertTrue(Files.exists(folder.resolve("Albert " + i + ".pdf")));
+            }
+            assertTrue(System.nanoTime() - start < Duration.ofMillis(700).toNanos());
+        }
+    }
+
+    @Test
+    public void finishQueuedWorkWhenStopped(@TempDir Path folder) throws Exception
+    {
+        var pool = new RendererPool(2, 1, () -> new StubRenderer(Duration.ofMillis(20)));
+        pool.start();
+
+        // Queue more certificates than the work queue holds, so that some must wait for space:
+        List<CompletableFuture<Path>> renders = new ArrayList<>();
+        for (int i = 0; i < 6; i++)
+        {
+            renders.add(pool.renderToPDFAsync(folder.resolve("Albert " + i + ".pptx"), folder.resolve("Albert " + i + ".pdf")));
+        }
+
+        // Stopping must wait for every queued certificate:
+        pool.stop();
+        assertTrue(renders.stream().allMatch(render -> render.isDone() && !render.isCompletedExceptionally()));
+    }
+
+    @Test
+    public void reportRendererThatFailsToStart()
+    {
+        var pool = new RendererPool(3, () -> new StubRenderer()
+        {
+            @Override
+            public void start()
+            {
+                if (Thread.currentThread().getName().equals("Renderer-1")) throw new IllegalStateException("No application");
+                super.start();
+            }
+        });
+        var failure = assertThrows(IllegalStateException.class, pool::start);
+        assertEquals("No application", failure.getMessage());
+    }
+
+    @Test
+    public void copyPackagesHandedOverInMemory(@TempDir Path folder) throws Exception
+    {
+        try (var pool = new RendererPool(2, () -> new StubRenderer(Duration.ofMillis(20))))
+        {
+            pool.start();
+
+            // Hand over each package in the same buffer, overwriting it straight away, the same as the generator reuses its package buffer:
+            ByteBuffer packageBuffer = ByteBuffer.allocate(1024);
+            List<CompletableFuture<Path>> renders = new ArrayList<>();
+            for (int i = 0; i < 4; i++)
+            {
+                packageBuffer.clear();
+                packageBuffer.put(StubRendererTests.createPackage(i + 1)).flip();
+                renders.add(pool.renderToPDFAsync(packageBuffer, ".pptx", folder.resolve("Albert " + i + ".pdf")));
+                packageBuffer.clear();
+                packageBuffer.put(new byte[packageBuffer.capacity()]);
+            }
+
+            // Each PDF must have a page for each slide of its own package:
+            for (int i = 0; i < 4; i++)
+            {
+                assertEquals(folder.resolve("Albert " + i + ".pdf"), renders.get(i).join());
+                String pdf = new String(Files.readAllBytes(folder.resolve("Albert " + i + ".pdf")), StandardCharsets.US_ASCII);
+                assertTrue(pdf.contains("/Count " + (i + 1)), pdf);
+            }
+        }
+    }
+}
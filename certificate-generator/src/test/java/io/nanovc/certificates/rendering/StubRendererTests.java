@@ -0,0 +1,142 @@
+package io.nanovc.certificates.rendering;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link StubRenderer}.
+ */
+class StubRendererTests
+{
+    /**
+     * Creates a PowerPoint package with the given number of slides in it.
+     */
+    static byte[] createPackage(int slideCount) throws IOException
+    {
+        var bytes = new ByteArrayOutputStream();
+        try (var zipOutputStream = new ZipOutputStream(bytes))
+        {
+            for (int slide = 1; slide <= slideCount; slide++)
+            {
+                zipOutputStream.putNextEntry(new ZipEntry("ppt/slides/slide" + slide + ".xml"));
+                zipOutputStream.write("<p:sld/>".getBytes(StandardCharsets.UTF_8));
+                zipOutputStream.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void writeValidPDF()
+    {
+        byte[] pdf = StubRenderer.createPDF("Albert (Physics).pptx");
+        String text = new String(pdf, StandardCharsets.US_ASCII);
+        assertTrue(text.startsWith("%PDF-1.4\n"));
+        assertTrue(text.endsWith("%%EOF\n"));
+        assertTrue(text.contains("(Albert \\(Physics\\).pptx) Tj"));
+
+        // The cross reference table must point at the start of each object:
+        int startOfCrossReference = Integer.parseInt(text.substring(text.indexOf("startxref\n") + 10, text.indexOf("\n%%EOF")));
+        assertTrue(text.startsWith("xref\n", startOfCrossReference));
+        String[] entries = text.substring(startOfCrossReference).split("\n");
+        for (int objectNumber = 1; objectNumber <= 5; objectNumber++)
+        {
+            int objectOffset = Integer.parseInt(entries[2 + objectNumber].substring(0, 10));
+            assertTrue(text.startsWith(objectNumber + " 0 obj\n", objectOffset));
+        }
+    }
+
+    @Test
+    public void renderSamePDFEveryTime(@TempDir Path folder) throws Exception
+    {
+        try (var renderer = new StubRenderer(Duration.ofMillis(20)))
+        {
+            // It must be started first:
+            assertThrows(IllegalStateException.class, () -> renderer.renderToPDF(folder.resolve("Albert.pptx"), folder.resolve("Albert.pdf")));
+            renderer.start();
+
+            long start = System.nanoTime();
+            renderer.renderToPDF(folder.resolve("Albert.pptx"), folder.resolve("first.pdf"));
+            renderer.renderToPDF(folder.resolve("Albert.pptx"), folder.resolve("second.pdf"));
+            assertTrue(System.nanoTime() - start >= Duration.ofMillis(40).toNanos());
+
+            assertEquals(2, renderer.getRenderCount());
+            assertArrayEquals(Files.readAllBytes(folder.resolve("first.pdf")), Files.readAllBytes(folder.resolve("second.pdf")));
+        }
+    }
+
+    @Test
+    public void renderPackageFromMemory(@TempDir Path folder) throws Exception
+    {
+        byte[] packageBytes = createPackage(2);
+        Files.write(folder.resolve("Albert.pptx"), packageBytes);
+
+        try (var renderer = new StubRenderer())
+        {
+            renderer.start();
+
+            // The package in memory must render the same as the package file with the same name:
+            renderer.renderToPDF(folder.resolve("Albert.pptx"), folder.resolve("From File.pdf"));
+            Files.createDirectories(folder.resolve("Memory"));
+            ByteBuffer packageBuffer = ByteBuffer.wrap(packageBytes).asReadOnlyBuffer();
+            renderer.renderToPDF(packageBuffer, ".pptx", folder.resolve("Memory").resolve("Albert.pdf"));
+            assertArrayEquals(Files.readAllBytes(folder.resolve("From File.pdf")), Files.readAllBytes(folder.resolve("Memory").resolve("Albert.pdf")));
+            assertTrue(new String(Files.readAllBytes(folder.resolve("From File.pdf")), StandardCharsets.US_ASCII).contains("(Albert.pptx 2) Tj"));
+
+            // The buffer must not be moved:
+            assertEquals(0, packageBuffer.position());
+        }
+    }
+
+    @Test
+    public void renderPackageFromMemoryThroughTemporaryFile(@TempDir Path folder) throws Exception
+    {
+        // A renderer that can only open files:
+        List<Path> renderedPaths = new ArrayList<>();
+        CertificateRenderer renderer = new CertificateRenderer()
+        {
+            @Override
+            public void start()
+            {
+            }
+
+            @Override
+            public void renderToPDF(Path packagePath, Path pdfPath) throws Exception
+            {
+                renderedPaths.add(packagePath);
+                assertTrue(packagePath.getFileName().toString().endsWith(".pptx"));
+                Files.copy(packagePath, pdfPath);
+            }
+
+            @Override
+            public void stop()
+            {
+            }
+        };
+
+        // The package must be written to a temporary file that is deleted once it has been rendered:
+        byte[] packageBytes = createPackage(1);
+        renderer.renderToPDFAsync(ByteBuffer.wrap(packageBytes), ".pptx", folder.resolve("Albert.pdf")).join();
+        assertArrayEquals(packageBytes, Files.readAllBytes(folder.resolve("Albert.pdf")));
+        assertEquals(1, renderedPaths.size());
+        assertFalse(Files.exists(renderedPaths.get(0)));
+    }
+}